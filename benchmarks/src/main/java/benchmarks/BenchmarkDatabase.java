@@ -0,0 +1,130 @@
+package benchmarks;
+
+import dao.BalanceCache;
+import dao.UserDAO;
+import util.DBConnection;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.sql.*;
+
+/**
+ * Benchmark Database
+ * Points DBConnection at an in-memory H2 database (MySQL mode) and seeds it
+ * with a configurable number of users, accounts and history rows.
+ *
+ * User i (1-based) has email user{i}@bench.local, password "password123"
+ * and account ID i, so benchmarks can pick rows without querying for them.
+ */
+final class BenchmarkDatabase {
+
+    static final String PASSWORD = "password123";
+    static final double OPENING_BALANCE = 1_000_000.00;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Create and seed a fresh database and route DBConnection to it
+     * @param accounts Number of users, each with one account
+     * @param historyPerAccount Transfers sent by each account before measurement starts
+     */
+    static void start(int accounts, int historyPerAccount) throws SQLException {
+        if (System.getProperty("banking.audit.dir") == null) {
+            // Keep audit segments out of the working directory
+            try {
+                System.setProperty("banking.audit.dir", Files.createTempDirectory("bench-audit").toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        String name = "bench" + System.nanoTime();
+        DBConnection.configure("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        BalanceCache.getInstance().clear();
+
+        try (Connection conn = DBConnection.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("RUNSCRIPT FROM 'classpath:/schema.sql'");
+            }
+            conn.setAutoCommit(false);
+            seedUsers(conn, accounts);
+            seedHistory(conn, accounts, historyPerAccount);
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Drop the seeded data so the next trial in the same JVM starts from scratch
+     */
+    static void stop() throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        DBConnection.reset();
+    }
+
+    static String email(int user) {
+        return "user" + user + "@bench.local";
+    }
+
+    private static void seedUsers(Connection conn, int accounts) throws SQLException {
+        String hash = UserDAO.hashPassword(PASSWORD);
+        try (PreparedStatement users = conn.prepareStatement(
+                     "INSERT INTO users (user_id, name, email, password_hash) VALUES (?, ?, ?, ?)");
+             PreparedStatement accountRows = conn.prepareStatement(
+                     "INSERT INTO accounts (account_id, user_id, balance) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= accounts; i++) {
+                users.setInt(1, i);
+                users.setString(2, "Bench User " + i);
+                users.setString(3, email(i));
+                users.setString(4, hash);
+                users.addBatch();
+                accountRows.setInt(1, i);
+                accountRows.setInt(2, i);
+                accountRows.setDouble(3, OPENING_BALANCE);
+                accountRows.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    users.executeBatch();
+                    accountRows.executeBatch();
+                }
+            }
+            users.executeBatch();
+            accountRows.executeBatch();
+        }
+    }
+
+    private static void seedHistory(Connection conn, int accounts, int historyPerAccount) throws SQLException {
+        if (accounts < 2) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int pending = 0;
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO transactions (sender_account, receiver_account, amount, txn_date, status, transaction_type) " +
+                "VALUES (?, ?, ?, ?, 'SUCCESS', 'TRANSFER')")) {
+            for (int sender = 1; sender <= accounts; sender++) {
+                for (int n = 0; n < historyPerAccount; n++) {
+                    int receiver = 1 + (sender + n) % accounts;
+                    if (receiver == sender) {
+                        receiver = 1 + sender % accounts;
+                    }
+                    insert.setInt(1, sender);
+                    insert.setInt(2, receiver);
+                    insert.setDouble(3, 1 + (sender * 31 + n) % 500);
+                    insert.setTimestamp(4, new Timestamp(now - (long) (sender + n * accounts) * 1000));
+                    insert.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import dao.BulkTransferDAO;
+import dao.TransactionDAO;
+import dao.model.BulkTransferRow;
+import dao.model.TransferStatus;
+import org.openjdk.jmh.annotations.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk Transfer Benchmark
+ * Payroll throughput in rows per second: one account paying a file of
+ * payrollRows salaries to random receivers
+ *
+ *   perRow   one TransactionDAO.transferMoney call per row, as separate TransferServlet posts would
+ *   bulk     BulkTransferDAO with chunkSize rows per transaction and JDBC batches
+ *
+ * Each invocation pays a whole file, and the score counts its rows.
+ *     java -jar benchmarks/target/benchmarks.jar BulkTransfer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class BulkTransferBenchmark {
+
+    private static final int PAYROLL_ROWS = 1000;
+
+    @Param({"perRow", "bulk"})
+    public String mode;
+
+    @Param({"100", "500"})
+    public int chunkSize;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private TransactionDAO transactionDAO;
+    private BulkTransferDAO bulkTransferDAO;
+    private List<BulkTransferRow> payroll;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(accounts, 0);
+        transactionDAO = new TransactionDAO();
+        bulkTransferDAO = new BulkTransferDAO(chunkSize);
+
+        // Account 1 pays everyone else; the opening balance covers every iteration
+        payroll = new ArrayList<>(PAYROLL_ROWS);
+        for (int line = 1; line <= PAYROLL_ROWS; line++) {
+            int receiver = 2 + ThreadLocalRandom.current().nextInt(accounts - 1);
+            payroll.add(new BulkTransferRow(line, receiver, 0.01));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAYROLL_ROWS)
+    public int payroll() {
+        int paid = 0;
+        if ("bulk".equals(mode)) {
+            for (TransferStatus status : bulkTransferDAO.transfer(1, payroll)) {
+                if (status.isSuccess()) {
+                    paid++;
+                }
+            }
+            return paid;
+        }
+        for (BulkTransferRow row : payroll) {
+            if (transactionDAO.transferMoney(1, row.receiverAccountId(), row.amount())) {
+                paid++;
+            }
+        }
+        return paid;
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import dao.AccountDAO;
+import dao.TransactionDAO;
+import dao.UserDAO;
+import dao.model.SessionProfile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DAO Benchmark
+ * Throughput of the DAO hot paths against an embedded H2 database seeded by
+ * BenchmarkDatabase. Accounts are picked uniformly at random per call, so
+ * larger account counts mean fewer lock and cache collisions between threads.
+ *
+ * Data volume is set with -p accounts=... -p historyPerAccount=...; thread
+ * count with -t, or swept by DaoBenchmarkRunner, which also writes JSON results:
+ *     java -jar benchmarks/target/benchmarks.jar Dao -t 4 -p accounts=10000
+ *     java -cp benchmarks/target/benchmarks.jar benchmarks.DaoBenchmarkRunner --threads 1,4,16
+ *
+ * H2 numbers are only comparable with other H2 runs; they track the cost of
+ * the Java side (pooling, statement caching, row mapping) across commits,
+ * not MySQL latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+    @Param({"1000", "10000"})
+    public int accounts;
+
+    @Param({"20"})
+    public int historyPerAccount;
+
+    private TransactionDAO transactionDAO;
+    private AccountDAO accountDAO;
+    private UserDAO userDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(accounts, historyPerAccount);
+        transactionDAO = new TransactionDAO();
+        accountDAO = new AccountDAO();
+        userDAO = new UserDAO();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.stop();
+    }
+
+    private int randomAccount() {
+        return 1 + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    /**
+     * Tiny amounts keep every balance well above zero for the whole run
+     */
+    @Benchmark
+    public boolean transferMoney() {
+        int sender = randomAccount();
+        int receiver = randomAccount();
+        if (receiver == sender) {
+            receiver = sender % accounts + 1;
+        }
+        return transactionDAO.transferMoney(sender, receiver, 0.01);
+    }
+
+    @Benchmark
+    public boolean withdrawMoney() {
+        return transactionDAO.withdrawMoney(randomAccount(), 0.01);
+    }
+
+    /**
+     * Default read path, served mostly from BalanceCache once warm
+     */
+    @Benchmark
+    public double getBalance() {
+        return accountDAO.getBalance(randomAccount());
+    }
+
+    /**
+     * Database read, bypassing BalanceCache
+     */
+    @Benchmark
+    public double getBalanceStrict() {
+        return accountDAO.getBalance(randomAccount(), true);
+    }
+
+    @Benchmark
+    public void getTransactionHistory(Blackhole bh) {
+        List<?> history = transactionDAO.getTransactionHistory(randomAccount());
+        bh.consume(history);
+    }
+
+    /**
+     * One login query plus PBKDF2 verification on the PasswordService pool
+     */
+    @Benchmark
+    public SessionProfile loginUser() {
+        return userDAO.authenticate(BenchmarkDatabase.email(randomAccount()), BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return UserDAO.hashPassword(BenchmarkDatabase.PASSWORD);
+    }
+}
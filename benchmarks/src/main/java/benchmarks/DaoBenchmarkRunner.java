@@ -0,0 +1,93 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DAO Benchmark Runner
+ * Runs the DAO benchmarks once per thread count and writes each run's
+ * results as JMH JSON, named so that runs from different commits line up:
+ *
+ *     java -cp benchmarks/target/benchmarks.jar benchmarks.DaoBenchmarkRunner \
+ *         --threads 1,4,16 --out benchmarks/results -p accounts=10000 -p historyPerAccount=50
+ *
+ * writes benchmarks/results/dao-1t.json, dao-4t.json and dao-16t.json.
+ *
+ * Options:
+ *   --threads n,n,...   thread counts to sweep (default 1,4,16)
+ *   --out dir           result directory (default benchmarks/results)
+ *   --include regex     benchmarks to run (default DaoBenchmark)
+ *   -p name=v,v,...     override a @Param, as with the JMH command line
+ *   --quick             one short warmup and measurement iteration, for smoke runs
+ */
+public final class DaoBenchmarkRunner {
+
+    private DaoBenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        String threads = "1,4,16";
+        Path out = Paths.get("benchmarks", "results");
+        String include = DaoBenchmark.class.getSimpleName();
+        Map<String, String[]> params = new LinkedHashMap<>();
+        boolean quick = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = args[++i];
+                    break;
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                case "--include":
+                    include = args[++i];
+                    break;
+                case "-p":
+                    String[] param = args[++i].split("=", 2);
+                    if (param.length != 2) {
+                        throw new IllegalArgumentException("Expected -p name=value[,value], got " + args[i]);
+                    }
+                    params.put(param[0], param[1].split(","));
+                    break;
+                case "--quick":
+                    quick = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Files.createDirectories(out);
+        for (String count : threads.split(",")) {
+            int threadCount = Integer.parseInt(count.trim());
+            Path result = out.resolve("dao-" + threadCount + "t.json");
+
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.toString());
+            for (Map.Entry<String, String[]> param : params.entrySet()) {
+                options.param(param.getKey(), param.getValue());
+            }
+            if (quick) {
+                options.warmupIterations(1).warmupTime(TimeValue.seconds(1))
+                       .measurementIterations(1).measurementTime(TimeValue.seconds(1));
+            }
+
+            new Runner(options.build()).run();
+            System.out.println("Results for " + threadCount + " thread(s) written to " + result.toAbsolutePath());
+        }
+    }
+}
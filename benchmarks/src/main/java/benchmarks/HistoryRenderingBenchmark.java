@@ -0,0 +1,195 @@
+package benchmarks;
+
+import dao.model.Direction;
+import dao.model.Transaction;
+import dao.model.TransactionType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * History Rendering Benchmark
+ * Compares the old HashMap-per-row history representation with the typed
+ * dao.model.Transaction record, for both row mapping and page rendering.
+ *
+ * Column values are pre-generated so the benchmark isolates mapping and
+ * rendering from JDBC. Run with the GC profiler to compare allocation rates:
+ *     java -jar benchmarks/target/benchmarks.jar HistoryRendering -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryRenderingBenchmark {
+
+    @Param({"50", "500"})
+    public int rows;
+
+    private final int accountId = 1;
+
+    // Column values as a JDBC driver would hand them over
+    private int[] txnIds;
+    private int[] senders;
+    private int[] receivers;
+    private double[] amounts;
+    private Timestamp[] dates;
+    private String[] statuses;
+    private String[] types;
+
+    private List<Map<String, Object>> mapPage;
+    private List<Transaction> recordPage;
+
+    @Setup
+    public void setUp() {
+        txnIds = new int[rows];
+        senders = new int[rows];
+        receivers = new int[rows];
+        amounts = new double[rows];
+        dates = new Timestamp[rows];
+        statuses = new String[rows];
+        types = new String[rows];
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows; i++) {
+            txnIds[i] = rows - i;
+            boolean withdrawal = i % 7 == 0;
+            boolean sent = i % 2 == 0;
+            senders[i] = withdrawal || sent ? accountId : 2 + i % 50;
+            receivers[i] = withdrawal ? accountId : (sent ? 2 + i % 50 : accountId);
+            amounts[i] = 10 + (i * 37 % 5000) / 100.0;
+            dates[i] = new Timestamp(now - i * 60_000L);
+            statuses[i] = "SUCCESS";
+            types[i] = withdrawal ? "WITHDRAWAL" : "TRANSFER";
+        }
+
+        mapPage = mapRowsAsMaps();
+        recordPage = mapRowsAsRecords();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> mapAsHashMaps() {
+        return mapRowsAsMaps();
+    }
+
+    @Benchmark
+    public List<Transaction> mapAsRecords() {
+        return mapRowsAsRecords();
+    }
+
+    @Benchmark
+    public void renderHashMaps(Blackhole bh) {
+        bh.consume(renderMaps(mapPage));
+    }
+
+    @Benchmark
+    public void renderRecords(Blackhole bh) {
+        bh.consume(renderRecords(recordPage));
+    }
+
+    @Benchmark
+    public void mapAndRenderHashMaps(Blackhole bh) {
+        bh.consume(renderMaps(mapRowsAsMaps()));
+    }
+
+    @Benchmark
+    public void mapAndRenderRecords(Blackhole bh) {
+        bh.consume(renderRecords(mapRowsAsRecords()));
+    }
+
+    /**
+     * Row mapping as TransactionDAO.getTransactionHistory did before dao.model
+     */
+    private List<Map<String, Object>> mapRowsAsMaps() {
+        List<Map<String, Object>> transactions = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> transaction = new HashMap<>();
+            transaction.put("txnId", txnIds[i]);
+            transaction.put("senderAccount", senders[i]);
+            transaction.put("receiverAccount", receivers[i]);
+            transaction.put("amount", amounts[i]);
+            transaction.put("date", dates[i]);
+            transaction.put("status", statuses[i]);
+
+            String transactionType = types[i];
+            transaction.put("transactionType", transactionType);
+
+            if ("WITHDRAWAL".equals(transactionType)) {
+                transaction.put("type", "WITHDRAWAL");
+            } else if (senders[i] == accountId) {
+                transaction.put("type", "SENT");
+            } else {
+                transaction.put("type", "RECEIVED");
+            }
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    /**
+     * Row mapping as TransactionDAO does now
+     */
+    private List<Transaction> mapRowsAsRecords() {
+        List<Transaction> transactions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            TransactionType type = TransactionType.fromColumn(types[i]);
+            transactions.add(new Transaction(txnIds[i], senders[i], receivers[i], amounts[i],
+                    dates[i].getTime(), statuses[i], type, Direction.of(type, senders[i], accountId)));
+        }
+        return transactions;
+    }
+
+    /**
+     * Table body as the old transactions.jsp rendered it
+     */
+    private static String renderMaps(List<Map<String, Object>> transactions) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy, hh:mm a");
+        StringBuilder out = new StringBuilder(transactions.size() * 256);
+        for (Map<String, Object> txn : transactions) {
+            String type = (String) txn.get("type");
+            String typeClass = "WITHDRAWAL".equals(type) ? "type-withdrawal" : (type.equals("SENT") ? "type-sent" : "type-received");
+            String amountClass = "WITHDRAWAL".equals(type) ? "amount-negative" : (type.equals("SENT") ? "amount-negative" : "amount-positive");
+            String amountSign = "WITHDRAWAL".equals(type) ? "- ₹" : (type.equals("SENT") ? "- ₹" : "+ ₹");
+            out.append("<tr><td>#").append(txn.get("txnId"))
+               .append("</td><td>").append(dateFormat.format(txn.get("date")))
+               .append("</td><td><span class=\"badge ").append(typeClass).append("\">").append(type)
+               .append("</span></td><td>").append(txn.get("senderAccount"))
+               .append("</td><td>").append(txn.get("receiverAccount"))
+               .append("</td><td class=\"").append(amountClass).append("\">").append(amountSign)
+               .append(String.format("%.2f", txn.get("amount")))
+               .append("</td><td>").append(txn.get("status")).append("</td></tr>");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Table body as transactions.jsp renders it now
+     */
+    private static String renderRecords(List<Transaction> transactions) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy, hh:mm a");
+        StringBuilder out = new StringBuilder(transactions.size() * 256);
+        for (Transaction txn : transactions) {
+            Direction type = txn.direction();
+            String typeClass = type == Direction.WITHDRAWAL ? "type-withdrawal" : (type == Direction.SENT ? "type-sent" : "type-received");
+            String amountClass = type.isDebit() ? "amount-negative" : "amount-positive";
+            String amountSign = type.isDebit() ? "- ₹" : "+ ₹";
+            out.append("<tr><td>#").append(txn.txnId())
+               .append("</td><td>").append(dateFormat.format(new Date(txn.txnDateMillis())))
+               .append("</td><td><span class=\"badge ").append(typeClass).append("\">").append(type)
+               .append("</span></td><td>").append(txn.senderAccount())
+               .append("</td><td>").append(txn.receiverAccount())
+               .append("</td><td class=\"").append(amountClass).append("\">").append(amountSign)
+               .append(String.format("%.2f", txn.amount()))
+               .append("</td><td>").append(txn.status()).append("</td></tr>");
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import dao.TransactionDAO;
+import org.openjdk.jmh.annotations.*;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hot Pair Benchmark
+ * Transfer throughput when every thread moves money between the same two
+ * accounts, half of them A->B and half B->A - the pattern that deadlocks
+ * when each transfer locks its own sender first. TransferConcurrencyTest
+ * checks the outcome of the same pattern; this measures its throughput.
+ *
+ *   transferMoney   pre-checked transfer, locks taken in account order
+ *   transferFunds   conditional-update transfer on one connection
+ *
+ *     java -jar benchmarks/target/benchmarks.jar HotPair
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class HotPairBenchmark {
+
+    @Param({"transferMoney", "transferFunds"})
+    public String path;
+
+    private TransactionDAO transactionDAO;
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    /**
+     * Direction of one benchmark thread, alternating between threads
+     */
+    @State(Scope.Thread)
+    public static class Direction {
+        int sender;
+        int receiver;
+
+        @Setup(Level.Trial)
+        public void setUp(HotPairBenchmark benchmark) {
+            boolean forward = benchmark.nextThread.getAndIncrement() % 2 == 0;
+            sender = forward ? 1 : 2;
+            receiver = forward ? 2 : 1;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(2, 0);
+        transactionDAO = new TransactionDAO();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        BenchmarkDatabase.stop();
+    }
+
+    /**
+     * Tiny amounts keep both balances well above zero for the whole run
+     */
+    @Benchmark
+    public boolean transfer(Direction direction) {
+        if ("transferFunds".equals(path)) {
+            return transactionDAO.transferFunds(direction.sender, direction.receiver, 0.01).isSuccess();
+        }
+        return transactionDAO.transferMoney(direction.sender, direction.receiver, 0.01);
+    }
+}
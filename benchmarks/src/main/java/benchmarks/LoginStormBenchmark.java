@@ -0,0 +1,90 @@
+package benchmarks;
+
+import dao.TransactionDAO;
+import dao.password.Pbkdf2PasswordHasher;
+import dao.password.PasswordService;
+import dao.password.PasswordServiceBusyException;
+import dao.password.Sha256PasswordHasher;
+import org.openjdk.jmh.annotations.*;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login Storm Benchmark
+ * Transfer throughput while many clients log in at once, with PBKDF2
+ * verification run either on the request thread or on PasswordService's
+ * bounded pool:
+ *
+ *   callerThread   every login hashes on its own thread, competing with transfers for every core
+ *   passwordPool   at most half the cores hash; the other logins wait in the queue
+ *
+ * The storm group runs 32 login clients against 4 transfer clients; compare
+ * the storm:transfer score between the two modes. The hash cost is
+ * calibrated to hashMillis on the machine running the benchmark.
+ *     java -jar benchmarks/target/benchmarks.jar LoginStorm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class LoginStormBenchmark {
+
+    @Param({"callerThread", "passwordPool"})
+    public String mode;
+
+    @Param({"20"})
+    public int hashMillis;
+
+    @Param({"1000"})
+    public int accounts;
+
+    private TransactionDAO transactionDAO;
+    private Pbkdf2PasswordHasher hasher;
+    private PasswordService service;
+    private String storedHash;
+    private boolean pooled;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(accounts, 0);
+        transactionDAO = new TransactionDAO();
+        hasher = Pbkdf2PasswordHasher.calibrated(hashMillis);
+        service = new PasswordService(hasher, List.of(new Sha256PasswordHasher()),
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1000, 60000);
+        storedHash = hasher.hash(BenchmarkDatabase.PASSWORD);
+        pooled = "passwordPool".equals(mode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        service.close();
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(32)
+    public boolean login() {
+        if (!pooled) {
+            return hasher.verify(BenchmarkDatabase.PASSWORD, storedHash);
+        }
+        try {
+            return service.verify(BenchmarkDatabase.PASSWORD, storedHash).matches();
+        } catch (PasswordServiceBusyException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("storm")
+    @GroupThreads(4)
+    public boolean transfer() {
+        int sender = 1 + ThreadLocalRandom.current().nextInt(accounts);
+        int receiver = sender % accounts + 1;
+        return transactionDAO.transferMoney(sender, receiver, 0.01);
+    }
+}
@@ -0,0 +1,134 @@
+package benchmarks;
+
+import dao.SqlStatements;
+import util.AppConfig;
+import util.DBConnection;
+import util.RequestExecutor;
+import org.openjdk.jmh.annotations.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Request Model Benchmark
+ * Compares the two servlet execution models:
+ *
+ *   threadPerRequest  a fixed pool of containerThreads runs each request to completion,
+ *                     blocking on the connection pool and the database like a classic servlet
+ *   async             the container thread hands JDBC requests to RequestExecutor
+ *                     (virtual threads, limited to the connection pool size) and is
+ *                     free again at once, as AsyncJdbcServlet does
+ *
+ * A JDBC request borrows a pooled connection, reads one balance from the
+ * seeded H2 database and then holds the connection for dbLatencyMicros to
+ * stand in for a MySQL round trip.
+ *
+ *   jdbc         requests per second with 256 clients (change with -t) all doing JDBC work;
+ *                bounded by the connection pool in both models
+ *   saturated    512 clients keep the JDBC path saturated while 16 clients request pages
+ *                that need no database (JSPs, static files, logout); the page score shows
+ *                whether those still get a container thread
+ *
+ * On Java 17 RequestExecutor falls back to platform threads; the comparison
+ * still holds, with more memory per waiting request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class RequestModelBenchmark {
+
+    @Param({"threadPerRequest", "async"})
+    public String model;
+
+    /** Tomcat's default maxThreads */
+    @Param({"200"})
+    public int containerThreads;
+
+    @Param({"1000"})
+    public int dbLatencyMicros;
+
+    @Param({"1000"})
+    public int accounts;
+
+    private ExecutorService container;
+    private RequestExecutor requestExecutor;
+    private boolean async;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.start(accounts, 0);
+        container = Executors.newFixedThreadPool(containerThreads);
+        requestExecutor = new RequestExecutor(true, AppConfig.getInt("banking.pool.maxSize", 20), 5000);
+        async = "async".equals(model);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        container.shutdownNow();
+        requestExecutor.close();
+        BenchmarkDatabase.stop();
+    }
+
+    @Benchmark
+    @Threads(256)
+    public boolean jdbc() throws InterruptedException, ExecutionException {
+        return handle(true);
+    }
+
+    @Benchmark
+    @Group("saturated")
+    @GroupThreads(512)
+    public boolean saturatedJdbc() throws InterruptedException, ExecutionException {
+        return handle(true);
+    }
+
+    @Benchmark
+    @Group("saturated")
+    @GroupThreads(16)
+    public boolean saturatedPage() throws InterruptedException, ExecutionException {
+        return handle(false);
+    }
+
+    /**
+     * Submit one request to the container pool and wait for its response
+     */
+    private boolean handle(boolean needsDatabase) throws InterruptedException, ExecutionException {
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        container.execute(() -> {
+            if (!needsDatabase) {
+                done.complete(true);
+            } else if (async) {
+                requestExecutor.execute(() -> done.complete(readBalance()), () -> done.complete(false));
+            } else {
+                done.complete(readBalance());
+            }
+        });
+        return done.get();
+    }
+
+    private boolean readBalance() {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.SELECT_BALANCE)) {
+            pstmt.setInt(1, 1 + ThreadLocalRandom.current().nextInt(accounts));
+            boolean found;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                found = rs.next();
+            }
+            LockSupport.parkNanos(dbLatencyMicros * 1000L);
+            return found;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
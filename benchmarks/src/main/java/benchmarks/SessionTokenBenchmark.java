@@ -0,0 +1,84 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import util.SessionTokens;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session Token Benchmark
+ * Cost of checking the session cookie, which happens on every request in
+ * token mode. verify uses the cached per-thread Mac and buffers; naiveVerify
+ * is the straightforward version that decodes with java.util.Base64 and
+ * builds a Mac per call. Run with the GC profiler to compare allocations:
+ *     java -jar benchmarks/target/benchmarks.jar SessionTokenBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionTokenBenchmark {
+
+    private static final byte[] SECRET = "benchmark-secret-0123456789abcdef0123456789".getBytes(StandardCharsets.UTF_8);
+
+    private SessionTokens tokens;
+    private SessionTokens.Claims claims;
+    private String token;
+    private String tampered;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        tokens = new SessionTokens(SECRET);
+        now = System.currentTimeMillis() / 1000;
+        claims = new SessionTokens.Claims(48213, 90211, "Margaret Hamilton", now + 1800);
+        token = tokens.issue(claims);
+        char last = token.charAt(token.length() - 1);
+        tampered = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+    }
+
+    @Benchmark
+    public SessionTokens.Claims verify() {
+        return tokens.verify(token, now);
+    }
+
+    @Benchmark
+    public SessionTokens.Claims verifyTampered() {
+        return tokens.verify(tampered, now);
+    }
+
+    @Benchmark
+    public SessionTokens.Claims naiveVerify() throws Exception {
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        int signed = bytes.length - 16;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET, "HmacSHA256"));
+        mac.update(bytes, 0, signed);
+        byte[] expected = Arrays.copyOf(mac.doFinal(), 16);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(bytes, signed, bytes.length))) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, 12);
+        int userId = buffer.getInt();
+        int accountId = buffer.getInt();
+        long expiresAt = buffer.getInt() & 0xffffffffL;
+        if (expiresAt <= now) {
+            return null;
+        }
+        return new SessionTokens.Claims(userId, accountId,
+                new String(bytes, 13, signed - 13, StandardCharsets.UTF_8), expiresAt);
+    }
+
+    @Benchmark
+    public String issue() {
+        return tokens.issue(claims);
+    }
+}
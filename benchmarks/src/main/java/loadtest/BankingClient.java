@@ -0,0 +1,208 @@
+package loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Banking Client
+ * Drives the deployed servlets over HTTP the way a browser would: form
+ * posts, redirects left unfollowed, and the JSESSIONID cookie kept per
+ * simulated user. One HttpClient (and its connection pool) is shared by
+ * every session, so thousands of users cost no more than their cookies.
+ */
+final class BankingClient {
+
+    /** How a request ended */
+    enum Outcome {
+        /** Served as intended */
+        OK,
+        /** Served, but the page shows an error such as insufficient balance */
+        REJECTED,
+        /** Redirected to the login page; the session has to log in again */
+        LOGGED_OUT,
+        /** Unexpected status or I/O failure */
+        ERROR
+    }
+
+    /**
+     * One simulated user and their server-side session
+     */
+    static final class Session {
+        final int index;
+        final String email;
+        volatile String cookie;
+        volatile int accountId;
+        final AtomicInteger requestsSinceLogin = new AtomicInteger();
+
+        Session(int index, String email) {
+            this.index = index;
+            this.email = email;
+        }
+    }
+
+    private static final Pattern ACCOUNT_NUMBER =
+            Pattern.compile("Account Number:</span>\\s*<span class=\"info-value\">(\\d+)</span>");
+
+    private final HttpClient http;
+    private final URI base;
+    private final String password;
+    private final Duration timeout;
+
+    /**
+     * @param baseUrl Application root, e.g. http://localhost:8080/banking/
+     * @param password Password shared by every load-test user
+     * @param timeout Per-request timeout
+     */
+    BankingClient(String baseUrl, String password, Duration timeout) {
+        this.base = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        this.password = password;
+        this.timeout = timeout;
+        this.http = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * Register the user with one funded account; an already registered email counts as OK
+     */
+    Outcome signup(Session session, double initialBalance) {
+        HttpResponse<String> response = post(null, "SignupServlet",
+                "name", "Load User " + session.index,
+                "email", session.email,
+                "password", password,
+                "confirmPassword", password,
+                "initialBalance", Double.toString(initialBalance));
+        if (response == null) {
+            return Outcome.ERROR;
+        }
+        if (isRedirectTo(response, "DashboardServlet") || response.body().contains("already registered")) {
+            return Outcome.OK;
+        }
+        return Outcome.ERROR;
+    }
+
+    /**
+     * Log in, replacing the session's cookie
+     */
+    Outcome login(Session session) {
+        HttpResponse<String> response = post(null, "LoginServlet", "email", session.email, "password", password);
+        if (response == null || !isRedirectTo(response, "DashboardServlet")) {
+            session.cookie = null;
+            return Outcome.ERROR;
+        }
+        Optional<String> cookie = response.headers().allValues("Set-Cookie").stream()
+                .filter(value -> value.startsWith("JSESSIONID="))
+                .map(value -> value.split(";", 2)[0])
+                .findFirst();
+        if (cookie.isEmpty()) {
+            return Outcome.ERROR;
+        }
+        session.cookie = cookie.get();
+        session.requestsSinceLogin.set(0);
+        return Outcome.OK;
+    }
+
+    /**
+     * Load the dashboard, learning the session's account number on first use
+     */
+    Outcome dashboard(Session session) {
+        HttpResponse<String> response = get(session, "DashboardServlet");
+        Outcome outcome = outcome(session, response);
+        if (outcome == Outcome.OK && session.accountId == 0) {
+            Matcher m = ACCOUNT_NUMBER.matcher(response.body());
+            if (m.find()) {
+                session.accountId = Integer.parseInt(m.group(1));
+            }
+        }
+        return outcome;
+    }
+
+    Outcome history(Session session) {
+        return outcome(session, get(session, "TransactionHistoryServlet"));
+    }
+
+    Outcome transfer(Session session, int receiverAccountId, double amount) {
+        return outcome(session, post(session, "TransferServlet",
+                "receiverAccountId", Integer.toString(receiverAccountId),
+                "amount", String.format("%.2f", amount),
+                "idempotencyKey", UUID.randomUUID().toString()));
+    }
+
+    Outcome withdraw(Session session, double amount) {
+        return outcome(session, post(session, "WithdrawServlet",
+                "amount", String.format("%.2f", amount),
+                "idempotencyKey", UUID.randomUUID().toString()));
+    }
+
+    private Outcome outcome(Session session, HttpResponse<String> response) {
+        if (response == null) {
+            return Outcome.ERROR;
+        }
+        if (isRedirectTo(response, "login.jsp")) {
+            session.cookie = null;
+            return Outcome.LOGGED_OUT;
+        }
+        if (response.statusCode() != 200) {
+            return Outcome.ERROR;
+        }
+        session.requestsSinceLogin.incrementAndGet();
+        return response.body().contains("alert-error") ? Outcome.REJECTED : Outcome.OK;
+    }
+
+    private static boolean isRedirectTo(HttpResponse<String> response, String target) {
+        int status = response.statusCode();
+        return (status == 302 || status == 303)
+                && response.headers().firstValue("Location").map(l -> l.contains(target)).orElse(false);
+    }
+
+    private HttpResponse<String> get(Session session, String path) {
+        return send(request(session, path).GET().build());
+    }
+
+    private HttpResponse<String> post(Session session, String path, String... form) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < form.length; i += 2) {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(URLEncoder.encode(form[i], StandardCharsets.UTF_8)).append('=')
+                .append(URLEncoder.encode(form[i + 1], StandardCharsets.UTF_8));
+        }
+        return send(request(session, path)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build());
+    }
+
+    private HttpRequest.Builder request(Session session, String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve(path)).timeout(timeout);
+        String cookie = session == null ? null : session.cookie;
+        if (cookie != null) {
+            builder.header("Cookie", cookie);
+        }
+        return builder;
+    }
+
+    private HttpResponse<String> send(HttpRequest request) {
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package loadtest;
+
+import loadtest.BankingClient.Outcome;
+import loadtest.BankingClient.Session;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load Generator
+ * Simulates banking users against a deployed instance of the application
+ * and reports throughput and latency percentiles per servlet.
+ *
+ * Start the application in embedded Tomcat (mvn cargo:run serves it at
+ * http://localhost:8080/banking/), then from the benchmarks module:
+ *
+ *     java -cp benchmarks/target/benchmarks.jar loadtest.LoadGenerator \
+ *         --users 500 --prepare --concurrency 64 --duration 60
+ *
+ * Every simulated user logs in once and reuses its session for
+ * --session-requests requests before logging in again. Which user acts,
+ * and whom a transfer pays, follow a Zipf distribution over the users, so
+ * a few accounts are hot as in real traffic.
+ *
+ * Arrival model:
+ *   closed loop (--concurrency n)  n workers each send the next request as soon as
+ *                                  the previous one returns (plus --think-ms)
+ *   open loop   (--rate r)         r requests per second on a fixed schedule, whether
+ *                                  or not earlier ones have finished; latency counts
+ *                                  from the scheduled start, so queueing in an
+ *                                  overloaded server shows up in the percentiles
+ *
+ * Raising --rate until p99 climbs steeply while throughput stops following it
+ * finds the saturation point. Options:
+ *   --url u                 application root (default http://localhost:8080/banking/)
+ *   --users n               number of simulated users (default 100)
+ *   --prepare               sign the users up first (loadtest{i}@example.com, funded accounts)
+ *   --password p            password of every load-test user (default loadtest123)
+ *   --mix spec              operation weights (default dashboard=40,history=20,transfer=25,withdraw=10,login=5)
+ *   --zipf s                popularity skew, 0 for uniform (default 1.0)
+ *   --concurrency n         closed-loop workers (default 32)
+ *   --rate r                open-loop requests per second; overrides --concurrency
+ *   --max-in-flight n       open loop: scheduled requests beyond this many outstanding are dropped (default 10000)
+ *   --think-ms n            closed loop: pause between a worker's requests (default 0)
+ *   --session-requests n    requests per login (default 50)
+ *   --duration s            measured seconds (default 60)
+ *   --warmup s              unmeasured seconds before that (default 10)
+ *   --report-every s        progress interval (default 10)
+ *   --timeout-ms n          per-request timeout (default 10000)
+ *
+ * Requests run on virtual threads when the JVM has them (Java 21+) and on a
+ * cached platform thread pool otherwise.
+ */
+public final class LoadGenerator {
+
+    private final BankingClient client;
+    private final Operation.Mix mix;
+    private final ZipfDistribution popularity;
+    private final List<Session> sessions = new ArrayList<>();
+    private final int sessionRequests;
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+
+    private LoadGenerator(BankingClient client, Operation.Mix mix, int users, double zipf, int sessionRequests) {
+        this.client = client;
+        this.mix = mix;
+        this.popularity = new ZipfDistribution(users, zipf);
+        this.sessionRequests = sessionRequests;
+        for (int i = 1; i <= users; i++) {
+            sessions.add(new Session(i, "loadtest" + i + "@example.com"));
+        }
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080/banking/";
+        int users = 100;
+        boolean prepare = false;
+        String password = "loadtest123";
+        String mixSpec = "dashboard=40,history=20,transfer=25,withdraw=10,login=5";
+        double zipf = 1.0;
+        int concurrency = 32;
+        double rate = 0;
+        int maxInFlight = 10000;
+        long thinkMs = 0;
+        int sessionRequests = 50;
+        int duration = 60;
+        int warmup = 10;
+        int reportEvery = 10;
+        long timeoutMs = 10000;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url": url = args[++i]; break;
+                case "--users": users = Integer.parseInt(args[++i]); break;
+                case "--prepare": prepare = true; break;
+                case "--password": password = args[++i]; break;
+                case "--mix": mixSpec = args[++i]; break;
+                case "--zipf": zipf = Double.parseDouble(args[++i]); break;
+                case "--concurrency": concurrency = Integer.parseInt(args[++i]); break;
+                case "--rate": rate = Double.parseDouble(args[++i]); break;
+                case "--max-in-flight": maxInFlight = Integer.parseInt(args[++i]); break;
+                case "--think-ms": thinkMs = Long.parseLong(args[++i]); break;
+                case "--session-requests": sessionRequests = Integer.parseInt(args[++i]); break;
+                case "--duration": duration = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--report-every": reportEvery = Integer.parseInt(args[++i]); break;
+                case "--timeout-ms": timeoutMs = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        BankingClient client = new BankingClient(url, password, Duration.ofMillis(timeoutMs));
+        LoadGenerator generator = new LoadGenerator(client, Operation.Mix.parse(mixSpec), users, zipf, sessionRequests);
+        ExecutorService executor = newExecutor();
+        try {
+            System.out.printf("Target %s, %d users, mix %s, zipf %.2f, %s%n", url, users, generator.mix, zipf,
+                    rate > 0 ? String.format("open loop at %.0f req/s", rate) : "closed loop with " + concurrency + " workers");
+            generator.setUp(executor, prepare);
+            long start = System.nanoTime();
+            generator.measureFromNanos = start + TimeUnit.SECONDS.toNanos(warmup);
+            long end = generator.measureFromNanos + TimeUnit.SECONDS.toNanos(duration);
+
+            int reportSeconds = reportEvery;
+            Thread reporter = new Thread(() -> generator.reportProgress(start, reportSeconds), "loadtest-reporter");
+            reporter.setDaemon(true);
+            reporter.start();
+
+            if (rate > 0) {
+                generator.runOpenLoop(executor, rate, maxInFlight, start, end);
+            } else {
+                generator.runClosedLoop(executor, concurrency, thinkMs, end);
+            }
+            reporter.interrupt();
+            generator.printSummary(duration);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Optionally sign the users up, then log each one in and learn its account number
+     */
+    private void setUp(ExecutorService executor, boolean prepare) throws Exception {
+        List<Future<Boolean>> ready = new ArrayList<>();
+        for (Session session : sessions) {
+            ready.add(executor.submit(() -> {
+                if (prepare && client.signup(session, 1_000_000) != Outcome.OK) {
+                    return false;
+                }
+                return client.login(session) == Outcome.OK && client.dashboard(session) == Outcome.OK
+                        && session.accountId != 0;
+            }));
+        }
+        int failed = 0;
+        for (Future<Boolean> f : ready) {
+            if (!f.get()) {
+                failed++;
+            }
+        }
+        if (failed == sessions.size()) {
+            throw new IllegalStateException("No user could log in; is the application running, and were the users created (--prepare)?");
+        }
+        if (failed > 0) {
+            System.out.println(failed + " of " + sessions.size() + " users could not log in and will only produce errors");
+        }
+    }
+
+    private void runClosedLoop(ExecutorService executor, int concurrency, long thinkMs, long end) throws Exception {
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            workers.add(executor.submit(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    execute(nextSession(), mix.next(), System.nanoTime());
+                    if (thinkMs > 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(thinkMs));
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+    }
+
+    private void runOpenLoop(ExecutorService executor, double rate, int maxInFlight, long start, long end)
+            throws InterruptedException {
+        double intervalNanos = 1e9 / rate;
+        for (long n = 0; ; n++) {
+            long scheduled = start + (long) (n * intervalNanos);
+            if (scheduled >= end) {
+                break;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.get() >= maxInFlight) {
+                if (scheduled >= measureFromNanos) {
+                    dropped.increment();
+                }
+                continue;
+            }
+            inFlight.incrementAndGet();
+            Session session = nextSession();
+            Operation operation = mix.next();
+            executor.execute(() -> {
+                try {
+                    execute(session, operation, scheduled);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        // Let scheduled requests finish so their latencies are counted
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private Session nextSession() {
+        return sessions.get(popularity.next());
+    }
+
+    /**
+     * Run one operation for a session, logging in first if the session needs it
+     * @param startNanos When the request was due; latency is measured from here
+     */
+    private void execute(Session session, Operation operation, long startNanos) {
+        if (operation != Operation.LOGIN
+                && (session.cookie == null || session.requestsSinceLogin.get() >= sessionRequests)) {
+            synchronized (session) {
+                if (session.cookie == null || session.requestsSinceLogin.get() >= sessionRequests) {
+                    long loginStart = System.nanoTime();
+                    record(Operation.LOGIN, loginStart, client.login(session));
+                }
+            }
+        }
+
+        Outcome outcome;
+        switch (operation) {
+            case LOGIN:
+                synchronized (session) {
+                    outcome = client.login(session);
+                }
+                break;
+            case DASHBOARD:
+                outcome = client.dashboard(session);
+                break;
+            case HISTORY:
+                outcome = client.history(session);
+                break;
+            case TRANSFER:
+                Session payee = nextSession();
+                if (payee == session || payee.accountId == 0) {
+                    payee = sessions.get((session.index) % sessions.size());
+                }
+                outcome = client.transfer(session, payee.accountId, 1 + ThreadLocalRandom.current().nextInt(5000) / 100.0);
+                break;
+            case WITHDRAW:
+                outcome = client.withdraw(session, 1 + ThreadLocalRandom.current().nextInt(2000) / 100.0);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+        record(operation, startNanos, outcome);
+    }
+
+    private void record(Operation operation, long startNanos, Outcome outcome) {
+        if (startNanos < measureFromNanos) {
+            return;
+        }
+        Stats s = stats.get(operation);
+        s.histogram.record((System.nanoTime() - startNanos) / 1000);
+        s.interval.increment();
+        switch (outcome) {
+            case OK:
+                s.ok.increment();
+                break;
+            case REJECTED:
+                s.rejected.increment();
+                break;
+            default:
+                s.errors.increment();
+                break;
+        }
+    }
+
+    private void reportProgress(long start, int everySeconds) {
+        try {
+            while (true) {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(everySeconds));
+                long now = System.nanoTime();
+                if (now < measureFromNanos) {
+                    System.out.printf("[%4ds] warming up, %d in flight%n",
+                            TimeUnit.NANOSECONDS.toSeconds(now - start), inFlight.get());
+                    continue;
+                }
+                long requests = 0;
+                for (Stats s : stats.values()) {
+                    requests += s.interval.sumThenReset();
+                }
+                System.out.printf("[%4ds] %8.1f req/s, %d in flight%n",
+                        TimeUnit.NANOSECONDS.toSeconds(now - start), (double) requests / everySeconds, inFlight.get());
+            }
+        } catch (InterruptedException e) {
+            // Run finished
+        }
+    }
+
+    private void printSummary(int durationSeconds) {
+        System.out.println();
+        System.out.printf("%-26s %9s %9s %9s %10s %9s %9s %9s %9s %9s %9s%n",
+                "Endpoint", "ok", "rejected", "errors", "req/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long total = 0;
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats s = entry.getValue();
+            long count = s.histogram.count();
+            if (count == 0) {
+                continue;
+            }
+            total += count;
+            System.out.printf(Locale.ROOT, "%-26s %9d %9d %9d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().path, s.ok.sum(), s.rejected.sum(), s.errors.sum(),
+                    (double) count / durationSeconds, s.histogram.mean() / 1000,
+                    s.histogram.percentile(50) / 1000.0, s.histogram.percentile(90) / 1000.0,
+                    s.histogram.percentile(99) / 1000.0, s.histogram.percentile(99.9) / 1000.0,
+                    s.histogram.max() / 1000.0);
+        }
+        System.out.printf(Locale.ROOT, "%-26s %40.1f%n", "Total req/s", (double) total / durationSeconds);
+        if (dropped.sum() > 0) {
+            System.out.println(dropped.sum() + " scheduled requests dropped at the in-flight limit; the target is saturated");
+        }
+    }
+
+    /**
+     * Virtual-thread-per-task executor where available (Java 21+), looked up
+     * reflectively so the tool still builds and runs on Java 17
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "loadtest-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private static final class Stats {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder ok = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder interval = new LongAdder();
+    }
+}
@@ -0,0 +1,89 @@
+package loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Operation
+ * One kind of user action and the servlet it exercises
+ */
+enum Operation {
+    LOGIN("LoginServlet"),
+    DASHBOARD("DashboardServlet"),
+    HISTORY("TransactionHistoryServlet"),
+    TRANSFER("TransferServlet"),
+    WITHDRAW("WithdrawServlet");
+
+    final String path;
+
+    Operation(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Weighted choice of operations
+     */
+    static final class Mix {
+
+        private final Operation[] operations;
+        private final int[] cumulative;
+
+        /**
+         * @param spec Weights such as "dashboard=40,history=20,transfer=25,withdraw=10,login=5"
+         */
+        static Mix parse(String spec) {
+            Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected operation=weight, got " + part);
+                }
+                int weight = Integer.parseInt(pair[1].trim());
+                if (weight < 0) {
+                    throw new IllegalArgumentException("Negative weight for " + pair[0]);
+                }
+                weights.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+            return new Mix(weights);
+        }
+
+        private Mix(Map<Operation, Integer> weights) {
+            operations = weights.keySet().toArray(new Operation[0]);
+            cumulative = new int[operations.length];
+            int total = 0;
+            for (int i = 0; i < operations.length; i++) {
+                total += weights.get(operations[i]);
+                cumulative[i] = total;
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("Operation mix has no weight");
+            }
+        }
+
+        Operation next() {
+            int r = ThreadLocalRandom.current().nextInt(cumulative[cumulative.length - 1]);
+            for (int i = 0; i < cumulative.length; i++) {
+                if (r < cumulative[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            int previous = 0;
+            for (int i = 0; i < operations.length; i++) {
+                if (out.length() > 0) {
+                    out.append(',');
+                }
+                out.append(operations[i].name().toLowerCase(Locale.ROOT)).append('=').append(cumulative[i] - previous);
+                previous = cumulative[i];
+            }
+            return out.toString();
+        }
+    }
+}
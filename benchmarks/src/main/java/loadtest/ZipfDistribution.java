@@ -0,0 +1,40 @@
+package loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Zipf Distribution
+ * Draws ranks 0..n-1 where rank k is chosen with probability proportional
+ * to 1 / (k + 1)^exponent. Exponent 0 is uniform; around 1 a handful of
+ * accounts get most of the traffic, as with real payees and busy customers.
+ *
+ * The cumulative distribution is precomputed once, so a draw is one random
+ * number and a binary search.
+ */
+final class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    ZipfDistribution(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive: " + n);
+        }
+        cumulative = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= total;
+        }
+    }
+
+    int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int i = Arrays.binarySearch(cumulative, u);
+        int rank = i >= 0 ? i : -i - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
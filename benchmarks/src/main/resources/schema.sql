@@ -0,0 +1,50 @@
+-- H2 (MySQL mode) version of database/setup.sql loaded by benchmarks.BenchmarkDatabase
+
+DROP TABLE IF EXISTS idempotency_keys;
+DROP TABLE IF EXISTS transactions;
+DROP TABLE IF EXISTS accounts;
+DROP TABLE IF EXISTS users;
+
+CREATE TABLE users (
+    user_id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    email VARCHAR(100) UNIQUE NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE accounts (
+    account_id INT AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    balance DECIMAL(12,2) DEFAULT 0.00 CHECK (balance >= 0),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+);
+CREATE INDEX idx_user_id ON accounts (user_id);
+
+CREATE TABLE transactions (
+    txn_id INT AUTO_INCREMENT PRIMARY KEY,
+    sender_account INT NOT NULL,
+    receiver_account INT NOT NULL,
+    amount DECIMAL(12,2) NOT NULL CHECK (amount > 0),
+    txn_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    status VARCHAR(50) DEFAULT 'SUCCESS',
+    transaction_type VARCHAR(20) DEFAULT 'TRANSFER',
+    description VARCHAR(255),
+    FOREIGN KEY (sender_account) REFERENCES accounts(account_id),
+    FOREIGN KEY (receiver_account) REFERENCES accounts(account_id)
+);
+CREATE INDEX idx_sender_date ON transactions (sender_account, txn_date, txn_id);
+CREATE INDEX idx_receiver_date ON transactions (receiver_account, txn_date, txn_id);
+CREATE INDEX idx_txn_date ON transactions (txn_date);
+
+CREATE TABLE idempotency_keys (
+    user_id INT NOT NULL,
+    idem_key VARCHAR(64) NOT NULL,
+    operation VARCHAR(20) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    message VARCHAR(255),
+    created_at TIMESTAMP(3) NOT NULL,
+    PRIMARY KEY (user_id, idem_key)
+);
+CREATE INDEX idx_idem_created ON idempotency_keys (created_at);
@@ -7,6 +7,7 @@ CREATE DATABASE IF NOT EXISTS online_banking;
 USE online_banking;
 
 -- Drop tables if they exist (for fresh start)
+DROP TABLE IF EXISTS idempotency_keys;
 DROP TABLE IF EXISTS transactions;
 DROP TABLE IF EXISTS accounts;
 DROP TABLE IF EXISTS users;
@@ -51,16 +52,33 @@ CREATE TABLE transactions (
     description VARCHAR(255),
     FOREIGN KEY (sender_account) REFERENCES accounts(account_id),
     FOREIGN KEY (receiver_account) REFERENCES accounts(account_id),
-    INDEX idx_sender (sender_account),
-    INDEX idx_receiver (receiver_account),
+    -- Composite indexes serve keyset-paginated history: (account, txn_date, txn_id) per direction
+    INDEX idx_sender_date (sender_account, txn_date, txn_id),
+    INDEX idx_receiver_date (receiver_account, txn_date, txn_id),
     INDEX idx_txn_date (txn_date)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- ==================
+-- 4. Idempotency Keys Table
+-- ==================
+-- One row per (user, key) submitted with a transfer, withdrawal or deposit;
+-- a repeated submission is answered from here instead of moving money again
+CREATE TABLE idempotency_keys (
+    user_id INT NOT NULL,
+    idem_key VARCHAR(64) NOT NULL,
+    operation VARCHAR(20) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    message VARCHAR(255),
+    created_at TIMESTAMP(3) NOT NULL,
+    PRIMARY KEY (user_id, idem_key),
+    INDEX idx_idem_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- ==================
 -- Sample Data (Optional)
 -- ==================
 
--- Insert sample users (password is "password123" hashed with SHA-256)
+-- Insert sample users (password is "password123" hashed with SHA-256; replaced by PBKDF2 on first login)
 -- SHA-256 hash of "password123": ef92b778bafe771e89245b89ecbc08a44a4e166c06659911881f383d4473e94f
 INSERT INTO users (name, email, password_hash) VALUES
 ('John Doe', 'john@example.com', 'ef92b778bafe771e89245b89ecbc08a44a4e166c06659911881f383d4473e94f'),
@@ -0,0 +1,86 @@
+-- ================================================
+-- Online Banking Platform - Account Sharding Setup
+-- ================================================
+-- Splits accounts over N databases (see util.ShardRouter). Shard 0 is the
+-- database created by setup.sql and keeps users and idempotency keys;
+-- shards 1..N-1 are listed in banking.db.shards.
+--
+-- Account ids route by account_id mod N, so every shard's id sequence must
+-- start at its own shard number and step by N. MySQL does this with two
+-- server variables, set in each shard server's my.cnf (example for N = 3):
+--
+--     shard 0:  auto_increment_increment = 3   auto_increment_offset = 3
+--     shard 1:  auto_increment_increment = 3   auto_increment_offset = 1
+--     shard 2:  auto_increment_increment = 3   auto_increment_offset = 2
+--
+-- AccountDAO.createAccount refuses an id that does not route back to the
+-- shard it was created on, so a missing setting shows up as failed signups
+-- rather than as misrouted accounts. Existing accounts are not moved: start
+-- sharding on an empty database or rebalance the accounts first.
+
+-- ==================
+-- 1. Shard 0 (the primary)
+-- ==================
+-- Transactions reference accounts on other shards, so the foreign keys
+-- cannot be kept. The names are MySQL's defaults for setup.sql.
+USE online_banking;
+
+ALTER TABLE transactions
+    DROP FOREIGN KEY transactions_ibfk_1,
+    DROP FOREIGN KEY transactions_ibfk_2;
+
+-- Then run section 3 here as well.
+
+-- ==================
+-- 2. Shards 1..N-1
+-- ==================
+-- Run on each additional shard. Users stay on shard 0, so accounts carry
+-- user_id without a foreign key.
+CREATE DATABASE IF NOT EXISTS online_banking;
+USE online_banking;
+
+CREATE TABLE IF NOT EXISTS accounts (
+    account_id INT AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    balance DECIMAL(12,2) DEFAULT 0.00 CHECK (balance >= 0),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_user_id (user_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS transactions (
+    txn_id INT AUTO_INCREMENT PRIMARY KEY,
+    sender_account INT NOT NULL,
+    receiver_account INT NOT NULL,
+    amount DECIMAL(12,2) NOT NULL CHECK (amount > 0),
+    txn_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    status VARCHAR(50) DEFAULT 'SUCCESS',
+    transaction_type VARCHAR(20) DEFAULT 'TRANSFER',
+    description VARCHAR(255),
+    INDEX idx_sender_date (sender_account, txn_date, txn_id),
+    INDEX idx_receiver_date (receiver_account, txn_date, txn_id),
+    INDEX idx_txn_date (txn_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- ==================
+-- 3. Every shard, including shard 0
+-- ==================
+-- Cross-shard transfers (see dao.CrossShardTransfers): the sender's shard
+-- keeps the reservation, the receiver's shard remembers which transfers it
+-- has credited.
+CREATE TABLE IF NOT EXISTS shard_transfers (
+    transfer_id VARCHAR(36) PRIMARY KEY,
+    sender_account INT NOT NULL,
+    receiver_account INT NOT NULL,
+    amount DECIMAL(12,2) NOT NULL,
+    state VARCHAR(10) NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL,
+    INDEX idx_shard_transfer_state (state, created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS shard_credits (
+    transfer_id VARCHAR(36) PRIMARY KEY,
+    receiver_account INT NOT NULL,
+    amount DECIMAL(12,2) NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,32 @@
+-- ================================================
+-- Online Banking Platform - History Index Upgrade
+-- ================================================
+-- Replaces the single-column sender/receiver indexes with composite
+-- (account, txn_date, txn_id) indexes used by keyset-paginated history.
+-- Safe to run on an existing database created by setup.sql.
+
+USE online_banking;
+
+-- The foreign keys on sender_account/receiver_account are satisfied by the
+-- leading column of the new indexes, so add them before dropping the old ones.
+ALTER TABLE transactions
+    ADD INDEX idx_sender_date (sender_account, txn_date, txn_id),
+    ADD INDEX idx_receiver_date (receiver_account, txn_date, txn_id);
+
+ALTER TABLE transactions
+    DROP INDEX idx_sender,
+    DROP INDEX idx_receiver;
+
+-- Both branches of the history query should show a range scan on the new indexes
+EXPLAIN
+SELECT txn_id, sender_account, receiver_account, amount, txn_date, status, transaction_type FROM (
+    (SELECT txn_id, sender_account, receiver_account, amount, txn_date, status, transaction_type
+     FROM transactions
+     WHERE sender_account = 1 AND (txn_date < NOW() OR (txn_date = NOW() AND txn_id < 2147483647))
+     ORDER BY txn_date DESC, txn_id DESC LIMIT 51)
+    UNION ALL
+    (SELECT txn_id, sender_account, receiver_account, amount, txn_date, status, transaction_type
+     FROM transactions
+     WHERE receiver_account = 1 AND sender_account <> 1 AND (txn_date < NOW() OR (txn_date = NOW() AND txn_id < 2147483647))
+     ORDER BY txn_date DESC, txn_id DESC LIMIT 51)
+) history ORDER BY txn_date DESC, txn_id DESC LIMIT 51;
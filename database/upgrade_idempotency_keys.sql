@@ -0,0 +1,19 @@
+-- ================================================
+-- Online Banking Platform - Idempotency Key Upgrade
+-- ================================================
+-- Adds the table behind idempotent transfer, withdrawal and deposit
+-- submissions (see dao.IdempotencyDAO).
+-- Safe to run on an existing database created by setup.sql.
+
+USE online_banking;
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    user_id INT NOT NULL,
+    idem_key VARCHAR(64) NOT NULL,
+    operation VARCHAR(20) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    message VARCHAR(255),
+    created_at TIMESTAMP(3) NOT NULL,
+    PRIMARY KEY (user_id, idem_key),
+    INDEX idx_idem_created (created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -1,6 +1,12 @@
 package dao;
 
+import dao.audit.AuditJournal;
+import dao.audit.AuditOutcome;
+import dao.model.Account;
 import util.DBConnection;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.LatencyHistogram;
 import java.sql.*;
 
 /**
@@ -9,38 +15,77 @@ import java.sql.*;
  */
 public class AccountDAO {
     
+    private static final Logger LOG = Log.getLogger(AccountDAO.class);
+    private static final LatencyHistogram BALANCE_LATENCY = DaoMetrics.latency("getBalance");
+    private static final LatencyHistogram DEPOSIT_LATENCY = DaoMetrics.latency("deposit");
+    
     /**
      * Get account balance
+     * May be served from the shared balance cache (see BalanceCache) or a read replica
      * @param accountId Account ID
      * @return Current balance
      */
     public double getBalance(int accountId) {
+        return getBalance(accountId, false);
+    }
+    
+    /**
+     * Get account balance
+     * @param accountId Account ID
+     * @param strict true to bypass the cache and replicas and read the committed value from the primary
+     * @return Current balance
+     */
+    public double getBalance(int accountId, boolean strict) {
+        long start = System.nanoTime();
+        double balance = loadBalance(accountId, strict);
+        BALANCE_LATENCY.recordSince(start);
+        return balance;
+    }
+    
+    private double loadBalance(int accountId, boolean strict) {
+        BalanceCache cache = BalanceCache.getInstance();
+        if (!strict) {
+            Double cached = cache.get(accountId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        
+        // Taken before the read so a concurrent commit prevents caching a stale value
+        long generation = cache.generation(accountId);
+        // Replicas may lag, so only balances read from the primary are cached.
+        // Only shard 0 has replicas
+        boolean replica = !strict && DBConnection.hasReplicas() && DBConnection.shardOf(accountId) == 0;
+        
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         
         try {
-            conn = DBConnection.getConnection();
-            String sql = "SELECT balance FROM accounts WHERE account_id = ?";
+            conn = replica ? DBConnection.getReadConnection() : DBConnection.getConnection(accountId);
+            String sql = SqlStatements.SELECT_BALANCE;
             
             pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, accountId);
             
             rs = pstmt.executeQuery();
             if (rs.next()) {
-                return rs.getDouble("balance");
+                double balance = rs.getDouble("balance");
+                if (!replica) {
+                    cache.putIfUnchanged(accountId, balance, generation);
+                }
+                return balance;
             }
             
         } catch (SQLException e) {
-            System.err.println("Error getting balance: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error getting balance", e, "account", accountId);
         } finally {
             try {
                 if (rs != null) rs.close();
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
         return 0.0;
@@ -57,32 +102,33 @@ public class AccountDAO {
         PreparedStatement pstmt = null;
         
         try {
-            conn = DBConnection.getConnection();
-            String sql = "UPDATE accounts SET balance = ? WHERE account_id = ?";
+            conn = DBConnection.getConnection(accountId);
+            String sql = SqlStatements.UPDATE_BALANCE;
             
             pstmt = conn.prepareStatement(sql);
             pstmt.setDouble(1, newBalance);
             pstmt.setInt(2, accountId);
             
             int rowsAffected = pstmt.executeUpdate();
+            BalanceCache.getInstance().invalidate(accountId);
             return rowsAffected > 0;
             
         } catch (SQLException e) {
-            System.err.println("Error updating balance: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error updating balance", e, "account", accountId);
             return false;
         } finally {
             try {
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
     }
     
     /**
      * Check if account exists
+     * Served by a read replica when there are any
      * @param accountId Account ID to check
      * @return true if exists, false otherwise
      */
@@ -92,8 +138,8 @@ public class AccountDAO {
         ResultSet rs = null;
         
         try {
-            conn = DBConnection.getConnection();
-            String sql = "SELECT COUNT(*) FROM accounts WHERE account_id = ?";
+            conn = DBConnection.getReadConnection(accountId);
+            String sql = SqlStatements.COUNT_ACCOUNTS_BY_ID;
             
             pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, accountId);
@@ -104,15 +150,14 @@ public class AccountDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Error checking account: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error checking account", e, "account", accountId);
         } finally {
             try {
                 if (rs != null) rs.close();
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
         return false;
@@ -129,8 +174,9 @@ public class AccountDAO {
         ResultSet rs = null;
         
         try {
-            conn = DBConnection.getConnection();
-            String sql = "SELECT account_id FROM accounts WHERE user_id = ?";
+            // A user's accounts live on the shard named by their user ID
+            conn = DBConnection.getShardConnection(DBConnection.shardOf(userId));
+            String sql = SqlStatements.SELECT_ACCOUNT_ID_BY_USER;
             
             pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, userId);
@@ -141,15 +187,14 @@ public class AccountDAO {
             }
             
         } catch (SQLException e) {
-            System.err.println("Error getting account ID: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error getting account ID", e, "user", userId);
         } finally {
             try {
                 if (rs != null) rs.close();
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
         return -1;
@@ -158,30 +203,34 @@ public class AccountDAO {
     /**
      * Get account by user ID
      * @param userId User ID
-     * @return ResultSet with account details or null
+     * @return Account details, or null if the user has no account
      */
-    public ResultSet getAccountByUserId(int userId) {
+    public Account getAccountByUserId(int userId) {
         Connection conn = null;
         PreparedStatement pstmt = null;
+        ResultSet rs = null;
         
         try {
-            conn = DBConnection.getConnection();
-            String sql = "SELECT account_id, balance FROM accounts WHERE user_id = ?";
+            conn = DBConnection.getShardConnection(DBConnection.shardOf(userId));
+            String sql = SqlStatements.SELECT_ACCOUNT_BY_USER;
             
             pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, userId);
             
-            return pstmt.executeQuery();
+            rs = pstmt.executeQuery();
+            if (rs.next()) {
+                return new Account(rs.getInt("account_id"), userId, rs.getDouble("balance"));
+            }
             
         } catch (SQLException e) {
-            System.err.println("Error getting account: " + e.getMessage());
-            e.printStackTrace();
-            // Clean up resources on error
+            LOG.error("Error getting account", e, "user", userId);
+        } finally {
             try {
+                if (rs != null) rs.close();
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            } catch (SQLException e) {
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
         return null;
@@ -189,6 +238,9 @@ public class AccountDAO {
     
     /**
      * Create new account for user
+     * When accounts are sharded the account goes to the user's shard, and an
+     * ID that would route to another shard (a misconfigured id sequence) is
+     * rolled back rather than handed out.
      * @param userId User ID
      * @param initialBalance Initial balance
      * @return Account ID of newly created account, or -1 if failed
@@ -197,10 +249,12 @@ public class AccountDAO {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
+        int shard = DBConnection.shardOf(userId);
         
         try {
-            conn = DBConnection.getConnection();
-            String sql = "INSERT INTO accounts (user_id, balance) VALUES (?, ?)";
+            conn = DBConnection.getShardConnection(shard);
+            conn.setAutoCommit(false);
+            String sql = SqlStatements.INSERT_ACCOUNT;
             
             pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setInt(1, userId);
@@ -211,20 +265,34 @@ public class AccountDAO {
             if (rowsAffected > 0) {
                 rs = pstmt.getGeneratedKeys();
                 if (rs.next()) {
-                    return rs.getInt(1);
+                    int accountId = rs.getInt(1);
+                    if (DBConnection.shardOf(accountId) == shard) {
+                        conn.commit();
+                        return accountId;
+                    }
+                    LOG.error("Account ID does not route to its shard; check the shard's id sequence",
+                            "account", accountId, "shard", shard);
                 }
             }
+            conn.rollback();
             
         } catch (SQLException e) {
-            System.err.println("Error creating account: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error creating account", e, "user", userId);
+            try {
+                if (conn != null) conn.rollback();
+            } catch (SQLException ex) {
+                LOG.warn("Rollback failed", ex);
+            }
         } finally {
             try {
                 if (rs != null) rs.close();
                 if (pstmt != null) pstmt.close();
-                if (conn != null) conn.close();
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
         return -1;
@@ -232,20 +300,40 @@ public class AccountDAO {
 
     /**
      * Deposit funds into an account
+     * Retried on deadlock or lock wait timeout (see RetryPolicy)
      * @param accountId Account ID
      * @param amount Amount to deposit
      * @return true if deposit successful
      */
     public boolean deposit(int accountId, double amount) {
+        long start = System.nanoTime();
+        AuditOutcome outcome;
+        try {
+            outcome = RetryPolicy.getDefault().execute(() -> attemptDeposit(accountId, amount))
+                    ? AuditOutcome.SUCCESS : AuditOutcome.ACCOUNT_NOT_FOUND;
+        } catch (SQLException e) {
+            LOG.error("Deposit failed", e, "account", accountId, "amount", amount);
+            outcome = AuditOutcome.ERROR;
+        }
+        AuditJournal.getInstance().deposit(accountId, amount, outcome);
+        DEPOSIT_LATENCY.recordSince(start);
+        return outcome == AuditOutcome.SUCCESS;
+    }
+
+    /**
+     * One attempt at deposit
+     * @throws SQLException after rolling back, if the database reports an error
+     */
+    private boolean attemptDeposit(int accountId, double amount) throws SQLException {
         Connection conn = null;
         PreparedStatement pstmt = null;
         
         try {
-            conn = DBConnection.getConnection();
+            conn = DBConnection.getConnection(accountId);
             conn.setAutoCommit(false); // Start transaction
             
             // Lock the row and get current balance
-            String lockSql = "SELECT balance FROM accounts WHERE account_id = ? FOR UPDATE";
+            String lockSql = SqlStatements.SELECT_BALANCE_FOR_UPDATE;
             pstmt = conn.prepareStatement(lockSql);
             pstmt.setInt(1, accountId);
             ResultSet rs = pstmt.executeQuery();
@@ -253,9 +341,11 @@ public class AccountDAO {
             if (rs.next()) {
                 double currentBalance = rs.getDouble("balance");
                 double newBalance = currentBalance + amount;
-                
+                rs.close();
+                pstmt.close();
+
                 // Update the balance
-                String updateSql = "UPDATE accounts SET balance = ? WHERE account_id = ?";
+                String updateSql = SqlStatements.UPDATE_BALANCE;
                 pstmt = conn.prepareStatement(updateSql);
                 pstmt.setDouble(1, newBalance);
                 pstmt.setInt(2, accountId);
@@ -264,6 +354,7 @@ public class AccountDAO {
                 
                 if (rowsAffected > 0) {
                     conn.commit(); // Commit transaction
+                    BalanceCache.getInstance().invalidate(accountId);
                     return true;
                 }
             }
@@ -272,14 +363,12 @@ public class AccountDAO {
             return false;
             
         } catch (SQLException e) {
-            System.err.println("Error during deposit: " + e.getMessage());
-            e.printStackTrace();
             try {
                 if (conn != null) conn.rollback();
             } catch (SQLException ex) {
-                ex.printStackTrace();
+                LOG.warn("Rollback failed", ex);
             }
-            return false;
+            throw e;
         } finally {
             try {
                 if (pstmt != null) pstmt.close();
@@ -288,7 +377,7 @@ public class AccountDAO {
                     conn.close();
                 }
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
     }
@@ -0,0 +1,241 @@
+package dao;
+
+import dao.model.Account;
+import dao.model.DashboardView;
+import dao.model.Transaction;
+import dao.model.UserProfile;
+import util.AppConfig;
+import util.ReadYourWrites;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.Metrics;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Async Data Access Object
+ * CompletableFuture versions of the read-only AccountDAO, UserDAO and
+ * TransactionDAO calls, run on a bounded pool so a page can issue all of
+ * its queries at once and wait for the slowest instead of their sum.
+ *
+ * The pool has banking.asyncDao.threads workers (default banking.pool.maxSize)
+ * and a queue of banking.asyncDao.queueSize tasks; a call that does not fit
+ * fails at once rather than blocking the caller. A timed-out call is not
+ * interrupted: it keeps its worker and connection until the query returns,
+ * which is why the pool is no larger than the connection pool.
+ */
+public final class AsyncDAO {
+
+    private static final Logger LOG = Log.getLogger(AsyncDAO.class);
+
+    /** Rows shown in the dashboard's recent activity list */
+    public static final int RECENT_TRANSACTIONS = 5;
+
+    private static volatile AsyncDAO instance;
+
+    private final MoneyEngine moneyEngine;
+    private final AccountDAO accountDAO;
+    private final UserDAO userDAO;
+    private final TransactionDAO transactionDAO;
+    private final ExecutorService executor;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Get the shared facade, creating it on first use
+     * @return Facade over the configured MoneyEngine and the default DAOs
+     */
+    public static AsyncDAO getInstance() {
+        AsyncDAO current = instance;
+        if (current == null) {
+            synchronized (AsyncDAO.class) {
+                current = instance;
+                if (current == null) {
+                    int threads = AppConfig.getInt("banking.asyncDao.threads", AppConfig.getInt("banking.pool.maxSize", 20));
+                    current = new AsyncDAO(MoneyEngines.getDefault(), new AccountDAO(), new UserDAO(), new TransactionDAO(),
+                            newExecutor(threads, AppConfig.getInt("banking.asyncDao.queueSize", 1000)));
+                    registerMetrics(current);
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static void registerMetrics(AsyncDAO dao) {
+        Metrics.counter("banking_async_dao_rejected_total", "Async DAO calls refused because the queue was full",
+                dao::getRejectedCount);
+        Metrics.counter("banking_async_dao_timeouts_total", "Dashboard parts left out after banking.dashboard.timeoutMs",
+                dao::getTimeoutCount);
+        Metrics.counter("banking_async_dao_failures_total", "Async DAO calls that threw", dao::getFailureCount);
+    }
+
+    /**
+     * Stop the shared facade's pool, if it was created
+     */
+    public static void shutdown() {
+        AsyncDAO current;
+        synchronized (AsyncDAO.class) {
+            current = instance;
+            instance = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Create a facade
+     * @param moneyEngine Source of balances, so the ledger engine's balances are shown when it is configured
+     * @param accountDAO Account queries
+     * @param userDAO User queries
+     * @param transactionDAO Transaction history queries
+     * @param executor Pool the queries run on; closed by close()
+     */
+    public AsyncDAO(MoneyEngine moneyEngine, AccountDAO accountDAO, UserDAO userDAO,
+                    TransactionDAO transactionDAO, ExecutorService executor) {
+        this.moneyEngine = moneyEngine;
+        this.accountDAO = accountDAO;
+        this.userDAO = userDAO;
+        this.transactionDAO = transactionDAO;
+        this.executor = executor;
+    }
+
+    /**
+     * Create a bounded pool of daemon worker threads
+     * @param threads Worker count
+     * @param queueSize Tasks that may wait for a worker before new calls are rejected
+     * @return Executor
+     */
+    public static ExecutorService newExecutor(int threads, int queueSize) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "dao-async-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Get account balance
+     * @param accountId Account ID
+     * @return Future balance, 0 if the account does not exist
+     */
+    public CompletableFuture<Double> getBalance(int accountId) {
+        return supply(() -> moneyEngine.getBalance(accountId));
+    }
+
+    /**
+     * Get the first account of a user
+     * @param userId User ID
+     * @return Future account, completed with null if the user has none
+     */
+    public CompletableFuture<Account> getAccountByUserId(int userId) {
+        return supply(() -> accountDAO.getAccountByUserId(userId));
+    }
+
+    /**
+     * Get a user's public profile
+     * @param userId User ID
+     * @return Future profile, completed with null if the user does not exist
+     */
+    public CompletableFuture<UserProfile> getUserProfile(int userId) {
+        return supply(() -> userDAO.getUserProfile(userId));
+    }
+
+    /**
+     * Get an account's most recent transactions
+     * @param accountId Account ID
+     * @param limit Maximum rows
+     * @return Future list, newest first
+     */
+    public CompletableFuture<List<Transaction>> getRecentTransactions(int accountId, int limit) {
+        return supply(() -> transactionDAO.getTransactionHistoryPage(accountId, null, false, limit).getTransactions());
+    }
+
+    /**
+     * Load profile, balance and recent activity in parallel
+     * Each part that fails or takes longer than the timeout is left out of the
+     * view, so the wait is bounded by the timeout rather than by the slowest query.
+     * @param userId User ID
+     * @param accountId Account ID
+     * @param timeoutMs How long to wait for each part
+     * @return View with null for the parts that could not be loaded
+     */
+    public DashboardView loadDashboard(int userId, int accountId, long timeoutMs) {
+        CompletableFuture<UserProfile> profile = withFallback(getUserProfile(userId), timeoutMs, "profile");
+        CompletableFuture<Double> balance = withFallback(getBalance(accountId), timeoutMs, "balance");
+        CompletableFuture<List<Transaction>> recent =
+                withFallback(getRecentTransactions(accountId, RECENT_TRANSACTIONS), timeoutMs, "recent transactions");
+
+        CompletableFuture.allOf(profile, balance, recent).join();
+        return new DashboardView(profile.join(), balance.join(), recent.join());
+    }
+
+    /**
+     * Stop accepting calls; queued calls still run
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return Calls refused because the pool and its queue were full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return Dashboard parts left out because they took longer than the timeout
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return Dashboard parts left out because their query failed or was rejected
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    private <T> CompletableFuture<T> supply(Supplier<T> query) {
+        try {
+            // The pool thread must route reads the way the calling request would
+            return CompletableFuture.supplyAsync(ReadYourWrites.propagate(query), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> withFallback(CompletableFuture<T> future, long timeoutMs, String part) {
+        return future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                timeouts.increment();
+                LOG.warn("Dashboard part timed out", "part", part, "timeoutMs", timeoutMs);
+            } else {
+                failures.increment();
+                LOG.warn("Dashboard part unavailable", cause, "part", part);
+            }
+            return null;
+        });
+    }
+}
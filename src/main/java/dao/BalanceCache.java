@@ -0,0 +1,232 @@
+package dao;
+
+import util.AppConfig;
+import util.metrics.Metrics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Balance Cache
+ * In-process read-through cache for account balances, shared by every AccountDAO
+ *
+ * The cache is split into independently locked LRU segments so concurrent
+ * readers of different accounts rarely contend. Entries expire after a TTL,
+ * which also bounds staleness when other application nodes write to the same
+ * database. Local writers invalidate the entry when they commit.
+ *
+ * A read that misses records the segment generation before querying the
+ * database and only stores its result if no invalidation happened in between,
+ * so a slow read can never re-insert a balance that a concurrent commit has
+ * already replaced.
+ */
+public final class BalanceCache {
+
+    private static final BalanceCache INSTANCE = new BalanceCache(
+            AppConfig.getBoolean("banking.balanceCache.enabled", true),
+            AppConfig.getInt("banking.balanceCache.maxSize", 10000),
+            AppConfig.getLong("banking.balanceCache.ttlMs", 5000),
+            16,
+            System::nanoTime);
+
+    static {
+        Metrics.counter("banking_balance_cache_hits_total", "Balances served from memory", INSTANCE::getHitCount);
+        Metrics.counter("banking_balance_cache_misses_total", "Balances read from the database", INSTANCE::getMissCount);
+        Metrics.counter("banking_balance_cache_evictions_total", "Balances dropped to stay within the cache size",
+                INSTANCE::getEvictionCount);
+        Metrics.counter("banking_balance_cache_invalidations_total", "Balances dropped after a write",
+                INSTANCE::getInvalidationCount);
+        Metrics.gauge("banking_balance_cache_entries", "Balances held in memory", INSTANCE::size);
+    }
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Segment[] segments;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @return Cache shared by all DAOs
+     */
+    public static BalanceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a cache
+     * @param enabled false to make every lookup a miss
+     * @param maxSize Maximum number of cached balances across all segments
+     * @param ttlMs Time after which a cached balance is reloaded
+     * @param segmentCount Number of independently locked segments (power of two)
+     * @param clock Nanosecond clock
+     */
+    BalanceCache(boolean enabled, int maxSize, long ttlMs, int segmentCount, LongSupplier clock) {
+        this.enabled = enabled && maxSize > 0 && ttlMs > 0;
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.clock = clock;
+        this.segments = new Segment[segmentCount];
+        int perSegment = Math.max(1, maxSize / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Look up a cached balance
+     * @param accountId Account ID
+     * @return Cached balance, or null on a miss
+     */
+    public Double get(int accountId) {
+        if (!enabled) {
+            return null;
+        }
+        Segment segment = segmentFor(accountId);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(accountId);
+            if (entry != null && clock.getAsLong() - entry.loadedAt < ttlNanos) {
+                hits.increment();
+                return entry.balance;
+            }
+            if (entry != null) {
+                segment.entries.remove(accountId);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Generation token to pass to putIfUnchanged() after loading a balance
+     * @param accountId Account ID about to be loaded
+     * @return Current generation of the account's segment
+     */
+    public long generation(int accountId) {
+        Segment segment = segmentFor(accountId);
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    /**
+     * Store a balance loaded from the database, unless it was invalidated meanwhile
+     * @param accountId Account ID
+     * @param balance Balance read from the database
+     * @param generation Token from generation() taken before the read
+     */
+    public void putIfUnchanged(int accountId, double balance, long generation) {
+        if (!enabled) {
+            return;
+        }
+        Segment segment = segmentFor(accountId);
+        synchronized (segment) {
+            if (segment.generation == generation) {
+                segment.entries.put(accountId, new Entry(balance, clock.getAsLong()));
+            }
+        }
+    }
+
+    /**
+     * Drop a balance after a committed write
+     * @param accountId Account ID
+     */
+    public void invalidate(int accountId) {
+        if (!enabled) {
+            return;
+        }
+        Segment segment = segmentFor(accountId);
+        synchronized (segment) {
+            segment.generation++;
+            segment.entries.remove(accountId);
+        }
+        invalidations.increment();
+    }
+
+    /**
+     * Drop every cached balance
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.entries.clear();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return Fraction of lookups served from the cache, 0 if there were none
+     */
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @return Number of cached balances
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(int accountId) {
+        // Spread sequential account IDs across segments
+        int h = accountId * 0x9E3779B9;
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    private static final class Entry {
+        final double balance;
+        final long loadedAt;
+
+        Entry(double balance, long loadedAt) {
+            this.balance = balance;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final class Segment {
+        final LinkedHashMap<Integer, Entry> entries;
+        long generation;
+
+        Segment(int capacity) {
+            entries = new LinkedHashMap<Integer, Entry>(Math.min(capacity, 1024), 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package dao;
+
+import dao.audit.AuditJournal;
+import dao.audit.AuditOutcome;
+import dao.model.BulkTransferRow;
+import dao.model.TransferStatus;
+import util.AppConfig;
+import util.DBConnection;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.LatencyHistogram;
+import util.metrics.Metrics;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk Transfer Data Access Object
+ * Pays many receivers from one account, as in a payroll run, in chunks of
+ * banking.bulk.chunkSize rows (default 500) per database transaction.
+ *
+ * Rows are applied in ascending receiver order, and the sender's row is
+ * locked at its place in that order, so a chunk takes its locks in the same
+ * global order as TransactionDAO and TransferBatcher. In each chunk the
+ * credits go out as one JDBC batch, the sender is debited once with the
+ * chunk's total and the transaction rows are written as a second batch. A
+ * chunk is paid in full or not at all: if the sender cannot cover its total,
+ * every row in it is rejected for insufficient funds and the next chunk is
+ * tried. A missing receiver only fails its own row.
+ *
+ * When banking.money.engine is not jdbc (see MoneyEngines), balances live
+ * outside MySQL, so the rows are paid one at a time through that engine
+ * instead of in JDBC batches.
+ *
+ * Throughput is exported as banking_bulk_transfer_rows_total{status}, so
+ * rows per second is its rate.
+ */
+public class BulkTransferDAO {
+
+    private static final Logger LOG = Log.getLogger(BulkTransferDAO.class);
+
+    private static final LatencyHistogram CHUNK_LATENCY = DaoMetrics.latency("bulkTransferChunk");
+    private static final Map<TransferStatus, LongAdder> ROWS = new EnumMap<>(TransferStatus.class);
+    private static final LongAdder INVALID_ROWS = rowCounter("INVALID");
+
+    static {
+        for (TransferStatus status : TransferStatus.values()) {
+            ROWS.put(status, rowCounter(status.name()));
+        }
+    }
+
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+    private final AccountDAO accountDAO = new AccountDAO();
+    private final MoneyEngine moneyEngine;
+    private final int chunkSize;
+
+    public BulkTransferDAO() {
+        this(AppConfig.getInt("banking.bulk.chunkSize", 500));
+    }
+
+    /**
+     * @param chunkSize Rows per database transaction
+     */
+    public BulkTransferDAO(int chunkSize) {
+        this(chunkSize, MoneyEngines.getDefault());
+    }
+
+    /**
+     * @param chunkSize Rows per database transaction
+     * @param moneyEngine Engine holding the balances; rows go through it one by one unless it is a JdbcMoneyEngine
+     */
+    BulkTransferDAO(int chunkSize, MoneyEngine moneyEngine) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.moneyEngine = moneyEngine;
+    }
+
+    private static LongAdder rowCounter(String status) {
+        return Metrics.counter("banking_bulk_transfer_rows_total", "Bulk transfer rows applied, by outcome",
+                "status", status);
+    }
+
+    /**
+     * Count rows of an upload that was refused for failing validation
+     * @param rows Number of invalid rows
+     */
+    public static void countInvalid(int rows) {
+        INVALID_ROWS.add(rows);
+    }
+
+    /**
+     * Get the sender's balance after a run, from the engine that paid it
+     * @param accountId Account ID
+     * @return Current balance, 0 if the account does not exist
+     */
+    public double getBalance(int accountId) {
+        return moneyEngine instanceof JdbcMoneyEngine
+                ? accountDAO.getBalance(accountId, true) : moneyEngine.getBalance(accountId);
+    }
+
+    /**
+     * Pay every row from one account
+     * Rows whose receiver lives on another shard than the sender are
+     * transferred one at a time through TransactionDAO.transferFunds.
+     *
+     * @param senderAccountId Paying account
+     * @param rows Validated rows, in any order; the receiver must not be the sender
+     * @return Outcome of each row, in the order of rows
+     */
+    public TransferStatus[] transfer(int senderAccountId, List<BulkTransferRow> rows) {
+        if (!(moneyEngine instanceof JdbcMoneyEngine)) {
+            return transferThroughEngine(senderAccountId, rows);
+        }
+        TransferStatus[] statuses = new TransferStatus[rows.size()];
+        Integer[] order = new Integer[rows.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> rows.get(i).receiverAccountId()));
+
+        // Rows for other shards take the cross-shard path; the rest keep their sorted order
+        int senderShard = DBConnection.shardOf(senderAccountId);
+        int[] local = new int[order.length];
+        int localCount = 0;
+        for (int i : order) {
+            BulkTransferRow row = rows.get(i);
+            if (DBConnection.shardOf(row.receiverAccountId()) == senderShard) {
+                local[localCount++] = i;
+            } else {
+                statuses[i] = transactionDAO.transferFunds(senderAccountId, row.receiverAccountId(), row.amount()).status();
+                ROWS.get(statuses[i]).increment();
+            }
+        }
+
+        for (int from = 0; from < localCount; from += chunkSize) {
+            int[] chunk = Arrays.copyOfRange(local, from, Math.min(from + chunkSize, localCount));
+            long start = System.nanoTime();
+            TransferStatus[] outcome;
+            try {
+                outcome = RetryPolicy.getDefault().execute(() -> attemptChunk(senderAccountId, rows, chunk));
+            } catch (SQLException e) {
+                LOG.error("Bulk transfer chunk failed", e, "sender", senderAccountId, "rows", chunk.length);
+                outcome = new TransferStatus[chunk.length];
+                Arrays.fill(outcome, TransferStatus.ERROR);
+            }
+            CHUNK_LATENCY.recordSince(start);
+            finishChunk(senderAccountId, rows, chunk, outcome, statuses);
+        }
+        return statuses;
+    }
+
+    /**
+     * Pay the rows one at a time through a money engine that keeps balances outside MySQL
+     * Mirrors the classic path of TransferServlet, so rejected rows are recorded as failed transfers.
+     * @return Outcome of each row, in the order of rows
+     */
+    private TransferStatus[] transferThroughEngine(int senderAccountId, List<BulkTransferRow> rows) {
+        TransferStatus[] statuses = new TransferStatus[rows.size()];
+        for (int i = 0; i < statuses.length; i++) {
+            BulkTransferRow row = rows.get(i);
+            if (!moneyEngine.accountExists(row.receiverAccountId())) {
+                transactionDAO.recordFailedTransaction(senderAccountId, row.receiverAccountId(), row.amount(),
+                        "Invalid receiver account");
+                statuses[i] = TransferStatus.RECEIVER_NOT_FOUND;
+            } else if (moneyEngine.getBalance(senderAccountId) < row.amount()) {
+                transactionDAO.recordFailedTransaction(senderAccountId, row.receiverAccountId(), row.amount(),
+                        "Insufficient balance");
+                statuses[i] = TransferStatus.INSUFFICIENT_FUNDS;
+            } else if (moneyEngine.transferMoney(senderAccountId, row.receiverAccountId(), row.amount())) {
+                statuses[i] = TransferStatus.SUCCESS;
+            } else {
+                statuses[i] = TransferStatus.ERROR;
+            }
+            ROWS.get(statuses[i]).increment();
+        }
+        return statuses;
+    }
+
+    /**
+     * Audit, count and copy out a chunk's outcome once it is final
+     */
+    private static void finishChunk(int senderAccountId, List<BulkTransferRow> rows, int[] chunk,
+                                    TransferStatus[] outcome, TransferStatus[] statuses) {
+        BalanceCache cache = BalanceCache.getInstance();
+        AuditJournal audit = AuditJournal.getInstance();
+        boolean paid = false;
+        for (int j = 0; j < chunk.length; j++) {
+            BulkTransferRow row = rows.get(chunk[j]);
+            if (outcome[j].isSuccess()) {
+                cache.invalidate(row.receiverAccountId());
+                paid = true;
+            }
+            audit.transfer(senderAccountId, row.receiverAccountId(), row.amount(), AuditOutcome.of(outcome[j]));
+            ROWS.get(outcome[j]).increment();
+            statuses[chunk[j]] = outcome[j];
+        }
+        if (paid) {
+            cache.invalidate(senderAccountId);
+        }
+    }
+
+    /**
+     * One attempt at a chunk
+     * @param chunk Row indexes, in ascending receiver order
+     * @return Outcome of each row of the chunk; only valid once this returns normally
+     * @throws SQLException after rolling back, if the chunk as a whole failed
+     */
+    private static TransferStatus[] attemptChunk(int senderAccountId, List<BulkTransferRow> rows, int[] chunk)
+            throws SQLException {
+        TransferStatus[] outcome = new TransferStatus[chunk.length];
+        Connection conn = null;
+        PreparedStatement pstmtCredit = null;
+        PreparedStatement pstmtLock = null;
+        PreparedStatement pstmtDebit = null;
+        PreparedStatement pstmtTransfer = null;
+
+        try {
+            conn = DBConnection.getConnection(senderAccountId);
+
+            // START TRANSACTION
+            conn.setAutoCommit(false);
+
+            // Step 1: Credit the receivers below the sender, lock the sender, then credit the rest
+            int split = 0;
+            while (split < chunk.length && rows.get(chunk[split]).receiverAccountId() < senderAccountId) {
+                split++;
+            }
+            pstmtCredit = conn.prepareStatement(SqlStatements.CREDIT_ACCOUNT);
+            creditBatch(pstmtCredit, rows, chunk, 0, split, outcome);
+
+            pstmtLock = conn.prepareStatement(SqlStatements.SELECT_BALANCE_FOR_UPDATE);
+            Double balance = TransactionDAO.lockBalance(pstmtLock, senderAccountId);
+            if (balance == null) {
+                LOG.info("Bulk transfer rejected: sender account not found", "sender", senderAccountId);
+                conn.rollback();
+                Arrays.fill(outcome, TransferStatus.SENDER_NOT_FOUND);
+                return outcome;
+            }
+
+            creditBatch(pstmtCredit, rows, chunk, split, chunk.length, outcome);
+
+            // Step 2: Debit the sender once for every row that was credited
+            long totalCents = 0;
+            for (int j = 0; j < chunk.length; j++) {
+                if (outcome[j] == TransferStatus.SUCCESS) {
+                    totalCents += Math.round(rows.get(chunk[j]).amount() * 100);
+                }
+            }
+            if (totalCents > Math.round(balance * 100)) {
+                LOG.info("Bulk transfer chunk rejected: insufficient balance", "sender", senderAccountId,
+                        "available", balance);
+                conn.rollback();
+                recordInsufficient(conn, senderAccountId, rows, chunk, outcome);
+                return outcome;
+            }
+            if (totalCents > 0) {
+                pstmtDebit = conn.prepareStatement(SqlStatements.DEBIT_ACCOUNT);
+                pstmtDebit.setBigDecimal(1, BigDecimal.valueOf(totalCents, 2));
+                pstmtDebit.setInt(2, senderAccountId);
+                pstmtDebit.executeUpdate();
+
+                // Step 3: Record the paid rows in one round trip
+                pstmtTransfer = conn.prepareStatement(SqlStatements.INSERT_TRANSFER);
+                for (int j = 0; j < chunk.length; j++) {
+                    if (outcome[j] == TransferStatus.SUCCESS) {
+                        BulkTransferRow row = rows.get(chunk[j]);
+                        pstmtTransfer.setInt(1, senderAccountId);
+                        pstmtTransfer.setInt(2, row.receiverAccountId());
+                        pstmtTransfer.setDouble(3, row.amount());
+                        pstmtTransfer.addBatch();
+                    }
+                }
+                pstmtTransfer.executeBatch();
+            }
+
+            // COMMIT TRANSACTION
+            conn.commit();
+            return outcome;
+
+        } catch (SQLException e) {
+            // ROLLBACK on error - Undo the whole chunk, then let the retry policy decide
+            TransactionDAO.rollbackQuietly(conn);
+            throw e;
+
+        } finally {
+            try {
+                if (pstmtTransfer != null) pstmtTransfer.close();
+                if (pstmtDebit != null) pstmtDebit.close();
+                if (pstmtLock != null) pstmtLock.close();
+                if (pstmtCredit != null) pstmtCredit.close();
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                LOG.warn("Error closing JDBC resources", e);
+            }
+        }
+    }
+
+    /**
+     * Credit rows [from, to) of a chunk as one JDBC batch
+     * A credit that touched no rows marks its receiver as missing.
+     */
+    private static void creditBatch(PreparedStatement pstmtCredit, List<BulkTransferRow> rows, int[] chunk,
+                                    int from, int to, TransferStatus[] outcome) throws SQLException {
+        if (from == to) {
+            return;
+        }
+        for (int j = from; j < to; j++) {
+            BulkTransferRow row = rows.get(chunk[j]);
+            pstmtCredit.setDouble(1, row.amount());
+            pstmtCredit.setInt(2, row.receiverAccountId());
+            pstmtCredit.addBatch();
+        }
+        int[] counts = pstmtCredit.executeBatch();
+        for (int j = from; j < to; j++) {
+            // SUCCESS_NO_INFO (-2) is a driver that does not report counts; take it as applied
+            outcome[j] = counts[j - from] == 0 ? TransferStatus.RECEIVER_NOT_FOUND : TransferStatus.SUCCESS;
+        }
+    }
+
+    /**
+     * Mark a rolled-back chunk's payable rows as short of funds and record them as failed transfers
+     * Rows with a missing receiver are not recorded: receiver_account references accounts.
+     */
+    private static void recordInsufficient(Connection conn, int senderAccountId, List<BulkTransferRow> rows,
+                                           int[] chunk, TransferStatus[] outcome) throws SQLException {
+        try (PreparedStatement pstmtFailed = conn.prepareStatement(SqlStatements.INSERT_FAILED_TRANSFER)) {
+            for (int j = 0; j < chunk.length; j++) {
+                if (outcome[j] == TransferStatus.SUCCESS) {
+                    BulkTransferRow row = rows.get(chunk[j]);
+                    outcome[j] = TransferStatus.INSUFFICIENT_FUNDS;
+                    pstmtFailed.setInt(1, senderAccountId);
+                    pstmtFailed.setInt(2, row.receiverAccountId());
+                    pstmtFailed.setDouble(3, row.amount());
+                    pstmtFailed.setString(4, "FAILED: Insufficient balance");
+                    pstmtFailed.addBatch();
+                }
+            }
+            pstmtFailed.executeBatch();
+            conn.commit();
+        }
+    }
+}
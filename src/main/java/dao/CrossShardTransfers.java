@@ -0,0 +1,416 @@
+package dao;
+
+import dao.model.TransferResult;
+import dao.model.TransferStatus;
+import util.AppConfig;
+import util.DBConnection;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.Metrics;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cross-Shard Transfers
+ * Moves money between accounts on different shards, where no single database
+ * transaction covers both rows. Each transfer has an id and takes three local
+ * transactions:
+ *
+ *   1. Reserve, on the sender's shard: debit the sender if the balance covers
+ *      the amount and insert a RESERVED shard_transfers row.
+ *   2. Credit, on the receiver's shard: insert a shard_credits row for the
+ *      transfer, credit the receiver and record the transaction. The
+ *      shard_credits primary key makes this step safe to repeat.
+ *   3. Settle, on the sender's shard: mark the transfer COMPLETED and record
+ *      the transaction, or, if the receiver account does not exist, mark it
+ *      REVERSED and refund the sender. Only whoever moves the row out of
+ *      RESERVED applies the refund.
+ *
+ * A transfer interrupted after step 1 stays RESERVED: the money has left the
+ * sender and is not spendable, but it is not lost. A background sweeper runs
+ * every banking.db.shard.recoveryIntervalMs (default 30000) and repeats steps
+ * 2 and 3 for transfers RESERVED longer than banking.db.shard.recoveryAgeMs
+ * (default 60000), so they complete once the receiver's shard is reachable.
+ */
+public final class CrossShardTransfers implements AutoCloseable {
+
+    private static final Logger LOG = Log.getLogger(CrossShardTransfers.class);
+
+    private static final LongAdder COMPLETED = Metrics.counter("banking_shard_transfers_total",
+            "Cross-shard transfers settled, by outcome", "outcome", "completed");
+    private static final LongAdder REVERSED = Metrics.counter("banking_shard_transfers_total",
+            "Cross-shard transfers settled, by outcome", "outcome", "reversed");
+    private static final LongAdder DEFERRED = Metrics.counter("banking_shard_transfers_total",
+            "Cross-shard transfers settled, by outcome", "outcome", "deferred");
+
+    private static final int RECOVERY_BATCH = 100;
+
+    private static volatile CrossShardTransfers instance;
+
+    private final long recoveryAgeMillis;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Result of the credit step
+     */
+    private enum Credit {
+        APPLIED,
+        RECEIVER_NOT_FOUND
+    }
+
+    /**
+     * Get the shared instance, starting the recovery sweeper on first use
+     * @return Cross-shard transfers
+     */
+    public static CrossShardTransfers getInstance() {
+        CrossShardTransfers current = instance;
+        if (current == null) {
+            synchronized (CrossShardTransfers.class) {
+                current = instance;
+                if (current == null) {
+                    current = new CrossShardTransfers(
+                            AppConfig.getLong("banking.db.shard.recoveryIntervalMs", 30000),
+                            AppConfig.getLong("banking.db.shard.recoveryAgeMs", 60000));
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Stop the shared recovery sweeper, if it was started
+     */
+    public static void shutdown() {
+        CrossShardTransfers current;
+        synchronized (CrossShardTransfers.class) {
+            current = instance;
+            instance = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * @param recoveryIntervalMillis Time between recovery sweeps
+     * @param recoveryAgeMillis How long a transfer stays RESERVED before the sweeper takes it over
+     */
+    CrossShardTransfers(long recoveryIntervalMillis, long recoveryAgeMillis) {
+        this.recoveryAgeMillis = recoveryAgeMillis;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "shard-recovery");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, recoveryIntervalMillis, recoveryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Transfer between accounts on different shards
+     * @param senderAccountId Sender's account ID
+     * @param receiverAccountId Receiver's account ID, on another shard than the sender
+     * @param amount Amount to transfer
+     * @return Outcome and the sender's resulting balance; SUCCESS once the
+     *         money is reserved and the receiver known to exist, even if the
+     *         credit is left to the recovery sweeper
+     * @throws SQLException if the transfer could not be reserved; no money has moved
+     */
+    public TransferResult transfer(int senderAccountId, int receiverAccountId, double amount) throws SQLException {
+        RetryPolicy retry = RetryPolicy.getDefault();
+        if (!retry.execute(() -> receiverExists(receiverAccountId))) {
+            LOG.info("Transfer rejected: receiver account not found", "receiver", receiverAccountId);
+            return TransferResult.failure(TransferStatus.RECEIVER_NOT_FOUND);
+        }
+
+        String transferId = UUID.randomUUID().toString();
+        TransferResult reserved = retry.execute(() -> reserve(transferId, senderAccountId, receiverAccountId, amount));
+        if (!reserved.isSuccess()) {
+            return reserved;
+        }
+
+        try {
+            if (complete(transferId, senderAccountId, receiverAccountId, amount) == Credit.RECEIVER_NOT_FOUND) {
+                // Checked above, so only possible if the account went away in between
+                return TransferResult.failure(TransferStatus.RECEIVER_NOT_FOUND);
+            }
+        } catch (SQLException e) {
+            DEFERRED.increment();
+            LOG.warn("Cross-shard credit deferred to recovery", e, "transfer", transferId,
+                    "sender", senderAccountId, "receiver", receiverAccountId);
+        }
+        return reserved;
+    }
+
+    /**
+     * Finish every transfer left RESERVED for longer than the recovery age
+     * @return Transfers settled
+     */
+    public int recover() {
+        int settled = 0;
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - recoveryAgeMillis);
+        for (int shard = 0; shard < DBConnection.getShardCount(); shard++) {
+            List<Object[]> stale;
+            try {
+                stale = findStale(shard, cutoff);
+            } catch (SQLException e) {
+                LOG.warn("Cannot read reserved transfers", e, "shard", shard);
+                continue;
+            }
+            for (Object[] row : stale) {
+                String transferId = (String) row[0];
+                try {
+                    complete(transferId, (Integer) row[1], (Integer) row[2], (Double) row[3]);
+                    settled++;
+                } catch (SQLException e) {
+                    LOG.warn("Reserved transfer still cannot be credited", e, "transfer", transferId);
+                }
+            }
+        }
+        if (settled > 0) {
+            LOG.info("Recovered reserved transfers", "count", settled);
+        }
+        return settled;
+    }
+
+    /**
+     * Stop the recovery sweeper
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private void sweep() {
+        try {
+            recover();
+        } catch (RuntimeException e) {
+            LOG.error("Recovery sweep failed", e);
+        }
+    }
+
+    /**
+     * Steps 2 and 3: credit the receiver, then complete or reverse the reservation
+     * @return Outcome of the credit
+     * @throws SQLException if either shard failed; the transfer stays RESERVED
+     */
+    private Credit complete(String transferId, int senderAccountId, int receiverAccountId, double amount)
+            throws SQLException {
+        RetryPolicy retry = RetryPolicy.getDefault();
+        Credit credit = retry.execute(() -> credit(transferId, senderAccountId, receiverAccountId, amount));
+        if (credit == Credit.APPLIED) {
+            retry.execute(() -> settle(transferId, senderAccountId, receiverAccountId, amount, false));
+        } else {
+            retry.execute(() -> settle(transferId, senderAccountId, receiverAccountId, amount, true));
+        }
+        return credit;
+    }
+
+    private static boolean receiverExists(int receiverAccountId) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(receiverAccountId);
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.COUNT_ACCOUNTS_BY_ID)) {
+            pstmt.setInt(1, receiverAccountId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    /**
+     * Step 1: debit the sender and record the reservation in one transaction on the sender's shard
+     */
+    private static TransferResult reserve(String transferId, int senderAccountId, int receiverAccountId,
+                                          double amount) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = DBConnection.getConnection(senderAccountId);
+            conn.setAutoCommit(false);
+
+            if (TransactionDAO.debitIfSufficient(conn, senderAccountId, amount) == 0) {
+                conn.rollback();
+                return TransactionDAO.rejectDebit(conn, senderAccountId, receiverAccountId, amount);
+            }
+
+            double newBalance;
+            try (PreparedStatement insert = conn.prepareStatement(SqlStatements.INSERT_SHARD_TRANSFER)) {
+                insert.setString(1, transferId);
+                insert.setInt(2, senderAccountId);
+                insert.setInt(3, receiverAccountId);
+                insert.setDouble(4, amount);
+                insert.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+                insert.executeUpdate();
+            }
+            try (PreparedStatement balance = conn.prepareStatement(SqlStatements.SELECT_BALANCE)) {
+                balance.setInt(1, senderAccountId);
+                try (ResultSet rs = balance.executeQuery()) {
+                    newBalance = rs.next() ? rs.getDouble("balance") : Double.NaN;
+                }
+            }
+
+            conn.commit();
+            BalanceCache.getInstance().invalidate(senderAccountId);
+            return TransferResult.success(newBalance);
+
+        } catch (SQLException e) {
+            TransactionDAO.rollbackQuietly(conn);
+            throw e;
+
+        } finally {
+            release(conn);
+        }
+    }
+
+    /**
+     * Step 2: credit the receiver once per transfer, on the receiver's shard
+     */
+    private static Credit credit(String transferId, int senderAccountId, int receiverAccountId,
+                                 double amount) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = DBConnection.getConnection(receiverAccountId);
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement marker = conn.prepareStatement(SqlStatements.INSERT_SHARD_CREDIT)) {
+                marker.setString(1, transferId);
+                marker.setInt(2, receiverAccountId);
+                marker.setDouble(3, amount);
+                marker.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                marker.executeUpdate();
+            } catch (SQLException e) {
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                // Credited by an earlier attempt that did not get as far as settling
+                conn.rollback();
+                return Credit.APPLIED;
+            }
+
+            if (TransactionDAO.credit(conn, receiverAccountId, amount) == 0) {
+                conn.rollback();
+                return Credit.RECEIVER_NOT_FOUND;
+            }
+            insertTransfer(conn, senderAccountId, receiverAccountId, amount);
+
+            conn.commit();
+            BalanceCache.getInstance().invalidate(receiverAccountId);
+            return Credit.APPLIED;
+
+        } catch (SQLException e) {
+            TransactionDAO.rollbackQuietly(conn);
+            throw e;
+
+        } finally {
+            release(conn);
+        }
+    }
+
+    /**
+     * Step 3: complete the reservation, or reverse it and refund the sender
+     */
+    private static Void settle(String transferId, int senderAccountId, int receiverAccountId,
+                               double amount, boolean reverse) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = DBConnection.getConnection(senderAccountId);
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement update = conn.prepareStatement(SqlStatements.SETTLE_SHARD_TRANSFER)) {
+                update.setString(1, reverse ? "REVERSED" : "COMPLETED");
+                update.setString(2, transferId);
+                if (update.executeUpdate() == 0) {
+                    // Already settled by the sweeper or the original caller
+                    conn.rollback();
+                    return null;
+                }
+            }
+
+            if (reverse) {
+                TransactionDAO.credit(conn, senderAccountId, amount);
+                TransactionDAO.insertFailedTransfer(conn, senderAccountId, receiverAccountId, amount,
+                        "Invalid receiver account");
+            } else {
+                insertTransfer(conn, senderAccountId, receiverAccountId, amount);
+            }
+
+            conn.commit();
+            if (reverse) {
+                BalanceCache.getInstance().invalidate(senderAccountId);
+                REVERSED.increment();
+                LOG.warn("Cross-shard transfer reversed", "transfer", transferId,
+                        "sender", senderAccountId, "receiver", receiverAccountId);
+            } else {
+                COMPLETED.increment();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Cross-shard transfer committed", "transfer", transferId,
+                            "sender", senderAccountId, "receiver", receiverAccountId);
+                }
+            }
+            return null;
+
+        } catch (SQLException e) {
+            TransactionDAO.rollbackQuietly(conn);
+            throw e;
+
+        } finally {
+            release(conn);
+        }
+    }
+
+    /**
+     * Read transfers left RESERVED on one shard since before the cutoff
+     * @return Rows of transfer id, sender, receiver and amount
+     */
+    private static List<Object[]> findStale(int shard, Timestamp cutoff) throws SQLException {
+        List<Object[]> stale = new ArrayList<>();
+        try (Connection conn = DBConnection.getShardConnection(shard);
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.SELECT_STALE_SHARD_TRANSFERS)) {
+            pstmt.setTimestamp(1, cutoff);
+            pstmt.setInt(2, RECOVERY_BATCH);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    stale.add(new Object[] {rs.getString("transfer_id"), rs.getInt("sender_account"),
+                            rs.getInt("receiver_account"), rs.getDouble("amount")});
+                }
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Each shard keeps its own copy of the transaction, so either account's history finds it locally
+     */
+    private static void insertTransfer(Connection conn, int senderAccountId, int receiverAccountId,
+                                       double amount) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SqlStatements.INSERT_TRANSFER)) {
+            pstmt.setInt(1, senderAccountId);
+            pstmt.setInt(2, receiverAccountId);
+            pstmt.setDouble(3, amount);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void release(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.setAutoCommit(true);
+                conn.close();
+            }
+        } catch (SQLException e) {
+            LOG.warn("Error closing JDBC resources", e);
+        }
+    }
+
+    /**
+     * @return true for a unique or primary key violation (SQLState class 23)
+     */
+    private static boolean isDuplicateKey(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLIntegrityConstraintViolationException || (state != null && state.startsWith("23"));
+    }
+}
@@ -0,0 +1,24 @@
+package dao;
+
+import util.metrics.LatencyHistogram;
+import util.metrics.Metrics;
+
+/**
+ * DAO Metrics
+ * Latency histograms for the DAO operations, exported as
+ * banking_dao_operation_seconds{operation="..."}
+ */
+final class DaoMetrics {
+
+    private DaoMetrics() {
+    }
+
+    /**
+     * @param operation Name of the DAO method
+     * @return Histogram recording how long the operation takes, including retries
+     */
+    static LatencyHistogram latency(String operation) {
+        return Metrics.histogram("banking_dao_operation_seconds",
+                "Time spent in DAO operations, including retries", "operation", operation);
+    }
+}
@@ -0,0 +1,74 @@
+package dao;
+
+import java.sql.Timestamp;
+
+/**
+ * History Cursor
+ * Position in an account's transaction history, identified by (txn_date, txn_id)
+ *
+ * Cursors are passed through page links as opaque strings, so paging never
+ * uses OFFSET and page N costs the same index range scan as page 1.
+ */
+public final class HistoryCursor {
+    
+    /** Cursor positioned after the newest possible transaction */
+    public static final HistoryCursor NEWEST = new HistoryCursor(Timestamp.valueOf("9999-12-31 23:59:59").getTime(), Integer.MAX_VALUE);
+    
+    /** Cursor positioned before the oldest possible transaction */
+    public static final HistoryCursor OLDEST = new HistoryCursor(0L, 0);
+    
+    private final long txnDateMillis;
+    private final int txnId;
+    
+    public HistoryCursor(long txnDateMillis, int txnId) {
+        this.txnDateMillis = txnDateMillis;
+        this.txnId = txnId;
+    }
+    
+    public long getTxnDateMillis() {
+        return txnDateMillis;
+    }
+    
+    public int getTxnId() {
+        return txnId;
+    }
+    
+    public Timestamp getTxnDate() {
+        return new Timestamp(txnDateMillis);
+    }
+    
+    /**
+     * Encode the cursor for use in a URL
+     * @return Opaque cursor string
+     */
+    public String encode() {
+        return Long.toString(txnDateMillis, 36) + "-" + Integer.toString(txnId, 36);
+    }
+    
+    /**
+     * Decode a cursor produced by encode()
+     * @param value Cursor string from a request parameter
+     * @return Cursor, or null if the value is missing or malformed
+     */
+    public static HistoryCursor decode(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int dash = value.indexOf('-');
+        if (dash <= 0 || dash == value.length() - 1) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(value.substring(0, dash), 36);
+            int id = Integer.parseInt(value.substring(dash + 1), 36);
+            return new HistoryCursor(millis, id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
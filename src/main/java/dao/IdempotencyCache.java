@@ -0,0 +1,197 @@
+package dao;
+
+import dao.model.RequestOutcome;
+import util.AppConfig;
+import util.metrics.Metrics;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Idempotency Cache
+ * Bounded in-process cache of completed request outcomes by idempotency key,
+ * consulted by IdempotencyDAO before the idempotency_keys table
+ *
+ * Keys are spread over independently locked stripes, so lookups for
+ * different keys rarely contend. Each stripe keeps its entries in insertion
+ * order; expired entries are dropped from the oldest end on every write, and
+ * the oldest entry is evicted when a stripe is full. An evicted or expired
+ * key is still answered from the database until the row itself expires.
+ *
+ * Entries live for banking.idempotency.ttlMinutes (default 24 hours), the
+ * same lifetime as the rows; the cache holds at most
+ * banking.idempotency.cacheSize outcomes.
+ */
+public final class IdempotencyCache {
+
+    private static final IdempotencyCache INSTANCE = new IdempotencyCache(
+            AppConfig.getInt("banking.idempotency.cacheSize", 10000),
+            AppConfig.getLong("banking.idempotency.ttlMinutes", 24 * 60) * 60_000L,
+            16,
+            System::currentTimeMillis);
+
+    static {
+        Metrics.counter("banking_idempotency_cache_hits_total", "Idempotency keys answered from memory", INSTANCE::getHitCount);
+        Metrics.counter("banking_idempotency_cache_misses_total", "Idempotency keys looked up in the database",
+                INSTANCE::getMissCount);
+        Metrics.counter("banking_idempotency_cache_evictions_total", "Outcomes dropped to stay within the cache size",
+                INSTANCE::getEvictionCount);
+        Metrics.gauge("banking_idempotency_cache_entries", "Outcomes held in memory", INSTANCE::size);
+    }
+
+    private final long ttlMillis;
+    private final Stripe[] stripes;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @return Cache shared by all servlets
+     */
+    public static IdempotencyCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a cache
+     * @param maxSize Maximum number of outcomes across all stripes
+     * @param ttlMillis Lifetime of an idempotency key
+     * @param stripeCount Number of independently locked stripes (power of two)
+     * @param clock Wall clock in milliseconds
+     */
+    IdempotencyCache(int maxSize, long ttlMillis, int stripeCount, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.stripes = new Stripe[stripeCount];
+        int perStripe = Math.max(1, maxSize / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Look up a completed outcome
+     * @param key Idempotency key, qualified by user and operation
+     * @return Outcome, or null if unknown or expired
+     */
+    public RequestOutcome get(String key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(key);
+            if (entry != null && entry.expiresAt > clock.getAsLong()) {
+                hits.increment();
+                return entry.outcome;
+            }
+            if (entry != null) {
+                stripe.entries.remove(key);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Remember a completed outcome
+     * @param key Idempotency key, qualified by user and operation
+     * @param outcome Outcome to replay
+     */
+    public void put(String key, RequestOutcome outcome) {
+        Stripe stripe = stripeFor(key);
+        long now = clock.getAsLong();
+        synchronized (stripe) {
+            // Insertion order is expiry order, so expired entries are always at the front
+            Iterator<Entry> it = stripe.entries.values().iterator();
+            while (it.hasNext() && it.next().expiresAt <= now) {
+                it.remove();
+            }
+            stripe.entries.remove(key);
+            stripe.entries.put(key, new Entry(outcome, now + ttlMillis));
+        }
+    }
+
+    /**
+     * Drop every cached outcome
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+            }
+        }
+    }
+
+    /**
+     * @return Lifetime of an idempotency key in milliseconds
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * @return Current time on the cache's clock
+     */
+    long now() {
+        return clock.getAsLong();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Number of cached outcomes, including expired ones not yet dropped
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Entry {
+        final RequestOutcome outcome;
+        final long expiresAt;
+
+        Entry(RequestOutcome outcome, long expiresAt) {
+            this.outcome = outcome;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Stripe {
+        final LinkedHashMap<String, Entry> entries;
+
+        Stripe(int capacity) {
+            entries = new LinkedHashMap<String, Entry>(Math.min(capacity, 1024), 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
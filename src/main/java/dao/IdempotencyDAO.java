@@ -0,0 +1,271 @@
+package dao;
+
+import dao.model.RequestOutcome;
+import util.DBConnection;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.Metrics;
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Idempotency Data Access Object
+ * Runs a money-moving request at most once per (user, idempotency key)
+ *
+ * The first submission claims the key by inserting a PENDING row into
+ * idempotency_keys, runs the operation and stores the message it produced.
+ * A repeat is answered from IdempotencyCache or, on a miss, from that row,
+ * and never reaches the account rows. The primary key on (user_id, idem_key)
+ * decides between concurrent duplicates: the one whose INSERT loses is told
+ * the request is still being processed.
+ *
+ * Keys expire after banking.idempotency.ttlMinutes; an expired row can be
+ * claimed again and is eventually purged. A request that dies after claiming
+ * its key stays PENDING until then, which errs on the side of not moving
+ * money twice. If the table cannot be reached the request is refused rather
+ * than run unprotected.
+ */
+public class IdempotencyDAO {
+
+    private static final Logger LOG = Log.getLogger(IdempotencyDAO.class);
+
+    /** Request header that carries the key for non-form clients */
+    public static final String HEADER = "Idempotency-Key";
+
+    /** Form field that carries the key (see the hidden input in the money JSPs) */
+    public static final String PARAMETER = "idempotencyKey";
+
+    private static final Pattern KEY_FORMAT = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private static final String PENDING = "PENDING";
+    private static final String SUCCEEDED = "SUCCESS";
+    private static final String FAILED = "FAILED";
+
+    private static final String IN_PROGRESS_MESSAGE =
+            "This request is already being processed. Please check your transaction history before trying again.";
+
+    private static final LongAdder executions = new LongAdder();
+    private static final LongAdder replays = new LongAdder();
+    private static final LongAdder conflicts = new LongAdder();
+    private static final AtomicLong lastPurge = new AtomicLong();
+
+    static {
+        Metrics.counter("banking_idempotent_executions_total", "Requests run under a fresh idempotency key", executions::sum);
+        Metrics.counter("banking_idempotent_replays_total", "Repeated requests answered with the stored outcome", replays::sum);
+        Metrics.counter("banking_idempotent_conflicts_total", "Repeats that arrived while the first submission was running",
+                conflicts::sum);
+    }
+
+    private final IdempotencyCache cache;
+    private final LongSupplier clock;
+
+    public IdempotencyDAO() {
+        this(IdempotencyCache.getInstance());
+    }
+
+    IdempotencyDAO(IdempotencyCache cache) {
+        this.cache = cache;
+        this.clock = cache::now;
+    }
+
+    /**
+     * @param key Key sent by the client
+     * @return true if the key is 1-64 letters, digits, '-' or '_'
+     */
+    public static boolean isValidKey(String key) {
+        return key != null && KEY_FORMAT.matcher(key).matches();
+    }
+
+    /**
+     * Run an operation unless this user already submitted the key
+     * @param userId Submitting user; keys of different users never collide
+     * @param key Idempotency key, or null to run the operation unconditionally
+     * @param operation Kind of request (TRANSFER, WITHDRAWAL, DEPOSIT); a key reused for another kind is refused
+     * @param action The operation; a pending outcome leaves the key claimed but unresolved
+     * @return The operation's outcome, or the original outcome of an earlier submission
+     */
+    public RequestOutcome execute(int userId, String key, String operation, Supplier<RequestOutcome> action) {
+        if (key == null) {
+            return action.get();
+        }
+        // The operation is part of the key so a reused key falls through to the check in claim()
+        String cacheKey = userId + ":" + operation + ":" + key;
+        RequestOutcome cached = cache.get(cacheKey);
+        if (cached != null) {
+            replays.increment();
+            return cached;
+        }
+
+        RequestOutcome existing;
+        try {
+            existing = claim(userId, key, operation);
+        } catch (SQLException e) {
+            LOG.error("Error claiming idempotency key", e);
+            return RequestOutcome.failure("Your request could not be processed. Please try again.");
+        }
+        if (existing != null) {
+            if (existing.completed()) {
+                replays.increment();
+                cache.put(cacheKey, existing);
+            } else {
+                conflicts.increment();
+            }
+            return existing;
+        }
+
+        executions.increment();
+        RequestOutcome outcome;
+        try {
+            outcome = action.get();
+        } catch (RuntimeException e) {
+            // Nothing was recorded as done, so let the client retry with the same key
+            release(userId, key);
+            throw e;
+        }
+        if (outcome.completed()) {
+            RequestOutcome replay = outcome.withoutBalance();
+            cache.put(cacheKey, replay);
+            complete(userId, key, replay);
+        }
+        purgeExpired();
+        return outcome;
+    }
+
+    /**
+     * Claim a key for this request
+     * @return null if this request now owns the key, otherwise the outcome to answer with
+     */
+    private RequestOutcome claim(int userId, String key, String operation) throws SQLException {
+        long now = clock.getAsLong();
+        try (Connection conn = DBConnection.getConnection()) {
+            try (PreparedStatement insert = conn.prepareStatement(SqlStatements.INSERT_IDEMPOTENCY_KEY)) {
+                insert.setInt(1, userId);
+                insert.setString(2, key);
+                insert.setString(3, operation);
+                insert.setTimestamp(4, new Timestamp(now));
+                insert.executeUpdate();
+                return null;
+            } catch (SQLException e) {
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+            }
+
+            String storedOperation;
+            String status;
+            String message;
+            long createdAt;
+            try (PreparedStatement select = conn.prepareStatement(SqlStatements.SELECT_IDEMPOTENCY_KEY)) {
+                select.setInt(1, userId);
+                select.setString(2, key);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        // Purged between the INSERT and the SELECT
+                        return RequestOutcome.pending(IN_PROGRESS_MESSAGE);
+                    }
+                    storedOperation = rs.getString("operation");
+                    status = rs.getString("status");
+                    message = rs.getString("message");
+                    createdAt = rs.getTimestamp("created_at").getTime();
+                }
+            }
+
+            long cutoff = now - cache.getTtlMillis();
+            if (createdAt < cutoff) {
+                try (PreparedStatement reclaim = conn.prepareStatement(SqlStatements.RECLAIM_IDEMPOTENCY_KEY)) {
+                    reclaim.setString(1, operation);
+                    reclaim.setTimestamp(2, new Timestamp(now));
+                    reclaim.setInt(3, userId);
+                    reclaim.setString(4, key);
+                    reclaim.setTimestamp(5, new Timestamp(cutoff));
+                    return reclaim.executeUpdate() == 1 ? null : RequestOutcome.pending(IN_PROGRESS_MESSAGE);
+                }
+            }
+            if (!storedOperation.equals(operation)) {
+                return RequestOutcome.failure("This request key was already used for a different operation.");
+            }
+            if (PENDING.equals(status)) {
+                return RequestOutcome.pending(IN_PROGRESS_MESSAGE);
+            }
+            return SUCCEEDED.equals(status) ? RequestOutcome.success(message, Double.NaN) : RequestOutcome.failure(message);
+        }
+    }
+
+    /**
+     * Store the outcome of a claimed key; on failure the cache still answers repeats on this node
+     */
+    private void complete(int userId, String key, RequestOutcome outcome) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.COMPLETE_IDEMPOTENCY_KEY)) {
+            pstmt.setString(1, outcome.success() ? SUCCEEDED : FAILED);
+            pstmt.setString(2, outcome.message());
+            pstmt.setInt(3, userId);
+            pstmt.setString(4, key);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            LOG.error("Error storing idempotency outcome", e);
+        }
+    }
+
+    private void release(int userId, String key) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.DELETE_IDEMPOTENCY_KEY)) {
+            pstmt.setInt(1, userId);
+            pstmt.setString(2, key);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            LOG.error("Error releasing idempotency key", e);
+        }
+    }
+
+    /**
+     * Delete expired rows, at most once per quarter of the key lifetime across all callers
+     */
+    private void purgeExpired() {
+        long now = clock.getAsLong();
+        long last = lastPurge.get();
+        if (now - last < cache.getTtlMillis() / 4 || !lastPurge.compareAndSet(last, now)) {
+            return;
+        }
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.PURGE_IDEMPOTENCY_KEYS)) {
+            pstmt.setTimestamp(1, new Timestamp(now - cache.getTtlMillis()));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            LOG.error("Error purging idempotency keys", e);
+        }
+    }
+
+    /**
+     * @return true for a unique or primary key violation (SQLState class 23)
+     */
+    private static boolean isDuplicateKey(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLIntegrityConstraintViolationException || (state != null && state.startsWith("23"));
+    }
+
+    /**
+     * @return Requests that ran their operation under a fresh key
+     */
+    public static long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * @return Repeats answered with a stored outcome
+     */
+    public static long getReplayCount() {
+        return replays.sum();
+    }
+
+    /**
+     * @return Repeats that arrived while the first submission was still running
+     */
+    public static long getConflictCount() {
+        return conflicts.sum();
+    }
+}
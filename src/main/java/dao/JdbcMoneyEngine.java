@@ -0,0 +1,36 @@
+package dao;
+
+/**
+ * JDBC Money Engine
+ * Default engine: every operation is a MySQL transaction through TransactionDAO and AccountDAO
+ */
+public class JdbcMoneyEngine implements MoneyEngine {
+
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+    private final AccountDAO accountDAO = new AccountDAO();
+
+    @Override
+    public boolean transferMoney(int senderAccountId, int receiverAccountId, double amount) {
+        return transactionDAO.transferMoney(senderAccountId, receiverAccountId, amount);
+    }
+
+    @Override
+    public boolean withdrawMoney(int accountId, double amount) {
+        return transactionDAO.withdrawMoney(accountId, amount);
+    }
+
+    @Override
+    public boolean deposit(int accountId, double amount) {
+        return accountDAO.deposit(accountId, amount);
+    }
+
+    @Override
+    public double getBalance(int accountId) {
+        return accountDAO.getBalance(accountId);
+    }
+
+    @Override
+    public boolean accountExists(int accountId) {
+        return accountDAO.accountExists(accountId);
+    }
+}
@@ -0,0 +1,48 @@
+package dao;
+
+/**
+ * Money Engine
+ * Balance-changing operations used by the servlets, so the storage engine
+ * behind them can be switched with banking.money.engine (see MoneyEngines)
+ */
+public interface MoneyEngine {
+
+    /**
+     * Transfer money between accounts
+     * @param senderAccountId Sender's account ID
+     * @param receiverAccountId Receiver's account ID
+     * @param amount Amount to transfer
+     * @return true if transfer successful, false otherwise
+     */
+    boolean transferMoney(int senderAccountId, int receiverAccountId, double amount);
+
+    /**
+     * Withdraw money from an account
+     * @param accountId Account ID to withdraw from
+     * @param amount Amount to withdraw
+     * @return true if withdrawal successful, false otherwise
+     */
+    boolean withdrawMoney(int accountId, double amount);
+
+    /**
+     * Deposit funds into an account
+     * @param accountId Account ID
+     * @param amount Amount to deposit
+     * @return true if deposit successful
+     */
+    boolean deposit(int accountId, double amount);
+
+    /**
+     * Get account balance
+     * @param accountId Account ID
+     * @return Current balance, 0 if the account does not exist
+     */
+    double getBalance(int accountId);
+
+    /**
+     * Check if account exists
+     * @param accountId Account ID to check
+     * @return true if exists, false otherwise
+     */
+    boolean accountExists(int accountId);
+}
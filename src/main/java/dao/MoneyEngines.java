@@ -0,0 +1,78 @@
+package dao;
+
+import dao.ledger.LedgerEngine;
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Money Engines
+ * Chooses the MoneyEngine the servlets use, with banking.money.engine:
+ *   jdbc (default) - MySQL row-locking transactions
+ *   ledger         - in-process single-writer ledger journaled to banking.ledger.dir
+ */
+public final class MoneyEngines {
+
+    private static final Logger LOG = Log.getLogger(MoneyEngines.class);
+
+    private static volatile MoneyEngine instance;
+
+    private MoneyEngines() {
+    }
+
+    /**
+     * Get the configured engine, starting it on first use
+     * @return Money engine
+     */
+    public static MoneyEngine getDefault() {
+        MoneyEngine current = instance;
+        if (current == null) {
+            synchronized (MoneyEngines.class) {
+                current = instance;
+                if (current == null) {
+                    current = create(AppConfig.getString("banking.money.engine", "jdbc"));
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Stop the configured engine, if it was started and holds resources
+     */
+    public static void shutdown() {
+        MoneyEngine current;
+        synchronized (MoneyEngines.class) {
+            current = instance;
+            instance = null;
+        }
+        if (current instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) current).close();
+            } catch (Exception e) {
+                LOG.error("Error stopping money engine", e);
+            }
+        }
+    }
+
+    private static MoneyEngine create(String name) {
+        if ("ledger".equals(name)) {
+            Path dir = Paths.get(AppConfig.getString("banking.ledger.dir", "ledger-data"));
+            try {
+                return new LedgerEngine(dir, AppConfig.getInt("banking.ledger.snapshotEvery", 100000),
+                        LedgerEngine.databaseLoader());
+            } catch (IOException e) {
+                // Running on a ledger that cannot be recovered would lose money; refuse to start
+                throw new IllegalStateException("Cannot open ledger in " + dir.toAbsolutePath(), e);
+            }
+        }
+        if (!"jdbc".equals(name)) {
+            LOG.warn("Unknown money engine, using jdbc", "engine", name);
+        }
+        return new JdbcMoneyEngine();
+    }
+}
@@ -0,0 +1,166 @@
+package dao;
+
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.Metrics;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retry Policy
+ * Re-runs a database transaction that the server aborted because of a
+ * deadlock or lock wait timeout, with bounded, jittered exponential backoff
+ *
+ * Only failures where the database rolled back the whole transaction are
+ * retried; the unit of work must therefore be a complete transaction that
+ * is safe to run again from the start.
+ */
+public final class RetryPolicy {
+
+    private static final Logger LOG = Log.getLogger(RetryPolicy.class);
+
+    /**
+     * A database transaction that may be attempted more than once
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    // MySQL error codes: ER_LOCK_DEADLOCK and ER_LOCK_WAIT_TIMEOUT
+    private static final int MYSQL_DEADLOCK = 1213;
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+
+    private static final RetryPolicy DEFAULT = new RetryPolicy(
+            AppConfig.getInt("banking.retry.maxAttempts", 4),
+            AppConfig.getLong("banking.retry.baseDelayMs", 5),
+            AppConfig.getLong("banking.retry.maxDelayMs", 200));
+
+    private static final LongAdder ABORTS = new LongAdder();
+    private static final LongAdder RETRIES = new LongAdder();
+    private static final LongAdder EXHAUSTED = new LongAdder();
+
+    static {
+        Metrics.counter("banking_transaction_aborts_total", "Transactions aborted by deadlock or lock wait timeout", ABORTS::sum);
+        Metrics.counter("banking_transaction_retries_total", "Transaction attempts retried after an abort", RETRIES::sum);
+        Metrics.counter("banking_transaction_retries_exhausted_total", "Transactions that failed on their last attempt",
+                EXHAUSTED::sum);
+    }
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    /**
+     * @param maxAttempts Total attempts including the first one
+     * @param baseDelayMs Backoff ceiling after the first failure; doubles per attempt
+     * @param maxDelayMs Upper bound on any single backoff
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(0, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    }
+
+    /**
+     * @return Policy configured through banking.retry.* settings
+     */
+    public static RetryPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Run a transaction, retrying it when the database aborts it for lock conflicts
+     * @param work Complete transaction
+     * @return Result of the first successful attempt
+     * @throws SQLException the last failure if it was not retryable or attempts ran out
+     */
+    public <T> T execute(SqlWork<T> work) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.run();
+            } catch (SQLException e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                ABORTS.increment();
+                if (attempt >= maxAttempts) {
+                    EXHAUSTED.increment();
+                    throw e;
+                }
+
+                RETRIES.increment();
+                LOG.info("Transaction aborted, retrying", "sqlState", e.getSQLState(), "errorCode", e.getErrorCode(),
+                        "attempt", attempt + 1);
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Check whether an exception means the database rolled the transaction back
+     * because of a deadlock or lock wait timeout
+     * @param e Exception thrown by the driver
+     * @return true if the whole transaction can be retried
+     */
+    public static boolean isRetryable(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                String state = sql.getSQLState();
+                if ("40001".equals(state) || "40P01".equals(state)) {
+                    return true;
+                }
+                int code = sql.getErrorCode();
+                if (code == MYSQL_DEADLOCK || code == MYSQL_LOCK_WAIT_TIMEOUT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sleep for a random time up to min(maxDelay, baseDelay * 2^(attempt-1)) ("full jitter"),
+     * so transactions that collided do not collide again in lockstep
+     */
+    private void backoff(int attempt) throws SQLException {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting to retry transaction", ie);
+        }
+    }
+
+    /**
+     * @return Transactions aborted by the database for deadlocks or lock wait timeouts
+     */
+    public static long getAbortCount() {
+        return ABORTS.sum();
+    }
+
+    /**
+     * @return Retry attempts made after an abort
+     */
+    public static long getRetryCount() {
+        return RETRIES.sum();
+    }
+
+    /**
+     * @return Transactions that still failed after the last attempt
+     */
+    public static long getExhaustedCount() {
+        return EXHAUSTED.sum();
+    }
+}
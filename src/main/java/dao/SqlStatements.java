@@ -0,0 +1,184 @@
+package dao;
+
+/**
+ * SQL Statement Registry
+ * Holds every SQL statement issued by the DAO layer in one place
+ *
+ * The strings are constants so that each one maps to a single entry in the
+ * per-connection prepared statement cache; do not build variations of them
+ * by concatenation at call sites.
+ */
+public final class SqlStatements {
+
+    private SqlStatements() {
+    }
+
+    // ==================
+    // Users
+    // ==================
+
+    public static final String INSERT_USER =
+            "INSERT INTO users (name, email, password_hash) VALUES (?, ?, ?)";
+
+    // LEFT JOIN so users without an account can still log in; one row per account
+    public static final String SELECT_LOGIN_PROFILE =
+            "SELECT u.user_id, u.name, u.email, u.password_hash, a.account_id, a.balance " +
+            "FROM users u " +
+            "LEFT JOIN accounts a ON u.user_id = a.user_id " +
+            "WHERE u.email = ? " +
+            "ORDER BY a.account_id";
+
+    // Only replaces the hash that was verified, so a concurrent password change wins
+    public static final String UPDATE_PASSWORD_HASH =
+            "UPDATE users SET password_hash = ? WHERE user_id = ? AND password_hash = ?";
+
+    public static final String SELECT_USER_PROFILE =
+            "SELECT name, email FROM users WHERE user_id = ?";
+
+    public static final String COUNT_USERS_BY_EMAIL =
+            "SELECT COUNT(*) FROM users WHERE email = ?";
+
+    // ==================
+    // Accounts
+    // ==================
+
+    public static final String SELECT_BALANCE =
+            "SELECT balance FROM accounts WHERE account_id = ?";
+
+    public static final String SELECT_BALANCE_FOR_UPDATE =
+            "SELECT balance FROM accounts WHERE account_id = ? FOR UPDATE";
+
+    public static final String UPDATE_BALANCE =
+            "UPDATE accounts SET balance = ? WHERE account_id = ?";
+
+    public static final String DEBIT_ACCOUNT =
+            "UPDATE accounts SET balance = balance - ? WHERE account_id = ?";
+
+    /** Debit that only applies when the balance covers it; 0 rows means missing account or insufficient funds */
+    public static final String DEBIT_IF_SUFFICIENT =
+            "UPDATE accounts SET balance = balance - ? WHERE account_id = ? AND balance >= ?";
+
+    public static final String CREDIT_ACCOUNT =
+            "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
+
+    public static final String COUNT_ACCOUNTS_BY_ID =
+            "SELECT COUNT(*) FROM accounts WHERE account_id = ?";
+
+    public static final String SELECT_ACCOUNT_ID_BY_USER =
+            "SELECT account_id FROM accounts WHERE user_id = ?";
+
+    public static final String SELECT_ACCOUNT_BY_USER =
+            "SELECT account_id, balance FROM accounts WHERE user_id = ?";
+
+    // Login reads a user's accounts with this when they live on another shard than the users table
+    public static final String SELECT_ACCOUNTS_BY_USER =
+            "SELECT account_id, balance FROM accounts WHERE user_id = ? ORDER BY account_id";
+
+    public static final String INSERT_ACCOUNT =
+            "INSERT INTO accounts (user_id, balance) VALUES (?, ?)";
+
+    // ==================
+    // Transactions
+    // ==================
+
+    public static final String INSERT_TRANSFER =
+            "INSERT INTO transactions (sender_account, receiver_account, amount, status, transaction_type) " +
+            "VALUES (?, ?, ?, 'SUCCESS', 'TRANSFER')";
+
+    public static final String INSERT_WITHDRAWAL =
+            "INSERT INTO transactions (sender_account, receiver_account, amount, status, transaction_type) " +
+            "VALUES (?, ?, ?, 'SUCCESS', 'WITHDRAWAL')";
+
+    public static final String INSERT_FAILED_TRANSFER =
+            "INSERT INTO transactions (sender_account, receiver_account, amount, status, transaction_type) " +
+            "VALUES (?, ?, ?, ?, 'TRANSFER')";
+
+    // History is read as two index range scans merged with UNION ALL: one on
+    // (sender_account, txn_date, txn_id) and one on (receiver_account, txn_date, txn_id).
+    // Withdrawals have sender = receiver, so the receiver branch skips them.
+    // Each branch is limited before the merge, so a page never sorts more than 2 x (page size + 1) rows.
+
+    private static final String HISTORY_COLUMNS =
+            "txn_id, sender_account, receiver_account, amount, txn_date, status, transaction_type";
+
+    /** Page of transactions older than the cursor, newest first */
+    public static final String SELECT_HISTORY_OLDER =
+            "SELECT " + HISTORY_COLUMNS + " FROM (" +
+            "(SELECT " + HISTORY_COLUMNS + " FROM transactions " +
+            "WHERE sender_account = ? AND (txn_date < ? OR (txn_date = ? AND txn_id < ?)) " +
+            "ORDER BY txn_date DESC, txn_id DESC LIMIT ?) " +
+            "UNION ALL " +
+            "(SELECT " + HISTORY_COLUMNS + " FROM transactions " +
+            "WHERE receiver_account = ? AND sender_account <> ? AND (txn_date < ? OR (txn_date = ? AND txn_id < ?)) " +
+            "ORDER BY txn_date DESC, txn_id DESC LIMIT ?)" +
+            ") history ORDER BY txn_date DESC, txn_id DESC LIMIT ?";
+
+    /** Page of transactions newer than the cursor, oldest first (callers reverse it) */
+    public static final String SELECT_HISTORY_NEWER =
+            "SELECT " + HISTORY_COLUMNS + " FROM (" +
+            "(SELECT " + HISTORY_COLUMNS + " FROM transactions " +
+            "WHERE sender_account = ? AND (txn_date > ? OR (txn_date = ? AND txn_id > ?)) " +
+            "ORDER BY txn_date ASC, txn_id ASC LIMIT ?) " +
+            "UNION ALL " +
+            "(SELECT " + HISTORY_COLUMNS + " FROM transactions " +
+            "WHERE receiver_account = ? AND sender_account <> ? AND (txn_date > ? OR (txn_date = ? AND txn_id > ?)) " +
+            "ORDER BY txn_date ASC, txn_id ASC LIMIT ?)" +
+            ") history ORDER BY txn_date ASC, txn_id ASC LIMIT ?";
+
+    /** All transactions of an account in [from, to), oldest first, for streaming export */
+    public static final String SELECT_STATEMENT_RANGE =
+            "SELECT " + HISTORY_COLUMNS + " FROM (" +
+            "SELECT " + HISTORY_COLUMNS + " FROM transactions " +
+            "WHERE sender_account = ? AND txn_date >= ? AND txn_date < ? " +
+            "UNION ALL " +
+            "SELECT " + HISTORY_COLUMNS + " FROM transactions " +
+            "WHERE receiver_account = ? AND sender_account <> ? AND txn_date >= ? AND txn_date < ?" +
+            ") statement ORDER BY txn_date ASC, txn_id ASC";
+
+    // ==================
+    // Idempotency keys
+    // ==================
+
+    /** Claims a key; fails with a duplicate-key error when the user already submitted it */
+    public static final String INSERT_IDEMPOTENCY_KEY =
+            "INSERT INTO idempotency_keys (user_id, idem_key, operation, status, created_at) " +
+            "VALUES (?, ?, ?, 'PENDING', ?)";
+
+    public static final String SELECT_IDEMPOTENCY_KEY =
+            "SELECT operation, status, message, created_at FROM idempotency_keys WHERE user_id = ? AND idem_key = ?";
+
+    /** Claims a key whose row has expired; 0 rows means someone else holds it */
+    public static final String RECLAIM_IDEMPOTENCY_KEY =
+            "UPDATE idempotency_keys SET operation = ?, status = 'PENDING', message = NULL, created_at = ? " +
+            "WHERE user_id = ? AND idem_key = ? AND created_at < ?";
+
+    public static final String COMPLETE_IDEMPOTENCY_KEY =
+            "UPDATE idempotency_keys SET status = ?, message = ? WHERE user_id = ? AND idem_key = ?";
+
+    public static final String DELETE_IDEMPOTENCY_KEY =
+            "DELETE FROM idempotency_keys WHERE user_id = ? AND idem_key = ?";
+
+    public static final String PURGE_IDEMPOTENCY_KEYS =
+            "DELETE FROM idempotency_keys WHERE created_at < ?";
+
+    // ==================
+    // Cross-shard transfers
+    // ==================
+
+    /** Reservation on the sender's shard, written with the debit */
+    public static final String INSERT_SHARD_TRANSFER =
+            "INSERT INTO shard_transfers (transfer_id, sender_account, receiver_account, amount, state, created_at) " +
+            "VALUES (?, ?, ?, ?, 'RESERVED', ?)";
+
+    /** Moves a reservation to COMPLETED or REVERSED; 0 rows means it was already settled */
+    public static final String SETTLE_SHARD_TRANSFER =
+            "UPDATE shard_transfers SET state = ? WHERE transfer_id = ? AND state = 'RESERVED'";
+
+    public static final String SELECT_STALE_SHARD_TRANSFERS =
+            "SELECT transfer_id, sender_account, receiver_account, amount FROM shard_transfers " +
+            "WHERE state = 'RESERVED' AND created_at < ? ORDER BY created_at LIMIT ?";
+
+    /** Marks a transfer credited on the receiver's shard; fails with a duplicate-key error if it already was */
+    public static final String INSERT_SHARD_CREDIT =
+            "INSERT INTO shard_credits (transfer_id, receiver_account, amount, created_at) VALUES (?, ?, ?, ?)";
+}
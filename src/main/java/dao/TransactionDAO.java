@@ -1,11 +1,22 @@
 package dao;
 
+import dao.audit.AuditJournal;
+import dao.audit.AuditOutcome;
+import dao.model.Direction;
+import dao.model.Transaction;
+import dao.model.TransactionType;
+import dao.model.TransferResult;
+import dao.model.TransferStatus;
+import util.AppConfig;
 import util.DBConnection;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.LatencyHistogram;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Transaction Data Access Object
@@ -14,9 +25,22 @@ import java.util.Map;
  */
 public class TransactionDAO {
     
+    private static final Logger LOG = Log.getLogger(TransactionDAO.class);
+    
+    /** Rows per history page */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    
+    private static final LatencyHistogram TRANSFER_LATENCY = DaoMetrics.latency("transferMoney");
+    private static final LatencyHistogram TRANSFER_FUNDS_LATENCY = DaoMetrics.latency("transferFunds");
+    private static final LatencyHistogram WITHDRAW_LATENCY = DaoMetrics.latency("withdrawMoney");
+    private static final LatencyHistogram HISTORY_LATENCY = DaoMetrics.latency("getTransactionHistory");
+    
     /**
      * Transfer money between accounts (ATOMIC TRANSACTION)
-     * Uses database transactions to ensure data integrity
+     * Uses database transactions to ensure data integrity. Both account rows
+     * are locked in ascending account_id order, and a transaction aborted by a
+     * deadlock or lock wait timeout is retried (see RetryPolicy). Accounts on
+     * different shards are transferred by CrossShardTransfers instead.
      * 
      * @param senderAccountId Sender's account ID
      * @param receiverAccountId Receiver's account ID
@@ -24,70 +48,97 @@ public class TransactionDAO {
      * @return true if transfer successful, false otherwise
      */
     public boolean transferMoney(int senderAccountId, int receiverAccountId, double amount) {
+        long start = System.nanoTime();
+        TransferStatus status;
+        try {
+            if (DBConnection.shardOf(senderAccountId) != DBConnection.shardOf(receiverAccountId)) {
+                status = CrossShardTransfers.getInstance().transfer(senderAccountId, receiverAccountId, amount).status();
+            } else {
+                status = RetryPolicy.getDefault().execute(
+                        () -> attemptTransferMoney(senderAccountId, receiverAccountId, amount));
+            }
+        } catch (SQLException e) {
+            LOG.error("Transfer failed", e, "sender", senderAccountId, "receiver", receiverAccountId, "amount", amount);
+            status = TransferStatus.ERROR;
+        }
+        AuditJournal.getInstance().transfer(senderAccountId, receiverAccountId, amount, AuditOutcome.of(status));
+        TRANSFER_LATENCY.recordSince(start);
+        return status.isSuccess();
+    }
+    
+    /**
+     * One attempt at transferMoney
+     * @throws SQLException after rolling back, if the database reports an error
+     */
+    private TransferStatus attemptTransferMoney(int senderAccountId, int receiverAccountId, double amount) throws SQLException {
         Connection conn = null;
-        PreparedStatement pstmtCheckBalance = null;
+        PreparedStatement pstmtLock = null;
         PreparedStatement pstmtDebit = null;
         PreparedStatement pstmtCredit = null;
         PreparedStatement pstmtTransaction = null;
-        ResultSet rs = null;
         
         try {
-            conn = DBConnection.getConnection();
+            conn = DBConnection.getConnection(senderAccountId);
             
             // START TRANSACTION
             conn.setAutoCommit(false);
             
-            // Step 1: Check if sender has sufficient balance
-            String checkBalanceSql = "SELECT balance FROM accounts WHERE account_id = ? FOR UPDATE";
-            pstmtCheckBalance = conn.prepareStatement(checkBalanceSql);
-            pstmtCheckBalance.setInt(1, senderAccountId);
-            rs = pstmtCheckBalance.executeQuery();
+            // Step 1: Lock both accounts, lowest account_id first. Every transfer takes
+            // its locks in the same global order, so A->B and B->A cannot deadlock
+            pstmtLock = conn.prepareStatement(SqlStatements.SELECT_BALANCE_FOR_UPDATE);
+            int firstId = Math.min(senderAccountId, receiverAccountId);
+            int secondId = Math.max(senderAccountId, receiverAccountId);
+            Double firstBalance = lockBalance(pstmtLock, firstId);
+            Double secondBalance = firstId == secondId ? firstBalance : lockBalance(pstmtLock, secondId);
             
-            if (!rs.next()) {
-                System.err.println("Sender account not found!");
+            Double senderBalance = senderAccountId == firstId ? firstBalance : secondBalance;
+            Double receiverBalance = receiverAccountId == firstId ? firstBalance : secondBalance;
+            
+            if (senderBalance == null) {
+                LOG.info("Transfer rejected: sender account not found", "sender", senderAccountId);
                 conn.rollback();
-                return false;
+                return TransferStatus.SENDER_NOT_FOUND;
             }
             
-            double senderBalance = rs.getDouble("balance");
+            if (receiverBalance == null) {
+                LOG.info("Transfer rejected: receiver account not found", "receiver", receiverAccountId);
+                conn.rollback();
+                return TransferStatus.RECEIVER_NOT_FOUND;
+            }
             
             // Validate sufficient balance
             if (senderBalance < amount) {
-                System.err.println("Insufficient balance! Available: " + senderBalance);
+                LOG.info("Transfer rejected: insufficient balance", "sender", senderAccountId, "available", senderBalance);
                 conn.rollback();
-                return false;
+                return TransferStatus.INSUFFICIENT_FUNDS;
             }
             
             // Step 2: Debit from sender's account
-            String debitSql = "UPDATE accounts SET balance = balance - ? WHERE account_id = ?";
-            pstmtDebit = conn.prepareStatement(debitSql);
+            pstmtDebit = conn.prepareStatement(SqlStatements.DEBIT_ACCOUNT);
             pstmtDebit.setDouble(1, amount);
             pstmtDebit.setInt(2, senderAccountId);
             int debitRows = pstmtDebit.executeUpdate();
             
             if (debitRows == 0) {
-                System.err.println("Failed to debit sender account!");
+                LOG.warn("Transfer aborted: debit updated no rows", "sender", senderAccountId);
                 conn.rollback();
-                return false;
+                return TransferStatus.ERROR;
             }
             
             // Step 3: Credit to receiver's account
-            String creditSql = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
-            pstmtCredit = conn.prepareStatement(creditSql);
+            pstmtCredit = conn.prepareStatement(SqlStatements.CREDIT_ACCOUNT);
             pstmtCredit.setDouble(1, amount);
             pstmtCredit.setInt(2, receiverAccountId);
             int creditRows = pstmtCredit.executeUpdate();
             
             if (creditRows == 0) {
-                System.err.println("Failed to credit receiver account!");
+                LOG.warn("Transfer aborted: credit updated no rows", "receiver", receiverAccountId);
                 conn.rollback();
-                return false;
+                return TransferStatus.RECEIVER_NOT_FOUND;
             }
             
             // Step 4: Record transaction
-            String transactionSql = "INSERT INTO transactions (sender_account, receiver_account, amount, status, transaction_type) " +
-                                   "VALUES (?, ?, ?, 'SUCCESS', 'TRANSFER')";
-            pstmtTransaction = conn.prepareStatement(transactionSql);
+            pstmtTransaction = conn.prepareStatement(SqlStatements.INSERT_TRANSFER);
             pstmtTransaction.setInt(1, senderAccountId);
             pstmtTransaction.setInt(2, receiverAccountId);
             pstmtTransaction.setDouble(3, amount);
@@ -95,51 +146,300 @@ public class TransactionDAO {
             
             // COMMIT TRANSACTION - All operations successful
             conn.commit();
-            System.out.println("Transaction successful! Amount: " + amount);
-            return true;
-            
+            BalanceCache.getInstance().invalidate(senderAccountId);
+            BalanceCache.getInstance().invalidate(receiverAccountId);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Transfer committed", "sender", senderAccountId, "receiver", receiverAccountId, "amount", amount);
+            }
+            return TransferStatus.SUCCESS;
+        
         } catch (SQLException e) {
-            System.err.println("Transaction failed: " + e.getMessage());
-            e.printStackTrace();
-            
-            // ROLLBACK on error - Undo all changes
+            // ROLLBACK on error - Undo all changes, then let the retry policy decide
+            rollbackQuietly(conn);
+            throw e;
+        
+        } finally {
+            // Close all resources
             try {
+                if (pstmtTransaction != null) pstmtTransaction.close();
+                if (pstmtCredit != null) pstmtCredit.close();
+                if (pstmtDebit != null) pstmtDebit.close();
+                if (pstmtLock != null) pstmtLock.close();
                 if (conn != null) {
-                    conn.rollback();
-                    System.out.println("Transaction rolled back due to error.");
+                    conn.setAutoCommit(true);
+                    conn.close();
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            } catch (SQLException e) {
+                LOG.warn("Error closing JDBC resources", e);
+            }
+        }
+    }
+    
+    /**
+     * Lock an account row and read its balance
+     * @param pstmtLock Prepared SELECT_BALANCE_FOR_UPDATE
+     * @param accountId Account ID
+     * @return Balance, or null if the account does not exist
+     */
+    static Double lockBalance(PreparedStatement pstmtLock, int accountId) throws SQLException {
+        pstmtLock.setInt(1, accountId);
+        ResultSet rs = pstmtLock.executeQuery();
+        try {
+            if (rs.next()) {
+                return rs.getDouble("balance");
+            }
+            return null;
+        } finally {
+            rs.close();
+        }
+    }
+    
+    /**
+     * Transfer money using conditional updates (ATOMIC TRANSACTION)
+     * Single-connection alternative to accountExists + getBalance + transferMoney:
+     * the debit only applies when the sender's balance covers the amount, a
+     * missing receiver shows up as a credit that touched no rows, and the new
+     * sender balance is read back inside the same transaction. The two updates
+     * run in ascending account_id order, like transferMoney's locks. Accounts
+     * on different shards are transferred by CrossShardTransfers instead.
+     * 
+     * @param senderAccountId Sender's account ID
+     * @param receiverAccountId Receiver's account ID
+     * @param amount Amount to transfer
+     * @return Outcome and the sender's resulting balance
+     */
+    public TransferResult transferFunds(int senderAccountId, int receiverAccountId, double amount) {
+        long start = System.nanoTime();
+        TransferResult result;
+        try {
+            if (DBConnection.shardOf(senderAccountId) != DBConnection.shardOf(receiverAccountId)) {
+                result = CrossShardTransfers.getInstance().transfer(senderAccountId, receiverAccountId, amount);
+            } else {
+                result = RetryPolicy.getDefault().execute(
+                        () -> attemptTransferFunds(senderAccountId, receiverAccountId, amount));
             }
-            return false;
+        } catch (SQLException e) {
+            LOG.error("Transfer failed", e, "sender", senderAccountId, "receiver", receiverAccountId, "amount", amount);
+            result = TransferResult.failure(TransferStatus.ERROR);
+        }
+        AuditJournal.getInstance().transfer(senderAccountId, receiverAccountId, amount, AuditOutcome.of(result.status()));
+        TRANSFER_FUNDS_LATENCY.recordSince(start);
+        return result;
+    }
+    
+    /**
+     * One attempt at transferFunds
+     * @throws SQLException after rolling back, if the database reports an error
+     */
+    private TransferResult attemptTransferFunds(int senderAccountId, int receiverAccountId, double amount) throws SQLException {
+        Connection conn = null;
+        PreparedStatement pstmtTransaction = null;
+        PreparedStatement pstmtBalance = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DBConnection.getConnection(senderAccountId);
+            
+            // START TRANSACTION
+            conn.setAutoCommit(false);
+            
+            // Step 1: Update both rows, lowest account_id first. The debit only applies
+            // if the balance covers the amount; a credit that touches no rows means the
+            // receiver does not exist
+            boolean creditFirst = receiverAccountId < senderAccountId;
+            
+            if (creditFirst && credit(conn, receiverAccountId, amount) == 0) {
+                // Not recorded as a failed transaction: receiver_account references accounts
+                LOG.info("Transfer rejected: receiver account not found", "receiver", receiverAccountId);
+                conn.rollback();
+                return TransferResult.failure(TransferStatus.RECEIVER_NOT_FOUND);
+            }
+            
+            if (debitIfSufficient(conn, senderAccountId, amount) == 0) {
+                conn.rollback();
+                return rejectDebit(conn, senderAccountId, receiverAccountId, amount);
+            }
+            
+            if (!creditFirst && credit(conn, receiverAccountId, amount) == 0) {
+                LOG.info("Transfer rejected: receiver account not found", "receiver", receiverAccountId);
+                conn.rollback();
+                return TransferResult.failure(TransferStatus.RECEIVER_NOT_FOUND);
+            }
+            
+            // Step 2: Record transaction
+            pstmtTransaction = conn.prepareStatement(SqlStatements.INSERT_TRANSFER);
+            pstmtTransaction.setInt(1, senderAccountId);
+            pstmtTransaction.setInt(2, receiverAccountId);
+            pstmtTransaction.setDouble(3, amount);
+            pstmtTransaction.executeUpdate();
+            
+            // Step 3: Read the sender's new balance while the row is still locked by us
+            pstmtBalance = conn.prepareStatement(SqlStatements.SELECT_BALANCE);
+            pstmtBalance.setInt(1, senderAccountId);
+            rs = pstmtBalance.executeQuery();
+            double newBalance = rs.next() ? rs.getDouble("balance") : Double.NaN;
+            
+            // COMMIT TRANSACTION - All operations successful
+            conn.commit();
             
+            // Another writer may commit before this line runs, so drop the entries rather than write newBalance
+            BalanceCache cache = BalanceCache.getInstance();
+            cache.invalidate(senderAccountId);
+            cache.invalidate(receiverAccountId);
+            
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Transfer committed", "sender", senderAccountId, "receiver", receiverAccountId, "amount", amount);
+            }
+            return TransferResult.success(newBalance);
+        
+        } catch (SQLException e) {
+            // ROLLBACK on error - Undo all changes, then let the retry policy decide
+            rollbackQuietly(conn);
+            throw e;
+        
         } finally {
             // Close all resources
             try {
                 if (rs != null) rs.close();
+                if (pstmtBalance != null) pstmtBalance.close();
                 if (pstmtTransaction != null) pstmtTransaction.close();
-                if (pstmtCredit != null) pstmtCredit.close();
-                if (pstmtDebit != null) pstmtDebit.close();
-                if (pstmtCheckBalance != null) pstmtCheckBalance.close();
                 if (conn != null) {
                     conn.setAutoCommit(true);
                     conn.close();
                 }
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
+            }
+        }
+    }
+    
+    /**
+     * Work out why a conditional debit touched no rows, after the transfer was rolled back
+     * Records a failed transaction when the sender exists but is short of funds.
+     */
+    static TransferResult rejectDebit(Connection conn, int senderAccountId, int receiverAccountId,
+                                              double amount) throws SQLException {
+        double available;
+        PreparedStatement pstmtBalance = conn.prepareStatement(SqlStatements.SELECT_BALANCE);
+        try {
+            pstmtBalance.setInt(1, senderAccountId);
+            ResultSet rs = pstmtBalance.executeQuery();
+            try {
+                if (!rs.next()) {
+                    LOG.info("Transfer rejected: sender account not found", "sender", senderAccountId);
+                    return TransferResult.failure(TransferStatus.SENDER_NOT_FOUND);
+                }
+                available = rs.getDouble("balance");
+            } finally {
+                rs.close();
+            }
+        } finally {
+            pstmtBalance.close();
+        }
+        LOG.info("Transfer rejected: insufficient balance", "sender", senderAccountId, "available", available);
+        
+        try {
+            insertFailedTransfer(conn, senderAccountId, receiverAccountId, amount, "Insufficient balance");
+            conn.commit();
+        } catch (SQLException e) {
+            // Typically an unknown receiver (foreign key); the outcome is still insufficient funds
+            LOG.warn("Could not record failed transfer", "sender", senderAccountId, "receiver", receiverAccountId,
+                    "error", e.getMessage());
+            conn.rollback();
+        }
+        return new TransferResult(TransferStatus.INSUFFICIENT_FUNDS, available);
+    }
+    
+    /**
+     * Debit an account only if its balance covers the amount
+     * @return Rows updated: 0 if the account is missing or short of funds
+     */
+    static int debitIfSufficient(Connection conn, int accountId, double amount) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(SqlStatements.DEBIT_IF_SUFFICIENT);
+        try {
+            pstmt.setDouble(1, amount);
+            pstmt.setInt(2, accountId);
+            pstmt.setDouble(3, amount);
+            return pstmt.executeUpdate();
+        } finally {
+            pstmt.close();
+        }
+    }
+    
+    /**
+     * Credit an account
+     * @return Rows updated: 0 if the account is missing
+     */
+    static int credit(Connection conn, int accountId, double amount) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(SqlStatements.CREDIT_ACCOUNT);
+        try {
+            pstmt.setDouble(1, amount);
+            pstmt.setInt(2, accountId);
+            return pstmt.executeUpdate();
+        } finally {
+            pstmt.close();
+        }
+    }
+    
+    /**
+     * Roll back after an error, logging rather than masking the original failure
+     */
+    static void rollbackQuietly(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.rollback();
+                LOG.debug("Transaction rolled back after an error");
             }
+        } catch (SQLException ex) {
+            LOG.warn("Rollback failed", ex);
+        }
+    }
+    
+    /**
+     * Insert a failed-transfer row on an existing connection
+     */
+    static void insertFailedTransfer(Connection conn, int senderAccountId, int receiverAccountId,
+                                             double amount, String reason) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(SqlStatements.INSERT_FAILED_TRANSFER);
+        try {
+            pstmt.setInt(1, senderAccountId);
+            pstmt.setInt(2, receiverAccountId);
+            pstmt.setDouble(3, amount);
+            pstmt.setString(4, "FAILED: " + reason);
+            pstmt.executeUpdate();
+        } finally {
+            pstmt.close();
         }
     }
     
     /**
      * Withdraw money from an account (ATOMIC TRANSACTION)
-     * Uses database transactions to ensure data integrity
+     * Uses database transactions to ensure data integrity; retried on
+     * deadlock or lock wait timeout (see RetryPolicy)
      * 
      * @param accountId Account ID to withdraw from
      * @param amount Amount to withdraw
      * @return true if withdrawal successful, false otherwise
      */
     public boolean withdrawMoney(int accountId, double amount) {
+        long start = System.nanoTime();
+        TransferStatus status;
+        try {
+            status = RetryPolicy.getDefault().execute(() -> attemptWithdrawMoney(accountId, amount));
+        } catch (SQLException e) {
+            LOG.error("Withdrawal failed", e, "account", accountId, "amount", amount);
+            status = TransferStatus.ERROR;
+        }
+        AuditJournal.getInstance().withdrawal(accountId, amount, AuditOutcome.of(status));
+        WITHDRAW_LATENCY.recordSince(start);
+        return status.isSuccess();
+    }
+    
+    /**
+     * One attempt at withdrawMoney
+     * @throws SQLException after rolling back, if the database reports an error
+     */
+    private TransferStatus attemptWithdrawMoney(int accountId, double amount) throws SQLException {
         Connection conn = null;
         PreparedStatement pstmtCheckBalance = null;
         PreparedStatement pstmtDebit = null;
@@ -147,48 +447,47 @@ public class TransactionDAO {
         ResultSet rs = null;
         
         try {
-            conn = DBConnection.getConnection();
+            conn = DBConnection.getConnection(accountId);
             
             // START TRANSACTION
             conn.setAutoCommit(false);
             
             // Step 1: Check if account has sufficient balance
-            String checkBalanceSql = "SELECT balance FROM accounts WHERE account_id = ? FOR UPDATE";
+            String checkBalanceSql = SqlStatements.SELECT_BALANCE_FOR_UPDATE;
             pstmtCheckBalance = conn.prepareStatement(checkBalanceSql);
             pstmtCheckBalance.setInt(1, accountId);
             rs = pstmtCheckBalance.executeQuery();
             
             if (!rs.next()) {
-                System.err.println("Account not found!");
+                LOG.info("Withdrawal rejected: account not found", "account", accountId);
                 conn.rollback();
-                return false;
+                return TransferStatus.SENDER_NOT_FOUND;
             }
             
             double accountBalance = rs.getDouble("balance");
             
             // Validate sufficient balance
             if (accountBalance < amount) {
-                System.err.println("Insufficient balance! Available: " + accountBalance);
+                LOG.info("Withdrawal rejected: insufficient balance", "account", accountId, "available", accountBalance);
                 conn.rollback();
-                return false;
+                return TransferStatus.INSUFFICIENT_FUNDS;
             }
             
             // Step 2: Debit from account
-            String debitSql = "UPDATE accounts SET balance = balance - ? WHERE account_id = ?";
+            String debitSql = SqlStatements.DEBIT_ACCOUNT;
             pstmtDebit = conn.prepareStatement(debitSql);
             pstmtDebit.setDouble(1, amount);
             pstmtDebit.setInt(2, accountId);
             int debitRows = pstmtDebit.executeUpdate();
             
             if (debitRows == 0) {
-                System.err.println("Failed to debit account!");
+                LOG.warn("Withdrawal aborted: debit updated no rows", "account", accountId);
                 conn.rollback();
-                return false;
+                return TransferStatus.ERROR;
             }
             
             // Step 3: Record transaction (sender and receiver are the same for withdrawal)
-            String transactionSql = "INSERT INTO transactions (sender_account, receiver_account, amount, status, transaction_type) " +
-                                   "VALUES (?, ?, ?, 'SUCCESS', 'WITHDRAWAL')";
+            String transactionSql = SqlStatements.INSERT_WITHDRAWAL;
             pstmtTransaction = conn.prepareStatement(transactionSql);
             pstmtTransaction.setInt(1, accountId);
             pstmtTransaction.setInt(2, accountId);
@@ -197,24 +496,17 @@ public class TransactionDAO {
             
             // COMMIT TRANSACTION - All operations successful
             conn.commit();
-            System.out.println("Withdrawal successful! Amount: " + amount);
-            return true;
-            
-        } catch (SQLException e) {
-            System.err.println("Withdrawal failed: " + e.getMessage());
-            e.printStackTrace();
-            
-            // ROLLBACK on error - Undo all changes
-            try {
-                if (conn != null) {
-                    conn.rollback();
-                    System.out.println("Transaction rolled back due to error.");
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            BalanceCache.getInstance().invalidate(accountId);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Withdrawal committed", "account", accountId, "amount", amount);
             }
-            return false;
-            
+            return TransferStatus.SUCCESS;
+        
+        } catch (SQLException e) {
+            // ROLLBACK on error - Undo all changes, then let the retry policy decide
+            rollbackQuietly(conn);
+            throw e;
+        
         } finally {
             // Close all resources
             try {
@@ -227,78 +519,218 @@ public class TransactionDAO {
                     conn.close();
                 }
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
     }
     
     /**
-     * Get transaction history for a user's account
+     * Get the most recent transactions for a user's account
+     * @param accountId Account ID
+     * @return List of transactions (first page of history)
+     */
+    public List<Transaction> getTransactionHistory(int accountId) {
+        return getTransactionHistoryPage(accountId, null, false, DEFAULT_PAGE_SIZE).getTransactions();
+    }
+    
+    /**
+     * Get one page of transaction history using keyset pagination
+     * Rows are ordered by (txn_date, txn_id) descending; the cursor marks the
+     * row the page starts after, so every page is a bounded index range scan.
+     * Served by a read replica when there are any.
+     * 
      * @param accountId Account ID
-     * @return List of transactions
+     * @param cursor Page boundary, or null for the most recent page
+     * @param newer true to fetch the page newer than the cursor, false for the page older than it
+     * @param pageSize Maximum rows on the page
+     * @return Page of transactions with cursors for the neighbouring pages
      */
-    public List<Map<String, Object>> getTransactionHistory(int accountId) {
-        List<Map<String, Object>> transactions = new ArrayList<>();
+    public TransactionPage getTransactionHistoryPage(int accountId, HistoryCursor cursor, boolean newer, int pageSize) {
+        long start = System.nanoTime();
+        TransactionPage page = loadTransactionHistoryPage(accountId, cursor, newer, pageSize);
+        HISTORY_LATENCY.recordSince(start);
+        return page;
+    }
+    
+    private TransactionPage loadTransactionHistoryPage(int accountId, HistoryCursor cursor, boolean newer, int pageSize) {
+        List<Transaction> transactions = new ArrayList<>(pageSize);
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         
+        if (cursor == null) {
+            cursor = newer ? HistoryCursor.OLDEST : HistoryCursor.NEWEST;
+        }
+        
+        // Fetch one extra row per page to learn whether another page exists
+        int fetchSize = pageSize + 1;
+        boolean hasMore = false;
+        
         try {
-            conn = DBConnection.getConnection();
+            conn = DBConnection.getReadConnection(accountId);
+            
+            pstmt = conn.prepareStatement(newer ? SqlStatements.SELECT_HISTORY_NEWER : SqlStatements.SELECT_HISTORY_OLDER);
+            Timestamp boundary = cursor.getTxnDate();
+            int i = 1;
+            // Sender branch
+            pstmt.setInt(i++, accountId);
+            pstmt.setTimestamp(i++, boundary);
+            pstmt.setTimestamp(i++, boundary);
+            pstmt.setInt(i++, cursor.getTxnId());
+            pstmt.setInt(i++, fetchSize);
+            // Receiver branch
+            pstmt.setInt(i++, accountId);
+            pstmt.setInt(i++, accountId);
+            pstmt.setTimestamp(i++, boundary);
+            pstmt.setTimestamp(i++, boundary);
+            pstmt.setInt(i++, cursor.getTxnId());
+            pstmt.setInt(i++, fetchSize);
+            // Merged result
+            pstmt.setInt(i, fetchSize);
             
-            // Query to get all transactions where user is sender or receiver
-            String sql = "SELECT txn_id, sender_account, receiver_account, amount, txn_date, status, transaction_type " +
-                        "FROM transactions " +
-                        "WHERE sender_account = ? OR receiver_account = ? " +
-                        "ORDER BY txn_date DESC " +
-                        "LIMIT 50";
+            rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                if (transactions.size() == pageSize) {
+                    hasMore = true;
+                    break;
+                }
+                transactions.add(mapTransaction(rs, accountId));
+            }
+            
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Transaction history read", "account", accountId, "rows", transactions.size());
+            }
+            
+        } catch (SQLException e) {
+            LOG.error("Error fetching transactions", e, "account", accountId);
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (pstmt != null) pstmt.close();
+                if (conn != null) conn.close();
+            } catch (SQLException e) {
+                LOG.warn("Error closing JDBC resources", e);
+            }
+        }
+        
+        if (newer) {
+            // Newer pages are read oldest first; flip them to newest first for display
+            Collections.reverse(transactions);
+        }
+        
+        HistoryCursor first = transactions.isEmpty() ? null : cursorOf(transactions.get(0));
+        HistoryCursor last = transactions.isEmpty() ? null : cursorOf(transactions.get(transactions.size() - 1));
+        
+        HistoryCursor olderCursor;
+        HistoryCursor newerCursor;
+        if (newer) {
+            // We came from an older page, so an older page always exists
+            olderCursor = last;
+            newerCursor = hasMore ? first : null;
+        } else {
+            olderCursor = hasMore ? last : null;
+            newerCursor = cursor == HistoryCursor.NEWEST ? null : first;
+        }
+        
+        return new TransactionPage(transactions, olderCursor, newerCursor);
+    }
+    
+    /**
+     * Stream all transactions of an account in a date range to a handler
+     * Uses a forward-only, read-only result set with driver-level row streaming,
+     * so memory use does not grow with the number of rows exported.
+     * Unlike the other DAO methods, errors are thrown: once rows have been
+     * handed to the caller there is no sensible default to return.
+     * Served by a read replica when there are any.
+     * 
+     * @param accountId Account ID
+     * @param from Inclusive start of the range
+     * @param to Exclusive end of the range
+     * @param handler Receives each row, oldest first
+     * @return Number of rows streamed
+     * @throws SQLException if the query fails
+     * @throws IOException if the handler fails to write a row
+     */
+    public long streamTransactions(int accountId, Timestamp from, Timestamp to, TransactionRowHandler handler)
+            throws SQLException, IOException {
+        Connection conn = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        long rows = 0;
+        
+        try {
+            conn = DBConnection.getReadConnection(accountId);
+            
+            // Three-argument prepare bypasses the statement cache: a streaming
+            // statement holds the connection until it is fully read
+            pstmt = conn.prepareStatement(SqlStatements.SELECT_STATEMENT_RANGE,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(streamingFetchSize(conn));
             
-            pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, accountId);
-            pstmt.setInt(2, accountId);
+            pstmt.setTimestamp(2, from);
+            pstmt.setTimestamp(3, to);
+            pstmt.setInt(4, accountId);
+            pstmt.setInt(5, accountId);
+            pstmt.setTimestamp(6, from);
+            pstmt.setTimestamp(7, to);
             
             rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                Map<String, Object> transaction = new HashMap<>();
-                transaction.put("txnId", rs.getInt("txn_id"));
-                transaction.put("senderAccount", rs.getInt("sender_account"));
-                transaction.put("receiverAccount", rs.getInt("receiver_account"));
-                transaction.put("amount", rs.getDouble("amount"));
-                transaction.put("date", rs.getTimestamp("txn_date"));
-                transaction.put("status", rs.getString("status"));
-                
-                String transactionType = rs.getString("transaction_type");
-                transaction.put("transactionType", transactionType);
-                
-                // Determine transaction type (Sent, Received, or Withdrawal)
-                if ("WITHDRAWAL".equals(transactionType)) {
-                    transaction.put("type", "WITHDRAWAL");
-                } else if (rs.getInt("sender_account") == accountId) {
-                    transaction.put("type", "SENT");
-                } else {
-                    transaction.put("type", "RECEIVED");
-                }
-                
-                transactions.add(transaction);
+                handler.onRow(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getDouble(4),
+                              rs.getTimestamp(5), rs.getString(6), rs.getString(7));
+                rows++;
             }
             
-            System.out.println("Retrieved " + transactions.size() + " transactions for account: " + accountId);
+            LOG.debug("Transactions streamed", "account", accountId, "rows", rows);
+            return rows;
             
-        } catch (SQLException e) {
-            System.err.println("Error fetching transactions: " + e.getMessage());
-            e.printStackTrace();
         } finally {
             try {
                 if (rs != null) rs.close();
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
+    }
+    
+    /**
+     * Fetch size that makes the driver stream rows instead of buffering the whole result
+     */
+    private static int streamingFetchSize(Connection conn) throws SQLException {
+        // MySQL Connector/J only streams row by row with Integer.MIN_VALUE
+        // (unless useCursorFetch=true is set on the URL)
+        String driver = conn.getMetaData().getDriverName();
+        if (driver != null && driver.contains("MySQL") && !conn.getMetaData().getURL().contains("useCursorFetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return AppConfig.getInt("banking.export.fetchSize", 1000);
+    }
+    
+    /**
+     * Map the current history row, classifying it relative to the viewing account
+     */
+    private static Transaction mapTransaction(ResultSet rs, int accountId) throws SQLException {
+        int senderAccount = rs.getInt("sender_account");
+        TransactionType type = TransactionType.fromColumn(rs.getString("transaction_type"));
         
-        return transactions;
+        return new Transaction(
+                rs.getInt("txn_id"),
+                senderAccount,
+                rs.getInt("receiver_account"),
+                rs.getDouble("amount"),
+                rs.getTimestamp("txn_date").getTime(),
+                rs.getString("status"),
+                type,
+                Direction.of(type, senderAccount, accountId));
+    }
+    
+    private static HistoryCursor cursorOf(Transaction transaction) {
+        return new HistoryCursor(transaction.txnDateMillis(), transaction.txnId());
     }
     
     /**
@@ -309,13 +741,14 @@ public class TransactionDAO {
      * @param reason Failure reason
      */
     public void recordFailedTransaction(int senderAccountId, int receiverAccountId, double amount, String reason) {
+        AuditJournal.getInstance().transfer(senderAccountId, receiverAccountId, amount, AuditOutcome.REJECTED);
+        
         Connection conn = null;
         PreparedStatement pstmt = null;
         
         try {
-            conn = DBConnection.getConnection();
-            String sql = "INSERT INTO transactions (sender_account, receiver_account, amount, status, transaction_type) " +
-                        "VALUES (?, ?, ?, ?, 'TRANSFER')";
+            conn = DBConnection.getConnection(senderAccountId);
+            String sql = SqlStatements.INSERT_FAILED_TRANSFER;
             
             pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, senderAccountId);
@@ -326,14 +759,13 @@ public class TransactionDAO {
             pstmt.executeUpdate();
             
         } catch (SQLException e) {
-            System.err.println("Error recording failed transaction: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error recording failed transaction", e, "sender", senderAccountId, "receiver", receiverAccountId);
         } finally {
             try {
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
     }
@@ -0,0 +1,46 @@
+package dao;
+
+import dao.model.Transaction;
+import java.util.List;
+
+/**
+ * Transaction Page
+ * One page of transaction history, newest first, with cursors to its neighbours
+ */
+public final class TransactionPage {
+    
+    private final List<Transaction> transactions;
+    private final HistoryCursor olderCursor;
+    private final HistoryCursor newerCursor;
+    
+    /**
+     * @param transactions Rows on this page, newest first
+     * @param olderCursor Cursor for the next (older) page, or null if this is the last page
+     * @param newerCursor Cursor for the previous (newer) page, or null if this is the first page
+     */
+    public TransactionPage(List<Transaction> transactions, HistoryCursor olderCursor, HistoryCursor newerCursor) {
+        this.transactions = transactions;
+        this.olderCursor = olderCursor;
+        this.newerCursor = newerCursor;
+    }
+    
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+    
+    public HistoryCursor getOlderCursor() {
+        return olderCursor;
+    }
+    
+    public HistoryCursor getNewerCursor() {
+        return newerCursor;
+    }
+    
+    public boolean hasOlder() {
+        return olderCursor != null;
+    }
+    
+    public boolean hasNewer() {
+        return newerCursor != null;
+    }
+}
@@ -0,0 +1,27 @@
+package dao;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+
+/**
+ * Transaction Row Handler
+ * Receives transaction rows one at a time while a result set is streamed,
+ * so callers never hold more than the current row in memory
+ */
+@FunctionalInterface
+public interface TransactionRowHandler {
+    
+    /**
+     * Handle one transaction row
+     * @param txnId Transaction ID
+     * @param senderAccount Sender account ID
+     * @param receiverAccount Receiver account ID
+     * @param amount Amount moved
+     * @param txnDate Transaction timestamp
+     * @param status Transaction status
+     * @param transactionType TRANSFER or WITHDRAWAL
+     * @throws IOException if the row cannot be written to its destination
+     */
+    void onRow(int txnId, int senderAccount, int receiverAccount, double amount,
+               Timestamp txnDate, String status, String transactionType) throws IOException;
+}
@@ -0,0 +1,439 @@
+package dao;
+
+import dao.audit.AuditJournal;
+import dao.audit.AuditOutcome;
+import dao.model.TransferResult;
+import dao.model.TransferStatus;
+import util.AppConfig;
+import util.DBConnection;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.Metrics;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transfer Batcher
+ * Group-commit engine for transfers: callers enqueue requests and get a
+ * future, and a single writer thread applies up to maxBatchSize requests (or
+ * whatever arrived within maxWaitMicros of the first one) in one database
+ * transaction, so the batch shares a single commit.
+ *
+ * Inside the batch every account involved is locked in ascending account_id
+ * order (the same order TransactionDAO uses), each request runs under its own
+ * savepoint so a rejected or failing request does not affect the others, and
+ * the transaction rows are written with one JDBC batch insert. If the batch
+ * as a whole cannot be committed, its requests are re-applied one at a time
+ * through TransactionDAO.transferFunds. When accounts are sharded no single
+ * transaction can hold a batch, so every request takes that path.
+ */
+public final class TransferBatcher implements AutoCloseable {
+
+    private static final Logger LOG = Log.getLogger(TransferBatcher.class);
+
+    private static volatile TransferBatcher instance;
+
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Request> queue;
+    private final Thread writer;
+    private final TransactionDAO fallback = new TransactionDAO();
+    private volatile boolean running = true;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Get the shared batcher, starting it on first use
+     * Configured with banking.batch.maxSize, banking.batch.maxWaitMicros and banking.batch.queueCapacity
+     * @return Transfer batcher
+     */
+    public static TransferBatcher getInstance() {
+        TransferBatcher current = instance;
+        if (current == null) {
+            synchronized (TransferBatcher.class) {
+                current = instance;
+                if (current == null) {
+                    current = new TransferBatcher(
+                            AppConfig.getInt("banking.batch.maxSize", 64),
+                            AppConfig.getLong("banking.batch.maxWaitMicros", 500),
+                            AppConfig.getInt("banking.batch.queueCapacity", 10000));
+                    registerMetrics(current);
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static void registerMetrics(TransferBatcher batcher) {
+        Metrics.counter("banking_transfer_batches_total", "Batches committed by the transfer batcher", batcher::getBatchCount);
+        Metrics.counter("banking_transfer_batch_requests_total", "Transfers submitted to the batcher", batcher::getRequestCount);
+        Metrics.counter("banking_transfer_batch_fallbacks_total", "Transfers re-applied one at a time after a failed batch",
+                batcher::getFallbackCount);
+        Metrics.counter("banking_transfer_batch_rejections_total", "Transfers refused because the batch queue was full",
+                batcher::getRejectionCount);
+        Metrics.gauge("banking_transfer_batch_queue_depth", "Transfers waiting for the batch writer", batcher::getQueueDepth);
+    }
+
+    /**
+     * Stop the shared batcher, if it was started
+     * Requests already queued are still applied.
+     */
+    public static void shutdown() {
+        TransferBatcher current;
+        synchronized (TransferBatcher.class) {
+            current = instance;
+            instance = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Create a batcher and start its writer thread
+     * @param maxBatchSize Maximum requests per database transaction
+     * @param maxWaitMicros How long to keep collecting after the first request of a batch arrives
+     * @param queueCapacity Maximum queued requests; further submissions are rejected
+     */
+    public TransferBatcher(int maxBatchSize, long maxWaitMicros, int queueCapacity) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxWaitMicros));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writer = new Thread(this::drainLoop, "transfer-batcher");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a transfer
+     * @param senderAccountId Sender's account ID
+     * @param receiverAccountId Receiver's account ID
+     * @param amount Amount to transfer
+     * @return Future completed with the outcome once the batch containing the transfer commits;
+     *         already completed with ERROR if the batcher is stopped or its queue is full
+     */
+    public CompletableFuture<TransferResult> submit(int senderAccountId, int receiverAccountId, double amount) {
+        Request request = new Request(senderAccountId, receiverAccountId, amount);
+        if (!running || !queue.offer(request)) {
+            rejections.increment();
+            LOG.warn(running ? "Transfer batcher full, transfer rejected" : "Transfer batcher stopped, transfer rejected",
+                    "sender", senderAccountId, "receiver", receiverAccountId);
+            request.future.complete(TransferResult.failure(TransferStatus.ERROR));
+        } else if (!running && queue.remove(request)) {
+            // Stopped between the check and the offer, possibly after the writer's last poll
+            rejections.increment();
+            request.future.complete(TransferResult.failure(TransferStatus.ERROR));
+        }
+        return request.future;
+    }
+
+    /**
+     * Stop accepting transfers, apply the ones already queued and stop the writer
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Keep collecting until the batch is full or the wait window closes
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                applyBatch(batch);
+
+            } catch (InterruptedException e) {
+                // Interrupted while collecting, so nothing in the batch was applied
+                running = false;
+                fail(batch);
+            } catch (RuntimeException e) {
+                LOG.error("Transfer batch failed", e);
+                fail(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Requests offered after the last poll would otherwise never complete
+        Request pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.complete(TransferResult.failure(TransferStatus.ERROR));
+        }
+    }
+
+    private static void fail(List<Request> batch) {
+        for (Request request : batch) {
+            request.future.complete(TransferResult.failure(TransferStatus.ERROR));
+        }
+    }
+
+    /**
+     * Apply a batch in one transaction, falling back to individual transfers if it cannot commit
+     */
+    private void applyBatch(List<Request> batch) {
+        if (DBConnection.getShardCount() > 1) {
+            for (Request request : batch) {
+                request.future.complete(fallback.transferFunds(request.senderAccountId, request.receiverAccountId, request.amount));
+            }
+            return;
+        }
+        batches.increment();
+        requests.add(batch.size());
+
+        TransferResult[] results;
+        try {
+            results = RetryPolicy.getDefault().execute(() -> attemptBatch(batch));
+        } catch (SQLException e) {
+            LOG.warn("Transfer batch failed, applying individually", e, "size", batch.size());
+            fallbacks.increment();
+            for (Request request : batch) {
+                request.future.complete(fallback.transferFunds(request.senderAccountId, request.receiverAccountId, request.amount));
+            }
+            return;
+        }
+
+        BalanceCache cache = BalanceCache.getInstance();
+        AuditJournal audit = AuditJournal.getInstance();
+        for (int i = 0; i < batch.size(); i++) {
+            Request request = batch.get(i);
+            if (results[i].isSuccess()) {
+                cache.invalidate(request.senderAccountId);
+                cache.invalidate(request.receiverAccountId);
+            }
+            audit.transfer(request.senderAccountId, request.receiverAccountId, request.amount,
+                    AuditOutcome.of(results[i].status()));
+            request.future.complete(results[i]);
+        }
+    }
+
+    /**
+     * One attempt at a batch
+     * @return Outcome of each request, in batch order; only valid once this returns normally
+     * @throws SQLException after rolling back, if the batch as a whole failed
+     */
+    private TransferResult[] attemptBatch(List<Request> batch) throws SQLException {
+        TransferResult[] results = new TransferResult[batch.size()];
+        Connection conn = null;
+        PreparedStatement pstmtLock = null;
+        PreparedStatement pstmtDebit = null;
+        PreparedStatement pstmtCredit = null;
+        PreparedStatement pstmtTransfer = null;
+        PreparedStatement pstmtFailed = null;
+
+        try {
+            conn = DBConnection.getConnection();
+
+            // START TRANSACTION
+            conn.setAutoCommit(false);
+
+            // Step 1: Lock every account in the batch, lowest account_id first
+            TreeSet<Integer> accountIds = new TreeSet<>();
+            for (Request request : batch) {
+                accountIds.add(request.senderAccountId);
+                accountIds.add(request.receiverAccountId);
+            }
+            Map<Integer, BigDecimal> balances = new HashMap<>();
+            pstmtLock = conn.prepareStatement(SqlStatements.SELECT_BALANCE_FOR_UPDATE);
+            for (int accountId : accountIds) {
+                pstmtLock.setInt(1, accountId);
+                ResultSet rs = pstmtLock.executeQuery();
+                try {
+                    if (rs.next()) {
+                        balances.put(accountId, rs.getBigDecimal("balance"));
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+
+            pstmtDebit = conn.prepareStatement(SqlStatements.DEBIT_IF_SUFFICIENT);
+            pstmtCredit = conn.prepareStatement(SqlStatements.CREDIT_ACCOUNT);
+            pstmtTransfer = conn.prepareStatement(SqlStatements.INSERT_TRANSFER);
+            pstmtFailed = conn.prepareStatement(SqlStatements.INSERT_FAILED_TRANSFER);
+            int failedRows = 0;
+
+            // Step 2: Apply each request under its own savepoint
+            for (int i = 0; i < batch.size(); i++) {
+                Request request = batch.get(i);
+                BigDecimal senderBalance = balances.get(request.senderAccountId);
+
+                if (senderBalance == null) {
+                    results[i] = TransferResult.failure(TransferStatus.SENDER_NOT_FOUND);
+                    continue;
+                }
+                if (!balances.containsKey(request.receiverAccountId)) {
+                    // Not recorded as a failed transaction: receiver_account references accounts
+                    results[i] = TransferResult.failure(TransferStatus.RECEIVER_NOT_FOUND);
+                    continue;
+                }
+
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    pstmtDebit.setDouble(1, request.amount);
+                    pstmtDebit.setInt(2, request.senderAccountId);
+                    pstmtDebit.setDouble(3, request.amount);
+                    if (pstmtDebit.executeUpdate() == 0) {
+                        conn.rollback(savepoint);
+                        pstmtFailed.setInt(1, request.senderAccountId);
+                        pstmtFailed.setInt(2, request.receiverAccountId);
+                        pstmtFailed.setDouble(3, request.amount);
+                        pstmtFailed.setString(4, "FAILED: Insufficient balance");
+                        pstmtFailed.addBatch();
+                        failedRows++;
+                        results[i] = new TransferResult(TransferStatus.INSUFFICIENT_FUNDS, senderBalance.doubleValue());
+                        continue;
+                    }
+
+                    pstmtCredit.setDouble(1, request.amount);
+                    pstmtCredit.setInt(2, request.receiverAccountId);
+                    pstmtCredit.executeUpdate();
+                    conn.releaseSavepoint(savepoint);
+
+                } catch (SQLException e) {
+                    if (RetryPolicy.isRetryable(e)) {
+                        // The whole transaction is gone; let the retry policy start over
+                        throw e;
+                    }
+                    LOG.warn("Transfer in batch failed", e);
+                    conn.rollback(savepoint);
+                    results[i] = TransferResult.failure(TransferStatus.ERROR);
+                    continue;
+                }
+
+                // Track balances as the database computes them (DECIMAL(12,2))
+                BigDecimal amount = BigDecimal.valueOf(request.amount);
+                BigDecimal newSenderBalance = senderBalance.subtract(amount).setScale(2, RoundingMode.HALF_UP);
+                balances.put(request.senderAccountId, newSenderBalance);
+                balances.put(request.receiverAccountId,
+                        balances.get(request.receiverAccountId).add(amount).setScale(2, RoundingMode.HALF_UP));
+
+                pstmtTransfer.setInt(1, request.senderAccountId);
+                pstmtTransfer.setInt(2, request.receiverAccountId);
+                pstmtTransfer.setDouble(3, request.amount);
+                pstmtTransfer.addBatch();
+                results[i] = TransferResult.success(newSenderBalance.doubleValue());
+            }
+
+            // Step 3: Record all transactions in one round trip each, then commit once
+            pstmtTransfer.executeBatch();
+            if (failedRows > 0) {
+                pstmtFailed.executeBatch();
+            }
+            conn.commit();
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Transfer batch committed", "size", batch.size());
+            }
+            return results;
+
+        } catch (SQLException e) {
+            // ROLLBACK on error - Undo the whole batch
+            try {
+                if (conn != null) conn.rollback();
+            } catch (SQLException ex) {
+                LOG.warn("Rollback failed", ex);
+            }
+            throw e;
+
+        } finally {
+            // Close all resources
+            try {
+                if (pstmtFailed != null) pstmtFailed.close();
+                if (pstmtTransfer != null) pstmtTransfer.close();
+                if (pstmtCredit != null) pstmtCredit.close();
+                if (pstmtDebit != null) pstmtDebit.close();
+                if (pstmtLock != null) pstmtLock.close();
+                if (conn != null) {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                LOG.warn("Error closing JDBC resources", e);
+            }
+        }
+    }
+
+    /**
+     * @return Batches applied
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return Requests applied through batches
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return Batches that could not commit and were applied one transfer at a time
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * @return Submissions rejected because the batcher was full or stopped
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return Requests currently waiting for the writer
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private static final class Request {
+        final int senderAccountId;
+        final int receiverAccountId;
+        final double amount;
+        final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+
+        Request(int senderAccountId, int receiverAccountId, double amount) {
+            this.senderAccountId = senderAccountId;
+            this.receiverAccountId = receiverAccountId;
+            this.amount = amount;
+        }
+    }
+}
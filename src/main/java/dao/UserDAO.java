@@ -1,9 +1,19 @@
 package dao;
 
+import dao.model.Account;
+import dao.model.SessionProfile;
+import dao.model.UserProfile;
+import dao.password.PasswordService;
+import dao.password.Verification;
 import util.DBConnection;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.LatencyHistogram;
+import util.metrics.Metrics;
 import java.sql.*;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * User Data Access Object
@@ -11,29 +21,31 @@ import java.security.NoSuchAlgorithmException;
  */
 public class UserDAO {
     
+    private static final Logger LOG = Log.getLogger(UserDAO.class);
+    private static final LongAdder hashUpgrades = new LongAdder();
+    private static final LatencyHistogram LOGIN_LATENCY = DaoMetrics.latency("authenticate");
+    
+    static {
+        Metrics.counter("banking_password_hash_upgrades_total", "Stored password hashes replaced with the current scheme at login",
+                hashUpgrades::sum);
+    }
+    
     /**
-     * Hash password using SHA-256
+     * Hash password with the current scheme (salted PBKDF2, see PasswordService)
+     * Public so the benchmarks module can measure it in isolation
      * @param password Plain text password
-     * @return Hashed password
+     * @return Encoded hash
+     * @throws dao.password.PasswordServiceBusyException if the hashing pool is saturated
      */
-    private String hashPassword(String password) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(password.getBytes());
-            
-            // Convert byte array to hexadecimal string
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return hexString.toString();
-            
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return null;
-        }
+    public static String hashPassword(String password) {
+        return PasswordService.getInstance().hash(password);
+    }
+    
+    /**
+     * @return Stored hashes replaced by the current scheme after a successful login
+     */
+    public static long getHashUpgradeCount() {
+        return hashUpgrades.sum();
     }
     
     /**
@@ -42,20 +54,21 @@ public class UserDAO {
      * @param email User's email
      * @param password User's password
      * @return user ID if registration successful, -1 otherwise
+     * @throws dao.password.PasswordServiceBusyException if the hashing pool is saturated
      */
     public int registerUser(String name, String email, String password) {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         
+        // Hash first: it takes tens of milliseconds and needs no connection
+        String hashedPassword = hashPassword(password);
+        
         try {
             conn = DBConnection.getConnection();
             
-            // Hash the password for security
-            String hashedPassword = hashPassword(password);
-            
             // Insert user into users table
-            String sql = "INSERT INTO users (name, email, password_hash) VALUES (?, ?, ?)";
+            String sql = SqlStatements.INSERT_USER;
             pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
             pstmt.setString(1, name);
             pstmt.setString(2, email);
@@ -68,7 +81,7 @@ public class UserDAO {
                 rs = pstmt.getGeneratedKeys();
                 if (rs.next()) {
                     int userId = rs.getInt(1);
-                    System.out.println("User registered successfully: " + email);
+                    LOG.info("User registered", "user", userId);
                     return userId;
                 }
             }
@@ -76,8 +89,7 @@ public class UserDAO {
             return -1;
             
         } catch (SQLException e) {
-            System.err.println("Error registering user: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error registering user", e);
             return -1;
             
         } finally {
@@ -87,70 +99,176 @@ public class UserDAO {
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
     }
     
     /**
-     * Authenticate user login
+     * Authenticate a user and load their session profile
+     * The user row and all of their accounts come back in one query, and the
+     * connection is released before the password is checked on the
+     * PasswordService pool. A hash in an old scheme (unsalted SHA-256, or
+     * PBKDF2 at a much lower cost) is replaced after a successful check.
      * @param email User's email
      * @param password User's password
-     * @return User data as ResultSet if valid, null otherwise
+     * @return Profile with the user's accounts, or null if the credentials are invalid
+     * @throws dao.password.PasswordServiceBusyException if too many logins are being verified
+     */
+    public SessionProfile authenticate(String email, String password) {
+        long start = System.nanoTime();
+        try {
+            return checkCredentials(email, password);
+        } finally {
+            LOGIN_LATENCY.recordSince(start);
+        }
+    }
+    
+    private SessionProfile checkCredentials(String email, String password) {
+        PasswordService passwords = PasswordService.getInstance();
+        LoginRow login = findLogin(email);
+        if (login == null) {
+            passwords.verifyUnknownUser(password);
+            LOG.info("Login failed", "email", email);
+            return null;
+        }
+        
+        Verification verification = passwords.verify(password, login.passwordHash());
+        if (!verification.matches()) {
+            LOG.info("Login failed", "email", email);
+            return null;
+        }
+        if (verification == Verification.MATCH_NEEDS_REHASH) {
+            upgradeHash(login.profile().userId(), password, login.passwordHash());
+        }
+        
+        LOG.debug("Login succeeded", "user", login.profile().userId());
+        return login.profile();
+    }
+    
+    /**
+     * Read a user, their stored hash and their accounts in one query
+     * @return Login row, or null if the email is not registered or the query failed
+     */
+    private LoginRow findLogin(String email) {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.SELECT_LOGIN_PROFILE)) {
+            pstmt.setString(1, email);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int userId = rs.getInt("user_id");
+                String name = rs.getString("name");
+                String storedEmail = rs.getString("email");
+                String passwordHash = rs.getString("password_hash");
+                
+                // LEFT JOIN: one row per account, or a single row with a NULL account
+                List<Account> accounts = new ArrayList<>();
+                do {
+                    int accountId = rs.getInt("account_id");
+                    if (!rs.wasNull()) {
+                        accounts.add(new Account(accountId, userId, rs.getDouble("balance")));
+                    }
+                } while (rs.next());
+                if (DBConnection.shardOf(userId) != 0) {
+                    // Sharded: the user's accounts are not on the database holding users
+                    accounts = findAccounts(userId);
+                }
+                
+                return new LoginRow(new SessionProfile(userId, name, storedEmail, accounts), passwordHash);
+            }
+        } catch (SQLException e) {
+            LOG.error("Error during login", e);
+        }
+        return null;
+    }
+    
+    /**
+     * Read a user's accounts from the shard that holds them
+     */
+    private List<Account> findAccounts(int userId) throws SQLException {
+        List<Account> accounts = new ArrayList<>();
+        try (Connection conn = DBConnection.getShardConnection(DBConnection.shardOf(userId));
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.SELECT_ACCOUNTS_BY_USER)) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(new Account(rs.getInt("account_id"), userId, rs.getDouble("balance")));
+                }
+            }
+        }
+        return accounts;
+    }
+    
+    /**
+     * Replace a verified hash with one in the current scheme
+     * Failure only postpones the upgrade to the next login, so it never fails the login itself.
+     */
+    private void upgradeHash(int userId, String password, String oldHash) {
+        String newHash;
+        try {
+            newHash = hashPassword(password);
+        } catch (RuntimeException e) {
+            LOG.warn("Skipping password hash upgrade", "user", userId, "error", e.getMessage());
+            return;
+        }
+        
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(SqlStatements.UPDATE_PASSWORD_HASH)) {
+            pstmt.setString(1, newHash);
+            pstmt.setInt(2, userId);
+            pstmt.setString(3, oldHash);
+            if (pstmt.executeUpdate() == 1) {
+                hashUpgrades.increment();
+            }
+        } catch (SQLException e) {
+            LOG.error("Error upgrading password hash", e, "user", userId);
+        }
+    }
+    
+    private record LoginRow(SessionProfile profile, String passwordHash) {
+    }
+    
+    /**
+     * Get a user's public profile
+     * @param userId User ID
+     * @return Profile, or null if the user does not exist
      */
-    public ResultSet loginUser(String email, String password) {
+    public UserProfile getUserProfile(int userId) {
         Connection conn = null;
         PreparedStatement pstmt = null;
+        ResultSet rs = null;
         
         try {
             conn = DBConnection.getConnection();
-            
-            // Hash the input password
-            String hashedPassword = hashPassword(password);
-            
-            // Query to check credentials - use LEFT JOIN to allow users without accounts
-            String sql = "SELECT u.user_id, u.name, u.email, a.account_id, a.balance " +
-                        "FROM users u " +
-                        "LEFT JOIN accounts a ON u.user_id = a.user_id " +
-                        "WHERE u.email = ? AND u.password_hash = ?";
+            String sql = SqlStatements.SELECT_USER_PROFILE;
             
             pstmt = conn.prepareStatement(sql);
-            pstmt.setString(1, email);
-            pstmt.setString(2, hashedPassword);
-            
-            ResultSet rs = pstmt.executeQuery();
+            pstmt.setInt(1, userId);
             
+            rs = pstmt.executeQuery();
             if (rs.next()) {
-                System.out.println("Login successful for: " + email);
-                return rs;
-            } else {
-                System.out.println("Invalid credentials for: " + email);
-                // Clean up resources when login fails
-                try {
-                    if (pstmt != null) pstmt.close();
-                    if (conn != null) conn.close();
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                }
-                return null;
+                return new UserProfile(userId, rs.getString("name"), rs.getString("email"));
             }
             
         } catch (SQLException e) {
-            System.err.println("Error during login: " + e.getMessage());
-            e.printStackTrace();
-            // Clean up resources on error
+            LOG.error("Error getting user profile", e, "user", userId);
+        } finally {
             try {
+                if (rs != null) rs.close();
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            } catch (SQLException e) {
+                LOG.warn("Error closing JDBC resources", e);
             }
-            return null;
         }
+        return null;
     }
     
     /**
      * Check if email already exists
+     * Served by a read replica when there are any
      * @param email Email to check
      * @return true if exists, false otherwise
      */
@@ -160,8 +278,8 @@ public class UserDAO {
         ResultSet rs = null;
         
         try {
-            conn = DBConnection.getConnection();
-            String sql = "SELECT COUNT(*) FROM users WHERE email = ?";
+            conn = DBConnection.getReadConnection();
+            String sql = SqlStatements.COUNT_USERS_BY_EMAIL;
             
             pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, email);
@@ -172,14 +290,14 @@ public class UserDAO {
             }
             
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Error checking email", e);
         } finally {
             try {
                 if (rs != null) rs.close();
                 if (pstmt != null) pstmt.close();
                 if (conn != null) conn.close();
             } catch (SQLException e) {
-                e.printStackTrace();
+                LOG.warn("Error closing JDBC resources", e);
             }
         }
         return false;
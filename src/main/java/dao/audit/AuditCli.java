@@ -0,0 +1,100 @@
+package dao.audit;
+
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+
+/**
+ * Audit CLI
+ * Prints or verifies an audit journal directory:
+ *
+ *     java -cp target/classes dao.audit.AuditCli <dir> [--account <id>] [--from <date>] [--to <date>]
+ *     java -cp target/classes dao.audit.AuditCli <dir> --verify
+ *
+ * Dates are yyyy-MM-dd or yyyy-MM-ddTHH:mm[:ss] in the local time zone;
+ * --from is inclusive and --to exclusive. Records are printed as CSV.
+ */
+public final class AuditCli {
+
+    private AuditCli() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            usage();
+            return;
+        }
+
+        AuditReader reader = new AuditReader(Paths.get(args[0]));
+        int accountId = 0;
+        long from = 0;
+        long to = Long.MAX_VALUE;
+        boolean verify = false;
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--account":
+                        accountId = Integer.parseInt(args[++i]);
+                        break;
+                    case "--from":
+                        from = parseTime(args[++i]);
+                        break;
+                    case "--to":
+                        to = parseTime(args[++i]);
+                        break;
+                    case "--verify":
+                        verify = true;
+                        break;
+                    default:
+                        usage();
+                        return;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            usage();
+            System.exit(2);
+        }
+
+        try {
+            if (verify) {
+                System.out.println("OK: " + reader.verify() + " records, checksum chain intact");
+                return;
+            }
+
+            System.out.println("sequence,timestamp,type,outcome,sender_account,receiver_account,amount");
+            long count = 0;
+            for (Iterator<AuditRecord> it = reader.find(accountId, from, to); it.hasNext(); ) {
+                AuditRecord record = it.next();
+                System.out.println(record.sequence() + ","
+                        + Instant.ofEpochMilli(record.timestampMillis()) + ","
+                        + record.type() + ","
+                        + record.outcome() + ","
+                        + record.senderAccount() + ","
+                        + record.receiverAccount() + ","
+                        + String.format("%.2f", record.amount()));
+                count++;
+            }
+            System.err.println(count + " records");
+
+        } catch (IllegalStateException e) {
+            System.err.println("DAMAGED: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static long parseTime(String value) {
+        LocalDateTime time = value.contains("T")
+                ? LocalDateTime.parse(value)
+                : LocalDate.parse(value).atStartOfDay();
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static void usage() {
+        System.err.println("Usage: AuditCli <dir> [--account <id>] [--from <date>] [--to <date>] | <dir> --verify");
+    }
+}
@@ -0,0 +1,282 @@
+package dao.audit;
+
+import dao.model.TransactionType;
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Audit Journal
+ * Local append-only record of every money movement, successful or not.
+ * Records are copied into a memory-mapped segment file (see AuditSegment),
+ * so writing one costs a short critical section instead of another INSERT.
+ * When a segment is full it is forced to disk and a new one is started.
+ *
+ * Mapped writes reach the operating system's page cache immediately and so
+ * survive an application crash; flush() (called on rollover and close)
+ * forces them to the device. Audit failures are logged and never fail the
+ * money movement being recorded.
+ *
+ * Enabled with banking.audit.enabled (default true); segments are written to
+ * banking.audit.dir and are banking.audit.segmentBytes long.
+ */
+public final class AuditJournal implements Closeable {
+
+    private static final Logger LOG = Log.getLogger(AuditJournal.class);
+
+    private static final AuditJournal DISABLED = new AuditJournal();
+    private static volatile AuditJournal instance;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+
+    private final ByteBuffer scratch = ByteBuffer.allocate(AuditSegment.SLOT_SIZE);
+    private MappedByteBuffer segment;
+    private int position;
+    private long nextSequence;
+    private int lastCrc;
+
+    /**
+     * Get the shared journal, opening it on first use
+     * @return Journal; a no-op journal if auditing is disabled or the directory cannot be opened
+     */
+    public static AuditJournal getInstance() {
+        AuditJournal current = instance;
+        if (current == null) {
+            synchronized (AuditJournal.class) {
+                current = instance;
+                if (current == null) {
+                    current = open();
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Flush and close the shared journal, if it was opened
+     */
+    public static void shutdown() {
+        AuditJournal current;
+        synchronized (AuditJournal.class) {
+            current = instance;
+            instance = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private static AuditJournal open() {
+        if (!AppConfig.getBoolean("banking.audit.enabled", true)) {
+            return DISABLED;
+        }
+        Path dir = Paths.get(AppConfig.getString("banking.audit.dir", "audit-data"));
+        try {
+            return new AuditJournal(dir, AppConfig.getInt("banking.audit.segmentBytes", 64 * 1024 * 1024));
+        } catch (IOException e) {
+            LOG.error("Audit journal disabled, cannot open its directory", e, "dir", dir.toAbsolutePath());
+            return DISABLED;
+        }
+    }
+
+    private AuditJournal() {
+        this.enabled = false;
+        this.dir = null;
+        this.segmentBytes = 0;
+    }
+
+    /**
+     * Open a journal, continuing after the last intact record
+     * @param dir Directory holding the segments; created if missing
+     * @param segmentBytes Size of each segment file
+     * @throws IOException if the directory or last segment cannot be opened
+     */
+    public AuditJournal(Path dir, int segmentBytes) throws IOException {
+        this.enabled = true;
+        this.dir = dir;
+        // Header plus at least one record
+        this.segmentBytes = Math.max(2 * AuditSegment.SLOT_SIZE,
+                segmentBytes - segmentBytes % AuditSegment.SLOT_SIZE);
+        Files.createDirectories(dir);
+
+        List<Path> segments = AuditSegment.list(dir);
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            lastCrc = 0;
+            startSegment();
+        } else {
+            resume(segments.get(segments.size() - 1));
+        }
+    }
+
+    /**
+     * Record a transfer between two accounts
+     */
+    public void transfer(int senderAccountId, int receiverAccountId, double amount, AuditOutcome outcome) {
+        record(TransactionType.TRANSFER, outcome, senderAccountId, receiverAccountId, amount);
+    }
+
+    /**
+     * Record a withdrawal
+     */
+    public void withdrawal(int accountId, double amount, AuditOutcome outcome) {
+        record(TransactionType.WITHDRAWAL, outcome, accountId, accountId, amount);
+    }
+
+    /**
+     * Record a deposit
+     */
+    public void deposit(int accountId, double amount, AuditOutcome outcome) {
+        record(TransactionType.DEPOSIT, outcome, 0, accountId, amount);
+    }
+
+    /**
+     * Append a record
+     * @param type Kind of movement
+     * @param outcome Whether it took effect
+     * @param senderAccountId Account debited
+     * @param receiverAccountId Account credited
+     * @param amount Amount in rupees
+     */
+    public void record(TransactionType type, AuditOutcome outcome, int senderAccountId, int receiverAccountId, double amount) {
+        if (!enabled) {
+            return;
+        }
+        long cents = Math.round(amount * 100);
+        synchronized (this) {
+            if (segment == null) {
+                return;
+            }
+            try {
+                if (position + AuditSegment.SLOT_SIZE > segmentBytes) {
+                    segment.force();
+                    startSegment();
+                }
+                scratch.putLong(AuditSegment.SEQUENCE, nextSequence);
+                scratch.putLong(AuditSegment.TIMESTAMP, System.currentTimeMillis());
+                scratch.put(AuditSegment.TYPE, (byte) type.ordinal());
+                scratch.put(AuditSegment.OUTCOME, (byte) outcome.ordinal());
+                scratch.putInt(AuditSegment.SENDER, senderAccountId);
+                scratch.putInt(AuditSegment.RECEIVER, receiverAccountId);
+                scratch.putLong(AuditSegment.CENTS, cents);
+                lastCrc = AuditSegment.checksum(scratch, 0, lastCrc);
+                scratch.putInt(AuditSegment.CRC, lastCrc);
+
+                // Sequence last: a concurrent reader treats a zero sequence as the end of the segment,
+                // so it never sees a record without its checksum
+                segment.put(position + AuditSegment.TIMESTAMP, scratch, AuditSegment.TIMESTAMP,
+                        AuditSegment.SLOT_SIZE - AuditSegment.TIMESTAMP);
+                segment.putLong(position + AuditSegment.SEQUENCE, nextSequence);
+
+                position += AuditSegment.SLOT_SIZE;
+                nextSequence++;
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Error writing audit record", e);
+            }
+        }
+    }
+
+    /**
+     * Force written records to the storage device
+     */
+    public synchronized void flush() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * @return Sequence number the next record will get
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Flush and stop writing; later records are dropped
+     */
+    @Override
+    public synchronized void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    /**
+     * Continue in the last segment after its last intact record
+     */
+    private void resume(Path file) throws IOException {
+        MappedByteBuffer mapped = map(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (mapped.getInt(0) != AuditSegment.MAGIC) {
+            throw new IOException("Not an audit segment: " + file);
+        }
+        long sequence = mapped.getLong(AuditSegment.HEADER_FIRST_SEQUENCE);
+        int crc = mapped.getInt(AuditSegment.HEADER_CHAIN_SEED);
+        int offset = AuditSegment.SLOT_SIZE;
+        boolean intact = true;
+
+        while (offset + AuditSegment.SLOT_SIZE <= mapped.capacity()
+                && mapped.getLong(offset + AuditSegment.SEQUENCE) != 0) {
+            int expected = AuditSegment.checksum(mapped, offset, crc);
+            if (mapped.getLong(offset + AuditSegment.SEQUENCE) != sequence
+                    || mapped.getInt(offset + AuditSegment.CRC) != expected) {
+                intact = false;
+                break;
+            }
+            crc = expected;
+            sequence++;
+            offset += AuditSegment.SLOT_SIZE;
+        }
+
+        nextSequence = sequence;
+        lastCrc = crc;
+        if (intact && mapped.capacity() == segmentBytes) {
+            segment = mapped;
+            position = offset;
+        } else {
+            if (!intact) {
+                // Never overwrite a damaged record: leave it for inspection and carry on in a new segment
+                LOG.warn("Audit segment has a damaged record, starting a new segment",
+                        "segment", file.getFileName(), "sequence", sequence);
+            }
+            startSegment();
+        }
+    }
+
+    private void startSegment() throws IOException {
+        Path file = dir.resolve(AuditSegment.fileName(nextSequence));
+        if (Files.exists(file)) {
+            // Only when the first record of the last segment was damaged
+            Files.move(file, file.resolveSibling(file.getFileName() + ".damaged"));
+        }
+        MappedByteBuffer mapped = map(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapped.putInt(0, AuditSegment.MAGIC);
+        mapped.putInt(4, AuditSegment.VERSION);
+        mapped.putLong(AuditSegment.HEADER_FIRST_SEQUENCE, nextSequence);
+        mapped.putLong(AuditSegment.HEADER_CREATED, System.currentTimeMillis());
+        mapped.putInt(AuditSegment.HEADER_CHAIN_SEED, lastCrc);
+        segment = mapped;
+        position = AuditSegment.SLOT_SIZE;
+    }
+
+    private MappedByteBuffer map(Path file, StandardOpenOption... options) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            long size = options[0] == StandardOpenOption.CREATE_NEW ? segmentBytes : channel.size();
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package dao.audit;
+
+import dao.model.TransferStatus;
+
+/**
+ * Audit Outcome
+ * Result of a money movement as written to the audit journal
+ */
+public enum AuditOutcome {
+    SUCCESS,
+    INSUFFICIENT_FUNDS,
+    ACCOUNT_NOT_FOUND,
+    /** Refused before reaching the database, e.g. by servlet validation */
+    REJECTED,
+    ERROR;
+
+    /**
+     * @param status Outcome reported by a transfer engine
+     * @return Matching audit outcome
+     */
+    public static AuditOutcome of(TransferStatus status) {
+        switch (status) {
+            case SUCCESS:
+                return SUCCESS;
+            case INSUFFICIENT_FUNDS:
+                return INSUFFICIENT_FUNDS;
+            case SENDER_NOT_FOUND:
+            case RECEIVER_NOT_FOUND:
+                return ACCOUNT_NOT_FOUND;
+            default:
+                return ERROR;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package dao.audit;
+
+import dao.model.TransactionType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Audit Reader
+ * Iterates the records of an audit journal directory in sequence order,
+ * verifying the checksum chain as it goes. A record whose checksum or
+ * sequence does not match means the journal was damaged or edited; iteration
+ * stops with an IllegalStateException naming the segment and sequence.
+ *
+ * Safe to use while an AuditJournal is writing to the same directory; records
+ * appended after a segment was opened may or may not be seen.
+ */
+public final class AuditReader implements Iterable<AuditRecord> {
+
+    private final Path dir;
+
+    /**
+     * @param dir Journal directory (banking.audit.dir)
+     */
+    public AuditReader(Path dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    public Iterator<AuditRecord> iterator() {
+        return scan(0, Long.MAX_VALUE, record -> true);
+    }
+
+    /**
+     * Iterate records of one account within a time range
+     * Segments that end before the range starts are skipped without being read.
+     * @param accountId Account ID, or 0 for every account
+     * @param fromMillis Inclusive start
+     * @param toMillis Exclusive end
+     * @return Matching records in sequence order
+     */
+    public Iterator<AuditRecord> find(int accountId, long fromMillis, long toMillis) {
+        return scan(fromMillis, toMillis, record -> (accountId == 0 || record.involves(accountId))
+                && record.timestampMillis() >= fromMillis && record.timestampMillis() < toMillis);
+    }
+
+    /**
+     * Check every record in the journal
+     * @return Number of records
+     * @throws IllegalStateException at the first damaged record
+     */
+    public long verify() {
+        long count = 0;
+        for (Iterator<AuditRecord> it = iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    private Iterator<AuditRecord> scan(long fromMillis, long toMillis, Predicate<AuditRecord> filter) {
+        List<Path> segments;
+        try {
+            segments = AuditSegment.list(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SegmentIterator(segments, fromMillis, toMillis, filter);
+    }
+
+    private static MappedByteBuffer map(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() < AuditSegment.SLOT_SIZE || mapped.getInt(0) != AuditSegment.MAGIC) {
+                throw new IllegalStateException("Not an audit segment: " + file);
+            }
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class SegmentIterator implements Iterator<AuditRecord> {
+
+        private static final TransactionType[] TYPES = TransactionType.values();
+        private static final AuditOutcome[] OUTCOMES = AuditOutcome.values();
+
+        private final List<Path> segments;
+        private final long toMillis;
+        private final Predicate<AuditRecord> filter;
+
+        private int segmentIndex;
+        private Path file;
+        private MappedByteBuffer segment;
+        private int offset;
+        private long expectedSequence;
+        private int previousCrc;
+        private AuditRecord next;
+
+        SegmentIterator(List<Path> segments, long fromMillis, long toMillis, Predicate<AuditRecord> filter) {
+            this.segments = segments;
+            this.toMillis = toMillis;
+            this.filter = filter;
+
+            // A segment's records all predate the next segment's creation, so
+            // every segment followed by one created before fromMillis can be skipped
+            while (segmentIndex + 1 < segments.size()
+                    && map(segments.get(segmentIndex + 1)).getLong(AuditSegment.HEADER_CREATED) < fromMillis) {
+                segmentIndex++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (segment == null && !openNextSegment()) {
+                    return false;
+                }
+                AuditRecord record = readRecord();
+                if (record == null) {
+                    segment = null;
+                } else if (filter.test(record)) {
+                    next = record;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public AuditRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            AuditRecord record = next;
+            next = null;
+            return record;
+        }
+
+        private boolean openNextSegment() {
+            if (segmentIndex >= segments.size()) {
+                return false;
+            }
+            file = segments.get(segmentIndex++);
+            segment = map(file);
+            if (segment.getLong(AuditSegment.HEADER_CREATED) >= toMillis) {
+                // This and every later segment only hold records after the range
+                segmentIndex = segments.size();
+                segment = null;
+                return false;
+            }
+            expectedSequence = segment.getLong(AuditSegment.HEADER_FIRST_SEQUENCE);
+            previousCrc = segment.getInt(AuditSegment.HEADER_CHAIN_SEED);
+            offset = AuditSegment.SLOT_SIZE;
+            return true;
+        }
+
+        /**
+         * @return Next record of the current segment, or null at its end
+         */
+        private AuditRecord readRecord() {
+            if (offset + AuditSegment.SLOT_SIZE > segment.capacity()) {
+                return null;
+            }
+            long sequence = segment.getLong(offset + AuditSegment.SEQUENCE);
+            if (sequence == 0) {
+                return null;
+            }
+            int crc = AuditSegment.checksum(segment, offset, previousCrc);
+            if (sequence != expectedSequence || segment.getInt(offset + AuditSegment.CRC) != crc) {
+                throw new IllegalStateException("Audit journal damaged in " + file.getFileName()
+                        + " at sequence " + expectedSequence);
+            }
+
+            AuditRecord record = new AuditRecord(
+                    sequence,
+                    segment.getLong(offset + AuditSegment.TIMESTAMP),
+                    TYPES[segment.get(offset + AuditSegment.TYPE)],
+                    OUTCOMES[segment.get(offset + AuditSegment.OUTCOME)],
+                    segment.getInt(offset + AuditSegment.SENDER),
+                    segment.getInt(offset + AuditSegment.RECEIVER),
+                    segment.getLong(offset + AuditSegment.CENTS));
+
+            previousCrc = crc;
+            expectedSequence++;
+            offset += AuditSegment.SLOT_SIZE;
+            return record;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package dao.audit;
+
+import dao.model.TransactionType;
+
+/**
+ * Audit Record
+ * One money movement read back from the audit journal
+ *
+ * @param sequence Position in the journal, starting at 1
+ * @param timestampMillis When the movement finished
+ * @param type Kind of movement
+ * @param outcome Whether it took effect
+ * @param senderAccount Account debited (the account itself for withdrawals; 0 for deposits)
+ * @param receiverAccount Account credited (the account itself for withdrawals and deposits)
+ * @param amountCents Amount in cents
+ */
+public record AuditRecord(long sequence, long timestampMillis, TransactionType type, AuditOutcome outcome,
+                          int senderAccount, int receiverAccount, long amountCents) {
+
+    /**
+     * @param accountId Account ID
+     * @return true if the movement touched the account
+     */
+    public boolean involves(int accountId) {
+        return senderAccount == accountId || receiverAccount == accountId;
+    }
+
+    /**
+     * @return Amount in rupees
+     */
+    public double amount() {
+        return amountCents / 100.0;
+    }
+}
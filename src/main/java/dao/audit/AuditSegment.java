@@ -0,0 +1,95 @@
+package dao.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Audit Segment
+ * On-disk layout shared by AuditJournal and AuditReader. A segment is a
+ * fixed-size file of 40-byte slots; slot 0 is the header and the rest hold
+ * records until the first all-zero slot:
+ *
+ *     header: magic (4) | version (4) | first sequence (8) | created millis (8) | chain seed (4) | unused (12)
+ *     record: sequence (8) | timestamp millis (8) | type (1) | outcome (1) | unused (2)
+ *             | sender (4) | receiver (4) | cents (8) | CRC32 (4)
+ *
+ * Each record's CRC covers its own bytes and the previous record's CRC (the
+ * header's chain seed for the first record in a segment), so editing,
+ * removing or reordering a record breaks every checksum after it.
+ */
+final class AuditSegment {
+
+    static final int SLOT_SIZE = 40;
+    static final int MAGIC = 0x41554454; // "AUDT"
+    static final int VERSION = 1;
+
+    static final int HEADER_FIRST_SEQUENCE = 8;
+    static final int HEADER_CREATED = 16;
+    static final int HEADER_CHAIN_SEED = 24;
+
+    static final int SEQUENCE = 0;
+    static final int TIMESTAMP = 8;
+    static final int TYPE = 16;
+    static final int OUTCOME = 17;
+    static final int SENDER = 20;
+    static final int RECEIVER = 24;
+    static final int CENTS = 28;
+    static final int CRC = 36;
+
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".seg";
+
+    private AuditSegment() {
+    }
+
+    /**
+     * @param firstSequence Sequence of the first record in the segment
+     * @return File name that sorts segments in sequence order
+     */
+    static String fileName(long firstSequence) {
+        return String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX);
+    }
+
+    /**
+     * @param dir Journal directory
+     * @return Segment files in sequence order
+     */
+    static List<Path> list(Path dir) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Chained checksum of the record in the slot starting at offset
+     * @param segment Segment buffer
+     * @param offset Slot offset
+     * @param previousCrc CRC of the record before it, or the chain seed
+     */
+    static int checksum(ByteBuffer segment, int offset, int previousCrc) {
+        CRC32 crc = new CRC32();
+        ByteBuffer record = segment.duplicate();
+        record.limit(offset + CRC).position(offset);
+        crc.update(record);
+        crc.update(previousCrc >>> 24);
+        crc.update(previousCrc >>> 16);
+        crc.update(previousCrc >>> 8);
+        crc.update(previousCrc);
+        return (int) crc.getValue();
+    }
+}
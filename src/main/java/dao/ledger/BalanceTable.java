@@ -0,0 +1,140 @@
+package dao.ledger;
+
+/**
+ * Balance Table
+ * Open-addressing hash map from account ID to balance in cents, stored in
+ * two primitive arrays so lookups neither box nor chase pointers.
+ *
+ * Not thread-safe: LedgerEngine's sequencer is the only writer and readers
+ * go through the engine's lock.
+ */
+final class BalanceTable {
+
+    /** Marks a free slot; account IDs are AUTO_INCREMENT values starting at 1 */
+    private static final int FREE = 0;
+
+    /** Returned by get() for an unknown account */
+    static final long ABSENT = Long.MIN_VALUE;
+
+    private int[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * @param expectedSize Number of accounts to hold before the first resize
+     */
+    BalanceTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @param accountId Account ID
+     * @return Balance in cents, or ABSENT
+     */
+    long get(int accountId) {
+        int slot = slotOf(accountId);
+        return slot < 0 ? ABSENT : values[slot];
+    }
+
+    boolean contains(int accountId) {
+        return slotOf(accountId) >= 0;
+    }
+
+    /**
+     * Insert or replace a balance
+     * @param accountId Account ID, greater than zero
+     * @param cents Balance in cents
+     */
+    void put(int accountId, long cents) {
+        if (accountId <= FREE) {
+            throw new IllegalArgumentException("Invalid account ID: " + accountId);
+        }
+        int i = hash(accountId) & mask;
+        while (keys[i] != FREE) {
+            if (keys[i] == accountId) {
+                values[i] = cents;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = accountId;
+        values[i] = cents;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Add to the balance of an account that is known to exist
+     */
+    void add(int accountId, long cents) {
+        int slot = slotOf(accountId);
+        values[slot] += cents;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Visit every account in slot order
+     */
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                visitor.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    interface Visitor {
+        void accept(int accountId, long cents);
+    }
+
+    private int slotOf(int accountId) {
+        if (accountId <= FREE) {
+            return -1;
+        }
+        int i = hash(accountId) & mask;
+        while (keys[i] != FREE) {
+            if (keys[i] == accountId) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int j = hash(oldKeys[i]) & mask;
+                while (keys[j] != FREE) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        // Keep the load factor at or below 0.5 so probe sequences stay short
+        resizeAt = capacity >> 1;
+    }
+
+    private static int hash(int accountId) {
+        // Spread sequential account IDs across the table
+        int h = accountId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
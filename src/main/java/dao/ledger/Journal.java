@@ -0,0 +1,148 @@
+package dao.ledger;
+
+import util.log.Log;
+import util.log.Logger;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Ledger Journal
+ * Append-only write-ahead log of ledger commands with fixed 32-byte records:
+ *
+ *     sequence (8) | op (4) | account A (4) | account B (4) | cents (8) | CRC32 (4)
+ *
+ * Records are buffered by append() and made durable together by force(), so
+ * one fsync covers every command the sequencer drained in a batch. On
+ * recovery, a record with a bad checksum or a partial record marks a torn
+ * write at the tail; it and anything after it are discarded.
+ */
+final class Journal implements Closeable {
+
+    private static final Logger LOG = Log.getLogger(Journal.class);
+
+    static final int RECORD_SIZE = 32;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - 4;
+
+    /** Account opened with a balance loaded from the database: A = account, cents = balance */
+    static final int OPEN = 1;
+    /** A = sender, B = receiver */
+    static final int TRANSFER = 2;
+    /** A = account */
+    static final int WITHDRAW = 3;
+    /** A = account */
+    static final int DEPOSIT = 4;
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 1024);
+
+    /**
+     * Open (or create) a journal file for appending
+     * Call replay() before the first append so a torn tail is cut off.
+     */
+    Journal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    /**
+     * Read every intact record, then truncate the file after the last one
+     * @param visitor Receives records in order
+     * @return Number of records read
+     */
+    long replay(RecordVisitor visitor) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long position = 0;
+        long count = 0;
+        long size = channel.size();
+
+        while (position + RECORD_SIZE <= size) {
+            record.clear();
+            while (record.hasRemaining()) {
+                if (channel.read(record, position + record.position()) < 0) {
+                    break;
+                }
+            }
+            record.flip();
+            if (record.remaining() < RECORD_SIZE || !checksumMatches(record)) {
+                break;
+            }
+            visitor.accept(record.getLong(0), record.getInt(8), record.getInt(12), record.getInt(16), record.getLong(20));
+            position += RECORD_SIZE;
+            count++;
+        }
+
+        if (position < size) {
+            LOG.warn("Ledger journal discarding torn tail", "bytes", size - position);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        return count;
+    }
+
+    /**
+     * Buffer a record; it is not durable until force() returns
+     */
+    void append(long sequence, int op, int accountA, int accountB, long cents) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            writeBuffer();
+        }
+        int start = buffer.position();
+        buffer.putLong(sequence).putInt(op).putInt(accountA).putInt(accountB).putLong(cents);
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start).limit(start + PAYLOAD_SIZE);
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Write buffered records and wait until they are on stable storage
+     */
+    void force() throws IOException {
+        writeBuffer();
+        channel.force(false);
+    }
+
+    /**
+     * Drop every record, after a snapshot has made them redundant
+     */
+    void reset() throws IOException {
+        buffer.clear();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private boolean checksumMatches(ByteBuffer record) {
+        ByteBuffer payload = record.duplicate();
+        payload.position(0).limit(PAYLOAD_SIZE);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue() == record.getInt(PAYLOAD_SIZE);
+    }
+
+    interface RecordVisitor {
+        void accept(long sequence, int op, int accountA, int accountB, long cents);
+    }
+}
@@ -0,0 +1,422 @@
+package dao.ledger;
+
+import dao.MoneyEngine;
+import dao.SqlStatements;
+import dao.audit.AuditJournal;
+import dao.audit.AuditOutcome;
+import dao.model.TransactionType;
+import util.DBConnection;
+import util.log.Log;
+import util.log.Logger;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ledger Engine
+ * In-process alternative to the MySQL row-locking path. All balances live in
+ * memory as cents in a BalanceTable; a single sequencer thread applies
+ * transfers, withdrawals and deposits one after another, so no locks are
+ * taken per account and commands never conflict.
+ *
+ * Durability follows the write-ahead rule: the sequencer drains a batch of
+ * commands, appends them to the Journal, forces the journal once, and only
+ * then applies the batch and acknowledges the callers. Because commands are
+ * applied deterministically, replaying the journal on top of the latest
+ * Snapshot rebuilds exactly the state that was acknowledged.
+ *
+ * Accounts are created in the database (signup, add account). The first time
+ * the ledger sees an account it loads the balance from the database and
+ * journals it as an OPEN record; from then on the ledger, not accounts.balance,
+ * holds the balance. The ledger does not write rows to the transactions table.
+ */
+public final class LedgerEngine implements MoneyEngine, AutoCloseable {
+
+    private static final Logger LOG = Log.getLogger(LedgerEngine.class);
+
+    /**
+     * Source of opening balances for accounts the ledger has not seen yet
+     */
+    @FunctionalInterface
+    public interface AccountLoader {
+        /**
+         * @param accountId Account ID
+         * @return Balance in cents, or null if the account does not exist
+         */
+        Long loadCents(int accountId) throws SQLException;
+    }
+
+    /** Internal command that is never journaled; only makes sure an account is loaded */
+    private static final int LOOKUP = 0;
+
+    private static final String JOURNAL_FILE = "ledger.journal";
+    private static final String SNAPSHOT_FILE = "ledger.snapshot";
+    private static final int MAX_BATCH = 1024;
+
+    private final Path snapshotFile;
+    private final Journal journal;
+    private final AccountLoader loader;
+    private final int snapshotEvery;
+    private final BalanceTable balances = new BalanceTable(1024);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BlockingQueue<Command> queue = new ArrayBlockingQueue<>(65536);
+    private final Thread sequencer;
+
+    private volatile boolean running = true;
+    private volatile boolean snapshotOnStop = true;
+    private volatile long sequence;
+    private long sinceSnapshot;
+
+    /**
+     * Recover the ledger from its directory and start the sequencer
+     * @param dir Directory holding the journal and snapshot; created if missing
+     * @param snapshotEvery Commands between snapshots (the journal is cleared after each)
+     * @param loader Source of opening balances
+     * @throws IOException if the snapshot or journal cannot be read
+     */
+    public LedgerEngine(Path dir, int snapshotEvery, AccountLoader loader) throws IOException {
+        Files.createDirectories(dir);
+        this.snapshotFile = dir.resolve(SNAPSHOT_FILE);
+        this.loader = loader;
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+
+        long snapshotSequence = Snapshot.read(snapshotFile, balances);
+        sequence = snapshotSequence;
+
+        journal = new Journal(dir.resolve(JOURNAL_FILE));
+        long records = journal.replay((seq, op, accountA, accountB, cents) -> {
+            // Records up to the snapshot survive if we crashed between snapshot and journal reset
+            if (seq > snapshotSequence) {
+                apply(op, accountA, accountB, cents);
+                sequence = seq;
+                sinceSnapshot++;
+            }
+        });
+        LOG.info("Ledger recovered", "accounts", balances.size(), "records", records, "sequence", sequence);
+
+        sequencer = new Thread(this::sequence, "ledger-sequencer");
+        sequencer.setDaemon(true);
+        sequencer.start();
+    }
+
+    /**
+     * Loader reading opening balances from the accounts table
+     */
+    public static AccountLoader databaseLoader() {
+        return accountId -> {
+            try (Connection conn = DBConnection.getConnection(accountId);
+                 PreparedStatement pstmt = conn.prepareStatement(SqlStatements.SELECT_BALANCE)) {
+                pstmt.setInt(1, accountId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? toCents(rs.getBigDecimal("balance")) : null;
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean transferMoney(int senderAccountId, int receiverAccountId, double amount) {
+        return submit(Journal.TRANSFER, senderAccountId, receiverAccountId, amount);
+    }
+
+    @Override
+    public boolean withdrawMoney(int accountId, double amount) {
+        return submit(Journal.WITHDRAW, accountId, 0, amount);
+    }
+
+    @Override
+    public boolean deposit(int accountId, double amount) {
+        return submit(Journal.DEPOSIT, accountId, 0, amount);
+    }
+
+    @Override
+    public double getBalance(int accountId) {
+        long cents = read(accountId);
+        if (cents == BalanceTable.ABSENT && await(new Command(LOOKUP, accountId, 0, 0))) {
+            cents = read(accountId);
+        }
+        return cents == BalanceTable.ABSENT ? 0.0 : cents / 100.0;
+    }
+
+    @Override
+    public boolean accountExists(int accountId) {
+        return read(accountId) != BalanceTable.ABSENT || await(new Command(LOOKUP, accountId, 0, 0));
+    }
+
+    /**
+     * Stop accepting commands, apply the ones already queued, write a snapshot and close the journal
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            sequencer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop without a final snapshot, leaving recovery to the journal (for crash tests)
+     */
+    void halt() {
+        snapshotOnStop = false;
+        close();
+    }
+
+    /**
+     * @return Sequence number of the last journaled record
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    private boolean submit(int op, int accountA, int accountB, double amount) {
+        long cents = toCents(BigDecimal.valueOf(amount));
+        if (cents <= 0) {
+            return false;
+        }
+        return await(new Command(op, accountA, accountB, cents));
+    }
+
+    private boolean await(Command command) {
+        if (!running || !queue.offer(command)) {
+            LOG.warn(running ? "Ledger full, command rejected" : "Ledger stopped, command rejected");
+            return false;
+        }
+        if (!running && queue.remove(command)) {
+            // Raced with shutdown after the sequencer's final drain
+            return false;
+        }
+        return command.result.join();
+    }
+
+    private long read(int accountId) {
+        lock.readLock().lock();
+        try {
+            return balances.get(accountId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sequencer loop: resolve, journal, force, apply, acknowledge
+     */
+    private void sequence() {
+        List<Command> batch = new ArrayList<>(MAX_BATCH);
+        List<Command> opened = new ArrayList<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                Command first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                // Step 1: Load accounts seen for the first time; their balances become OPEN records
+                for (Command command : batch) {
+                    openIfNeeded(command, command.accountA, opened);
+                    if (command.op == Journal.TRANSFER) {
+                        openIfNeeded(command, command.accountB, opened);
+                    }
+                }
+
+                // Step 2: Write-ahead - nothing is applied or acknowledged before the journal is forced
+                for (Command open : opened) {
+                    journal.append(++sequence, Journal.OPEN, open.accountA, 0, open.cents);
+                }
+                for (Command command : batch) {
+                    if (command.op != LOOKUP && !command.failed) {
+                        journal.append(++sequence, command.op, command.accountA, command.accountB, command.cents);
+                    }
+                }
+                journal.force();
+
+                // Step 3: Apply in journal order, exactly as replay will
+                boolean[] outcomes = new boolean[batch.size()];
+                lock.writeLock().lock();
+                try {
+                    for (Command open : opened) {
+                        apply(Journal.OPEN, open.accountA, 0, open.cents);
+                    }
+                    for (int i = 0; i < batch.size(); i++) {
+                        Command command = batch.get(i);
+                        if (command.failed) {
+                            outcomes[i] = false;
+                        } else if (command.op == LOOKUP) {
+                            outcomes[i] = balances.contains(command.accountA);
+                        } else {
+                            outcomes[i] = apply(command.op, command.accountA, command.accountB, command.cents);
+                            sinceSnapshot++;
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                // Step 4: Acknowledge
+                AuditJournal audit = AuditJournal.getInstance();
+                for (int i = 0; i < batch.size(); i++) {
+                    Command command = batch.get(i);
+                    if (command.op != LOOKUP) {
+                        audit(audit, command, outcomes[i]);
+                    }
+                    command.result.complete(outcomes[i]);
+                }
+                batch.clear();
+                opened.clear();
+
+                if (sinceSnapshot >= snapshotEvery) {
+                    snapshot();
+                }
+            }
+
+            if (snapshotOnStop) {
+                snapshot();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            // The journal can no longer guarantee durability: stop taking money commands
+            LOG.error("Ledger sequencer stopped", e);
+        } finally {
+            running = false;
+            for (Command command : batch) {
+                command.result.complete(false);
+            }
+            Command pending;
+            while ((pending = queue.poll()) != null) {
+                pending.result.complete(false);
+            }
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing ledger journal", e);
+            }
+        }
+    }
+
+    /**
+     * Make sure an account is in the table, or queued to be opened, before its command is journaled
+     */
+    private void openIfNeeded(Command command, int accountId, List<Command> opened) {
+        if (accountId <= 0 || balances.contains(accountId)) {
+            return;
+        }
+        for (Command open : opened) {
+            if (open.accountA == accountId) {
+                return;
+            }
+        }
+        try {
+            Long cents = loader.loadCents(accountId);
+            if (cents != null) {
+                opened.add(new Command(Journal.OPEN, accountId, 0, cents));
+            }
+        } catch (SQLException e) {
+            // Without an opening balance the command cannot be decided; fail it rather than guess
+            LOG.error("Ledger could not load account", e, "account", accountId);
+            command.failed = true;
+        }
+    }
+
+    /**
+     * Apply one command to the balances; must be deterministic for replay
+     * @return true if the command took effect
+     */
+    private boolean apply(int op, int accountA, int accountB, long cents) {
+        switch (op) {
+            case Journal.OPEN:
+                if (!balances.contains(accountA)) {
+                    balances.put(accountA, cents);
+                }
+                return true;
+            case Journal.TRANSFER: {
+                long senderBalance = balances.get(accountA);
+                if (senderBalance == BalanceTable.ABSENT || !balances.contains(accountB) || senderBalance < cents) {
+                    return false;
+                }
+                balances.add(accountA, -cents);
+                balances.add(accountB, cents);
+                return true;
+            }
+            case Journal.WITHDRAW: {
+                long balance = balances.get(accountA);
+                if (balance == BalanceTable.ABSENT || balance < cents) {
+                    return false;
+                }
+                balances.add(accountA, -cents);
+                return true;
+            }
+            case Journal.DEPOSIT:
+                if (!balances.contains(accountA)) {
+                    return false;
+                }
+                balances.add(accountA, cents);
+                return true;
+            default:
+                throw new IllegalStateException("Unknown ledger operation: " + op);
+        }
+    }
+
+    private static void audit(AuditJournal audit, Command command, boolean applied) {
+        AuditOutcome outcome = command.failed ? AuditOutcome.ERROR : applied ? AuditOutcome.SUCCESS : AuditOutcome.REJECTED;
+        double amount = command.cents / 100.0;
+        switch (command.op) {
+            case Journal.TRANSFER:
+                audit.record(TransactionType.TRANSFER, outcome, command.accountA, command.accountB, amount);
+                break;
+            case Journal.WITHDRAW:
+                audit.record(TransactionType.WITHDRAWAL, outcome, command.accountA, command.accountA, amount);
+                break;
+            case Journal.DEPOSIT:
+                audit.record(TransactionType.DEPOSIT, outcome, 0, command.accountA, amount);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void snapshot() throws IOException {
+        Snapshot.write(snapshotFile, balances, sequence);
+        journal.reset();
+        sinceSnapshot = 0;
+        LOG.info("Ledger snapshot written", "sequence", sequence, "accounts", balances.size());
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static final class Command {
+        final int op;
+        final int accountA;
+        final int accountB;
+        final long cents;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        boolean failed;
+
+        Command(int op, int accountA, int accountB, long cents) {
+            this.op = op;
+            this.accountA = accountA;
+            this.accountB = accountB;
+            this.cents = cents;
+        }
+    }
+}
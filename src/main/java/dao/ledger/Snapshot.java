@@ -0,0 +1,93 @@
+package dao.ledger;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Ledger Snapshot
+ * Point-in-time copy of every balance together with the sequence number of
+ * the last journal record it includes:
+ *
+ *     magic (4) | sequence (8) | count (4) | count x (account (4) | cents (8)) | CRC32 (8)
+ *
+ * A snapshot is written to a temporary file, forced and then renamed over the
+ * previous one, so a crash leaves either the old or the new snapshot intact.
+ */
+final class Snapshot {
+
+    private static final int MAGIC = 0x4C454447; // "LEDG"
+
+    private Snapshot() {
+    }
+
+    /**
+     * Load a snapshot into a table
+     * @param file Snapshot file
+     * @param table Empty table to fill
+     * @return Sequence number the snapshot covers, or 0 if there is no snapshot
+     * @throws IOException if the snapshot exists but is unreadable or corrupt
+     */
+    static long read(Path file, BalanceTable table) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), crc))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a ledger snapshot: " + file);
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                table.put(in.readInt(), in.readLong());
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Ledger snapshot checksum mismatch: " + file);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Atomically replace the snapshot
+     * @param file Snapshot file
+     * @param table Balances to save
+     * @param sequence Sequence number of the last command applied to the table
+     */
+    static void write(Path file, BalanceTable table, long sequence) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)), crc))) {
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(table.size());
+            IOException[] failure = new IOException[1];
+            table.forEach((accountId, cents) -> {
+                try {
+                    out.writeInt(accountId);
+                    out.writeLong(cents);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
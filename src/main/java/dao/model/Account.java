@@ -0,0 +1,12 @@
+package dao.model;
+
+/**
+ * Account
+ * Snapshot of a bank account row
+ * 
+ * @param accountId Account ID
+ * @param userId Owning user ID
+ * @param balance Balance at the time the row was read
+ */
+public record Account(int accountId, int userId, double balance) {
+}
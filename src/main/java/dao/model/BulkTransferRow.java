@@ -0,0 +1,12 @@
+package dao.model;
+
+/**
+ * Bulk Transfer Row
+ * One payment of a bulk transfer upload
+ *
+ * @param line Line of the uploaded file the row came from, 1-based
+ * @param receiverAccountId Receiver's account ID
+ * @param amount Amount to pay, positive with at most two decimals
+ */
+public record BulkTransferRow(int line, int receiverAccountId, double amount) {
+}
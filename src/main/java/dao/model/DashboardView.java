@@ -0,0 +1,23 @@
+package dao.model;
+
+import java.util.List;
+
+/**
+ * Dashboard View
+ * Everything the dashboard shows, loaded in parallel by AsyncDAO.
+ * A part that failed or did not arrive within the timeout is null, so
+ * the page can still render the parts that did.
+ *
+ * @param profile Account holder's profile, or null if unavailable
+ * @param balance Current balance, or null if unavailable
+ * @param recentTransactions Newest transactions first, or null if unavailable
+ */
+public record DashboardView(UserProfile profile, Double balance, List<Transaction> recentTransactions) {
+
+    /**
+     * @return true if every part was loaded
+     */
+    public boolean isComplete() {
+        return profile != null && balance != null && recentTransactions != null;
+    }
+}
@@ -0,0 +1,34 @@
+package dao.model;
+
+/**
+ * Direction
+ * How a transaction affects the account viewing it
+ */
+public enum Direction {
+    SENT,
+    RECEIVED,
+    WITHDRAWAL,
+    DEPOSIT;
+    
+    /**
+     * Classify a transaction relative to the viewing account
+     * @param type Transaction type
+     * @param senderAccount Sender account ID
+     * @param viewingAccount Account whose history is being shown
+     * @return Direction of the money from the viewing account's point of view
+     */
+    public static Direction of(TransactionType type, int senderAccount, int viewingAccount) {
+        switch (type) {
+            case WITHDRAWAL: return WITHDRAWAL;
+            case DEPOSIT: return DEPOSIT;
+            default: return senderAccount == viewingAccount ? SENT : RECEIVED;
+        }
+    }
+    
+    /**
+     * @return true if money left the viewing account
+     */
+    public boolean isDebit() {
+        return this == SENT || this == WITHDRAWAL;
+    }
+}
@@ -0,0 +1,41 @@
+package dao.model;
+
+/**
+ * Request Outcome
+ * What a money-moving form submission showed the user, kept so that a
+ * repeated submission with the same idempotency key can be answered with
+ * the original result (see IdempotencyDAO)
+ *
+ * @param success true to render the message as a success, false as an error
+ * @param completed false while the operation may still take effect (e.g. a queued transfer)
+ * @param message Message shown to the user
+ * @param balance Balance after the operation; NaN when unknown, and always NaN for replays
+ */
+public record RequestOutcome(boolean success, boolean completed, String message, double balance) {
+
+    public static RequestOutcome success(String message, double balance) {
+        return new RequestOutcome(true, true, message, balance);
+    }
+
+    public static RequestOutcome failure(String message) {
+        return new RequestOutcome(false, true, message, Double.NaN);
+    }
+
+    public static RequestOutcome failure(String message, double balance) {
+        return new RequestOutcome(false, true, message, balance);
+    }
+
+    /**
+     * Outcome of an operation that has not finished yet; never replayed as final
+     */
+    public static RequestOutcome pending(String message) {
+        return new RequestOutcome(false, false, message, Double.NaN);
+    }
+
+    /**
+     * @return Copy without the balance, which may be stale by the time the outcome is replayed
+     */
+    public RequestOutcome withoutBalance() {
+        return Double.isNaN(balance) ? this : new RequestOutcome(success, completed, message, Double.NaN);
+    }
+}
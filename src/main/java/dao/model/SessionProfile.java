@@ -0,0 +1,28 @@
+package dao.model;
+
+import java.util.List;
+
+/**
+ * Session Profile
+ * What a successful login knows about the user: their public details and
+ * every account they own, read in one query. Immutable, so it can be kept
+ * in the HTTP session and shared between requests.
+ *
+ * @param userId User ID
+ * @param name Full name
+ * @param email Email address
+ * @param accounts Accounts ordered by account ID, empty if the user has none yet
+ */
+public record SessionProfile(int userId, String name, String email, List<Account> accounts) {
+
+    public SessionProfile {
+        accounts = List.copyOf(accounts);
+    }
+
+    /**
+     * @return The user's first account, or null if they have none
+     */
+    public Account primaryAccount() {
+        return accounts.isEmpty() ? null : accounts.get(0);
+    }
+}
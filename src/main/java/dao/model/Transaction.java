@@ -0,0 +1,24 @@
+package dao.model;
+
+/**
+ * Transaction
+ * One row of transaction history as seen from a particular account
+ * 
+ * @param txnId Transaction ID
+ * @param senderAccount Sender account ID
+ * @param receiverAccount Receiver account ID
+ * @param amount Amount moved
+ * @param txnDateMillis Transaction time in epoch milliseconds
+ * @param status SUCCESS, or FAILED: reason
+ * @param type Transaction type
+ * @param direction Direction relative to the viewing account
+ */
+public record Transaction(int txnId,
+                          int senderAccount,
+                          int receiverAccount,
+                          double amount,
+                          long txnDateMillis,
+                          String status,
+                          TransactionType type,
+                          Direction direction) {
+}
@@ -0,0 +1,27 @@
+package dao.model;
+
+/**
+ * Transaction Type
+ * Value stored in transactions.transaction_type
+ */
+public enum TransactionType {
+    TRANSFER,
+    WITHDRAWAL,
+    DEPOSIT;
+    
+    /**
+     * Parse a transaction_type column value
+     * @param value Column value
+     * @return Matching type, TRANSFER for unknown or null values
+     */
+    public static TransactionType fromColumn(String value) {
+        if (value == null) {
+            return TRANSFER;
+        }
+        switch (value) {
+            case "WITHDRAWAL": return WITHDRAWAL;
+            case "DEPOSIT": return DEPOSIT;
+            default: return TRANSFER;
+        }
+    }
+}
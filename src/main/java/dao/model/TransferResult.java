@@ -0,0 +1,25 @@
+package dao.model;
+
+/**
+ * Transfer Result
+ * Outcome of a money movement together with the sender's balance as seen by
+ * the same database transaction, so callers need no follow-up balance query
+ * 
+ * @param status Outcome
+ * @param senderBalance Sender balance after the movement (before it, if it failed);
+ *                      NaN when the balance is unknown
+ */
+public record TransferResult(TransferStatus status, double senderBalance) {
+    
+    public static TransferResult success(double senderBalance) {
+        return new TransferResult(TransferStatus.SUCCESS, senderBalance);
+    }
+    
+    public static TransferResult failure(TransferStatus status) {
+        return new TransferResult(status, Double.NaN);
+    }
+    
+    public boolean isSuccess() {
+        return status.isSuccess();
+    }
+}
@@ -0,0 +1,17 @@
+package dao.model;
+
+/**
+ * Transfer Status
+ * Outcome of a money movement
+ */
+public enum TransferStatus {
+    SUCCESS,
+    INSUFFICIENT_FUNDS,
+    SENDER_NOT_FOUND,
+    RECEIVER_NOT_FOUND,
+    ERROR;
+    
+    public boolean isSuccess() {
+        return this == SUCCESS;
+    }
+}
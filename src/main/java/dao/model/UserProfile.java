@@ -0,0 +1,12 @@
+package dao.model;
+
+/**
+ * User Profile
+ * Public details of a registered user (never includes the password hash)
+ * 
+ * @param userId User ID
+ * @param name Full name
+ * @param email Email address
+ */
+public record UserProfile(int userId, String name, String email) {
+}
@@ -0,0 +1,37 @@
+package dao.password;
+
+/**
+ * Password Hasher
+ * One password storage scheme. PasswordService hashes new passwords with
+ * its current hasher and picks the hasher for a stored hash with supports(),
+ * so schemes can be replaced without invalidating existing passwords.
+ */
+public interface PasswordHasher {
+
+    /**
+     * Hash a password for storage
+     * @param password Plain text password
+     * @return Encoded hash, including any salt and cost parameters
+     */
+    String hash(String password);
+
+    /**
+     * Check a password against a hash produced by this scheme
+     * @param password Plain text password
+     * @param stored Encoded hash
+     * @return true if the password matches
+     */
+    boolean verify(String password, String stored);
+
+    /**
+     * @param stored Encoded hash
+     * @return true if the hash was produced by this scheme
+     */
+    boolean supports(String stored);
+
+    /**
+     * @param stored Encoded hash produced by this scheme
+     * @return true if the hash is weaker than what hash() produces today
+     */
+    boolean needsRehash(String stored);
+}
@@ -0,0 +1,296 @@
+package dao.password;
+
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.Metrics;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Password Service
+ * Hashes and verifies passwords on a small dedicated pool of CPU threads.
+ *
+ * Adaptive hashing is deliberately slow, so a burst of logins run on request
+ * threads would take every core and stall transfers. Here at most
+ * banking.password.threads hashes run at once (default half the cores), up to
+ * banking.password.queueSize more wait, and a caller that cannot be served
+ * within banking.password.timeoutMs gets a PasswordServiceBusyException.
+ *
+ * New hashes use PBKDF2 with banking.password.iterations, or, when that is
+ * not set, a cost calibrated at startup to banking.password.targetMillis.
+ * Legacy SHA-256 hashes still verify and are reported as needing a rehash.
+ */
+public final class PasswordService {
+
+    private static final Logger LOG = Log.getLogger(PasswordService.class);
+
+    private static volatile PasswordService instance;
+
+    private final PasswordHasher current;
+    private final List<PasswordHasher> legacy;
+    private final ThreadPoolExecutor pool;
+    private final int threads;
+    private final long timeoutMs;
+
+    // Verified against when the email is unknown, so response time does not reveal registered emails
+    private volatile String unknownUserHash;
+
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+
+    /**
+     * Get the shared service, calibrating the hash cost on first use
+     * @return Service configured from banking.password.* settings
+     */
+    public static PasswordService getInstance() {
+        PasswordService result = instance;
+        if (result == null) {
+            synchronized (PasswordService.class) {
+                result = instance;
+                if (result == null) {
+                    int iterations = AppConfig.getInt("banking.password.iterations", 0);
+                    Pbkdf2PasswordHasher hasher = iterations > 0
+                            ? new Pbkdf2PasswordHasher(iterations)
+                            : Pbkdf2PasswordHasher.calibrated(AppConfig.getLong("banking.password.targetMillis", 50));
+                    LOG.info("Password hashing with PBKDF2", "iterations", hasher.getIterations());
+                    int threads = AppConfig.getInt("banking.password.threads",
+                            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                    result = new PasswordService(hasher, List.of(new Sha256PasswordHasher()), threads,
+                            AppConfig.getInt("banking.password.queueSize", 100),
+                            AppConfig.getLong("banking.password.timeoutMs", 5000));
+                    registerMetrics(result);
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void registerMetrics(PasswordService service) {
+        Metrics.gauge("banking_password_queue_depth", "Password hashes waiting for a hashing thread", service::getQueueDepth);
+        Metrics.gauge("banking_password_hashes_active", "Password hashes running", service::getActiveCount);
+        Metrics.counter("banking_password_hashes_total", "Password hashes completed", service::getCompletedCount);
+        Metrics.counter("banking_password_rejected_total", "Password hashes refused because the queue was full",
+                service::getRejectedCount);
+        Metrics.counter("banking_password_timeouts_total", "Password hashes abandoned after banking.password.timeoutMs",
+                service::getTimeoutCount);
+        Metrics.gauge("banking_password_hash_average_milliseconds", "Mean time spent hashing a password",
+                service::getAverageHashMillis);
+        Metrics.gauge("banking_password_queue_average_milliseconds", "Mean time a password hash waits for a thread",
+                service::getAverageQueueMillis);
+    }
+
+    /**
+     * Stop the shared service's pool, if it was created
+     */
+    public static void shutdown() {
+        PasswordService result;
+        synchronized (PasswordService.class) {
+            result = instance;
+            instance = null;
+        }
+        if (result != null) {
+            result.close();
+        }
+    }
+
+    /**
+     * Create a service
+     * @param current Hasher for new passwords
+     * @param legacy Hashers for older stored formats, verified but always upgraded
+     * @param threads Hashes that may run at once
+     * @param queueSize Requests that may wait for a thread before new ones are refused
+     * @param timeoutMs How long a caller waits for its result
+     */
+    public PasswordService(PasswordHasher current, List<PasswordHasher> legacy, int threads, int queueSize, long timeoutMs) {
+        this.current = current;
+        this.legacy = List.copyOf(legacy);
+        this.threads = threads;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "password-hasher-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Hash a new password with the current scheme
+     * @param password Plain text password
+     * @return Encoded hash
+     * @throws PasswordServiceBusyException if the pool could not serve the request in time
+     */
+    public String hash(String password) {
+        return run(() -> current.hash(password));
+    }
+
+    /**
+     * Check a password against its stored hash
+     * @param password Plain text password
+     * @param stored Stored hash in any supported format
+     * @return Whether it matches and whether the hash should be upgraded
+     * @throws PasswordServiceBusyException if the pool could not serve the request in time
+     */
+    public Verification verify(String password, String stored) {
+        PasswordHasher hasher = hasherFor(stored);
+        if (hasher == null) {
+            return Verification.MISMATCH;
+        }
+        return run(() -> {
+            if (!hasher.verify(password, stored)) {
+                return Verification.MISMATCH;
+            }
+            return hasher != current || current.needsRehash(stored) ? Verification.MATCH_NEEDS_REHASH : Verification.MATCH;
+        });
+    }
+
+    /**
+     * Spend the same work as a real verification for an email that is not registered
+     * @param password Plain text password
+     * @return Always MISMATCH
+     * @throws PasswordServiceBusyException if the pool could not serve the request in time
+     */
+    public Verification verifyUnknownUser(String password) {
+        String hash = unknownUserHash;
+        if (hash == null) {
+            hash = hash("unknown-user");
+            unknownUserHash = hash;
+        }
+        verify(password, hash);
+        return Verification.MISMATCH;
+    }
+
+    /**
+     * Stop accepting work; queued hashes still run
+     */
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return Requests waiting for a hashing thread
+     */
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * @return Highest queue depth seen
+     */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    /**
+     * @return Hashes running now
+     */
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * @return Requests refused because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return Requests whose caller gave up after the timeout
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return Mean time spent hashing, in milliseconds
+     */
+    public double getAverageHashMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0 : hashNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * @return Mean time spent waiting for a hashing thread, in milliseconds
+     */
+    public double getAverageQueueMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0 : queueNanos.sum() / 1e6 / count;
+    }
+
+    private PasswordHasher hasherFor(String stored) {
+        if (current.supports(stored)) {
+            return current;
+        }
+        for (PasswordHasher hasher : legacy) {
+            if (hasher.supports(stored)) {
+                return hasher;
+            }
+        }
+        return null;
+    }
+
+    private <T> T run(Callable<T> work) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                long start = System.nanoTime();
+                queueNanos.add(start - queuedAt);
+                try {
+                    return work.call();
+                } finally {
+                    hashNanos.add(System.nanoTime() - start);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordServiceBusyException("Password hashing queue is full");
+        }
+        peakQueueDepth.accumulateAndGet(pool.getQueue().size(), Math::max);
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            timeouts.increment();
+            throw new PasswordServiceBusyException("Password hashing took longer than " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new PasswordServiceBusyException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package dao.password;
+
+/**
+ * Password Service Busy Exception
+ * Thrown when the hashing pool is saturated and a request could not be
+ * served within the queue timeout. Callers should ask the user to retry
+ * rather than report a wrong password.
+ */
+public class PasswordServiceBusyException extends RuntimeException {
+
+    public PasswordServiceBusyException(String message) {
+        super(message);
+    }
+}
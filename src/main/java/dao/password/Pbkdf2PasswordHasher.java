@@ -0,0 +1,151 @@
+package dao.password;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2 Password Hasher
+ * Salted PBKDF2-HMAC-SHA256, stored as
+ *   pbkdf2-sha256$iterations$salt$hash
+ * with Base64 salt (16 bytes) and hash (32 bytes). The iteration count
+ * travels with each hash, so the cost can be raised without breaking
+ * existing passwords.
+ */
+public final class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    static final String PREFIX = "pbkdf2-sha256$";
+
+    /** Lower bound for calibrated costs, whatever the hardware */
+    public static final int MIN_ITERATIONS = 10000;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int MAX_ITERATIONS = 10000000;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+
+    /**
+     * @param iterations PBKDF2 iteration count for new hashes
+     */
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive: " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * Create a hasher whose hash() takes about the target time on this machine
+     * @param targetMillis Desired time per hash
+     * @return Hasher with a calibrated cost, never below MIN_ITERATIONS
+     */
+    public static Pbkdf2PasswordHasher calibrated(long targetMillis) {
+        return new Pbkdf2PasswordHasher(calibrate(targetMillis));
+    }
+
+    /**
+     * Measure PBKDF2 on this machine and scale the iteration count to the target
+     * @param targetMillis Desired time per hash
+     * @return Iteration count, rounded to a thousand and clamped to a sane range
+     */
+    public static int calibrate(long targetMillis) {
+        byte[] salt = new byte[SALT_BYTES];
+        int probe = MIN_ITERATIONS;
+        // Let the JIT compile the HMAC loop before timing it
+        for (int i = 0; i < 5; i++) {
+            derive("calibration", salt, probe);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            derive("calibration", salt, probe);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double perIteration = (double) Math.max(best, 1) / probe;
+        long iterations = Math.round(targetMillis * 1000000.0 / perIteration / 1000.0) * 1000;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + '$' + base64.encodeToString(salt) + '$'
+                + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    @Override
+    public boolean verify(String password, String stored) {
+        String[] parts = split(stored);
+        if (parts == null) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            if (storedIterations < 1 || storedIterations > MAX_ITERATIONS) {
+                return false;
+            }
+            return MessageDigest.isEqual(expected, derive(password, salt, storedIterations));
+        } catch (IllegalArgumentException e) {
+            // Malformed count or Base64; treat as a mismatch rather than an error
+            return false;
+        }
+    }
+
+    @Override
+    public boolean supports(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    /**
+     * Calibration gives slightly different costs on each server and restart,
+     * so only hashes at less than half the current cost are upgraded; anything
+     * closer would make users flip between servers' costs on every login.
+     */
+    @Override
+    public boolean needsRehash(String stored) {
+        String[] parts = split(stored);
+        if (parts == null) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[1]) * 2L < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static String[] split(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return null;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length == 4 ? parts : null;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // PBKDF2WithHmacSHA256 is required on every Java 8+ platform
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
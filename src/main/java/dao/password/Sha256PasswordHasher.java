@@ -0,0 +1,64 @@
+package dao.password;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 Password Hasher
+ * The original unsalted scheme: 64 lowercase hex digits of SHA-256.
+ * Kept only to verify existing hashes; they always need a rehash, so
+ * users move to the current scheme on their next successful login.
+ */
+public final class Sha256PasswordHasher implements PasswordHasher {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // MessageDigest.getInstance walks the provider list; reuse one digest per thread
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Override
+    public String hash(String password) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public boolean verify(String password, String stored) {
+        return MessageDigest.isEqual(hash(password).getBytes(StandardCharsets.US_ASCII),
+                stored.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public boolean supports(String stored) {
+        if (stored == null || stored.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < stored.length(); i++) {
+            char c = stored.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean needsRehash(String stored) {
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package dao.password;
+
+/**
+ * Verification
+ * Result of checking a password against its stored hash
+ */
+public enum Verification {
+    /** Password matches and the hash is up to date */
+    MATCH,
+    /** Password matches but the hash uses an old scheme or cost and should be replaced */
+    MATCH_NEEDS_REHASH,
+    /** Password does not match, or the stored hash is in no known format */
+    MISMATCH;
+
+    public boolean matches() {
+        return this != MISMATCH;
+    }
+}
@@ -4,14 +4,18 @@ import dao.AccountDAO;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.log.Log;
+import util.log.Logger;
 import java.io.IOException;
 
 /**
  * Add Account Servlet
  * Handles account creation for new users
  */
-@WebServlet("/AddAccountServlet")
-public class AddAccountServlet extends HttpServlet {
+@WebServlet(value = "/AddAccountServlet", asyncSupported = true)
+public class AddAccountServlet extends AsyncJdbcServlet {
+
+    private static final Logger LOG = Log.getLogger(AddAccountServlet.class);
     
     private AccountDAO accountDAO;
     
@@ -61,7 +65,7 @@ public class AddAccountServlet extends HttpServlet {
             request.setAttribute("error", "Please enter a valid amount!");
             request.getRequestDispatcher("addAccount.jsp").forward(request, response);
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error adding account", e);
             request.setAttribute("error", "An error occurred: " + e.getMessage());
             request.getRequestDispatcher("addAccount.jsp").forward(request, response);
         }
@@ -0,0 +1,45 @@
+package servlets;
+
+import dao.AsyncDAO;
+import dao.CrossShardTransfers;
+import dao.MoneyEngines;
+import dao.audit.AuditJournal;
+import dao.TransferBatcher;
+import dao.password.PasswordService;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import util.DBConnection;
+import util.RequestExecutor;
+import util.log.Log;
+
+/**
+ * Application Lifecycle Listener
+ * Releases shared resources such as the transfer batcher and connection pool when the application is undeployed
+ */
+@WebListener
+public class AppLifecycleListener implements ServletContextListener {
+    
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        // Finish cross-shard transfers a previous run left half done
+        if (DBConnection.getShardCount() > 1) {
+            CrossShardTransfers.getInstance();
+        }
+    }
+    
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        // Stop taking async requests, then drain queued transfers while the pool is still open
+        RequestExecutor.shutdown();
+        AsyncDAO.shutdown();
+        PasswordService.shutdown();
+        TransferBatcher.shutdown();
+        MoneyEngines.shutdown();
+        CrossShardTransfers.shutdown();
+        AuditJournal.shutdown();
+        DBConnection.shutdown();
+        // Last, so the shutdown of everything above is still logged
+        Log.shutdown();
+    }
+}
@@ -0,0 +1,145 @@
+package servlets;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.AppConfig;
+import util.DBConnection;
+import util.ReadYourWrites;
+import util.RequestExecutor;
+import util.log.Log;
+import util.log.Logger;
+import java.io.IOException;
+
+/**
+ * Async JDBC Servlet
+ * Base class for servlets whose doGet/doPost block on database calls
+ *
+ * With banking.async.enabled=true each request is put into async mode and
+ * its doGet/doPost runs on a RequestExecutor thread (virtual where
+ * available), so the container thread goes straight back to accepting
+ * connections instead of waiting on JDBC. Subclasses are written exactly
+ * like ordinary servlets and must be registered with asyncSupported = true.
+ *
+ * When the executor's concurrency limit stays full for its queue timeout
+ * the request gets 503 Service Unavailable. Requests that take longer than
+ * banking.async.timeoutMs are ended by the container.
+ *
+ * With async disabled (the default) requests run on the container thread
+ * as before.
+ *
+ * When read replicas are configured, every request other than GET or HEAD
+ * counts as a write: its time goes into the BANKING_LAST_WRITE cookie, and
+ * later requests bind that token (see ReadYourWrites) so the session keeps
+ * reading from the primary until the replicas have caught up.
+ */
+public abstract class AsyncJdbcServlet extends HttpServlet {
+
+    private static final Logger LOG = Log.getLogger(AsyncJdbcServlet.class);
+
+    /** Cookie carrying the time of the session's last write */
+    public static final String LAST_WRITE_COOKIE = "BANKING_LAST_WRITE";
+
+    private final long asyncTimeoutMs = AppConfig.getLong("banking.async.timeoutMs", 30000);
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            // Forwards and includes run inside the original request's binding
+            super.service(request, response);
+            return;
+        }
+
+        long lastWrite = lastWrite(request, response);
+        RequestExecutor executor = RequestExecutor.getInstance();
+        if (!executor.isEnabled() || !request.isAsyncSupported() || request.isAsyncStarted()) {
+            serviceWithToken(request, response, lastWrite);
+            return;
+        }
+
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(asyncTimeoutMs);
+        executor.execute(() -> {
+            try {
+                serviceWithToken(request, response, lastWrite);
+            } catch (ServletException | IOException | RuntimeException e) {
+                LOG.error("Request failed", e, "uri", request.getRequestURI());
+                sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } finally {
+                complete(async);
+            }
+        }, () -> {
+            sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            complete(async);
+        });
+    }
+
+    private void serviceWithToken(HttpServletRequest request, HttpServletResponse response, long lastWrite)
+            throws ServletException, IOException {
+        ReadYourWrites.begin(lastWrite);
+        try {
+            super.service(request, response);
+        } finally {
+            ReadYourWrites.end();
+        }
+    }
+
+    /**
+     * Read the session's last write time, or record a new one for requests that may write
+     * @return Time of the last write, 0 if unknown or when there are no replicas
+     */
+    private static long lastWrite(HttpServletRequest request, HttpServletResponse response) {
+        if (!DBConnection.hasReplicas()) {
+            return 0;
+        }
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            Cookie[] cookies = request.getCookies();
+            if (cookies != null) {
+                for (Cookie cookie : cookies) {
+                    if (LAST_WRITE_COOKIE.equals(cookie.getName())) {
+                        try {
+                            return Long.parseLong(cookie.getValue());
+                        } catch (NumberFormatException e) {
+                            return 0;
+                        }
+                    }
+                }
+            }
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        Cookie cookie = new Cookie(LAST_WRITE_COOKIE, Long.toString(now));
+        cookie.setHttpOnly(true);
+        cookie.setSecure(AppConfig.getBoolean("banking.session.secureCookie", false));
+        cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+        cookie.setMaxAge((int) ((ReadYourWrites.getWindowMillis() + 999) / 1000));
+        cookie.setAttribute("SameSite", "Lax");
+        response.addCookie(cookie);
+        return now;
+    }
+
+    private static void sendError(HttpServletResponse response, int status) {
+        try {
+            if (!response.isCommitted()) {
+                response.sendError(status);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client gone or request already timed out
+        }
+    }
+
+    private static void complete(AsyncContext async) {
+        try {
+            async.complete();
+        } catch (IllegalStateException e) {
+            // Already completed by the container after banking.async.timeoutMs
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package servlets;
+
+import dao.BulkTransferDAO;
+import dao.IdempotencyDAO;
+import dao.model.BulkTransferRow;
+import dao.model.RequestOutcome;
+import dao.model.TransferStatus;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk Transfer Servlet
+ * Pays many receivers from the logged-in user's account in one upload, as
+ * in a payroll run, and streams back a per-row result file
+ *
+ * The request body is CSV (Content-Type text/csv), one payment per line:
+ * receiver_account,amount. Further columns are ignored and a first line
+ * that is not a payment is taken as a header. Every row is validated before
+ * any money moves; if a row is invalid nothing is paid and the response is
+ * 422 with the bad rows marked INVALID and the others SKIPPED. Otherwise the
+ * rows are paid through BulkTransferDAO and each gets its TransferStatus.
+ *
+ * The result is CSV with the columns line,receiver_account,amount,status,message
+ * in upload order. X-Bulk-Rows, X-Bulk-Paid and X-Bulk-Rows-Per-Second headers
+ * summarize the run. Uploads are limited to banking.bulk.maxRows rows
+ * (default 500000).
+ *
+ * An upload carrying an Idempotency-Key header pays at most once; a repeat
+ * gets 409 with the summary of the first run.
+ *
+ * BulkTransferDAO picks the payment path for the configured money engine.
+ *
+ * Registered without async support: a large upload can outlast
+ * banking.async.timeoutMs, so it keeps its container thread.
+ */
+@WebServlet("/BulkTransferServlet")
+public class BulkTransferServlet extends AsyncJdbcServlet {
+
+    private static final Logger LOG = Log.getLogger(BulkTransferServlet.class);
+
+    private BulkTransferDAO bulkTransferDAO;
+    private IdempotencyDAO idempotencyDAO;
+    private int maxRows;
+    private int flushRows;
+
+    /**
+     * A line that could not be turned into a payment
+     */
+    private record InvalidRow(int line, String receiver, String amount, String message) {
+    }
+
+    @Override
+    public void init() throws ServletException {
+        bulkTransferDAO = new BulkTransferDAO();
+        idempotencyDAO = new IdempotencyDAO();
+        maxRows = AppConfig.getInt("banking.bulk.maxRows", 500000);
+        flushRows = AppConfig.getInt("banking.export.flushRows", 500);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Check if user is logged in
+        HttpSession session = request.getSession(false);
+
+        if (session == null || session.getAttribute("userId") == null) {
+            response.sendRedirect("login.jsp");
+            return;
+        }
+
+        int userId = (Integer) session.getAttribute("userId");
+        int senderAccountId = (Integer) session.getAttribute("accountId");
+
+        String idempotencyKey = IdempotencyKeys.from(request);
+        if (idempotencyKey != null && !IdempotencyDAO.isValidKey(idempotencyKey)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid request key");
+            return;
+        }
+
+        // Step 1: Read and validate the whole upload before any money moves
+        List<BulkTransferRow> rows = new ArrayList<>();
+        List<InvalidRow> invalid = new ArrayList<>();
+        request.setCharacterEncoding("UTF-8");
+        try (BufferedReader reader = request.getReader()) {
+            String text;
+            int line = 0;
+            int nonBlank = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                nonBlank++;
+                if (rows.size() + invalid.size() >= maxRows) {
+                    response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                            "At most " + maxRows + " rows per upload");
+                    return;
+                }
+                parse(text, line, nonBlank == 1, senderAccountId, rows, invalid);
+            }
+        }
+        if (rows.isEmpty() && invalid.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The upload contains no payments");
+            return;
+        }
+
+        // Step 2: Pay the rows, at most once per idempotency key
+        long start = System.nanoTime();
+        TransferStatus[][] paid = new TransferStatus[1][];
+        RequestOutcome outcome;
+        if (invalid.isEmpty()) {
+            outcome = idempotencyDAO.execute(userId, idempotencyKey, "BULK_TRANSFER", () -> {
+                paid[0] = bulkTransferDAO.transfer(senderAccountId, rows);
+                return RequestOutcome.success(summary(paid[0]), Double.NaN);
+            });
+            if (paid[0] == null) {
+                response.sendError(HttpServletResponse.SC_CONFLICT, outcome.message());
+                return;
+            }
+            session.setAttribute("balance", bulkTransferDAO.getBalance(senderAccountId));
+        } else {
+            BulkTransferDAO.countInvalid(invalid.size());
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        int total = rows.size() + invalid.size();
+        int succeeded = paid[0] == null ? 0 : count(paid[0], TransferStatus.SUCCESS);
+        long rowsPerSecond = paid[0] == null ? 0
+                : rows.size() * TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsedNanos);
+        if (paid[0] != null) {
+            LOG.info("Bulk transfer applied", "sender", senderAccountId, "rows", rows.size(),
+                    "rowsPerSecond", rowsPerSecond);
+        }
+
+        // Step 3: Stream the per-row result in upload order
+        response.setStatus(invalid.isEmpty() ? HttpServletResponse.SC_OK : 422);
+        response.setContentType("text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"bulk-transfer-result.csv\"");
+        response.setHeader("X-Bulk-Rows", Integer.toString(total));
+        response.setHeader("X-Bulk-Paid", Integer.toString(succeeded));
+        response.setHeader("X-Bulk-Rows-Per-Second", Long.toString(rowsPerSecond));
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), 16 * 1024);
+        out.write("line,receiver_account,amount,status,message\r\n");
+        int r = 0;
+        int v = 0;
+        for (int written = 1; r < rows.size() || v < invalid.size(); written++) {
+            if (v < invalid.size() && (r == rows.size() || invalid.get(v).line() < rows.get(r).line())) {
+                InvalidRow row = invalid.get(v++);
+                writeRow(out, row.line(), row.receiver(), row.amount(), "INVALID", row.message());
+            } else {
+                BulkTransferRow row = rows.get(r);
+                String status = paid[0] == null ? "SKIPPED" : paid[0][r].name();
+                writeRow(out, row.line(), Integer.toString(row.receiverAccountId()),
+                        BigDecimal.valueOf(row.amount()).setScale(2).toPlainString(), status, null);
+                r++;
+            }
+            // Push complete chunks to the client instead of buffering the whole result
+            if (written % flushRows == 0) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Parse one line into a payment, or record why it is not one
+     */
+    private static void parse(String text, int line, boolean first, int senderAccountId,
+                              List<BulkTransferRow> rows, List<InvalidRow> invalid) {
+        int comma = text.indexOf(',');
+        String receiverStr = (comma < 0 ? text : text.substring(0, comma)).trim();
+        int end = comma < 0 ? -1 : text.indexOf(',', comma + 1);
+        String amountStr = comma < 0 ? "" : (end < 0 ? text.substring(comma + 1) : text.substring(comma + 1, end)).trim();
+
+        int receiverAccountId;
+        try {
+            receiverAccountId = Integer.parseInt(receiverStr);
+        } catch (NumberFormatException e) {
+            if (first) {
+                // Header row
+                return;
+            }
+            invalid.add(new InvalidRow(line, receiverStr, amountStr, "Invalid account number"));
+            return;
+        }
+
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(amountStr);
+        } catch (NumberFormatException e) {
+            invalid.add(new InvalidRow(line, receiverStr, amountStr, "Invalid amount"));
+            return;
+        }
+        if (amount.signum() <= 0) {
+            invalid.add(new InvalidRow(line, receiverStr, amountStr, "Amount must be greater than zero"));
+        } else if (amount.stripTrailingZeros().scale() > 2) {
+            invalid.add(new InvalidRow(line, receiverStr, amountStr, "Amount has more than two decimals"));
+        } else if (amount.compareTo(BigDecimal.valueOf(999999999999L, 2)) > 0) {
+            invalid.add(new InvalidRow(line, receiverStr, amountStr, "Amount is too large"));
+        } else if (receiverAccountId == senderAccountId) {
+            invalid.add(new InvalidRow(line, receiverStr, amountStr, "Cannot transfer to your own account"));
+        } else {
+            rows.add(new BulkTransferRow(line, receiverAccountId, amount.doubleValue()));
+        }
+    }
+
+    private static void writeRow(Writer out, int line, String receiver, String amount, String status, String message)
+            throws IOException {
+        out.write(Integer.toString(line));
+        out.write(',');
+        writeField(out, receiver);
+        out.write(',');
+        writeField(out, amount);
+        out.write(',');
+        out.write(status);
+        out.write(',');
+        writeField(out, message);
+        out.write("\r\n");
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    private static String summary(TransferStatus[] statuses) {
+        return "Bulk transfer paid " + count(statuses, TransferStatus.SUCCESS) + " of " + statuses.length + " rows.";
+    }
+
+    private static int count(TransferStatus[] statuses, TransferStatus status) {
+        int n = 0;
+        for (TransferStatus s : statuses) {
+            if (s == status) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -1,23 +1,30 @@
 package servlets;
 
-import dao.AccountDAO;
+import dao.AsyncDAO;
+import dao.model.DashboardView;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.AppConfig;
 import java.io.IOException;
 
 /**
  * Dashboard Servlet
  * Displays user dashboard with updated account information
+ * Profile, balance and recent activity are loaded in parallel (see AsyncDAO);
+ * a part that is not back within banking.dashboard.timeoutMs is left out and
+ * the page falls back to the values already in the session.
  */
-@WebServlet("/DashboardServlet")
-public class DashboardServlet extends HttpServlet {
+@WebServlet(value = "/DashboardServlet", asyncSupported = true)
+public class DashboardServlet extends AsyncJdbcServlet {
     
-    private AccountDAO accountDAO;
+    private AsyncDAO asyncDAO;
+    private long timeoutMs;
     
     @Override
     public void init() throws ServletException {
-        accountDAO = new AccountDAO();
+        asyncDAO = AsyncDAO.getInstance();
+        timeoutMs = AppConfig.getLong("banking.dashboard.timeoutMs", 2000);
     }
     
     @Override
@@ -41,13 +48,21 @@ public class DashboardServlet extends HttpServlet {
         }
         
         // Get account ID from session
+        int userId = (Integer) session.getAttribute("userId");
         int accountId = (Integer) session.getAttribute("accountId");
         
-        // Fetch updated balance from database
-        double currentBalance = accountDAO.getBalance(accountId);
+        // Fetch profile, balance and recent activity at once
+        DashboardView view = asyncDAO.loadDashboard(userId, accountId, timeoutMs);
         
-        // Update session with latest balance
-        session.setAttribute("balance", currentBalance);
+        // Update session with whatever arrived; missing parts keep their session values
+        if (view.profile() != null) {
+            session.setAttribute("name", view.profile().name());
+        }
+        if (view.balance() != null) {
+            session.setAttribute("balance", view.balance());
+        }
+        request.setAttribute("recentTransactions", view.recentTransactions());
+        request.setAttribute("partial", !view.isComplete());
         
         // Forward to dashboard JSP
         request.getRequestDispatcher("dashboard.jsp").forward(request, response);
@@ -1,20 +1,29 @@
 package servlets;
 
-import dao.AccountDAO;
+import dao.IdempotencyDAO;
+import dao.MoneyEngine;
+import dao.MoneyEngines;
+import dao.model.RequestOutcome;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.log.Log;
+import util.log.Logger;
 import java.io.IOException;
 import java.math.BigDecimal;
 
-@WebServlet("/DepositServlet")
-public class DepositServlet extends HttpServlet {
+@WebServlet(value = "/DepositServlet", asyncSupported = true)
+public class DepositServlet extends AsyncJdbcServlet {
+
+    private static final Logger LOG = Log.getLogger(DepositServlet.class);
     
-    private AccountDAO accountDAO;
+    private MoneyEngine moneyEngine;
+    private IdempotencyDAO idempotencyDAO;
     
     @Override
     public void init() throws ServletException {
-        accountDAO = new AccountDAO();
+        moneyEngine = MoneyEngines.getDefault();
+        idempotencyDAO = new IdempotencyDAO();
     }
     
     @Override
@@ -53,15 +62,26 @@ public class DepositServlet extends HttpServlet {
                 return;
             }
             
-            boolean success = accountDAO.deposit(accountId, amount.doubleValue());
+            String idempotencyKey = IdempotencyKeys.from(request);
+            if (idempotencyKey != null && !IdempotencyDAO.isValidKey(idempotencyKey)) {
+                request.setAttribute("error", "Invalid request key.");
+                request.getRequestDispatcher("deposit.jsp").forward(request, response);
+                return;
+            }
+            
+            // A repeated submission of the same form gets the first outcome back
+            int userId = (Integer) session.getAttribute("userId");
+            RequestOutcome outcome = idempotencyDAO.execute(userId, idempotencyKey, "DEPOSIT",
+                    () -> deposit(accountId, amount.doubleValue()));
             
-            if (success) {
+            if (outcome.success()) {
                 // Update balance in session and redirect to dashboard
-                double newBalance = accountDAO.getBalance(accountId);
-                session.setAttribute("balance", newBalance);
+                if (!Double.isNaN(outcome.balance())) {
+                    session.setAttribute("balance", outcome.balance());
+                }
                 response.sendRedirect("DashboardServlet");
             } else {
-                request.setAttribute("error", "Deposit failed. Please try again.");
+                request.setAttribute("error", outcome.message());
                 request.getRequestDispatcher("deposit.jsp").forward(request, response);
             }
             
@@ -69,9 +89,16 @@ public class DepositServlet extends HttpServlet {
             request.setAttribute("error", "Invalid amount format.");
             request.getRequestDispatcher("deposit.jsp").forward(request, response);
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error processing deposit", e);
             request.setAttribute("error", "An unexpected error occurred.");
             request.getRequestDispatcher("deposit.jsp").forward(request, response);
         }
     }
+    
+    private RequestOutcome deposit(int accountId, double amount) {
+        if (moneyEngine.deposit(accountId, amount)) {
+            return RequestOutcome.success("Deposit successful.", moneyEngine.getBalance(accountId));
+        }
+        return RequestOutcome.failure("Deposit failed. Please try again.");
+    }
 }
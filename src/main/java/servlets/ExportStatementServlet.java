@@ -0,0 +1,276 @@
+package servlets;
+
+import dao.TransactionDAO;
+import dao.TransactionRowHandler;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Export Statement Servlet
+ * Streams an account statement as CSV or newline-delimited JSON
+ *
+ * Rows go straight from the JDBC result set to the response stream and are
+ * flushed in chunks, so exports of any size use constant memory and the
+ * first bytes reach the client before the query has finished.
+ *
+ * Parameters: format=csv|json, from=yyyy-MM-dd, to=yyyy-MM-dd (both inclusive, optional)
+ *
+ * Registered without async support: a long export can outlast
+ * banking.async.timeoutMs, so it keeps its container thread.
+ */
+@WebServlet("/ExportStatementServlet")
+public class ExportStatementServlet extends AsyncJdbcServlet {
+
+    private static final Logger LOG = Log.getLogger(ExportStatementServlet.class);
+
+    private TransactionDAO transactionDAO;
+    private int flushRows;
+
+    @Override
+    public void init() throws ServletException {
+        transactionDAO = new TransactionDAO();
+        flushRows = AppConfig.getInt("banking.export.flushRows", 500);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        // Check if user is logged in
+        HttpSession session = request.getSession(false);
+
+        if (session == null || session.getAttribute("userId") == null) {
+            response.sendRedirect("login.jsp");
+            return;
+        }
+
+        int accountId = (Integer) session.getAttribute("accountId");
+        boolean json = "json".equalsIgnoreCase(request.getParameter("format"));
+
+        // Validate the date range before any output is written
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            String fromStr = request.getParameter("from");
+            String toStr = request.getParameter("to");
+            fromDate = fromStr == null || fromStr.isEmpty() ? LocalDate.of(1970, 1, 2) : LocalDate.parse(fromStr);
+            toDate = toStr == null || toStr.isEmpty() ? LocalDate.now() : LocalDate.parse(toStr);
+        } catch (DateTimeParseException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Dates must use the yyyy-MM-dd format");
+            return;
+        }
+        if (toDate.isBefore(fromDate)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The 'to' date must not be before the 'from' date");
+            return;
+        }
+
+        Timestamp from = Timestamp.valueOf(fromDate.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(toDate.plusDays(1).atStartOfDay());
+
+        String fileName = "statement-" + accountId + "-" + fromDate + "-" + toDate + (json ? ".ndjson" : ".csv");
+        response.setContentType(json ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), 16 * 1024);
+        StatementWriter writer = json ? new JsonStatementWriter(out, accountId, flushRows)
+                                      : new CsvStatementWriter(out, accountId, flushRows);
+
+        try {
+            writer.begin();
+            transactionDAO.streamTransactions(accountId, from, to, writer);
+            out.flush();
+
+        } catch (SQLException e) {
+            // Headers are usually committed by now; all we can do is cut the stream short
+            LOG.error("Statement export failed", e, "account", accountId);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Export failed");
+            } else {
+                throw new IOException("Statement export aborted", e);
+            }
+        }
+    }
+
+    /**
+     * Base for the row writers: direction labels, amount formatting and chunked flushing
+     */
+    private abstract static class StatementWriter implements TransactionRowHandler {
+
+        protected final Writer out;
+        private final int accountId;
+        private final int flushRows;
+        private int pending;
+
+        StatementWriter(Writer out, int accountId, int flushRows) {
+            this.out = out;
+            this.accountId = accountId;
+            this.flushRows = flushRows;
+        }
+
+        void begin() throws IOException {
+        }
+
+        @Override
+        public void onRow(int txnId, int senderAccount, int receiverAccount, double amount,
+                          Timestamp txnDate, String status, String transactionType) throws IOException {
+            String direction;
+            if ("WITHDRAWAL".equals(transactionType)) {
+                direction = "WITHDRAWAL";
+            } else if (senderAccount == accountId) {
+                direction = "SENT";
+            } else {
+                direction = "RECEIVED";
+            }
+
+            writeRow(txnId, senderAccount, receiverAccount, amount, txnDate, status, transactionType, direction);
+
+            // Push complete chunks to the client instead of buffering the whole export
+            if (++pending >= flushRows) {
+                out.flush();
+                pending = 0;
+            }
+        }
+
+        abstract void writeRow(int txnId, int senderAccount, int receiverAccount, double amount, Timestamp txnDate,
+                               String status, String transactionType, String direction) throws IOException;
+
+        /**
+         * Write an amount with exactly two decimals without going through String.format
+         */
+        void writeAmount(double amount) throws IOException {
+            long cents = Math.round(amount * 100);
+            if (cents < 0) {
+                out.write('-');
+                cents = -cents;
+            }
+            out.write(Long.toString(cents / 100));
+            out.write('.');
+            long fraction = cents % 100;
+            if (fraction < 10) {
+                out.write('0');
+            }
+            out.write(Long.toString(fraction));
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header row
+     */
+    private static final class CsvStatementWriter extends StatementWriter {
+
+        CsvStatementWriter(Writer out, int accountId, int flushRows) {
+            super(out, accountId, flushRows);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write("txn_id,txn_date,direction,transaction_type,sender_account,receiver_account,amount,status\r\n");
+        }
+
+        @Override
+        void writeRow(int txnId, int senderAccount, int receiverAccount, double amount, Timestamp txnDate,
+                      String status, String transactionType, String direction) throws IOException {
+            out.write(Integer.toString(txnId));
+            out.write(',');
+            out.write(txnDate.toLocalDateTime().toString());
+            out.write(',');
+            out.write(direction);
+            out.write(',');
+            writeField(transactionType);
+            out.write(',');
+            out.write(Integer.toString(senderAccount));
+            out.write(',');
+            out.write(Integer.toString(receiverAccount));
+            out.write(',');
+            writeAmount(amount);
+            out.write(',');
+            writeField(status);
+            out.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    /**
+     * One JSON object per line
+     */
+    private static final class JsonStatementWriter extends StatementWriter {
+
+        JsonStatementWriter(Writer out, int accountId, int flushRows) {
+            super(out, accountId, flushRows);
+        }
+
+        @Override
+        void writeRow(int txnId, int senderAccount, int receiverAccount, double amount, Timestamp txnDate,
+                      String status, String transactionType, String direction) throws IOException {
+            out.write("{\"txnId\":");
+            out.write(Integer.toString(txnId));
+            out.write(",\"txnDate\":\"");
+            out.write(txnDate.toLocalDateTime().toString());
+            out.write("\",\"direction\":\"");
+            out.write(direction);
+            out.write("\",\"transactionType\":");
+            writeString(transactionType);
+            out.write(",\"senderAccount\":");
+            out.write(Integer.toString(senderAccount));
+            out.write(",\"receiverAccount\":");
+            out.write(Integer.toString(receiverAccount));
+            out.write(",\"amount\":");
+            writeAmount(amount);
+            out.write(",\"status\":");
+            writeString(status);
+            out.write("}\n");
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.write("null");
+                return;
+            }
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            out.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                }
+            }
+            out.write('"');
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package servlets;
+
+import dao.IdempotencyDAO;
+import dao.model.RequestOutcome;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+
+/**
+ * Idempotency Keys
+ * Request helpers shared by the servlets that move money
+ */
+final class IdempotencyKeys {
+
+    private IdempotencyKeys() {
+    }
+
+    /**
+     * Key of a submission, from the Idempotency-Key header or the idempotencyKey form field
+     * @return Key, or null if the client sent none
+     */
+    static String from(HttpServletRequest request) {
+        String key = request.getHeader(IdempotencyDAO.HEADER);
+        if (key == null || key.trim().isEmpty()) {
+            key = request.getParameter(IdempotencyDAO.PARAMETER);
+        }
+        return key == null || key.trim().isEmpty() ? null : key.trim();
+    }
+
+    /**
+     * Show an outcome on a form page, updating the session balance when it is known
+     */
+    static void render(HttpServletRequest request, HttpServletResponse response, HttpSession session,
+                       RequestOutcome outcome, String page) throws ServletException, IOException {
+        if (!Double.isNaN(outcome.balance())) {
+            session.setAttribute("balance", outcome.balance());
+        }
+        request.setAttribute(outcome.success() ? "success" : "error", outcome.message());
+        request.getRequestDispatcher(page).forward(request, response);
+    }
+}
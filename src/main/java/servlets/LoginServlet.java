@@ -1,20 +1,24 @@
 package servlets;
 
 import dao.UserDAO;
-import dao.AccountDAO;
+import dao.password.PasswordServiceBusyException;
+import dao.model.Account;
+import dao.model.SessionProfile;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.log.Log;
+import util.log.Logger;
 import java.io.IOException;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 
 /**
  * Login Servlet
  * Handles user authentication and session management
  */
-@WebServlet("/LoginServlet")
-public class LoginServlet extends HttpServlet {
+@WebServlet(value = "/LoginServlet", asyncSupported = true)
+public class LoginServlet extends AsyncJdbcServlet {
+
+    private static final Logger LOG = Log.getLogger(LoginServlet.class);
     
     private UserDAO userDAO;
     
@@ -41,54 +45,47 @@ public class LoginServlet extends HttpServlet {
         }
         
         // Authenticate user
-        System.out.println("=== LOGIN ATTEMPT ===");
-        System.out.println("Email: " + email);
-        System.out.println("Password length: " + password.length());
-        
-        ResultSet rs = userDAO.loginUser(email, password);
-        
+        SessionProfile profile;
         try {
-            if (rs != null) {
-                System.out.println("Login successful - ResultSet is not null");
-                // Login successful - Create session
-                HttpSession session = request.getSession();
-                
-                // Store user information in session
-                int userId = rs.getInt("user_id");
-                session.setAttribute("userId", userId);
-                session.setAttribute("name", rs.getString("name"));
-                session.setAttribute("email", rs.getString("email"));
-                
-                // Set session timeout (30 minutes)
-                session.setMaxInactiveInterval(30 * 60);
-                
-                System.out.println("Session created for user: " + email);
-                
-                // Check if account exists for this user
-                AccountDAO accountDAO = new AccountDAO();
-                ResultSet accRs = accountDAO.getAccountByUserId(userId);
-                
-                if (accRs != null && accRs.next()) {
-                    // Account exists - set session and redirect to dashboard
-                    session.setAttribute("accountId", accRs.getInt("account_id"));
-                    session.setAttribute("accountNumber", accRs.getInt("account_id"));
-                    session.setAttribute("balance", accRs.getDouble("balance"));
-                    response.sendRedirect("DashboardServlet");
-                } else {
-                    // No account - redirect to add account page
-                    response.sendRedirect("addAccount.jsp");
-                }
-                
-            } else {
-                // Login failed
-                request.setAttribute("error", "Invalid email or password!");
-                request.getRequestDispatcher("login.jsp").forward(request, response);
-            }
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
-            request.setAttribute("error", "An error occurred. Please try again.");
+            profile = userDAO.authenticate(email, password);
+        } catch (PasswordServiceBusyException e) {
+            request.setAttribute("error", "Too many sign-in attempts right now. Please try again in a moment.");
+            request.getRequestDispatcher("login.jsp").forward(request, response);
+            return;
+        }
+        
+        if (profile == null) {
+            // Login failed
+            request.setAttribute("error", "Invalid email or password!");
             request.getRequestDispatcher("login.jsp").forward(request, response);
+            return;
+        }
+        
+        // Login successful - Create session
+        HttpSession session = request.getSession();
+        
+        // Store user information in session
+        session.setAttribute("userId", profile.userId());
+        session.setAttribute("name", profile.name());
+        session.setAttribute("email", profile.email());
+        
+        // Set session timeout (30 minutes)
+        session.setMaxInactiveInterval(30 * 60);
+        
+        LOG.debug("Session created", "user", profile.userId());
+        
+        // Accounts came back with the login query
+        Account account = profile.primaryAccount();
+        
+        if (account != null) {
+            // Account exists - set session and redirect to dashboard
+            session.setAttribute("accountId", account.accountId());
+            session.setAttribute("accountNumber", account.accountId());
+            session.setAttribute("balance", account.balance());
+            response.sendRedirect("DashboardServlet");
+        } else {
+            // No account - redirect to add account page
+            response.sendRedirect("addAccount.jsp");
         }
     }
     
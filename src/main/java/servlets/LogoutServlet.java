@@ -3,6 +3,8 @@ package servlets;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.log.Log;
+import util.log.Logger;
 import java.io.IOException;
 
 /**
@@ -11,6 +13,8 @@ import java.io.IOException;
  */
 @WebServlet("/LogoutServlet")
 public class LogoutServlet extends HttpServlet {
+
+    private static final Logger LOG = Log.getLogger(LogoutServlet.class);
     
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
@@ -26,7 +30,7 @@ public class LogoutServlet extends HttpServlet {
             // Invalidate session - removes all attributes
             session.invalidate();
             
-            System.out.println("User logged out: " + email);
+            LOG.debug("User logged out", "email", email);
         }
         
         // Redirect to login page with logout message
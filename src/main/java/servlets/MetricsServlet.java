@@ -0,0 +1,29 @@
+package servlets;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import util.metrics.Metrics;
+import java.io.IOException;
+
+/**
+ * Metrics Servlet
+ * Serves every registered metric in the Prometheus text format for scraping.
+ * Nothing here identifies a customer, but it does describe the system's
+ * load, so expose /metrics only on the internal network.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        StringBuilder body = new StringBuilder(16 * 1024);
+        Metrics.writePrometheus(body);
+
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(body.toString());
+    }
+}
@@ -0,0 +1,87 @@
+package servlets;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.metrics.LatencyHistogram;
+import util.metrics.Metrics;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request Metrics Filter
+ * Records how long every request takes, per servlet, as
+ * banking_http_request_seconds{servlet="..."}, and counts responses by
+ * status class. Async requests (see AsyncJdbcServlet) are timed until the
+ * async context completes, so queueing for the executor is included.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class RequestMetricsFilter extends HttpFilter {
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final LongAdder[] responses = new LongAdder[5];
+
+    @Override
+    public void init() throws ServletException {
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = Metrics.counter("banking_http_responses_total", "HTTP responses by status class",
+                    "code", (i + 1) + "xx");
+        }
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        LatencyHistogram latency = latencies.computeIfAbsent(request.getHttpServletMapping().getServletName(),
+                servlet -> Metrics.histogram("banking_http_request_seconds", "Time to serve HTTP requests",
+                        "servlet", servlet));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(latency, start, response);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(latency, start, response);
+            }
+        }
+    }
+
+    private void record(LatencyHistogram latency, long start, HttpServletResponse response) {
+        latency.recordSince(start);
+        int statusClass = response.getStatus() / 100;
+        if (statusClass >= 1 && statusClass <= responses.length) {
+            responses[statusClass - 1].increment();
+        }
+    }
+}
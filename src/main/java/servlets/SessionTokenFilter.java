@@ -0,0 +1,207 @@
+package servlets;
+
+import dao.MoneyEngine;
+import dao.MoneyEngines;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import jakarta.servlet.http.HttpSession;
+import util.AppConfig;
+import util.SessionTokens;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Session Token Filter
+ * With banking.session.mode=token, replaces the container's HttpSession with
+ * a signed cookie, so any node can serve any request without sticky
+ * sessions or session replication.
+ *
+ * The cookie is verified with the key from banking.session.secret (which
+ * every node must share) and turned into a request-scoped TokenSession, so
+ * servlets and JSPs keep using request.getSession() unchanged. Balances are
+ * never stored in the cookie; they are read from the money engine.
+ *
+ * Tokens expire banking.session.ttlMinutes after they were issued and are
+ * renewed once half of that has passed, which gives the same idle timeout
+ * as the server-side session. In the default server mode the filter does nothing.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class SessionTokenFilter extends HttpFilter {
+
+    /** Cookie carrying the signed token */
+    public static final String COOKIE = "BANKING_SESSION";
+
+    private boolean enabled;
+    private int ttlSeconds;
+    private boolean secureCookie;
+    private SessionTokens tokens;
+    private MoneyEngine moneyEngine;
+
+    @Override
+    public void init() throws ServletException {
+        enabled = "token".equals(AppConfig.getString("banking.session.mode", "server"));
+        if (!enabled) {
+            return;
+        }
+        ttlSeconds = AppConfig.getInt("banking.session.ttlMinutes", 30) * 60;
+        secureCookie = AppConfig.getBoolean("banking.session.secureCookie", false);
+        tokens = SessionTokens.fromConfig();
+        moneyEngine = MoneyEngines.getDefault();
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (!enabled) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000;
+        SessionTokens.Claims claims = tokens.verify(cookieValue(request), now);
+        TokenResponse tokenResponse = new TokenResponse(response, request.getContextPath());
+        TokenRequest tokenRequest = new TokenRequest(request, tokenResponse);
+        if (claims != null) {
+            TokenSession session = tokenRequest.newSession(claims);
+            if (claims.expiresAt() - now < ttlSeconds / 2) {
+                // Past half its lifetime: renew, like an idle timeout reset by activity
+                session.markDirty();
+            }
+        }
+
+        chain.doFilter(tokenRequest, tokenResponse);
+        if (!request.isAsyncStarted()) {
+            tokenResponse.writeCookie();
+        }
+    }
+
+    private static String cookieValue(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hands out the token-backed session instead of a container session
+     */
+    private final class TokenRequest extends HttpServletRequestWrapper {
+
+        private final TokenResponse response;
+
+        TokenRequest(HttpServletRequest request, TokenResponse response) {
+            super(request);
+            this.response = response;
+        }
+
+        TokenSession newSession(SessionTokens.Claims claims) {
+            TokenSession session = new TokenSession(claims, getServletContext(), moneyEngine, ttlSeconds);
+            response.session = session;
+            return session;
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            TokenSession session = response.session;
+            if (session != null && !session.isInvalidated()) {
+                return session;
+            }
+            return create ? newSession(null) : null;
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public String changeSessionId() {
+            // A new token is issued whenever the identity changes
+            return "";
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            return response.session != null;
+        }
+    }
+
+    /**
+     * Writes the renewed or cleared cookie just before the response is committed
+     */
+    private final class TokenResponse extends HttpServletResponseWrapper {
+
+        private final String cookiePath;
+        TokenSession session;
+
+        TokenResponse(HttpServletResponse response, String contextPath) {
+            super(response);
+            this.cookiePath = contextPath.isEmpty() ? "/" : contextPath;
+        }
+
+        void writeCookie() {
+            if (session == null || !session.isDirty() || isCommitted()) {
+                return;
+            }
+            long expiresAt = System.currentTimeMillis() / 1000 + ttlSeconds;
+            SessionTokens.Claims claims = session.toClaims(expiresAt);
+            Cookie cookie = new Cookie(COOKIE, claims == null ? "" : tokens.issue(claims));
+            cookie.setHttpOnly(true);
+            cookie.setSecure(secureCookie);
+            cookie.setPath(cookiePath);
+            cookie.setMaxAge(claims == null ? 0 : ttlSeconds);
+            cookie.setAttribute("SameSite", "Lax");
+            addCookie(cookie);
+            session.markClean();
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeCookie();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            writeCookie();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            writeCookie();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeCookie();
+            return super.getWriter();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeCookie();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeCookie();
+            super.flushBuffer();
+        }
+    }
+}
@@ -2,17 +2,22 @@ package servlets;
 
 import dao.UserDAO;
 import dao.AccountDAO;
+import dao.password.PasswordServiceBusyException;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.log.Log;
+import util.log.Logger;
 import java.io.IOException;
 
 /**
  * Signup Servlet
  * Handles user registration
  */
-@WebServlet("/SignupServlet")
-public class SignupServlet extends HttpServlet {
+@WebServlet(value = "/SignupServlet", asyncSupported = true)
+public class SignupServlet extends AsyncJdbcServlet {
+
+    private static final Logger LOG = Log.getLogger(SignupServlet.class);
     
     private UserDAO userDAO;
     
@@ -80,7 +85,14 @@ public class SignupServlet extends HttpServlet {
         }
         
         // Register user
-        int userId = userDAO.registerUser(name, email, password);
+        int userId;
+        try {
+            userId = userDAO.registerUser(name, email, password);
+        } catch (PasswordServiceBusyException e) {
+            request.setAttribute("error", "We are busy right now. Please try again in a moment.");
+            request.getRequestDispatcher("signup.jsp").forward(request, response);
+            return;
+        }
         
         if (userId > 0) {
             // Create account with initial balance
@@ -97,7 +109,7 @@ public class SignupServlet extends HttpServlet {
                 session.setAttribute("balance", initialBalance);
                 session.setMaxInactiveInterval(30 * 60);
                 
-                System.out.println("User registered and account created: " + email + " with balance: ₹" + initialBalance);
+                LOG.info("Account opened at signup", "email", email, "account", accountId);
                 
                 // Redirect to dashboard
                 response.sendRedirect("DashboardServlet");
@@ -0,0 +1,137 @@
+package servlets;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
+import util.trace.SqlTracer;
+import util.trace.StatementStats;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * SQL Stats Servlet
+ * Shows the statements that take the most database time, as collected by
+ * SqlTracer. GET lists them as plain text:
+ *
+ *     /admin/sql?sort=total|max|count|rows&limit=20
+ *
+ * POST with action=enable, disable or reset switches tracing or clears the
+ * totals.
+ *
+ * The page is off unless banking.db.trace.adminToken is set; until then
+ * every request gets 404. Each request must carry that token as
+ * "Authorization: Bearer <token>" or it gets 403. A header rather than a
+ * cookie or form field, so a cross-site form cannot switch tracing on
+ * behalf of a logged-in browser.
+ */
+@WebServlet("/admin/sql")
+public class SqlStatsServlet extends HttpServlet {
+
+    private static final Logger LOG = Log.getLogger(SqlStatsServlet.class);
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private byte[] adminToken;
+
+    @Override
+    public void init() throws ServletException {
+        String token = AppConfig.getString("banking.db.trace.adminToken", null);
+        adminToken = token == null || token.isBlank() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!authorize(request, response)) {
+            return;
+        }
+        String sort = request.getParameter("sort");
+        Comparator<StatementStats> order = StatementStats.BY_TOTAL_TIME;
+        if ("max".equals(sort)) {
+            order = StatementStats.BY_MAX_TIME;
+        } else if ("count".equals(sort)) {
+            order = StatementStats.BY_COUNT;
+        } else if ("rows".equals(sort)) {
+            order = StatementStats.BY_ROWS;
+        }
+
+        int limit = DEFAULT_LIMIT;
+        try {
+            String value = request.getParameter("limit");
+            if (value != null) {
+                limit = Math.max(1, Integer.parseInt(value));
+            }
+        } catch (NumberFormatException e) {
+            // Keep the default
+        }
+
+        List<StatementStats> top = SqlTracer.getTopStatements(order, limit);
+        StringBuilder body = new StringBuilder(4096);
+        body.append("SQL tracing is ").append(SqlTracer.isEnabled() ? "on" : "off")
+            .append(", slow statement threshold ").append(SqlTracer.getSlowThresholdMillis()).append(" ms\n\n");
+        body.append(String.format("%10s %8s %12s %10s %10s %12s  %s%n",
+                "calls", "errors", "total ms", "mean ms", "max ms", "rows", "statement"));
+        for (StatementStats stats : top) {
+            body.append(String.format("%10d %8d %12.1f %10.3f %10.1f %12d  %s%n",
+                    stats.getCount(), stats.getErrorCount(), stats.getTotalNanos() / 1e6,
+                    stats.getMeanNanos() / 1e6, stats.getMaxNanos() / 1e6, stats.getRows(),
+                    stats.getFingerprint()));
+        }
+        if (top.isEmpty()) {
+            body.append("No statements traced yet.\n");
+        }
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(body.toString());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!authorize(request, response)) {
+            return;
+        }
+        String action = request.getParameter("action");
+        if ("enable".equals(action)) {
+            SqlTracer.setEnabled(true);
+        } else if ("disable".equals(action)) {
+            SqlTracer.setEnabled(false);
+        } else if ("reset".equals(action)) {
+            SqlTracer.reset();
+        } else {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "action must be enable, disable or reset");
+            return;
+        }
+        LOG.info("SQL tracing changed", "action", action, "remote", request.getRemoteAddr());
+        response.sendRedirect(request.getContextPath() + "/admin/sql");
+    }
+
+    /**
+     * Check the request's bearer token against banking.db.trace.adminToken
+     * @return true if the request may proceed; otherwise the error has been sent
+     */
+    private boolean authorize(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (adminToken == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return false;
+        }
+        String header = request.getHeader("Authorization");
+        byte[] presented = header != null && header.startsWith("Bearer ")
+                ? header.substring(7).trim().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        // Constant-time comparison, so response timing does not reveal the token
+        if (!MessageDigest.isEqual(adminToken, presented)) {
+            LOG.warn("Rejected SQL stats request", "method", request.getMethod(), "remote", request.getRemoteAddr());
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return false;
+        }
+        return true;
+    }
+}
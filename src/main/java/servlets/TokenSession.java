@@ -0,0 +1,259 @@
+package servlets;
+
+import dao.MoneyEngine;
+import dao.UserDAO;
+import dao.model.UserProfile;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpSession;
+import util.SessionTokens;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Token Session
+ * The HttpSession servlets and JSPs see when banking.session.mode=token.
+ * It lives for one request: identity (userId, accountId, name) comes from
+ * the signed cookie, balance is read from the money engine when first asked
+ * for, and anything else set on it is forgotten when the request ends.
+ *
+ * Setting an identity attribute or invalidating the session marks the
+ * cookie for reissue; SessionTokenFilter writes it before the response is
+ * committed.
+ */
+final class TokenSession implements HttpSession {
+
+    private static final Set<String> IDENTITY = Set.of("userId", "accountId", "accountNumber", "name", "email");
+
+    private final ServletContext context;
+    private final MoneyEngine moneyEngine;
+    private final long creationTime = System.currentTimeMillis();
+    private final boolean isNew;
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    private Integer userId;
+    private int accountId;
+    private String name;
+    private String email;
+    private boolean emailLoaded;
+    private boolean dirty;
+    private boolean invalidated;
+    private int maxInactiveInterval;
+
+    /**
+     * @param claims Verified token, or null for a visitor who is not logged in
+     * @param context Servlet context
+     * @param moneyEngine Source of the balance
+     * @param maxInactiveInterval Token lifetime in seconds
+     */
+    TokenSession(SessionTokens.Claims claims, ServletContext context, MoneyEngine moneyEngine, int maxInactiveInterval) {
+        this.context = context;
+        this.moneyEngine = moneyEngine;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.isNew = claims == null;
+        if (claims != null) {
+            userId = claims.userId();
+            accountId = claims.accountId();
+            name = claims.name();
+        }
+    }
+
+    /**
+     * @return true if the cookie must be reissued or cleared
+     */
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void markDirty() {
+        dirty = true;
+    }
+
+    void markClean() {
+        dirty = false;
+    }
+
+    boolean isInvalidated() {
+        return invalidated;
+    }
+
+    /**
+     * @return Claims for a new token, or null if nobody is logged in
+     */
+    SessionTokens.Claims toClaims(long expiresAt) {
+        if (invalidated || userId == null) {
+            return null;
+        }
+        return new SessionTokens.Claims(userId, accountId, name, expiresAt);
+    }
+
+    @Override
+    public Object getAttribute(String key) {
+        checkValid();
+        switch (key) {
+            case "userId":
+                return userId;
+            case "accountId":
+            case "accountNumber":
+                return accountId > 0 ? accountId : null;
+            case "name":
+                return name;
+            case "email":
+                return email();
+            case "balance":
+                if (!attributes.containsKey(key) && accountId > 0) {
+                    attributes.put(key, moneyEngine.getBalance(accountId));
+                }
+                return attributes.get(key);
+            default:
+                return attributes.get(key);
+        }
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        Set<String> names = new LinkedHashSet<>();
+        if (userId != null) {
+            names.add("userId");
+            names.add("name");
+            names.add("email");
+        }
+        if (accountId > 0) {
+            names.add("accountId");
+            names.add("accountNumber");
+            names.add("balance");
+        }
+        names.addAll(attributes.keySet());
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public void setAttribute(String key, Object value) {
+        checkValid();
+        if (value == null) {
+            removeAttribute(key);
+            return;
+        }
+        if (!IDENTITY.contains(key)) {
+            attributes.put(key, value);
+            return;
+        }
+        switch (key) {
+            case "userId":
+                userId = (Integer) value;
+                break;
+            case "accountId":
+            case "accountNumber":
+                accountId = (Integer) value;
+                attributes.remove("balance");
+                break;
+            case "name":
+                name = (String) value;
+                break;
+            default:
+                email = (String) value;
+                emailLoaded = true;
+                // Not part of the token; kept for this request only
+                return;
+        }
+        dirty = true;
+    }
+
+    @Override
+    public void removeAttribute(String key) {
+        checkValid();
+        if (!IDENTITY.contains(key)) {
+            attributes.remove(key);
+            return;
+        }
+        switch (key) {
+            case "userId":
+                userId = null;
+                break;
+            case "accountId":
+            case "accountNumber":
+                accountId = 0;
+                attributes.remove("balance");
+                break;
+            case "name":
+                name = null;
+                break;
+            default:
+                email = null;
+                emailLoaded = true;
+                return;
+        }
+        dirty = true;
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalidated = true;
+        dirty = true;
+        userId = null;
+        attributes.clear();
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+
+    @Override
+    public String getId() {
+        // There is no server-side session to identify
+        return "";
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return context;
+    }
+
+    /**
+     * The token lifetime is fixed by banking.session.ttlMinutes; this only affects what getMaxInactiveInterval reports
+     */
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        maxInactiveInterval = interval;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    private String email() {
+        if (!emailLoaded && userId != null) {
+            // Only the logout log asks for it, so it is not worth a place in every cookie
+            UserProfile profile = new UserDAO().getUserProfile(userId);
+            email = profile == null ? null : profile.email();
+            emailLoaded = true;
+        }
+        return email;
+    }
+
+    private void checkValid() {
+        if (invalidated) {
+            throw new IllegalStateException("Session already invalidated");
+        }
+    }
+}
@@ -1,25 +1,28 @@
 package servlets;
 
+import dao.HistoryCursor;
 import dao.TransactionDAO;
+import dao.TransactionPage;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.AppConfig;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Transaction History Servlet
- * Displays user's transaction history
+ * Displays user's transaction history one page at a time
  */
-@WebServlet("/TransactionHistoryServlet")
-public class TransactionHistoryServlet extends HttpServlet {
+@WebServlet(value = "/TransactionHistoryServlet", asyncSupported = true)
+public class TransactionHistoryServlet extends AsyncJdbcServlet {
     
     private TransactionDAO transactionDAO;
+    private int pageSize;
     
     @Override
     public void init() throws ServletException {
         transactionDAO = new TransactionDAO();
+        pageSize = AppConfig.getInt("banking.history.pageSize", TransactionDAO.DEFAULT_PAGE_SIZE);
     }
     
     @Override
@@ -37,11 +40,19 @@ public class TransactionHistoryServlet extends HttpServlet {
         // Get account ID from session
         int accountId = (Integer) session.getAttribute("accountId");
         
-        // Fetch transaction history
-        List<Map<String, Object>> transactions = transactionDAO.getTransactionHistory(accountId);
+        // Page position: "after" walks to older rows, "before" walks back to newer rows
+        HistoryCursor before = HistoryCursor.decode(request.getParameter("before"));
+        HistoryCursor after = HistoryCursor.decode(request.getParameter("after"));
         
-        // Set transactions as request attribute
-        request.setAttribute("transactions", transactions);
+        // Fetch one page of transaction history
+        TransactionPage page = before != null
+                ? transactionDAO.getTransactionHistoryPage(accountId, before, true, pageSize)
+                : transactionDAO.getTransactionHistoryPage(accountId, after, false, pageSize);
+        
+        // Set transactions and paging cursors as request attributes
+        request.setAttribute("transactions", page.getTransactions());
+        request.setAttribute("olderCursor", page.hasOlder() ? page.getOlderCursor().encode() : null);
+        request.setAttribute("newerCursor", page.hasNewer() ? page.getNewerCursor().encode() : null);
         
         // Forward to transactions JSP
         request.getRequestDispatcher("transactions.jsp").forward(request, response);
@@ -1,27 +1,64 @@
 package servlets;
 
+import dao.IdempotencyDAO;
 import dao.TransactionDAO;
-import dao.AccountDAO;
+import dao.JdbcMoneyEngine;
+import dao.MoneyEngine;
+import dao.MoneyEngines;
+import dao.TransferBatcher;
+import dao.model.RequestOutcome;
+import dao.model.TransferResult;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Transfer Servlet
  * Handles money transfer between accounts
  * Implements secure transaction processing with validation
+ * 
+ * The transfer engine is chosen with banking.transfer.engine:
+ *   conditional (default) - one connection, funds and receiver checked inside the DAO transaction
+ *   classic               - pre-check queries followed by MoneyEngine.transferMoney
+ *   batched               - queued on TransferBatcher and group-committed with other transfers;
+ *                           the request waits up to banking.batch.timeoutMs for the outcome
+ * 
+ * When banking.money.engine is not jdbc (see MoneyEngines), balances live outside
+ * MySQL and every transfer takes the classic path through that engine.
+ * 
+ * A submission carrying an idempotency key (hidden form field or
+ * Idempotency-Key header) moves money at most once; repeats are shown the
+ * first outcome (see IdempotencyDAO).
  */
-@WebServlet("/TransferServlet")
-public class TransferServlet extends HttpServlet {
+@WebServlet(value = "/TransferServlet", asyncSupported = true)
+public class TransferServlet extends AsyncJdbcServlet {
+
+    private static final Logger LOG = Log.getLogger(TransferServlet.class);
     
     private TransactionDAO transactionDAO;
-    private AccountDAO accountDAO;
+    private IdempotencyDAO idempotencyDAO;
+    private MoneyEngine moneyEngine;
+    private String transferEngine;
+    private long batchTimeoutMs;
     
     @Override
     public void init() throws ServletException {
         transactionDAO = new TransactionDAO();
-        accountDAO = new AccountDAO();
+        idempotencyDAO = new IdempotencyDAO();
+        transferEngine = AppConfig.getString("banking.transfer.engine", "conditional");
+        batchTimeoutMs = AppConfig.getLong("banking.batch.timeoutMs", 5000);
+        moneyEngine = MoneyEngines.getDefault();
+        if (!(moneyEngine instanceof JdbcMoneyEngine)) {
+            transferEngine = "classic";
+        }
     }
     
     @Override
@@ -70,40 +107,18 @@ public class TransferServlet extends HttpServlet {
                 return;
             }
             
-            // Validation: Check if receiver account exists
-            if (!accountDAO.accountExists(receiverAccountId)) {
-                request.setAttribute("error", "Receiver account does not exist!");
-                transactionDAO.recordFailedTransaction(senderAccountId, receiverAccountId, amount, "Invalid receiver account");
+            String idempotencyKey = IdempotencyKeys.from(request);
+            if (idempotencyKey != null && !IdempotencyDAO.isValidKey(idempotencyKey)) {
+                request.setAttribute("error", "Invalid request key!");
                 request.getRequestDispatcher("transfer.jsp").forward(request, response);
                 return;
             }
             
-            // Validation: Check if sender has sufficient balance
-            double senderBalance = accountDAO.getBalance(senderAccountId);
-            if (senderBalance < amount) {
-                request.setAttribute("error", "Insufficient balance! Available: ₹" + senderBalance);
-                transactionDAO.recordFailedTransaction(senderAccountId, receiverAccountId, amount, "Insufficient balance");
-                request.getRequestDispatcher("transfer.jsp").forward(request, response);
-                return;
-            }
-            
-            // Perform the transfer (ATOMIC TRANSACTION)
-            boolean transferSuccess = transactionDAO.transferMoney(senderAccountId, receiverAccountId, amount);
-            
-            if (transferSuccess) {
-                // Update session balance
-                double newBalance = accountDAO.getBalance(senderAccountId);
-                session.setAttribute("balance", newBalance);
-                
-                // Success message
-                request.setAttribute("success", "Transfer successful! Amount: ₹" + amount + " transferred to Account #" + receiverAccountId);
-                request.getRequestDispatcher("transfer.jsp").forward(request, response);
-                
-            } else {
-                // Transfer failed
-                request.setAttribute("error", "Transfer failed! Please try again.");
-                request.getRequestDispatcher("transfer.jsp").forward(request, response);
-            }
+            // A repeated submission of the same form gets the first outcome back
+            int userId = (Integer) session.getAttribute("userId");
+            RequestOutcome outcome = idempotencyDAO.execute(userId, idempotencyKey, "TRANSFER",
+                    () -> transfer(senderAccountId, receiverAccountId, amount));
+            IdempotencyKeys.render(request, response, session, outcome, "transfer.jsp");
             
         } catch (NumberFormatException e) {
             // Invalid number format
@@ -112,12 +127,77 @@ public class TransferServlet extends HttpServlet {
             
         } catch (Exception e) {
             // General error
-            e.printStackTrace();
+            LOG.error("Error processing transfer", e);
             request.setAttribute("error", "An error occurred during transfer. Please try again.");
             request.getRequestDispatcher("transfer.jsp").forward(request, response);
         }
     }
     
+    /**
+     * Move the money with the configured transfer engine
+     * @return Message to show and, on success, the sender's new balance
+     */
+    private RequestOutcome transfer(int senderAccountId, int receiverAccountId, double amount) {
+        if ("conditional".equals(transferEngine)) {
+            // Receiver and balance checks happen inside the transfer transaction
+            return outcomeOf(transactionDAO.transferFunds(senderAccountId, receiverAccountId, amount), receiverAccountId, amount);
+        }
+        
+        if ("batched".equals(transferEngine)) {
+            CompletableFuture<TransferResult> pending =
+                    TransferBatcher.getInstance().submit(senderAccountId, receiverAccountId, amount);
+            try {
+                return outcomeOf(pending.get(batchTimeoutMs, TimeUnit.MILLISECONDS), receiverAccountId, amount);
+            } catch (TimeoutException e) {
+                // The transfer is still queued and may yet commit, so do not invite a blind retry
+                return RequestOutcome.pending("Transfer is still being processed. Please check your transaction history before trying again.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return RequestOutcome.pending("Transfer is still being processed. Please check your transaction history before trying again.");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Transfer failed", e.getCause());
+            }
+        }
+        
+        // Validation: Check if receiver account exists
+        if (!moneyEngine.accountExists(receiverAccountId)) {
+            transactionDAO.recordFailedTransaction(senderAccountId, receiverAccountId, amount, "Invalid receiver account");
+            return RequestOutcome.failure("Receiver account does not exist!");
+        }
+        
+        // Validation: Check if sender has sufficient balance
+        double senderBalance = moneyEngine.getBalance(senderAccountId);
+        if (senderBalance < amount) {
+            transactionDAO.recordFailedTransaction(senderAccountId, receiverAccountId, amount, "Insufficient balance");
+            return RequestOutcome.failure("Insufficient balance! Available: ₹" + senderBalance, senderBalance);
+        }
+        
+        // Perform the transfer (ATOMIC TRANSACTION)
+        if (moneyEngine.transferMoney(senderAccountId, receiverAccountId, amount)) {
+            return RequestOutcome.success("Transfer successful! Amount: ₹" + amount + " transferred to Account #" + receiverAccountId,
+                    moneyEngine.getBalance(senderAccountId));
+        }
+        return RequestOutcome.failure("Transfer failed! Please try again.");
+    }
+    
+    /**
+     * Message for the outcome of a transfer engine call
+     */
+    private static RequestOutcome outcomeOf(TransferResult result, int receiverAccountId, double amount) {
+        switch (result.status()) {
+            case SUCCESS:
+                // The engine returns the committed balance; no extra query needed
+                return RequestOutcome.success("Transfer successful! Amount: ₹" + amount + " transferred to Account #" + receiverAccountId,
+                        result.senderBalance());
+            case INSUFFICIENT_FUNDS:
+                return RequestOutcome.failure("Insufficient balance! Available: ₹" + result.senderBalance(), result.senderBalance());
+            case RECEIVER_NOT_FOUND:
+                return RequestOutcome.failure("Receiver account does not exist!");
+            default:
+                return RequestOutcome.failure("Transfer failed! Please try again.");
+        }
+    }
+    
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
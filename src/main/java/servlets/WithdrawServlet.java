@@ -1,27 +1,34 @@
 package servlets;
 
-import dao.TransactionDAO;
-import dao.AccountDAO;
+import dao.IdempotencyDAO;
+import dao.MoneyEngine;
+import dao.MoneyEngines;
+import dao.model.RequestOutcome;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
+import util.log.Log;
+import util.log.Logger;
 import java.io.IOException;
 
 /**
  * Withdraw Servlet
  * Handles money withdrawal from user account
  * Implements secure withdrawal processing with validation
+ * A submission carrying an idempotency key withdraws at most once (see IdempotencyDAO)
  */
-@WebServlet("/WithdrawServlet")
-public class WithdrawServlet extends HttpServlet {
+@WebServlet(value = "/WithdrawServlet", asyncSupported = true)
+public class WithdrawServlet extends AsyncJdbcServlet {
+
+    private static final Logger LOG = Log.getLogger(WithdrawServlet.class);
     
-    private TransactionDAO transactionDAO;
-    private AccountDAO accountDAO;
+    private MoneyEngine moneyEngine;
+    private IdempotencyDAO idempotencyDAO;
     
     @Override
     public void init() throws ServletException {
-        transactionDAO = new TransactionDAO();
-        accountDAO = new AccountDAO();
+        moneyEngine = MoneyEngines.getDefault();
+        idempotencyDAO = new IdempotencyDAO();
     }
     
     @Override
@@ -59,31 +66,18 @@ public class WithdrawServlet extends HttpServlet {
                 return;
             }
             
-            // Validation: Check if user has sufficient balance
-            double accountBalance = accountDAO.getBalance(accountId);
-            if (accountBalance < amount) {
-                request.setAttribute("error", "Insufficient balance! Available: ₹" + accountBalance);
+            String idempotencyKey = IdempotencyKeys.from(request);
+            if (idempotencyKey != null && !IdempotencyDAO.isValidKey(idempotencyKey)) {
+                request.setAttribute("error", "Invalid request key!");
                 request.getRequestDispatcher("withdraw.jsp").forward(request, response);
                 return;
             }
             
-            // Perform the withdrawal (ATOMIC TRANSACTION)
-            boolean withdrawalSuccess = transactionDAO.withdrawMoney(accountId, amount);
-            
-            if (withdrawalSuccess) {
-                // Update session balance
-                double newBalance = accountDAO.getBalance(accountId);
-                session.setAttribute("balance", newBalance);
-                
-                // Success message
-                request.setAttribute("success", "Withdrawal successful! Amount: ₹" + amount + " has been withdrawn from your account.");
-                request.getRequestDispatcher("withdraw.jsp").forward(request, response);
-                
-            } else {
-                // Withdrawal failed
-                request.setAttribute("error", "Withdrawal failed! Please try again.");
-                request.getRequestDispatcher("withdraw.jsp").forward(request, response);
-            }
+            // A repeated submission of the same form gets the first outcome back
+            int userId = (Integer) session.getAttribute("userId");
+            RequestOutcome outcome = idempotencyDAO.execute(userId, idempotencyKey, "WITHDRAWAL",
+                    () -> withdraw(accountId, amount));
+            IdempotencyKeys.render(request, response, session, outcome, "withdraw.jsp");
             
         } catch (NumberFormatException e) {
             // Invalid number format
@@ -92,12 +86,31 @@ public class WithdrawServlet extends HttpServlet {
             
         } catch (Exception e) {
             // General error
-            e.printStackTrace();
+            LOG.error("Error processing withdrawal", e);
             request.setAttribute("error", "An error occurred during withdrawal. Please try again.");
             request.getRequestDispatcher("withdraw.jsp").forward(request, response);
         }
     }
     
+    /**
+     * Withdraw the money after checking the balance
+     * @return Message to show and, on success, the new balance
+     */
+    private RequestOutcome withdraw(int accountId, double amount) {
+        // Validation: Check if user has sufficient balance
+        double accountBalance = moneyEngine.getBalance(accountId);
+        if (accountBalance < amount) {
+            return RequestOutcome.failure("Insufficient balance! Available: ₹" + accountBalance, accountBalance);
+        }
+        
+        // Perform the withdrawal (ATOMIC TRANSACTION)
+        if (moneyEngine.withdrawMoney(accountId, amount)) {
+            return RequestOutcome.success("Withdrawal successful! Amount: ₹" + amount + " has been withdrawn from your account.",
+                    moneyEngine.getBalance(accountId));
+        }
+        return RequestOutcome.failure("Withdrawal failed! Please try again.");
+    }
+    
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
@@ -0,0 +1,78 @@
+package util;
+
+/**
+ * Application Configuration
+ * Resolves tunable settings from JVM system properties, falling back to
+ * environment variables and finally to the supplied default.
+ *
+ * A key such as "banking.pool.maxSize" is looked up as the system property
+ * -Dbanking.pool.maxSize and then as the environment variable BANKING_POOL_MAXSIZE.
+ */
+public final class AppConfig {
+
+    private AppConfig() {
+    }
+
+    /**
+     * Get a string setting
+     * @param key Setting key
+     * @param defaultValue Value used when the key is not set
+     * @return Configured value or default
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.toUpperCase().replace('.', '_'));
+        }
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Get an integer setting
+     * @param key Setting key
+     * @param defaultValue Value used when the key is not set or invalid
+     * @return Configured value or default
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid integer for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a long setting
+     * @param key Setting key
+     * @param defaultValue Value used when the key is not set or invalid
+     * @return Configured value or default
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a boolean setting
+     * @param key Setting key
+     * @param defaultValue Value used when the key is not set
+     * @return Configured value or default
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
@@ -0,0 +1,518 @@
+package util;
+
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.LatencyHistogram;
+import util.metrics.Metrics;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection Pool
+ * Bounded pool of physical JDBC connections shared by all DAOs
+ *
+ * Borrowed connections are handed out as proxies whose close() returns the
+ * physical connection to the pool instead of closing it. The pool enforces
+ * a maximum size with a borrow timeout, validates idle connections before
+ * handing them out, evicts connections that stay idle too long and reports
+ * connections that are held longer than the leak detection threshold.
+ * With banking.pool.leakTrace=true each borrow also captures its stack, so
+ * the leak warning shows where the connection was taken; it is off by
+ * default because that costs a stack walk on every DAO call.
+ *
+ * Each physical connection also keeps an LRU cache of prepared statements
+ * (see StatementCache), so DAOs that prepare the same SQL on every call only
+ * pay the parse/prepare cost once per connection.
+ */
+public class ConnectionPool {
+
+    private static final Logger LOG = Log.getLogger(ConnectionPool.class);
+
+    /**
+     * Opens new physical connections for the pool
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final int minIdle;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long leakThresholdMs;
+    private final boolean leakTrace;
+    private final long validationIntervalMs;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    // Most recently returned connections sit at the head so hot connections are reused first
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private final LatencyHistogram borrowLatency;
+    private final LongAdder borrowTimeouts;
+    private volatile boolean closed;
+
+    /**
+     * Create a pool from "banking.pool.*" settings
+     * @param name Pool name used in log messages and thread names
+     * @param factory Source of physical connections
+     */
+    public ConnectionPool(String name, ConnectionFactory factory) {
+        this(name, factory,
+             AppConfig.getInt("banking.pool.minIdle", 2),
+             AppConfig.getInt("banking.pool.maxSize", 20),
+             AppConfig.getLong("banking.pool.borrowTimeoutMs", 5000),
+             AppConfig.getLong("banking.pool.idleTimeoutMs", 600000),
+             AppConfig.getLong("banking.pool.leakThresholdMs", 60000),
+             AppConfig.getLong("banking.pool.validationIntervalMs", 1000));
+    }
+
+    /**
+     * Create a pool with explicit sizing
+     * @param name Pool name used in log messages and thread names
+     * @param factory Source of physical connections
+     * @param minIdle Connections kept open even when idle
+     * @param maxSize Maximum number of physical connections
+     * @param borrowTimeoutMs How long a caller waits for a free connection
+     * @param idleTimeoutMs Idle time after which surplus connections are closed
+     * @param leakThresholdMs Borrow duration after which a leak warning is printed (0 disables)
+     * @param validationIntervalMs Connections used more recently than this are not re-validated
+     */
+    public ConnectionPool(String name, ConnectionFactory factory, int minIdle, int maxSize,
+                          long borrowTimeoutMs, long idleTimeoutMs, long leakThresholdMs,
+                          long validationIntervalMs) {
+        if (maxSize < 1 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool sizing: minIdle=" + minIdle + ", maxSize=" + maxSize);
+        }
+        this.name = name;
+        this.factory = factory;
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.leakTrace = AppConfig.getBoolean("banking.pool.leakTrace", false);
+        this.validationTimeoutSeconds = AppConfig.getInt("banking.pool.validationTimeoutSeconds", 2);
+        this.statementCacheSize = AppConfig.getInt("banking.pool.statementCacheSize", 64);
+        this.permits = new Semaphore(maxSize, true);
+        this.borrowLatency = Metrics.histogram("banking_pool_borrow_seconds",
+                "Time spent waiting for and validating a pooled connection", "pool", name);
+        this.borrowTimeouts = Metrics.counter("banking_pool_borrow_timeouts_total",
+                "Borrows that gave up after banking.pool.borrowTimeoutMs", "pool", name);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(30000, idleTimeoutMs / 2));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection from the pool
+     * Waits up to the borrow timeout when all connections are in use
+     *
+     * @return Pooled connection; close() returns it to the pool
+     * @throws SQLException if no connection becomes available or a new one cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool " + name + " is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.increment();
+                throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMs
+                        + "ms waiting for a connection from pool " + name
+                        + " (active=" + getActiveCount() + ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while (true) {
+                pooled = idle.pollFirst();
+                if (pooled == null) {
+                    pooled = open();
+                    if (pooled != null) {
+                        break;
+                    }
+                    // Every slot is taken by connections the housekeeper is still opening
+                    pooled = awaitIdle(start);
+                }
+                if (isUsable(pooled)) {
+                    break;
+                }
+                discard(pooled);
+            }
+
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowSite = leakTrace && leakThresholdMs > 0 ? new Exception("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            borrowLatency.recordSince(start);
+            return pooled.newHandle();
+
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a connection to the pool, resetting any transaction state
+     * @param pooled Pool entry being returned
+     */
+    void release(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) {
+            return;
+        }
+
+        try {
+            Connection physical = pooled.physical;
+            if (closed || physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+
+            if (pooled.statementCache != null) {
+                pooled.statementCache.releaseAll();
+            }
+
+            // Never hand an open transaction to the next borrower
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+
+            pooled.lastUsedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+
+        } catch (SQLException e) {
+            LOG.warn("Discarding broken connection", e, "pool", name);
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close the pool and every idle connection
+     * Borrowed connections are closed when they are returned
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+        LOG.info("Connection pool closed", "pool", name);
+    }
+
+    /**
+     * Export this pool's sizes as gauges labelled with its name
+     * Replaces the gauges of an earlier pool with the same name.
+     */
+    public void registerMetrics() {
+        Metrics.gauge("banking_pool_connections_active", "Connections borrowed", this::getActiveCount, "pool", name);
+        Metrics.gauge("banking_pool_connections_idle", "Idle connections ready to borrow", this::getIdleCount, "pool", name);
+        Metrics.gauge("banking_pool_connections_total", "Open physical connections", this::getTotalCount, "pool", name);
+        Metrics.gauge("banking_pool_connections_max", "Maximum physical connections", this::getMaxSize, "pool", name);
+        Metrics.gauge("banking_pool_waiting_threads", "Threads waiting for a connection", this::getWaitingCount, "pool", name);
+    }
+
+    /**
+     * @return Pool name used in log messages and metrics
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Number of connections currently borrowed
+     */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return Number of idle connections ready to be borrowed
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return Number of open physical connections
+     */
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    /**
+     * @return Number of threads waiting for a connection
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return Maximum number of physical connections
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Open a physical connection if the pool has room for one
+     * The slot is reserved before connecting, so borrowers and the housekeeper
+     * opening at the same time never take the pool past maxSize.
+     * @return New pool entry, or null if maxSize connections are already open
+     */
+    private PooledConnection open() throws SQLException {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= maxSize) {
+                return null;
+            }
+        } while (!totalConnections.compareAndSet(total, total + 1));
+
+        Connection physical;
+        try {
+            physical = factory.create();
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+        LOG.info("Database connection opened", "pool", name, "total", total + 1);
+        StatementCache cache = statementCacheSize > 0 ? new StatementCache(physical, statementCacheSize) : null;
+        return new PooledConnection(this, physical, cache);
+    }
+
+    /**
+     * Wait for a connection to be offered to the idle queue, within the borrow timeout
+     * @param start System.nanoTime() at which the borrow began
+     */
+    private PooledConnection awaitIdle(long start) throws SQLException {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs) - (System.nanoTime() - start);
+        try {
+            PooledConnection pooled = idle.pollFirst(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+            if (pooled != null) {
+                return pooled;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+        borrowTimeouts.increment();
+        throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMs
+                + "ms waiting for a connection from pool " + name
+                + " (active=" + getActiveCount() + ", max=" + maxSize + ")");
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        // Connections returned moments ago are almost certainly still alive
+        if (System.currentTimeMillis() - pooled.lastUsedAt < validationIntervalMs) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    /**
+     * Periodic maintenance: idle eviction, minimum idle top-up and leak reporting
+     */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            // Evict connections idle for too long, keeping at least minIdle open
+            List<PooledConnection> expired = new ArrayList<>();
+            for (PooledConnection pooled : idle) {
+                if (idle.size() - expired.size() <= minIdle) {
+                    break;
+                }
+                if (now - pooled.lastUsedAt > idleTimeoutMs) {
+                    expired.add(pooled);
+                }
+            }
+            for (PooledConnection pooled : expired) {
+                if (idle.remove(pooled)) {
+                    discard(pooled);
+                }
+            }
+
+            // Top up to minIdle without exceeding maxSize
+            while (!closed && idle.size() < minIdle) {
+                PooledConnection pooled = open();
+                if (pooled == null) {
+                    break;
+                }
+                pooled.lastUsedAt = now;
+                idle.offerLast(pooled);
+            }
+
+            // Report connections held longer than the leak threshold
+            if (leakThresholdMs > 0) {
+                for (PooledConnection pooled : borrowed) {
+                    if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMs) {
+                        pooled.leakReported = true;
+                        // The borrow site is only captured with banking.pool.leakTrace=true
+                        LOG.warn("Possible connection leak", pooled.borrowSite,
+                                "pool", name, "heldMs", now - pooled.borrowedAt);
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            LOG.warn("Connection pool maintenance failed", e, "pool", name);
+        } catch (RuntimeException e) {
+            LOG.error("Connection pool maintenance failed", e, "pool", name);
+        }
+    }
+
+    /**
+     * Pool entry wrapping one physical connection
+     */
+    static final class PooledConnection {
+        final ConnectionPool pool;
+        final Connection physical;
+        final StatementCache statementCache;
+        volatile long lastUsedAt;
+        volatile long borrowedAt;
+        volatile Exception borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(ConnectionPool pool, Connection physical, StatementCache statementCache) {
+            this.pool = pool;
+            this.physical = physical;
+            this.statementCache = statementCache;
+            this.lastUsedAt = System.currentTimeMillis();
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new ConnectionHandle(this));
+        }
+
+        void closePhysical() {
+            if (statementCache != null) {
+                statementCache.closeAll();
+            }
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                LOG.warn("Error closing pooled connection", e);
+            }
+        }
+    }
+
+    /**
+     * Per-borrow view of a pooled connection
+     * Each borrow gets its own handle so a stale reference cannot close a
+     * connection that has since been handed to another caller.
+     */
+    private static final class ConnectionHandle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean closed;
+
+        ConnectionHandle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pooled.pool.release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "prepareStatement":
+                    if (!closed && pooled.statementCache != null) {
+                        Class<?>[] types = method.getParameterTypes();
+                        if (types.length == 1) {
+                            return pooled.statementCache.prepare((Connection) proxy, (String) args[0], -1);
+                        }
+                        if (types.length == 2 && types[1] == int.class) {
+                            return pooled.statementCache.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                        }
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,65 +1,366 @@
 package util;
 
+import util.log.Log;
+import util.log.Logger;
+import util.trace.SqlTracer;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Database Connection Utility
  * Provides centralized database connection management
- * Returns a new connection for each request to ensure proper transaction isolation
+ * Connections are borrowed from a bounded pool; closing a connection returns it to the pool
+ *
+ * Read-only work can ask for getReadConnection() instead, which is served by
+ * the read replicas listed in banking.db.replicas (comma separated JDBC URLs,
+ * logging in as banking.db.replica.username / banking.db.replica.password,
+ * which default to the primary's) when there are any. See ReplicaRouter and
+ * ReadYourWrites.
+ *
+ * Accounts can be split over several databases by listing the extra shards
+ * in banking.db.shards (comma separated JDBC URLs, logging in as
+ * banking.db.shard.username / banking.db.shard.password, which default to
+ * the primary's). The primary is shard 0. Work on one account asks for
+ * getConnection(accountId) or getReadConnection(accountId); see ShardRouter.
+ * Read replicas only serve shard 0.
  */
 public class DBConnection {
-    
-    // Database credentials
-    private static final String URL = "jdbc:mysql://localhost:3306/online_banking";
+
+    private static final Logger LOG = Log.getLogger(DBConnection.class);
+
+    // Database credentials (override with -Dbanking.db.url, -Dbanking.db.username, -Dbanking.db.password)
+    // Server-side prepared statements pay off now that statements are cached per pooled connection
+    private static final String URL = "jdbc:mysql://localhost:3306/online_banking?useServerPrepStmts=true";
     private static final String USERNAME = "root";
     private static final String PASSWORD = "Hsaka@100";
-    
+
+    private static volatile ConnectionPool pool;
+    private static String url = AppConfig.getString("banking.db.url", URL);
+    private static String username = AppConfig.getString("banking.db.username", USERNAME);
+    private static String password = AppConfig.getString("banking.db.password", PASSWORD);
+
+    private static volatile ReplicaRouter replicaRouter;
+    private static volatile boolean replicasResolved;
+    private static String replicaUrls = AppConfig.getString("banking.db.replicas", "");
+    private static String replicaUsername = AppConfig.getString("banking.db.replica.username", null);
+    private static String replicaPassword = AppConfig.getString("banking.db.replica.password", null);
+
+    private static volatile ShardRouter shardRouter;
+    private static volatile boolean shardsResolved;
+    private static String shardUrls = AppConfig.getString("banking.db.shards", "");
+    private static String shardUsername = AppConfig.getString("banking.db.shard.username", null);
+    private static String shardPassword = AppConfig.getString("banking.db.shard.password", null);
+
     // Static initializer to load the JDBC driver once
     static {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
-            System.out.println("MySQL JDBC Driver loaded successfully!");
+            LOG.debug("MySQL JDBC driver loaded");
         } catch (ClassNotFoundException e) {
-            System.err.println("MySQL JDBC Driver not found!");
-            e.printStackTrace();
+            LOG.error("MySQL JDBC driver not found", e);
         }
     }
-    
+
     /**
-     * Get a new database connection
-     * Returns a fresh connection for each call to ensure proper transaction isolation
-     * 
+     * Get a database connection from the pool
+     * Each caller gets exclusive use of the connection until it is closed
+     * and is wrapped by SqlTracer while SQL tracing is on.
+     *
      * @return Connection object
-     * @throws SQLException if connection fails
+     * @throws SQLException if no connection can be obtained
      */
     public static Connection getConnection() throws SQLException {
         try {
-            Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
-            System.out.println("Database connected successfully!");
-            return connection;
-            
+            Connection connection = getPool().borrow();
+            return SqlTracer.isEnabled() ? SqlTracer.wrap(connection) : connection;
+
+        } catch (SQLException e) {
+            LOG.error("Failed to connect to database", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Get a connection to the shard holding an account
+     * The primary when sharding is off.
+     *
+     * @param accountId Account ID
+     * @return Connection object
+     * @throws SQLException if no connection can be obtained
+     */
+    public static Connection getConnection(int accountId) throws SQLException {
+        return getShardConnection(shardOf(accountId));
+    }
+
+    /**
+     * Get a connection to one shard
+     * @param shard Shard number, 0 for the primary
+     * @return Connection object
+     * @throws SQLException if no connection can be obtained
+     */
+    public static Connection getShardConnection(int shard) throws SQLException {
+        if (shard == 0) {
+            return getConnection();
+        }
+        try {
+            Connection connection = getShardRouter().borrow(shard);
+            return SqlTracer.isEnabled() ? SqlTracer.wrap(connection) : connection;
+
         } catch (SQLException e) {
-            System.err.println("Failed to connect to database!");
-            e.printStackTrace();
+            LOG.error("Failed to connect to shard", e, "shard", shard);
             throw e;
         }
     }
-    
+
+    /**
+     * Get a connection for work that only reads
+     * Served by a read replica when replicas are configured and the current
+     * session has not written recently (see ReadYourWrites); otherwise by the
+     * primary. Replicas may lag the primary, so callers must not use what
+     * they read here alone to decide a write or to fill a shared cache.
+     *
+     * @return Connection object
+     * @throws SQLException if no connection can be obtained
+     */
+    public static Connection getReadConnection() throws SQLException {
+        ReplicaRouter router = getReplicaRouter();
+        if (router != null) {
+            if (ReadYourWrites.requiresPrimary()) {
+                router.countPrimaryRead();
+            } else {
+                Connection connection = router.borrow();
+                if (connection != null) {
+                    return SqlTracer.isEnabled() ? SqlTracer.wrap(connection) : connection;
+                }
+            }
+        }
+        return getConnection();
+    }
+
+    /**
+     * Get a connection for work that only reads one account
+     * Accounts on the primary may be read from a replica, as with
+     * getReadConnection(); the other shards have no replicas.
+     *
+     * @param accountId Account ID
+     * @return Connection object
+     * @throws SQLException if no connection can be obtained
+     */
+    public static Connection getReadConnection(int accountId) throws SQLException {
+        int shard = shardOf(accountId);
+        return shard == 0 ? getReadConnection() : getShardConnection(shard);
+    }
+
+    /**
+     * @return true if read replicas are configured
+     */
+    public static boolean hasReplicas() {
+        return getReplicaRouter() != null;
+    }
+
+    /**
+     * Get the replica router, creating it on first use
+     * @return Router, or null when no replicas are configured
+     */
+    public static ReplicaRouter getReplicaRouter() {
+        if (replicasResolved) {
+            return replicaRouter;
+        }
+        synchronized (DBConnection.class) {
+            if (!replicasResolved) {
+                List<ConnectionPool> pools = new ArrayList<>();
+                final String user = replicaUsername != null ? replicaUsername : username;
+                final String pass = replicaPassword != null ? replicaPassword : password;
+                for (String replicaUrl : replicaUrls.split(",")) {
+                    final String poolUrl = replicaUrl.trim();
+                    if (!poolUrl.isEmpty()) {
+                        pools.add(new ConnectionPool("replica-" + (pools.size() + 1),
+                                () -> DriverManager.getConnection(poolUrl, user, pass)));
+                    }
+                }
+                if (!pools.isEmpty()) {
+                    replicaRouter = new ReplicaRouter(pools,
+                            AppConfig.getLong("banking.db.replica.checkIntervalMs", 5000));
+                }
+                replicasResolved = true;
+            }
+            return replicaRouter;
+        }
+    }
+
+    /**
+     * @param key Account ID, or user ID to find where a user's accounts live
+     * @return Shard holding the key, always 0 when sharding is off
+     */
+    public static int shardOf(int key) {
+        ShardRouter router = getShardRouter();
+        return router == null ? 0 : router.shardOf(key);
+    }
+
+    /**
+     * @return Number of shards, 1 when sharding is off
+     */
+    public static int getShardCount() {
+        ShardRouter router = getShardRouter();
+        return router == null ? 1 : router.getShardCount();
+    }
+
+    /**
+     * Get the shard router, creating it on first use
+     * @return Router, or null when no shards are configured
+     */
+    public static ShardRouter getShardRouter() {
+        if (shardsResolved) {
+            return shardRouter;
+        }
+        synchronized (DBConnection.class) {
+            if (!shardsResolved) {
+                List<ConnectionPool> pools = new ArrayList<>();
+                final String user = shardUsername != null ? shardUsername : username;
+                final String pass = shardPassword != null ? shardPassword : password;
+                for (String shardUrl : shardUrls.split(",")) {
+                    final String poolUrl = shardUrl.trim();
+                    if (!poolUrl.isEmpty()) {
+                        pools.add(new ConnectionPool("shard-" + (pools.size() + 1),
+                                () -> DriverManager.getConnection(poolUrl, user, pass)));
+                    }
+                }
+                if (!pools.isEmpty()) {
+                    shardRouter = new ShardRouter(pools);
+                    LOG.info("Accounts sharded", "shards", shardRouter.getShardCount());
+                }
+                shardsResolved = true;
+            }
+            return shardRouter;
+        }
+    }
+
     /**
-     * Close database connection
+     * Return a database connection to the pool
      * @param connection Connection to close
      */
     public static void closeConnection(Connection connection) {
         try {
             if (connection != null && !connection.isClosed()) {
                 connection.close();
-                System.out.println("Database connection closed.");
             }
         } catch (SQLException e) {
-            System.err.println("Error closing connection!");
-            e.printStackTrace();
+            LOG.warn("Error closing connection", e);
+        }
+    }
+
+    /**
+     * Get the shared connection pool, creating it on first use
+     * @return Connection pool
+     */
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DBConnection.class) {
+                current = pool;
+                if (current == null) {
+                    final String poolUrl = url;
+                    final String poolUser = username;
+                    final String poolPassword = password;
+                    current = new ConnectionPool("primary",
+                            () -> DriverManager.getConnection(poolUrl, poolUser, poolPassword));
+                    current.registerMetrics();
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Point the pool at a different database
+     * Used by tests and benchmarks to run against an embedded database
+     *
+     * @param newUrl JDBC URL
+     * @param newUsername Database user
+     * @param newPassword Database password
+     */
+    public static synchronized void configure(String newUrl, String newUsername, String newPassword) {
+        shutdown();
+        url = newUrl;
+        username = newUsername;
+        password = newPassword;
+    }
+
+    /**
+     * Point read-only work at different replicas
+     * Used by tests to stand in a second embedded database for a replica
+     *
+     * @param newUrls Comma separated JDBC URLs, empty for none
+     * @param newUsername Database user, null for the primary's
+     * @param newPassword Database password, null for the primary's
+     */
+    public static synchronized void configureReplicas(String newUrls, String newUsername, String newPassword) {
+        closeReplicas();
+        replicaUrls = newUrls;
+        replicaUsername = newUsername;
+        replicaPassword = newPassword;
+    }
+
+    /**
+     * Split accounts over different shards
+     * Used by tests to stand in embedded databases for shards 1..N-1
+     *
+     * @param newUrls Comma separated JDBC URLs, empty to turn sharding off
+     * @param newUsername Database user, null for the primary's
+     * @param newPassword Database password, null for the primary's
+     */
+    public static synchronized void configureShards(String newUrls, String newUsername, String newPassword) {
+        closeShards();
+        shardUrls = newUrls;
+        shardUsername = newUsername;
+        shardPassword = newPassword;
+    }
+
+    /**
+     * Restore the configured database settings after configure()
+     */
+    public static synchronized void reset() {
+        configure(AppConfig.getString("banking.db.url", URL),
+                  AppConfig.getString("banking.db.username", USERNAME),
+                  AppConfig.getString("banking.db.password", PASSWORD));
+        configureReplicas(AppConfig.getString("banking.db.replicas", ""),
+                          AppConfig.getString("banking.db.replica.username", null),
+                          AppConfig.getString("banking.db.replica.password", null));
+        configureShards(AppConfig.getString("banking.db.shards", ""),
+                        AppConfig.getString("banking.db.shard.username", null),
+                        AppConfig.getString("banking.db.shard.password", null));
+    }
+
+    /**
+     * Close the pool, the replica and shard pools and all idle connections
+     * The pools are recreated on the next getConnection() call
+     */
+    public static synchronized void shutdown() {
+        closeReplicas();
+        closeShards();
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static synchronized void closeReplicas() {
+        if (replicaRouter != null) {
+            replicaRouter.close();
+            replicaRouter = null;
+        }
+        replicasResolved = false;
+    }
+
+    private static synchronized void closeShards() {
+        if (shardRouter != null) {
+            shardRouter.close();
+            shardRouter = null;
         }
+        shardsResolved = false;
     }
 }
@@ -0,0 +1,87 @@
+package util;
+
+import java.util.function.Supplier;
+
+/**
+ * Read Your Writes
+ * Keeps a session's reads on the primary database for a while after it
+ * wrote, so a replica that has not caught up yet cannot show it an older
+ * balance or history than the one it just produced.
+ *
+ * The token is the time of the session's last write. The web layer binds it
+ * to the thread handling the request (see AsyncJdbcServlet); while
+ * banking.db.replica.stickyMs (default 5000) has not passed since then,
+ * DBConnection.getReadConnection() returns a primary connection. The window
+ * should comfortably exceed the replicas' usual lag.
+ */
+public final class ReadYourWrites {
+
+    private static final long WINDOW_MS = AppConfig.getLong("banking.db.replica.stickyMs", 5000);
+
+    private static final ThreadLocal<Long> lastWrite = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * Bind a session's token to the current thread
+     * @param lastWriteMillis Time of the session's last write, 0 if none
+     */
+    public static void begin(long lastWriteMillis) {
+        if (lastWriteMillis > 0) {
+            lastWrite.set(lastWriteMillis);
+        } else {
+            lastWrite.remove();
+        }
+    }
+
+    /**
+     * Unbind the token from the current thread
+     */
+    public static void end() {
+        lastWrite.remove();
+    }
+
+    /**
+     * @return Token bound to the current thread, 0 if none
+     */
+    public static long current() {
+        Long value = lastWrite.get();
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * @return true if reads on this thread must go to the primary
+     */
+    public static boolean requiresPrimary() {
+        Long value = lastWrite.get();
+        return value != null && System.currentTimeMillis() - value < WINDOW_MS;
+    }
+
+    /**
+     * @return How long after a write its session reads from the primary
+     */
+    public static long getWindowMillis() {
+        return WINDOW_MS;
+    }
+
+    /**
+     * Carry the current thread's token over to a task run on another thread
+     * @param task Task to run elsewhere
+     * @return Task that runs with the token bound
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        long token = current();
+        if (token == 0) {
+            return task;
+        }
+        return () -> {
+            begin(token);
+            try {
+                return task.get();
+            } finally {
+                end();
+            }
+        };
+    }
+}
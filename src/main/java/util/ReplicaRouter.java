@@ -0,0 +1,172 @@
+package util;
+
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.Metrics;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replica Router
+ * Spreads read-only work over the read replicas, round robin, skipping
+ * replicas that failed their last health check.
+ *
+ * Each replica has its own ConnectionPool. A background thread checks every
+ * replica each banking.db.replica.checkIntervalMs (default 5000); a replica
+ * that cannot hand out a valid connection is taken out of rotation until a
+ * later check succeeds. A replica that fails while serving a read is taken
+ * out at once. When no replica is usable, borrow() returns null and the
+ * caller reads from the primary.
+ *
+ * Created by DBConnection from banking.db.replicas.
+ */
+public final class ReplicaRouter implements AutoCloseable {
+
+    private static final Logger LOG = Log.getLogger(ReplicaRouter.class);
+
+    private static final LongAdder REPLICA_READS = Metrics.counter("banking_db_read_routes_total",
+            "Read-only connections handed out, by database", "target", "replica");
+    private static final LongAdder PRIMARY_READS = Metrics.counter("banking_db_read_routes_total",
+            "Read-only connections handed out, by database", "target", "primary");
+
+    /**
+     * One replica and its last known health
+     */
+    private static final class Replica {
+        final ConnectionPool pool;
+        volatile boolean healthy = true;
+
+        Replica(ConnectionPool pool) {
+            this.pool = pool;
+        }
+    }
+
+    private final Replica[] replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final int validationTimeoutSeconds;
+    private final ScheduledExecutorService healthChecker;
+
+    /**
+     * @param pools One pool per replica; closed with the router
+     * @param checkIntervalMs Time between health checks
+     */
+    public ReplicaRouter(List<ConnectionPool> pools, long checkIntervalMs) {
+        this.replicas = new Replica[pools.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = new Replica(pools.get(i));
+            pools.get(i).registerMetrics();
+            Replica replica = replicas[i];
+            Metrics.gauge("banking_db_replica_healthy", "1 while a replica is in rotation",
+                    () -> replica.healthy ? 1 : 0, "pool", pools.get(i).getName());
+        }
+        this.validationTimeoutSeconds = AppConfig.getInt("banking.pool.validationTimeoutSeconds", 2);
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection from the next healthy replica
+     * @return Replica connection, or null if no replica can serve the read
+     */
+    public Connection borrow() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.length);
+        for (int i = 0; i < replicas.length; i++) {
+            Replica replica = replicas[(start + i) % replicas.length];
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection connection = replica.pool.borrow();
+                REPLICA_READS.increment();
+                return connection;
+            } catch (SQLTransientConnectionException e) {
+                // Busy rather than broken; try the next one
+            } catch (SQLException e) {
+                markDown(replica, e);
+            }
+        }
+        PRIMARY_READS.increment();
+        return null;
+    }
+
+    /**
+     * Count a read that went to the primary without asking the replicas
+     */
+    void countPrimaryRead() {
+        PRIMARY_READS.increment();
+    }
+
+    /**
+     * @return Number of replicas currently in rotation
+     */
+    public int getHealthyCount() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    /**
+     * @return Number of configured replicas
+     */
+    public int getReplicaCount() {
+        return replicas.length;
+    }
+
+    /**
+     * Check every replica now and update the rotation
+     */
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            SQLException failure = null;
+            try (Connection connection = replica.pool.borrow()) {
+                healthy = connection.isValid(validationTimeoutSeconds);
+            } catch (SQLTransientConnectionException e) {
+                // Every connection busy: the replica is up, just loaded
+                healthy = true;
+            } catch (SQLException e) {
+                healthy = false;
+                failure = e;
+            }
+            if (healthy && !replica.healthy) {
+                replica.healthy = true;
+                LOG.info("Replica back in rotation", "pool", replica.pool.getName());
+            } else if (!healthy) {
+                markDown(replica, failure);
+            }
+        }
+    }
+
+    /**
+     * Stop health checks and close the replica pools
+     */
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    private void markDown(Replica replica, SQLException cause) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            LOG.warn("Replica taken out of rotation", cause, "pool", replica.pool.getName());
+        }
+    }
+}
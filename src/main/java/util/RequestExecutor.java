@@ -0,0 +1,214 @@
+package util;
+
+import java.lang.reflect.Method;
+import util.metrics.Metrics;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request Executor
+ * Runs blocking request work (JDBC calls) off the servlet container's
+ * threads, one virtual thread per request where the JVM supports them
+ * (Java 21+) and on a cached pool of platform threads otherwise.
+ *
+ * Virtual threads make waiting cheap but not the database: at most
+ * banking.async.maxConcurrency tasks (default banking.pool.maxSize) run at
+ * once, so the work never queues on the connection pool's borrow timeout.
+ * Tasks beyond that wait for a permit for up to banking.async.queueTimeoutMs
+ * and are then rejected, so an overloaded server sheds load instead of
+ * piling up requests without bound.
+ *
+ * Used by AsyncJdbcServlet when banking.async.enabled is true.
+ */
+public final class RequestExecutor {
+
+    private static volatile RequestExecutor instance;
+
+    private final boolean enabled;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long queueTimeoutMs;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Get the shared executor, creating it on first use
+     * @return Executor configured from banking.async.* settings
+     */
+    public static RequestExecutor getInstance() {
+        RequestExecutor current = instance;
+        if (current == null) {
+            synchronized (RequestExecutor.class) {
+                current = instance;
+                if (current == null) {
+                    current = new RequestExecutor(
+                            AppConfig.getBoolean("banking.async.enabled", false),
+                            AppConfig.getInt("banking.async.maxConcurrency", AppConfig.getInt("banking.pool.maxSize", 20)),
+                            AppConfig.getLong("banking.async.queueTimeoutMs", 5000));
+                    registerMetrics(current);
+                    instance = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static void registerMetrics(RequestExecutor executor) {
+        Metrics.gauge("banking_async_requests_active", "Async servlet requests running", executor::getActiveCount);
+        Metrics.gauge("banking_async_requests_waiting", "Async servlet requests waiting for a permit", executor::getWaitingCount);
+        Metrics.counter("banking_async_requests_completed_total", "Async servlet requests completed", executor::getCompletedCount);
+        Metrics.counter("banking_async_requests_rejected_total", "Async servlet requests rejected with 503", executor::getRejectedCount);
+    }
+
+    /**
+     * Stop the shared executor, if it was created; running tasks are left to finish
+     */
+    public static void shutdown() {
+        RequestExecutor current;
+        synchronized (RequestExecutor.class) {
+            current = instance;
+            instance = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Create an executor
+     * @param enabled false to have callers run work on their own thread
+     * @param maxConcurrency Maximum number of tasks running at once
+     * @param queueTimeoutMs How long a task waits for a permit before it is rejected
+     */
+    public RequestExecutor(boolean enabled, int maxConcurrency, long queueTimeoutMs) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        this.enabled = enabled;
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : newPlatformExecutor();
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    /**
+     * @return true if servlets should hand their work to this executor
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Run a task once a permit is free
+     * Exactly one of work and onRejected runs, on an executor thread.
+     * @param work Blocking work
+     * @param onRejected Runs instead when no permit was free within the queue timeout,
+     *                   or the executor has been shut down
+     */
+    public void execute(Runnable work, Runnable onRejected) {
+        try {
+            executor.execute(() -> run(work, onRejected));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            onRejected.run();
+        }
+    }
+
+    private void run(Runnable work, Runnable onRejected) {
+        boolean acquired;
+        waiting.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+        if (!acquired) {
+            rejected.increment();
+            onRejected.run();
+            return;
+        }
+        try {
+            work.run();
+        } finally {
+            permits.release();
+            completed.increment();
+        }
+    }
+
+    /**
+     * Stop accepting tasks; running and queued tasks are left to finish
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return Tasks currently holding a permit
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * @return Tasks waiting for a permit
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), looked up reflectively so
+     * the application still builds and runs on Java 17
+     * @return Executor, or null if the JVM has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "request-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,227 @@
+package util;
+
+import util.log.Log;
+import util.log.Logger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Session Tokens
+ * Issues and verifies the signed cookie used instead of an HttpSession when
+ * banking.session.mode=token. A token is the Base64url encoding of
+ *
+ *   version (1) | userId (4) | accountId (4) | expiresAt epoch seconds (4) | name (UTF-8) | HMAC-SHA256 (16)
+ *
+ * so a typical token is under 80 characters. The MAC is truncated to 128
+ * bits, which is plenty for a signature that cannot be attacked offline.
+ *
+ * verify() is on every request's path, so it decodes into a per-thread
+ * buffer, reuses a per-thread Mac initialised once with the cached key and
+ * compares in constant time; the only allocations are the returned claims
+ * and the name string.
+ */
+public final class SessionTokens {
+
+    private static final Logger LOG = Log.getLogger(SessionTokens.class);
+
+    /**
+     * What a token says about its holder
+     * @param userId User ID
+     * @param accountId Account ID, 0 if the user has no account yet
+     * @param name Display name
+     * @param expiresAt Expiry in epoch seconds
+     */
+    public record Claims(int userId, int accountId, String name, long expiresAt) {
+    }
+
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 13;
+    private static final int MAC_BYTES = 16;
+    private static final int MAX_NAME_BYTES = 400;
+    private static final int MAX_TOKEN_BYTES = HEADER_BYTES + MAX_NAME_BYTES + MAC_BYTES;
+    private static final int MAX_TOKEN_CHARS = (MAX_TOKEN_BYTES * 4 + 2) / 3;
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final byte[] BASE64URL = new byte[128];
+    static {
+        Arrays.fill(BASE64URL, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[MAX_TOKEN_BYTES]);
+    private final ThreadLocal<byte[]> digests = ThreadLocal.withInitial(() -> new byte[32]);
+
+    /**
+     * @param secret HMAC key; at least 32 bytes of randomness
+     */
+    public SessionTokens(byte[] secret) {
+        if (secret.length == 0) {
+            throw new IllegalArgumentException("Session token secret must not be empty");
+        }
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Create tokens signed with banking.session.secret
+     * Without a configured secret a random key is used, so tokens stop
+     * working on restart and are not accepted by other nodes.
+     * @return Token codec
+     */
+    public static SessionTokens fromConfig() {
+        String secret = AppConfig.getString("banking.session.secret", null);
+        if (secret == null) {
+            LOG.warn("banking.session.secret is not set; using a random key. "
+                    + "Session tokens will not survive a restart or work across nodes.");
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            return new SessionTokens(random);
+        }
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 32) {
+            LOG.warn("banking.session.secret is shorter than 32 bytes; use a longer random value.");
+        }
+        return new SessionTokens(bytes);
+    }
+
+    /**
+     * Sign a token
+     * @param claims Token contents; the name is cut to fit the size limit
+     * @return Cookie-safe token
+     */
+    public String issue(Claims claims) {
+        byte[] name = truncate(claims.name() == null ? "" : claims.name());
+        byte[] token = new byte[HEADER_BYTES + name.length + MAC_BYTES];
+        token[0] = VERSION;
+        putInt(token, 1, claims.userId());
+        putInt(token, 5, claims.accountId());
+        putInt(token, 9, (int) claims.expiresAt());
+        System.arraycopy(name, 0, token, HEADER_BYTES, name.length);
+
+        byte[] digest = digests.get();
+        sign(token, HEADER_BYTES + name.length, digest);
+        System.arraycopy(digest, 0, token, HEADER_BYTES + name.length, MAC_BYTES);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Check a token's signature and expiry
+     * @param token Cookie value
+     * @param nowSeconds Current time in epoch seconds
+     * @return Claims, or null if the token is malformed, forged or expired
+     */
+    public Claims verify(String token, long nowSeconds) {
+        if (token == null || token.length() > MAX_TOKEN_CHARS) {
+            return null;
+        }
+        byte[] buffer = buffers.get();
+        int length = decode(token, buffer);
+        if (length < HEADER_BYTES + MAC_BYTES || buffer[0] != VERSION) {
+            return null;
+        }
+
+        int signed = length - MAC_BYTES;
+        byte[] digest = digests.get();
+        sign(buffer, signed, digest);
+        int diff = 0;
+        for (int i = 0; i < MAC_BYTES; i++) {
+            diff |= digest[i] ^ buffer[signed + i];
+        }
+        if (diff != 0) {
+            return null;
+        }
+
+        long expiresAt = getInt(buffer, 9) & 0xffffffffL;
+        if (expiresAt <= nowSeconds) {
+            return null;
+        }
+        return new Claims(getInt(buffer, 1), getInt(buffer, 5),
+                new String(buffer, HEADER_BYTES, signed - HEADER_BYTES, StandardCharsets.UTF_8), expiresAt);
+    }
+
+    private void sign(byte[] data, int length, byte[] digest) {
+        Mac mac = macs.get();
+        mac.update(data, 0, length);
+        try {
+            mac.doFinal(digest, 0);
+        } catch (GeneralSecurityException e) {
+            // The digest array always has room for the 32-byte HMAC
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is required on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode unpadded Base64url into the buffer
+     * @return Bytes written, or -1 if the input is not valid Base64url
+     */
+    private static int decode(String token, byte[] out) {
+        int length = token.length();
+        if (length % 4 == 1) {
+            return -1;
+        }
+        int bits = 0;
+        int bitCount = 0;
+        int written = 0;
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            int value = c < 128 ? BASE64URL[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                out[written++] = (byte) (bits >> bitCount);
+            }
+        }
+        // Spare low bits must be zero, so each token has exactly one spelling
+        return (bits & ((1 << bitCount) - 1)) == 0 ? written : -1;
+    }
+
+    private static byte[] truncate(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_NAME_BYTES) {
+            return bytes;
+        }
+        // Cut on a character boundary so the name still decodes
+        int end = MAX_NAME_BYTES;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return Arrays.copyOf(bytes, end);
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] b, int offset) {
+        return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16)
+                | ((b[offset + 2] & 0xff) << 8) | (b[offset + 3] & 0xff);
+    }
+}
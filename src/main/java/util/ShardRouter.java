@@ -0,0 +1,70 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Shard Router
+ * Maps accounts to the database that holds them when accounts are split over
+ * several databases.
+ *
+ * Shard 0 is the primary database, which also keeps everything that is not
+ * sharded (users, idempotency keys); shards 1..N-1 each have their own
+ * ConnectionPool. Account ids are interleaved: account_id mod N names the
+ * shard, so each shard's id sequence must start at its shard number (N for
+ * shard 0) and step by N (see database/setup_shards.sql). A user's accounts
+ * are created on shard user_id mod N, so they can be found from the user id
+ * without asking every shard.
+ *
+ * Created by DBConnection from banking.db.shards.
+ */
+public final class ShardRouter implements AutoCloseable {
+
+    private final ConnectionPool[] pools;
+
+    /**
+     * @param pools One pool for each of shards 1..N-1, in shard order; closed with the router
+     */
+    public ShardRouter(List<ConnectionPool> pools) {
+        this.pools = pools.toArray(new ConnectionPool[0]);
+        for (ConnectionPool shardPool : this.pools) {
+            shardPool.registerMetrics();
+        }
+    }
+
+    /**
+     * @return Number of shards, counting the primary
+     */
+    public int getShardCount() {
+        return pools.length + 1;
+    }
+
+    /**
+     * @param key Account ID, or user ID to find where a user's accounts live
+     * @return Shard holding the key
+     */
+    public int shardOf(int key) {
+        return Math.floorMod(key, pools.length + 1);
+    }
+
+    /**
+     * Borrow a connection to one of the shards beyond the primary
+     * @param shard Shard number, 1..N-1
+     * @return Connection to the shard
+     * @throws SQLException if no connection can be obtained
+     */
+    Connection borrow(int shard) throws SQLException {
+        return pools[shard - 1].borrow();
+    }
+
+    /**
+     * Close the shard pools
+     */
+    @Override
+    public void close() {
+        for (ConnectionPool shardPool : pools) {
+            shardPool.close();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package util;
+
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.Metrics;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared Statement Cache
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text
+ *
+ * A pooled connection is only used by one borrower at a time, so the cache
+ * itself is not synchronized. Statements handed out by the cache are proxies
+ * whose close() clears parameters and returns the statement to the cache.
+ * If the same SQL is prepared again while its cached statement is still open,
+ * the second caller gets a one-off statement behind the same kind of proxy;
+ * it is closed for real when the caller closes it or, at the latest, when
+ * the connection goes back to the pool.
+ */
+public final class StatementCache {
+
+    private static final Logger LOG = Log.getLogger(StatementCache.class);
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+
+    static {
+        Metrics.counter("banking_statement_cache_hits_total", "Prepares served from a statement cache", HITS::sum);
+        Metrics.counter("banking_statement_cache_misses_total", "Prepares that reached the driver", MISSES::sum);
+        Metrics.counter("banking_statement_cache_evictions_total", "Cached statements closed to make room", EVICTIONS::sum);
+    }
+
+    private final Connection physical;
+    private final LinkedHashMap<String, CachedStatement> statements;
+    private final List<CachedStatement> oneOff = new ArrayList<>();
+
+    /**
+     * Create a cache for one physical connection
+     * @param physical Connection that owns the cached statements
+     * @param maxSize Maximum number of statements kept open
+     */
+    StatementCache(Connection physical, int maxSize) {
+        this.physical = physical;
+        this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() > maxSize && !eldest.getValue().inUse) {
+                    EVICTIONS.increment();
+                    eldest.getValue().closePhysical();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get a prepared statement for the given SQL, preparing it on a miss
+     * @param owner Connection proxy reported by Statement.getConnection()
+     * @param sql SQL text
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS, or -1 when not requested
+     * @return Statement proxy
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys < 0 ? sql : autoGeneratedKeys + "#" + sql;
+        CachedStatement cached = statements.get(key);
+
+        if (cached != null && cached.inUse) {
+            // Same SQL already open on this connection - do not share it
+            MISSES.increment();
+            PreparedStatement stmt = autoGeneratedKeys < 0
+                    ? physical.prepareStatement(sql)
+                    : physical.prepareStatement(sql, autoGeneratedKeys);
+            CachedStatement single = new CachedStatement(stmt, oneOff);
+            oneOff.add(single);
+            single.inUse = true;
+            return single.newHandle(owner);
+        }
+
+        if (cached == null) {
+            MISSES.increment();
+            PreparedStatement stmt = autoGeneratedKeys < 0
+                    ? physical.prepareStatement(sql)
+                    : physical.prepareStatement(sql, autoGeneratedKeys);
+            cached = new CachedStatement(stmt, null);
+            statements.put(key, cached);
+        } else {
+            HITS.increment();
+        }
+
+        cached.inUse = true;
+        return cached.newHandle(owner);
+    }
+
+    /**
+     * Release statements left open by the borrower when its connection is returned
+     */
+    void releaseAll() {
+        for (CachedStatement cached : statements.values()) {
+            if (cached.inUse) {
+                cached.reset();
+            }
+        }
+        closeOneOff();
+    }
+
+    /**
+     * Close every cached statement
+     */
+    void closeAll() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (it.hasNext()) {
+            it.next().closePhysical();
+            it.remove();
+        }
+        closeOneOff();
+    }
+
+    private void closeOneOff() {
+        for (int i = oneOff.size() - 1; i >= 0; i--) {
+            oneOff.get(i).reset();
+        }
+    }
+
+    /**
+     * @return Number of prepares served from a cache
+     */
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * @return Number of prepares that reached the driver
+     */
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * @return Number of statements closed to make room for newer ones
+     */
+    public static long getEvictionCount() {
+        return EVICTIONS.sum();
+    }
+
+    /**
+     * Cache entry holding one physical prepared statement
+     */
+    private static final class CachedStatement {
+        final PreparedStatement statement;
+        // Set for a one-off statement outside the LRU: reset() closes it and drops it from this list
+        final List<CachedStatement> oneOff;
+        boolean inUse;
+        StatementHandle currentHandle;
+
+        CachedStatement(PreparedStatement statement, List<CachedStatement> oneOff) {
+            this.statement = statement;
+            this.oneOff = oneOff;
+        }
+
+        PreparedStatement newHandle(Connection owner) {
+            currentHandle = new StatementHandle(this, owner);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    currentHandle);
+        }
+
+        void reset() {
+            if (currentHandle != null) {
+                currentHandle.closed = true;
+                currentHandle = null;
+            }
+            inUse = false;
+            if (oneOff != null) {
+                oneOff.remove(this);
+                closePhysical();
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                LOG.warn("Error resetting cached statement", e);
+            }
+        }
+
+        void closePhysical() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOG.warn("Error closing cached statement", e);
+            }
+        }
+    }
+
+    /**
+     * Per-prepare view of a cached statement
+     */
+    private static final class StatementHandle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean closed;
+
+        StatementHandle(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        cached.reset();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.statement + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package util.log;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Async Log Writer
+ * Multi-producer, single-consumer ring buffer of log events drained to
+ * rolling files by one background thread.
+ *
+ * Producers claim a sequence number with a CAS on the tail, fill the slot
+ * it maps to and publish it by writing the slot's sequence. When the ring is
+ * full the event is counted as dropped instead of waiting, so a slow disk
+ * can never stall a request. Slots are allocated once and reused.
+ *
+ * The writer formats each event as one line,
+ *     2026-01-31T09:15:02.118Z WARN  TransactionDAO [http-nio-8080-exec-4] Transfer failed sender=12 receiver=40
+ * followed by the stack trace if there is one, and rolls the file over to
+ * name.1 ... name.N when it passes maxBytes.
+ */
+final class AsyncLogWriter implements AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * One preallocated event
+     */
+    private static final class Slot {
+        volatile long sequence = -1;
+        long timeMillis;
+        Level level;
+        String logger;
+        String thread;
+        String message;
+        Throwable error;
+        final String[] keys = new String[3];
+        final Object[] values = new Object[3];
+    }
+
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped;
+    private long reportedDrops;
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final boolean console;
+    private OutputStream out;
+    private boolean toFile;
+    private long size;
+
+    private final StringBuilder line = new StringBuilder(256);
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    /**
+     * @param file Log file; rolled files get .1, .2, ... appended
+     * @param bufferSize Ring capacity in events, rounded up to a power of two
+     * @param maxBytes Size at which the file is rolled over
+     * @param maxFiles Rolled files kept
+     * @param console true to copy every line to standard output as well
+     * @param dropped Counter of events lost because the ring was full
+     */
+    AsyncLogWriter(Path file, int bufferSize, long maxBytes, int maxFiles, boolean console, LongAdder dropped) {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.ring = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.console = console;
+        this.dropped = dropped;
+        this.out = open();
+
+        this.drainer = new Thread(this::drain, "banking-log-writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Queue an event without blocking
+     * @return false if the ring was full and the event was dropped
+     */
+    boolean publish(Level level, String logger, String message, Throwable error,
+                    String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= ring.length || !running) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = ring[(int) sequence & mask];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.level = level;
+        slot.logger = logger;
+        slot.thread = Thread.currentThread().getName();
+        slot.message = message;
+        slot.error = error;
+        slot.keys[0] = k1;
+        slot.values[0] = v1;
+        slot.keys[1] = k2;
+        slot.values[1] = v2;
+        slot.keys[2] = k3;
+        slot.values[2] = v3;
+        slot.sequence = sequence;
+        return true;
+    }
+
+    /**
+     * @return Events queued but not yet written
+     */
+    int getBacklog() {
+        return (int) (tail.get() - head);
+    }
+
+    /**
+     * Write out everything queued so far, then stop the writer thread
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            long next = head;
+            Slot slot = ring[(int) next & mask];
+            if (slot.sequence == next) {
+                write(slot);
+                head = next + 1;
+                continue;
+            }
+            if (next != tail.get()) {
+                // Claimed but not yet published; the producer is between its CAS and its publish
+                Thread.onSpinWait();
+                continue;
+            }
+            reportDrops();
+            flush();
+            if (!running) {
+                break;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Error closing log file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void write(Slot slot) {
+        line.setLength(0);
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(slot.timeMillis), line);
+        line.append(' ').append(slot.level.name());
+        for (int i = slot.level.name().length(); i < 5; i++) {
+            line.append(' ');
+        }
+        line.append(' ').append(slot.logger).append(" [").append(slot.thread).append("] ").append(slot.message);
+        for (int i = 0; i < slot.keys.length; i++) {
+            if (slot.keys[i] != null) {
+                line.append(' ').append(slot.keys[i]).append('=');
+                appendValue(slot.values[i]);
+            }
+        }
+        line.append('\n');
+        if (slot.error != null) {
+            StringWriter trace = new StringWriter();
+            slot.error.printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+
+        // Let go of the references so a quiet ring does not keep old objects alive
+        slot.message = null;
+        slot.error = null;
+        slot.values[0] = null;
+        slot.values[1] = null;
+        slot.values[2] = null;
+        writeLine(line.toString());
+    }
+
+    private void appendValue(Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ' ' || c == '"' || c == '=' || c < 0x20;
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c == '\n') {
+                line.append("\\n");
+            } else if (c < 0x20) {
+                line.append(' ');
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private void reportDrops() {
+        long total = dropped.sum();
+        if (total > reportedDrops) {
+            writeLine(Instant.now() + " WARN  AsyncLogWriter [" + drainer.getName()
+                    + "] Log buffer full, events dropped count=" + (total - reportedDrops) + "\n");
+            reportedDrops = total;
+        }
+    }
+
+    private void writeLine(String text) {
+        if (console) {
+            System.out.print(text);
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (toFile && size > 0 && size + bytes.length > maxBytes) {
+                roll();
+            }
+            out.write(bytes);
+            size += bytes.length;
+        } catch (IOException e) {
+            // Nowhere better to report a broken log file
+            System.err.println("Error writing log file " + file + ": " + e.getMessage());
+            System.err.print(text);
+        }
+    }
+
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error flushing log file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = rolled(i);
+            if (Files.exists(older)) {
+                Files.move(older, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 0) {
+            Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        out = open();
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private OutputStream open() {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            size = Files.exists(file) ? Files.size(file) : 0;
+            OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+            toFile = true;
+            return stream;
+        } catch (IOException e) {
+            System.err.println("Cannot open log file " + file + ", logging to standard error: " + e.getMessage());
+            toFile = false;
+            return new BufferedOutputStream(System.err) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package util.log;
+
+/**
+ * Log Level
+ * In increasing order of severity; a logger writes its own level and above
+ */
+public enum Level {
+    DEBUG, INFO, WARN, ERROR;
+
+    /**
+     * Parse a configured level name
+     * @param name Level name, in any case
+     * @param defaultLevel Level used when the name is null or unknown
+     * @return Level
+     */
+    static Level parse(String name, Level defaultLevel) {
+        if (name != null) {
+            for (Level level : values()) {
+                if (level.name().equalsIgnoreCase(name)) {
+                    return level;
+                }
+            }
+        }
+        return defaultLevel;
+    }
+}
@@ -0,0 +1,100 @@
+package util.log;
+
+import util.AppConfig;
+import util.metrics.Metrics;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log
+ * Entry point of the application log. Loggers are created once per class,
+ *
+ *     private static final Logger LOG = Log.getLogger(TransactionDAO.class);
+ *
+ * and their events go through a ring buffer to a background writer (see
+ * AsyncLogWriter), so logging never blocks a request on stdout or disk.
+ *
+ * Settings:
+ *   banking.log.level            DEBUG, INFO (default), WARN or ERROR
+ *   banking.log.level.<class>    Level for one class, e.g. banking.log.level.dao.TransactionDAO=DEBUG
+ *   banking.log.dir              Directory of banking.log and its rolled files (default logs)
+ *   banking.log.maxBytes         Size at which the file is rolled (default 10 MB)
+ *   banking.log.maxFiles         Rolled files kept (default 5)
+ *   banking.log.bufferSize       Events the ring holds before dropping (default 8192)
+ *   banking.log.console          true to copy lines to standard output as well
+ *
+ * Levels are read when a logger is created, i.e. at class initialization.
+ */
+public final class Log {
+
+    private static final LongAdder DROPPED = new LongAdder();
+    private static volatile AsyncLogWriter writer;
+
+    static {
+        Metrics.counter("banking_log_dropped_total", "Log events dropped because the log buffer was full", DROPPED::sum);
+        Metrics.gauge("banking_log_backlog", "Log events waiting for the log writer", () -> {
+            AsyncLogWriter current = writer;
+            return current == null ? 0 : current.getBacklog();
+        });
+    }
+
+    private Log() {
+    }
+
+    /**
+     * Create a logger named after a class
+     * @param type Class doing the logging
+     * @return Logger at the level configured for the class
+     */
+    public static Logger getLogger(Class<?> type) {
+        Level level = Level.parse(AppConfig.getString("banking.log.level", null), Level.INFO);
+        level = Level.parse(AppConfig.getString("banking.log.level." + type.getName(), null), level);
+        return new Logger(type.getSimpleName(), level);
+    }
+
+    /**
+     * @return Events dropped since startup because the ring buffer was full
+     */
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    /**
+     * Write out queued events and stop the writer thread
+     * A later event starts a new writer.
+     */
+    public static void shutdown() {
+        AsyncLogWriter current;
+        synchronized (Log.class) {
+            current = writer;
+            writer = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    static void publish(Level level, String logger, String message, Throwable error,
+                        String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        AsyncLogWriter current = writer;
+        if (current == null) {
+            current = start();
+        }
+        current.publish(level, logger, message, error, k1, v1, k2, v2, k3, v3);
+    }
+
+    private static synchronized AsyncLogWriter start() {
+        AsyncLogWriter current = writer;
+        if (current == null) {
+            current = new AsyncLogWriter(
+                    Paths.get(AppConfig.getString("banking.log.dir", "logs"), "banking.log"),
+                    AppConfig.getInt("banking.log.bufferSize", 8192),
+                    AppConfig.getLong("banking.log.maxBytes", 10L * 1024 * 1024),
+                    AppConfig.getInt("banking.log.maxFiles", 5),
+                    AppConfig.getBoolean("banking.log.console", false),
+                    DROPPED);
+            writer = current;
+        }
+        return current;
+    }
+}
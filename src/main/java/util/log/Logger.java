@@ -0,0 +1,164 @@
+package util.log;
+
+/**
+ * Logger
+ * Writes leveled events with up to three key/value fields, for example
+ *
+ *     LOG.warn("Transfer failed", e, "sender", senderAccountId, "receiver", receiverAccountId);
+ *
+ * The level is fixed when the logger is created (see Log), so a disabled
+ * call is one comparison of a final field. Enabled calls copy their
+ * arguments into a preallocated ring buffer slot and return; formatting and
+ * file I/O happen on the log writer thread. Values are therefore formatted
+ * later and must not be mutated after the call.
+ *
+ * Primitive values are boxed at the call site before the level check, so
+ * DEBUG events with numeric fields on hot paths should be guarded with
+ * isDebugEnabled().
+ */
+public final class Logger {
+
+    private final String name;
+    private final int threshold;
+
+    Logger(String name, Level level) {
+        this.name = name;
+        this.threshold = level.ordinal();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDebugEnabled() {
+        return threshold <= Level.DEBUG.ordinal();
+    }
+
+    public boolean isInfoEnabled() {
+        return threshold <= Level.INFO.ordinal();
+    }
+
+    public boolean isWarnEnabled() {
+        return threshold <= Level.WARN.ordinal();
+    }
+
+    public void debug(String message) {
+        if (threshold <= Level.DEBUG.ordinal()) {
+            Log.publish(Level.DEBUG, name, message, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void debug(String message, String k1, Object v1) {
+        if (threshold <= Level.DEBUG.ordinal()) {
+            Log.publish(Level.DEBUG, name, message, null, k1, v1, null, null, null, null);
+        }
+    }
+
+    public void debug(String message, String k1, Object v1, String k2, Object v2) {
+        if (threshold <= Level.DEBUG.ordinal()) {
+            Log.publish(Level.DEBUG, name, message, null, k1, v1, k2, v2, null, null);
+        }
+    }
+
+    public void debug(String message, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (threshold <= Level.DEBUG.ordinal()) {
+            Log.publish(Level.DEBUG, name, message, null, k1, v1, k2, v2, k3, v3);
+        }
+    }
+
+    public void info(String message) {
+        if (threshold <= Level.INFO.ordinal()) {
+            Log.publish(Level.INFO, name, message, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void info(String message, String k1, Object v1) {
+        if (threshold <= Level.INFO.ordinal()) {
+            Log.publish(Level.INFO, name, message, null, k1, v1, null, null, null, null);
+        }
+    }
+
+    public void info(String message, String k1, Object v1, String k2, Object v2) {
+        if (threshold <= Level.INFO.ordinal()) {
+            Log.publish(Level.INFO, name, message, null, k1, v1, k2, v2, null, null);
+        }
+    }
+
+    public void info(String message, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (threshold <= Level.INFO.ordinal()) {
+            Log.publish(Level.INFO, name, message, null, k1, v1, k2, v2, k3, v3);
+        }
+    }
+
+    public void warn(String message) {
+        warn(message, (Throwable) null);
+    }
+
+    public void warn(String message, String k1, Object v1) {
+        warn(message, null, k1, v1);
+    }
+
+    public void warn(String message, String k1, Object v1, String k2, Object v2) {
+        warn(message, null, k1, v1, k2, v2);
+    }
+
+    public void warn(String message, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        warn(message, null, k1, v1, k2, v2, k3, v3);
+    }
+
+    public void warn(String message, Throwable error) {
+        if (threshold <= Level.WARN.ordinal()) {
+            Log.publish(Level.WARN, name, message, error, null, null, null, null, null, null);
+        }
+    }
+
+    public void warn(String message, Throwable error, String k1, Object v1) {
+        if (threshold <= Level.WARN.ordinal()) {
+            Log.publish(Level.WARN, name, message, error, k1, v1, null, null, null, null);
+        }
+    }
+
+    public void warn(String message, Throwable error, String k1, Object v1, String k2, Object v2) {
+        if (threshold <= Level.WARN.ordinal()) {
+            Log.publish(Level.WARN, name, message, error, k1, v1, k2, v2, null, null);
+        }
+    }
+
+    public void warn(String message, Throwable error, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (threshold <= Level.WARN.ordinal()) {
+            Log.publish(Level.WARN, name, message, error, k1, v1, k2, v2, k3, v3);
+        }
+    }
+
+    public void error(String message) {
+        error(message, (Throwable) null);
+    }
+
+    public void error(String message, String k1, Object v1) {
+        error(message, null, k1, v1);
+    }
+
+    public void error(String message, String k1, Object v1, String k2, Object v2) {
+        error(message, null, k1, v1, k2, v2);
+    }
+
+    public void error(String message, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        error(message, null, k1, v1, k2, v2, k3, v3);
+    }
+
+    public void error(String message, Throwable error) {
+        Log.publish(Level.ERROR, name, message, error, null, null, null, null, null, null);
+    }
+
+    public void error(String message, Throwable error, String k1, Object v1) {
+        Log.publish(Level.ERROR, name, message, error, k1, v1, null, null, null, null);
+    }
+
+    public void error(String message, Throwable error, String k1, Object v1, String k2, Object v2) {
+        Log.publish(Level.ERROR, name, message, error, k1, v1, k2, v2, null, null);
+    }
+
+    public void error(String message, Throwable error, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        Log.publish(Level.ERROR, name, message, error, k1, v1, k2, v2, k3, v3);
+    }
+}
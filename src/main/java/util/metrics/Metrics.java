@@ -0,0 +1,206 @@
+package util.metrics;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics
+ * Process-wide registry of counters, gauges and latency histograms, written
+ * out in the Prometheus text format by MetricsServlet.
+ *
+ * Metrics are looked up once, typically into a static final field, and
+ * then recorded without touching the registry. Counters are LongAdders and
+ * histograms are LatencyHistograms, so recording never locks or allocates.
+ * Components that already keep their own statistics register a supplier
+ * that is read at scrape time instead.
+ *
+ * Labels are passed as alternating names and values:
+ *     Metrics.histogram("banking_dao_operation_seconds", "...", "operation", "transferMoney")
+ */
+public final class Metrics {
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), HISTOGRAM("histogram");
+
+        private final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    /** Histogram bounds exported to Prometheus: every power of two from 1µs to about 33s */
+    private static final int EXPORTED_BOUNDS = 26;
+    private static final String[] BOUND_LABELS = new String[EXPORTED_BOUNDS];
+    static {
+        for (int i = 0; i < EXPORTED_BOUNDS; i++) {
+            BOUND_LABELS[i] = BigDecimal.valueOf(1L << i).movePointLeft(6).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Get or create a counter
+     * @param name Metric name, ending in _total
+     * @param help Description
+     * @param labels Alternating label names and values
+     * @return Counter to increment
+     */
+    public static LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).series.computeIfAbsent(labels(labels), k -> new LongAdder());
+    }
+
+    /**
+     * Get or create a latency histogram
+     * @param name Metric name, ending in _seconds
+     * @param help Description
+     * @param labels Alternating label names and values
+     * @return Histogram to record into
+     */
+    public static LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.HISTOGRAM).series
+                .computeIfAbsent(labels(labels), k -> new LatencyHistogram());
+    }
+
+    /**
+     * Export a count kept elsewhere
+     * Replaces an earlier supplier with the same name and labels.
+     * @param name Metric name, ending in _total
+     * @param help Description
+     * @param value Read at scrape time
+     * @param labels Alternating label names and values
+     */
+    public static void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).series.put(labels(labels), value);
+    }
+
+    /**
+     * Export a value that can go up and down
+     * Replaces an earlier supplier with the same name and labels.
+     * @param name Metric name
+     * @param help Description
+     * @param value Read at scrape time
+     * @param labels Alternating label names and values
+     */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series.put(labels(labels), value);
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format (version 0.0.4)
+     * @param out Destination
+     * @throws IOException if writing fails
+     */
+    public static void writePrometheus(Appendable out) throws IOException {
+        for (Family family : FAMILIES.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.text).append('\n');
+            List<String> series = new ArrayList<>(family.series.keySet());
+            series.sort(null);
+            for (String labels : series) {
+                Object metric = family.series.get(labels);
+                if (metric instanceof LatencyHistogram) {
+                    writeHistogram(out, family.name, labels, (LatencyHistogram) metric);
+                } else {
+                    out.append(family.name).append(labels).append(' ').append(value(metric)).append('\n');
+                }
+            }
+        }
+    }
+
+    private static String value(Object metric) {
+        try {
+            if (metric instanceof LongAdder) {
+                return Long.toString(((LongAdder) metric).sum());
+            }
+            if (metric instanceof LongSupplier) {
+                return Long.toString(((LongSupplier) metric).getAsLong());
+            }
+            double value = ((DoubleSupplier) metric).getAsDouble();
+            return Double.isNaN(value) ? "NaN" : Double.toString(value);
+        } catch (RuntimeException e) {
+            // A component that has been shut down; report it as missing rather than failing the scrape
+            return "NaN";
+        }
+    }
+
+    private static void writeHistogram(Appendable out, String name, String labels, LatencyHistogram histogram)
+            throws IOException {
+        // Buckets are read one by one while recording goes on, so make the count
+        // the last cumulative value to keep the series monotonic
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        long cumulative = 0;
+        for (int i = 0; i < EXPORTED_BOUNDS; i++) {
+            cumulative = Math.max(cumulative, histogram.countBelow(1L << i));
+            out.append(name).append("_bucket").append(prefix)
+                    .append("le=\"").append(BOUND_LABELS[i]).append("\"} ").append(Long.toString(cumulative)).append('\n');
+        }
+        long count = Math.max(cumulative, histogram.getCount());
+        out.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(Long.toString(count)).append('\n');
+        out.append(name).append("_sum").append(labels).append(' ')
+                .append(Double.toString(histogram.getSumNanos() / 1e9)).append('\n');
+        out.append(name).append("_count").append(labels).append(' ').append(Long.toString(count)).append('\n');
+    }
+
+    private static Family family(String name, String help, Type type) {
+        Family family = FAMILIES.computeIfAbsent(name, k -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type.text);
+        }
+        return family;
+    }
+
+    private static String labels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
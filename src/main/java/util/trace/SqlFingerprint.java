@@ -0,0 +1,154 @@
+package util.trace;
+
+/**
+ * SQL Fingerprint
+ * Reduces SQL text to the shape of the statement so executions that differ
+ * only in their values are counted together:
+ *
+ *     SELECT * FROM accounts WHERE account_id = 42 AND status IN ('A', 'B')
+ *     SELECT * FROM accounts WHERE account_id = ? AND status IN (...)
+ *
+ * String and numeric literals become ?, comments are dropped, runs of
+ * whitespace become one space and IN lists collapse to (...). Because
+ * literals are removed, a fingerprint can be logged without leaking the
+ * values a statement was run with.
+ */
+public final class SqlFingerprint {
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * @param sql SQL text
+     * @return Normalized statement text
+     */
+    public static String of(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // String literal; '' is an escaped quote
+                i++;
+                while (i < n) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < n && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    if (sql.charAt(i) == '\\') {
+                        i++;
+                    }
+                    i++;
+                }
+                i++;
+                out.append('?');
+            } else if (c == '"' || c == '`') {
+                // Quoted identifier, kept as written
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? n : end + 1;
+                out.append(sql, i, end);
+                i = end;
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                while (i < n && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                space(out);
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                space(out);
+            } else if (Character.isWhitespace(c)) {
+                while (i < n && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                space(out);
+            } else if (Character.isDigit(c) && !partOfWord(out)) {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) == ' ') {
+            out.setLength(length - 1);
+        }
+        return collapseInLists(out.toString());
+    }
+
+    /**
+     * Separate tokens by one space, however much whitespace or comment was between them
+     */
+    private static void space(StringBuilder out) {
+        if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') {
+            out.append(' ');
+        }
+    }
+
+    private static boolean partOfWord(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$';
+    }
+
+    /**
+     * Replace IN (?, ?, ?) by IN (...) so lists of different lengths match
+     */
+    private static String collapseInLists(String sql) {
+        StringBuilder out = null;
+        int from = 0;
+        int i = 0;
+        while ((i = indexOfIn(sql, i)) >= 0) {
+            int open = i + 2;
+            while (open < sql.length() && sql.charAt(open) == ' ') {
+                open++;
+            }
+            if (open >= sql.length() || sql.charAt(open) != '(') {
+                i += 2;
+                continue;
+            }
+            int close = open + 1;
+            boolean placeholders = true;
+            while (close < sql.length() && sql.charAt(close) != ')') {
+                char c = sql.charAt(close);
+                placeholders &= c == '?' || c == ',' || c == ' ';
+                close++;
+            }
+            if (!placeholders || close >= sql.length() || close == open + 1) {
+                i = open;
+                continue;
+            }
+            if (out == null) {
+                out = new StringBuilder(sql.length());
+            }
+            out.append(sql, from, open).append("(...)");
+            from = close + 1;
+            i = from;
+        }
+        if (out == null) {
+            return sql;
+        }
+        return out.append(sql, from, sql.length()).toString();
+    }
+
+    private static int indexOfIn(String sql, int from) {
+        for (int i = from; i + 1 < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if ((c == 'I' || c == 'i') && (sql.charAt(i + 1) == 'N' || sql.charAt(i + 1) == 'n')
+                    && (i == 0 || !Character.isLetterOrDigit(sql.charAt(i - 1)) && sql.charAt(i - 1) != '_')
+                    && (i + 2 == sql.length() || !Character.isLetterOrDigit(sql.charAt(i + 2)) && sql.charAt(i + 2) != '_')) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
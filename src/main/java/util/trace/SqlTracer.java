@@ -0,0 +1,336 @@
+package util.trace;
+
+import util.AppConfig;
+import util.log.Log;
+import util.log.Logger;
+import util.metrics.LatencyHistogram;
+import util.metrics.Metrics;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL Tracer
+ * Optional JDBC proxy that times every statement execution and keeps
+ * per-fingerprint totals (see SqlFingerprint and StatementStats), so the
+ * statements that dominate database time can be found in production.
+ *
+ * DBConnection wraps the connections it hands out while tracing is on.
+ * The wrapper times executeQuery, executeUpdate, execute and executeBatch,
+ * counts rows as result sets are read and logs executions slower than the
+ * threshold. Slow statements are logged by fingerprint with the number of
+ * bind parameters, never their values.
+ *
+ * Settings:
+ *   banking.db.trace                 true to trace from startup (can also be switched at /admin/sql)
+ *   banking.db.trace.slowMs          Executions at least this slow are logged (default 200)
+ *   banking.db.trace.maxStatements   Distinct fingerprints kept; the rest are counted together (default 500)
+ *   banking.db.trace.adminToken      Bearer token for /admin/sql; the page is off while unset
+ */
+public final class SqlTracer {
+
+    private static final Logger LOG = Log.getLogger(SqlTracer.class);
+
+    /** Fingerprint that collects statements once maxStatements is reached */
+    public static final String OTHER_STATEMENTS = "(other statements)";
+
+    private static final int MAX_STATEMENTS = AppConfig.getInt("banking.db.trace.maxStatements", 500);
+
+    // Raw SQL text to its stats, so the usual constant DAO strings skip normalization
+    private static final Map<String, StatementStats> bySql = new ConcurrentHashMap<>();
+    private static final Map<String, StatementStats> byFingerprint = new ConcurrentHashMap<>();
+
+    private static final LatencyHistogram EXECUTE_LATENCY = Metrics.histogram("banking_sql_execute_seconds",
+            "Time in JDBC execute calls while SQL tracing is on");
+    private static final LongAdder SLOW = Metrics.counter("banking_sql_slow_total",
+            "Executions slower than banking.db.trace.slowMs");
+
+    private static volatile boolean enabled = AppConfig.getBoolean("banking.db.trace", false);
+    private static volatile long slowNanos =
+            TimeUnit.MILLISECONDS.toNanos(AppConfig.getLong("banking.db.trace.slowMs", 200));
+
+    private SqlTracer() {
+    }
+
+    /**
+     * @return true if DBConnection should wrap new connections
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switch tracing on or off; connections already handed out keep their current state
+     * @param on true to trace connections borrowed from now on
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * @return Slow statement threshold in milliseconds
+     */
+    public static long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowNanos);
+    }
+
+    /**
+     * @param millis Executions at least this slow are logged
+     */
+    public static void setSlowThresholdMillis(long millis) {
+        slowNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Wrap a connection so the statements it creates are traced
+     * @param connection Connection to wrap
+     * @return Tracing proxy; closing it closes the wrapped connection
+     */
+    public static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(SqlTracer.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionTracer(connection));
+    }
+
+    /**
+     * Statements seen so far, in the given order
+     * @param order One of the StatementStats comparators
+     * @param limit Maximum number of statements returned
+     * @return Snapshot of the top statements
+     */
+    public static List<StatementStats> getTopStatements(Comparator<StatementStats> order, int limit) {
+        List<StatementStats> all = new ArrayList<>(byFingerprint.values());
+        all.sort(order);
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    /**
+     * Forget every statement seen so far
+     */
+    public static void reset() {
+        bySql.clear();
+        byFingerprint.clear();
+    }
+
+    static StatementStats statsFor(String sql) {
+        StatementStats stats = bySql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        String fingerprint = SqlFingerprint.of(sql);
+        stats = byFingerprint.get(fingerprint);
+        if (stats == null) {
+            if (byFingerprint.size() >= MAX_STATEMENTS) {
+                fingerprint = OTHER_STATEMENTS;
+            }
+            stats = byFingerprint.computeIfAbsent(fingerprint, StatementStats::new);
+        }
+        // Statements built by concatenating values would grow this without bound
+        if (bySql.size() < MAX_STATEMENTS * 4) {
+            bySql.putIfAbsent(sql, stats);
+        }
+        return stats;
+    }
+
+    private static void record(StatementStats stats, long start, long rows, boolean failed, int parameters) {
+        long elapsed = System.nanoTime() - start;
+        stats.record(elapsed, rows, failed);
+        EXECUTE_LATENCY.record(elapsed);
+        if (elapsed >= slowNanos) {
+            SLOW.increment();
+            LOG.warn("Slow statement", "ms", TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    "params", parameters, "sql", stats.getFingerprint());
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object delegateObjectMethod(Object proxy, Object target, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "Traced[" + target + "]";
+        }
+    }
+
+    /**
+     * Wraps the statements a connection creates
+     */
+    private static final class ConnectionTracer implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionTracer(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return delegateObjectMethod(proxy, target, method, args);
+            }
+            Object result = SqlTracer.invoke(target, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                    return traced(method.getReturnType(), result, (Connection) proxy, statsFor((String) args[0]));
+                case "createStatement":
+                    return traced(method.getReturnType(), result, (Connection) proxy, null);
+                default:
+                    return result;
+            }
+        }
+
+        private static Object traced(Class<?> type, Object statement, Connection owner, StatementStats stats) {
+            return Proxy.newProxyInstance(SqlTracer.class.getClassLoader(), new Class<?>[] { type },
+                    new StatementTracer((Statement) statement, owner, stats));
+        }
+    }
+
+    /**
+     * Times the executions of one statement
+     */
+    private static final class StatementTracer implements InvocationHandler {
+        private final Statement target;
+        private final Connection owner;
+        private final StatementStats prepared;
+        private StatementStats batch;
+        private int parameters;
+
+        StatementTracer(Statement target, Connection owner, StatementStats prepared) {
+            this.target = target;
+            this.owner = owner;
+            this.prepared = prepared;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return delegateObjectMethod(proxy, target, method, args);
+            }
+            String name = method.getName();
+            switch (name) {
+                case "getConnection":
+                    return owner;
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return execute(proxy, method, args);
+                case "addBatch":
+                    if (args != null && batch == null) {
+                        batch = statsFor((String) args[0]);
+                    }
+                    break;
+                default:
+                    // Highest bind index seen, for the slow statement log
+                    if (args != null && args.length >= 2 && args[0] instanceof Integer && name.startsWith("set")
+                            && PreparedStatement.class.isAssignableFrom(method.getDeclaringClass())) {
+                        parameters = Math.max(parameters, (Integer) args[0]);
+                    }
+                    break;
+            }
+            return SqlTracer.invoke(target, method, args);
+        }
+
+        private Object execute(Object proxy, Method method, Object[] args) throws Throwable {
+            StatementStats stats = args != null && args.length > 0 && args[0] instanceof String
+                    ? statsFor((String) args[0])
+                    : prepared != null ? prepared : batch;
+            if (stats == null) {
+                return SqlTracer.invoke(target, method, args);
+            }
+            if (method.getName().endsWith("Batch")) {
+                batch = null;
+            }
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = SqlTracer.invoke(target, method, args);
+            } catch (Throwable e) {
+                record(stats, start, 0, true, parameters);
+                throw e;
+            }
+            record(stats, start, rows(result), false, parameters);
+
+            if (result instanceof ResultSet) {
+                return Proxy.newProxyInstance(SqlTracer.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                        new RowCounter((ResultSet) result, (Statement) proxy, stats));
+            }
+            return result;
+        }
+
+        private static long rows(Object result) {
+            if (result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+            long total = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    total += Math.max(0, count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    total += Math.max(0, count);
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Counts the rows read from a result set
+     */
+    private static final class RowCounter implements InvocationHandler {
+        private final ResultSet target;
+        private final Statement statement;
+        private final StatementStats stats;
+
+        RowCounter(ResultSet target, Statement statement, StatementStats stats) {
+            this.target = target;
+            this.statement = statement;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return delegateObjectMethod(proxy, target, method, args);
+            }
+            switch (method.getName()) {
+                case "next":
+                    Object more = SqlTracer.invoke(target, method, args);
+                    if ((Boolean) more) {
+                        stats.addRow();
+                    }
+                    return more;
+                case "getStatement":
+                    return statement;
+                default:
+                    return SqlTracer.invoke(target, method, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package util.trace;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statement Stats
+ * Running totals for every execution of one SQL fingerprint
+ */
+public final class StatementStats {
+
+    /** Most total time in the database first */
+    public static final Comparator<StatementStats> BY_TOTAL_TIME =
+            Comparator.comparingLong(StatementStats::getTotalNanos).reversed();
+    /** Slowest single execution first */
+    public static final Comparator<StatementStats> BY_MAX_TIME =
+            Comparator.comparingLong(StatementStats::getMaxNanos).reversed();
+    /** Most executions first */
+    public static final Comparator<StatementStats> BY_COUNT =
+            Comparator.comparingLong(StatementStats::getCount).reversed();
+    /** Most rows read or written first */
+    public static final Comparator<StatementStats> BY_ROWS =
+            Comparator.comparingLong(StatementStats::getRows).reversed();
+
+    private final String fingerprint;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder rows = new LongAdder();
+
+    StatementStats(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    void record(long nanos, long rowCount, boolean failed) {
+        count.increment();
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    void addRow() {
+        rows.increment();
+    }
+
+    /**
+     * @return Normalized SQL text (see SqlFingerprint)
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return Executions, including failed ones
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return Executions that threw an SQLException
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * @return Time spent in execute calls
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @return Longest single execute call
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return Average execute call, 0 before the first one
+     */
+    public long getMeanNanos() {
+        long n = getCount();
+        return n == 0 ? 0 : getTotalNanos() / n;
+    }
+
+    /**
+     * @return Rows read through result sets plus update counts
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+}
@@ -1,4 +1,5 @@
 <%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
+<%@ page import="java.util.List, java.util.Date, java.text.SimpleDateFormat, dao.model.Transaction, dao.model.Direction" %>
 <%@ page session="true" %>
 <%
     // Check if user is logged in
@@ -10,6 +11,9 @@
     String name = (String) session.getAttribute("name");
     Integer accountNumber = (Integer) session.getAttribute("accountNumber");
     Double balance = (Double) session.getAttribute("balance");
+    List<Transaction> recentTransactions = (List<Transaction>) request.getAttribute("recentTransactions");
+    boolean partial = Boolean.TRUE.equals(request.getAttribute("partial"));
+    SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy, hh:mm a");
 %>
 <!DOCTYPE html>
 <html lang="en">
@@ -40,6 +44,12 @@
     <div class="dashboard-container">
         <h2>Your Account Dashboard</h2>
         
+        <% if (partial) { %>
+            <div class="alert alert-warning">
+                Some account details are taking longer than usual to load. Refresh to try again.
+            </div>
+        <% } %>
+        
         <!-- Account Summary Card -->
         <div class="card account-card">
             <div class="card-header">
@@ -61,6 +71,32 @@
             </div>
         </div>
         
+        <!-- Recent Activity -->
+        <div class="card">
+            <div class="card-header">
+                <h3>🕒 Recent Activity</h3>
+            </div>
+            <div class="card-body">
+                <% if (recentTransactions == null) { %>
+                    <p>Recent activity is unavailable right now.</p>
+                <% } else if (recentTransactions.isEmpty()) { %>
+                    <p>No transactions yet.</p>
+                <% } else { %>
+                    <% for (Transaction txn : recentTransactions) { 
+                        Direction type = txn.direction();
+                        String amountClass = type.isDebit() ? "amount-negative" : "amount-positive";
+                        String amountSign = type.isDebit() ? "- ₹" : "+ ₹";
+                    %>
+                        <div class="info-row">
+                            <span class="info-label"><%= dateFormat.format(new Date(txn.txnDateMillis())) %> · <%= type %></span>
+                            <span class="info-value <%= amountClass %>"><%= amountSign %><%= String.format("%.2f", txn.amount()) %></span>
+                        </div>
+                    <% } %>
+                    <a href="TransactionHistoryServlet">View all transactions →</a>
+                <% } %>
+            </div>
+        </div>
+        
         <!-- Quick Actions -->
         <div class="quick-actions">
             <h3>Quick Actions</h3>
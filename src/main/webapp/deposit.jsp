@@ -19,6 +19,8 @@
         <% } %>
         
         <form action="DepositServlet" method="post" class="form">
+            <%-- One key per rendered form: a double submit or resend is processed only once --%>
+            <input type="hidden" name="idempotencyKey" value="<%= java.util.UUID.randomUUID() %>">
             <div class="form-group">
                 <label for="amount">💰 Amount</label>
                 <input type="number" id="amount" name="amount" step="0.01" min="0.01" placeholder="Enter amount to deposit" required>
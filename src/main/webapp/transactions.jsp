@@ -1,5 +1,5 @@
 <%@ page language="java" contentType="text/html; charset=UTF-8" pageEncoding="UTF-8"%>
-<%@ page import="java.util.List, java.util.Map, java.text.SimpleDateFormat" %>
+<%@ page import="java.util.List, java.util.Date, java.text.SimpleDateFormat, dao.model.Transaction, dao.model.Direction" %>
 <%@ page session="true" %>
 <%
     // Check if user is logged in
@@ -10,7 +10,9 @@
     
     String name = (String) session.getAttribute("name");
     Integer accountNumber = (Integer) session.getAttribute("accountNumber");
-    List<Map<String, Object>> transactions = (List<Map<String, Object>>) request.getAttribute("transactions");
+    List<Transaction> transactions = (List<Transaction>) request.getAttribute("transactions");
+    String olderCursor = (String) request.getAttribute("olderCursor");
+    String newerCursor = (String) request.getAttribute("newerCursor");
     SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy, hh:mm a");
 %>
 <!DOCTYPE html>
@@ -45,6 +47,16 @@
             <p>Account Number: <strong><%= accountNumber %></strong></p>
         </div>
         
+        <!-- Statement Export -->
+        <form action="ExportStatementServlet" method="get" class="export-form">
+            <label for="from">From</label>
+            <input type="date" id="from" name="from">
+            <label for="to">To</label>
+            <input type="date" id="to" name="to">
+            <button type="submit" name="format" value="csv" class="btn btn-secondary">Download CSV</button>
+            <button type="submit" name="format" value="json" class="btn btn-secondary">Download JSON</button>
+        </form>
+        
         <% if (transactions != null && !transactions.isEmpty()) { %>
             <div class="table-container">
                 <table class="transaction-table">
@@ -60,22 +72,22 @@
                         </tr>
                     </thead>
                     <tbody>
-                        <% for (Map<String, Object> txn : transactions) { 
-                            String type = (String) txn.get("type");
-                            String typeClass = "WITHDRAWAL".equals(type) ? "type-withdrawal" : (type.equals("SENT") ? "type-sent" : "type-received");
-                            String amountClass = "WITHDRAWAL".equals(type) ? "amount-negative" : (type.equals("SENT") ? "amount-negative" : "amount-positive");
-                            String amountSign = "WITHDRAWAL".equals(type) ? "- ₹" : (type.equals("SENT") ? "- ₹" : "+ ₹");
+                        <% for (Transaction txn : transactions) { 
+                            Direction type = txn.direction();
+                            String typeClass = type == Direction.WITHDRAWAL ? "type-withdrawal" : (type == Direction.SENT ? "type-sent" : "type-received");
+                            String amountClass = type.isDebit() ? "amount-negative" : "amount-positive";
+                            String amountSign = type.isDebit() ? "- ₹" : "+ ₹";
                         %>
                             <tr>
-                                <td>#<%= txn.get("txnId") %></td>
-                                <td><%= dateFormat.format(txn.get("date")) %></td>
+                                <td>#<%= txn.txnId() %></td>
+                                <td><%= dateFormat.format(new Date(txn.txnDateMillis())) %></td>
                                 <td><span class="badge <%= typeClass %>"><%= type %></span></td>
-                                <td><%= txn.get("senderAccount") %></td>
-                                <td><%= txn.get("receiverAccount") %></td>
+                                <td><%= txn.senderAccount() %></td>
+                                <td><%= txn.receiverAccount() %></td>
                                 <td class="<%= amountClass %>">
-                                    <%= amountSign %><%= String.format("%.2f", txn.get("amount")) %>
+                                    <%= amountSign %><%= String.format("%.2f", txn.amount()) %>
                                 </td>
-                                <td><span class="badge badge-success"><%= txn.get("status") %></span></td>
+                                <td><span class="badge badge-success"><%= txn.status() %></span></td>
                             </tr>
                         <% } %>
                     </tbody>
@@ -83,8 +95,19 @@
             </div>
             
             <div class="transaction-summary">
-                <p>Showing <%= transactions.size() %> most recent transactions</p>
+                <p>Showing <%= transactions.size() %> transactions<%= newerCursor == null ? " (most recent)" : "" %></p>
             </div>
+            
+            <% if (newerCursor != null || olderCursor != null) { %>
+                <div class="pagination">
+                    <% if (newerCursor != null) { %>
+                        <a href="TransactionHistoryServlet?before=<%= newerCursor %>" class="btn btn-secondary">← Newer</a>
+                    <% } %>
+                    <% if (olderCursor != null) { %>
+                        <a href="TransactionHistoryServlet?after=<%= olderCursor %>" class="btn btn-secondary">Older →</a>
+                    <% } %>
+                </div>
+            <% } %>
         <% } else { %>
             <div class="empty-state">
                 <div class="empty-icon">📭</div>
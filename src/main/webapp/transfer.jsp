@@ -59,6 +59,8 @@
         <% } %>
         
         <form action="TransferServlet" method="post" class="form transfer-form">
+            <%-- One key per rendered form: a double submit or resend is processed only once --%>
+            <input type="hidden" name="idempotencyKey" value="<%= java.util.UUID.randomUUID() %>">
             <div class="form-group">
                 <label for="senderAccount">From Account</label>
                 <input type="text" id="senderAccount" value="<%= accountNumber %>" readonly class="readonly-input">
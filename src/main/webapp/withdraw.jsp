@@ -59,6 +59,8 @@
         <% } %>
         
         <form action="WithdrawServlet" method="post" class="form withdraw-form">
+            <%-- One key per rendered form: a double submit or resend is processed only once --%>
+            <input type="hidden" name="idempotencyKey" value="<%= java.util.UUID.randomUUID() %>">
             <div class="form-group">
                 <label for="accountNumber">Account Number</label>
                 <input type="text" id="accountNumber" value="<%= accountNumber %>" readonly class="readonly-input">
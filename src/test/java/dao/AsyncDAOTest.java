@@ -0,0 +1,187 @@
+package dao;
+
+import dao.model.DashboardView;
+import dao.model.UserProfile;
+import org.junit.jupiter.api.*;
+import util.DBConnection;
+import java.sql.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AsyncDAO
+ * Runs against an in-memory H2 database
+ */
+public class AsyncDAOTest {
+
+    private static int accountId;
+    private static int userId;
+
+    private AsyncDAO asyncDAO;
+
+    @BeforeAll
+    public static void setUpDatabase() throws SQLException {
+        TestDatabase.start("asyncdao");
+        accountId = TestDatabase.createAccount(750.0);
+        int otherAccountId = TestDatabase.createAccount(100.0);
+        new TransactionDAO().transferMoney(accountId, otherAccountId, 50.0);
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT user_id FROM accounts WHERE account_id = ?")) {
+            pstmt.setInt(1, accountId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                userId = rs.getInt(1);
+            }
+        }
+    }
+
+    @AfterAll
+    public static void tearDownDatabase() {
+        TestDatabase.stop();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (asyncDAO != null) {
+            asyncDAO.close();
+        }
+    }
+
+    /**
+     * Every part of the dashboard is loaded from the database
+     */
+    @Test
+    public void testLoadDashboard() {
+        asyncDAO = new AsyncDAO(new JdbcMoneyEngine(), new AccountDAO(), new UserDAO(), new TransactionDAO(),
+                AsyncDAO.newExecutor(3, 10));
+
+        DashboardView view = asyncDAO.loadDashboard(userId, accountId, 5000);
+
+        assertTrue(view.isComplete());
+        assertEquals("Test User", view.profile().name());
+        assertEquals(700.0, view.balance(), 0.001);
+        assertEquals(1, view.recentTransactions().size());
+        assertEquals(accountId, asyncDAO.getAccountByUserId(userId).join().accountId());
+    }
+
+    /**
+     * Three slow queries take about as long as one of them
+     */
+    @Test
+    public void testQueriesRunInParallel() {
+        asyncDAO = new AsyncDAO(new SlowMoneyEngine(300), new AccountDAO(), new SlowUserDAO(300), new SlowTransactionDAO(300),
+                AsyncDAO.newExecutor(3, 10));
+
+        long start = System.nanoTime();
+        DashboardView view = asyncDAO.loadDashboard(userId, accountId, 5000);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(view.isComplete());
+        assertTrue(elapsedMs < 800, "Expected parallel queries, took " + elapsedMs + " ms");
+    }
+
+    /**
+     * A part slower than the timeout is left out and the rest still renders
+     */
+    @Test
+    public void testSlowPartFallsBack() {
+        asyncDAO = new AsyncDAO(new SlowMoneyEngine(3000), new AccountDAO(), new UserDAO(), new TransactionDAO(),
+                AsyncDAO.newExecutor(3, 10));
+
+        long start = System.nanoTime();
+        DashboardView view = asyncDAO.loadDashboard(userId, accountId, 200);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertFalse(view.isComplete());
+        assertNull(view.balance());
+        assertNotNull(view.profile());
+        assertNotNull(view.recentTransactions());
+        assertEquals(1, asyncDAO.getTimeoutCount());
+        assertTrue(elapsedMs < 2000, "Should not wait for the slow query, took " + elapsedMs + " ms");
+    }
+
+    /**
+     * Calls that do not fit in the pool fail at once instead of blocking the caller
+     */
+    @Test
+    public void testFullPoolRejects() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = AsyncDAO.newExecutor(1, 1);
+        asyncDAO = new AsyncDAO(new JdbcMoneyEngine(), new AccountDAO(), new UserDAO(), new TransactionDAO(), executor);
+        // Occupy the worker and the queue slot
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> awaitQuietly(release));
+
+        try {
+            DashboardView view = asyncDAO.loadDashboard(userId, accountId, 5000);
+            assertNull(view.profile());
+            assertNull(view.balance());
+            assertNull(view.recentTransactions());
+            assertEquals(3, asyncDAO.getRejectedCount());
+            assertEquals(3, asyncDAO.getFailureCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class SlowMoneyEngine extends JdbcMoneyEngine {
+        private final long delayMs;
+
+        SlowMoneyEngine(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public double getBalance(int accountId) {
+            sleep(delayMs);
+            return super.getBalance(accountId);
+        }
+    }
+
+    private static final class SlowUserDAO extends UserDAO {
+        private final long delayMs;
+
+        SlowUserDAO(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public UserProfile getUserProfile(int userId) {
+            sleep(delayMs);
+            return super.getUserProfile(userId);
+        }
+    }
+
+    private static final class SlowTransactionDAO extends TransactionDAO {
+        private final long delayMs;
+
+        SlowTransactionDAO(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public TransactionPage getTransactionHistoryPage(int accountId, HistoryCursor cursor, boolean newer, int pageSize) {
+            sleep(delayMs);
+            return super.getTransactionHistoryPage(accountId, cursor, newer, pageSize);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dao;
+
+import org.junit.jupiter.api.*;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BalanceCache
+ * Uses a manual clock so TTL behaviour is deterministic
+ */
+public class BalanceCacheTest {
+
+    private AtomicLong clock;
+    private BalanceCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new AtomicLong();
+        cache = new BalanceCache(true, 4, 1000, 1, clock::get);
+    }
+
+    /**
+     * Loaded balances are served until the TTL expires
+     */
+    @Test
+    public void testTtlExpiry() {
+        assertNull(cache.get(1));
+        cache.putIfUnchanged(1, 500.0, cache.generation(1));
+        assertEquals(500.0, cache.get(1));
+
+        clock.addAndGet(999_000_000L);
+        assertEquals(500.0, cache.get(1));
+
+        clock.addAndGet(2_000_000L);
+        assertNull(cache.get(1), "Entry should expire after the TTL");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0.0001);
+    }
+
+    /**
+     * The least recently used balance is evicted when the cache is full
+     */
+    @Test
+    public void testLruEviction() {
+        for (int id = 1; id <= 4; id++) {
+            cache.putIfUnchanged(id, id * 100.0, cache.generation(id));
+        }
+        cache.get(1);
+        cache.putIfUnchanged(5, 500.0, cache.generation(5));
+
+        assertEquals(4, cache.size());
+        assertNotNull(cache.get(1), "Recently read entry should survive");
+        assertNull(cache.get(2), "Least recently used entry should be evicted");
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    /**
+     * A read that started before a commit must not cache its stale result
+     */
+    @Test
+    public void testInvalidationBeatsSlowRead() {
+        long generation = cache.generation(1);
+        cache.invalidate(1);
+        cache.putIfUnchanged(1, 100.0, generation);
+        assertNull(cache.get(1));
+
+        // A read that starts after the commit is cached again
+        cache.putIfUnchanged(1, 250.0, cache.generation(1));
+        assertEquals(250.0, cache.get(1));
+    }
+
+    /**
+     * A disabled cache never stores anything
+     */
+    @Test
+    public void testDisabled() {
+        BalanceCache disabled = new BalanceCache(false, 4, 1000, 1, clock::get);
+        disabled.putIfUnchanged(1, 100.0, disabled.generation(1));
+        disabled.invalidate(1);
+        assertNull(disabled.get(1));
+    }
+}
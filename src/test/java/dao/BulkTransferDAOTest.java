@@ -0,0 +1,149 @@
+package dao;
+
+import dao.model.BulkTransferRow;
+import dao.model.TransferStatus;
+import org.junit.jupiter.api.*;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BulkTransferDAO
+ * Runs against an in-memory H2 database
+ */
+public class BulkTransferDAOTest {
+
+    private AccountDAO accountDAO;
+    private TransactionDAO transactionDAO;
+
+    @BeforeAll
+    public static void setUpDatabase() throws SQLException {
+        TestDatabase.start("bulk");
+    }
+
+    @AfterAll
+    public static void tearDownDatabase() {
+        TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        accountDAO = new AccountDAO();
+        transactionDAO = new TransactionDAO();
+    }
+
+    /**
+     * Rows in any order, over several chunks and on both sides of the sender's id, are all paid
+     */
+    @Test
+    public void testPaysEveryRow() throws SQLException {
+        int low = TestDatabase.createAccount(0.0);
+        int sender = TestDatabase.createAccount(1000.0);
+        int high = TestDatabase.createAccount(0.0);
+        int higher = TestDatabase.createAccount(0.0);
+
+        List<BulkTransferRow> rows = List.of(
+                new BulkTransferRow(1, higher, 100.0),
+                new BulkTransferRow(2, low, 50.5),
+                new BulkTransferRow(3, high, 200.0),
+                new BulkTransferRow(4, low, 49.5),
+                new BulkTransferRow(5, higher, 100.0));
+
+        TransferStatus[] statuses = new BulkTransferDAO(2).transfer(sender, rows);
+
+        for (TransferStatus status : statuses) {
+            assertEquals(TransferStatus.SUCCESS, status);
+        }
+        assertEquals(500.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(100.0, accountDAO.getBalance(low, true), 0.001);
+        assertEquals(200.0, accountDAO.getBalance(high, true), 0.001);
+        assertEquals(200.0, accountDAO.getBalance(higher, true), 0.001);
+        assertEquals(5, transactionDAO.getTransactionHistory(sender).size());
+    }
+
+    /**
+     * A missing receiver fails its own row only
+     */
+    @Test
+    public void testUnknownReceiverFailsItsRow() throws SQLException {
+        int sender = TestDatabase.createAccount(100.0);
+        int receiver = TestDatabase.createAccount(0.0);
+
+        TransferStatus[] statuses = new BulkTransferDAO(10).transfer(sender, List.of(
+                new BulkTransferRow(1, receiver, 30.0),
+                new BulkTransferRow(2, 999999, 20.0)));
+
+        assertEquals(TransferStatus.SUCCESS, statuses[0]);
+        assertEquals(TransferStatus.RECEIVER_NOT_FOUND, statuses[1]);
+        assertEquals(70.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(30.0, accountDAO.getBalance(receiver, true), 0.001);
+    }
+
+    /**
+     * A chunk the sender cannot cover is rejected whole; earlier chunks stay paid
+     */
+    @Test
+    public void testUncoveredChunkIsRejected() throws SQLException {
+        int sender = TestDatabase.createAccount(100.0);
+        int first = TestDatabase.createAccount(0.0);
+        int second = TestDatabase.createAccount(0.0);
+        int third = TestDatabase.createAccount(0.0);
+
+        TransferStatus[] statuses = new BulkTransferDAO(2).transfer(sender, List.of(
+                new BulkTransferRow(1, third, 50.0),
+                new BulkTransferRow(2, first, 60.0),
+                new BulkTransferRow(3, second, 30.0)));
+
+        assertEquals(TransferStatus.INSUFFICIENT_FUNDS, statuses[0]);
+        assertEquals(TransferStatus.SUCCESS, statuses[1]);
+        assertEquals(TransferStatus.SUCCESS, statuses[2]);
+        assertEquals(10.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(0.0, accountDAO.getBalance(third, true), 0.001);
+        assertEquals("FAILED: Insufficient balance", transactionDAO.getTransactionHistory(third).get(0).status());
+    }
+
+    /**
+     * With a money engine other than JDBC every row goes through that engine
+     */
+    @Test
+    public void testOtherEnginePaysRowByRow() throws SQLException {
+        int sender = TestDatabase.createAccount(100.0);
+        int receiver = TestDatabase.createAccount(0.0);
+        JdbcMoneyEngine jdbc = new JdbcMoneyEngine();
+        AtomicInteger engineTransfers = new AtomicInteger();
+        MoneyEngine engine = new MoneyEngine() {
+            @Override
+            public boolean transferMoney(int senderAccountId, int receiverAccountId, double amount) {
+                engineTransfers.incrementAndGet();
+                return jdbc.transferMoney(senderAccountId, receiverAccountId, amount);
+            }
+            @Override
+            public boolean withdrawMoney(int accountId, double amount) {
+                return jdbc.withdrawMoney(accountId, amount);
+            }
+            @Override
+            public boolean deposit(int accountId, double amount) {
+                return jdbc.deposit(accountId, amount);
+            }
+            @Override
+            public double getBalance(int accountId) {
+                return accountDAO.getBalance(accountId, true);
+            }
+            @Override
+            public boolean accountExists(int accountId) {
+                return jdbc.accountExists(accountId);
+            }
+        };
+
+        TransferStatus[] statuses = new BulkTransferDAO(10, engine).transfer(sender, List.of(
+                new BulkTransferRow(1, receiver, 60.0),
+                new BulkTransferRow(2, receiver, 60.0),
+                new BulkTransferRow(3, 999999, 10.0)));
+
+        assertArrayEquals(new TransferStatus[] {TransferStatus.SUCCESS, TransferStatus.INSUFFICIENT_FUNDS,
+                TransferStatus.RECEIVER_NOT_FOUND}, statuses);
+        assertEquals(1, engineTransfers.get());
+        assertEquals(40.0, new BulkTransferDAO(10, engine).getBalance(sender), 0.001);
+    }
+}
@@ -0,0 +1,108 @@
+package dao;
+
+import dao.model.TransferResult;
+import dao.model.TransferStatus;
+import org.junit.jupiter.api.*;
+import java.sql.SQLException;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TransactionDAO.transferFunds
+ * Runs against an in-memory H2 database
+ */
+public class ConditionalTransferTest {
+
+    private TransactionDAO transactionDAO;
+    private AccountDAO accountDAO;
+    private int sender;
+    private int receiver;
+
+    @BeforeAll
+    public static void setUpDatabase() throws SQLException {
+        TestDatabase.start("conditional");
+    }
+
+    @AfterAll
+    public static void tearDownDatabase() {
+        TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        transactionDAO = new TransactionDAO();
+        accountDAO = new AccountDAO();
+        sender = TestDatabase.createAccount(500.0);
+        receiver = TestDatabase.createAccount(100.0);
+    }
+
+    /**
+     * A covered transfer moves the money and reports the new sender balance
+     */
+    @Test
+    public void testTransferSuccess() {
+        TransferResult result = transactionDAO.transferFunds(sender, receiver, 200.0);
+
+        assertEquals(TransferStatus.SUCCESS, result.status());
+        assertEquals(300.0, result.senderBalance(), 0.001);
+        assertEquals(300.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(300.0, accountDAO.getBalance(receiver, true), 0.001);
+    }
+
+    /**
+     * Transferring the whole balance is allowed
+     */
+    @Test
+    public void testTransferExactBalance() {
+        TransferResult result = transactionDAO.transferFunds(sender, receiver, 500.0);
+
+        assertTrue(result.isSuccess());
+        assertEquals(0.0, result.senderBalance(), 0.001);
+    }
+
+    /**
+     * An uncovered transfer changes nothing and reports the available balance
+     */
+    @Test
+    public void testInsufficientFunds() {
+        TransferResult result = transactionDAO.transferFunds(sender, receiver, 500.01);
+
+        assertEquals(TransferStatus.INSUFFICIENT_FUNDS, result.status());
+        assertEquals(500.0, result.senderBalance(), 0.001);
+        assertEquals(100.0, accountDAO.getBalance(receiver, true), 0.001);
+    }
+
+    /**
+     * A missing receiver rolls back the debit
+     */
+    @Test
+    public void testReceiverNotFound() {
+        TransferResult result = transactionDAO.transferFunds(sender, 999999, 50.0);
+
+        assertEquals(TransferStatus.RECEIVER_NOT_FOUND, result.status());
+        assertEquals(500.0, accountDAO.getBalance(sender, true), 0.001);
+    }
+
+    /**
+     * A missing sender is reported as such
+     */
+    @Test
+    public void testSenderNotFound() {
+        TransferResult result = transactionDAO.transferFunds(999999, receiver, 50.0);
+
+        assertEquals(TransferStatus.SENDER_NOT_FOUND, result.status());
+    }
+
+    /**
+     * The sender's cached balance is replaced by the committed value
+     */
+    @Test
+    public void testCacheUpdatedAfterTransfer() {
+        accountDAO.getBalance(sender);
+        accountDAO.getBalance(receiver);
+
+        transactionDAO.transferFunds(sender, receiver, 50.0);
+
+        assertEquals(450.0, accountDAO.getBalance(sender), 0.001);
+        assertEquals(150.0, accountDAO.getBalance(receiver), 0.001);
+    }
+}
@@ -0,0 +1,218 @@
+package dao;
+
+import dao.model.RequestOutcome;
+import dao.model.TransferResult;
+import org.junit.jupiter.api.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for IdempotencyDAO and IdempotencyCache
+ * Runs against an in-memory H2 database
+ */
+public class IdempotencyDAOTest {
+
+    private static final long TTL_MS = 60_000;
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private IdempotencyCache cache;
+    private IdempotencyDAO idempotencyDAO;
+    private TransactionDAO transactionDAO;
+    private AccountDAO accountDAO;
+    private int sender;
+    private int receiver;
+
+    @BeforeAll
+    public static void setUpDatabase() throws SQLException {
+        TestDatabase.start("idempotency");
+    }
+
+    @AfterAll
+    public static void tearDownDatabase() {
+        TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        cache = new IdempotencyCache(1000, TTL_MS, 16, clock::get);
+        idempotencyDAO = new IdempotencyDAO(cache);
+        transactionDAO = new TransactionDAO();
+        accountDAO = new AccountDAO();
+        sender = TestDatabase.createAccount(500.0);
+        receiver = TestDatabase.createAccount(100.0);
+    }
+
+    private RequestOutcome transfer(double amount) {
+        TransferResult result = transactionDAO.transferFunds(sender, receiver, amount);
+        return result.isSuccess()
+                ? RequestOutcome.success("moved " + amount, result.senderBalance())
+                : RequestOutcome.failure(result.status().name(), result.senderBalance());
+    }
+
+    /**
+     * A repeated key returns the first outcome without moving money again,
+     * from the cache and, after it is cleared, from the table
+     */
+    @Test
+    public void testRepeatReturnsOriginalOutcome() {
+        String key = UUID.randomUUID().toString();
+
+        RequestOutcome first = idempotencyDAO.execute(1, key, "TRANSFER", () -> transfer(100.0));
+        RequestOutcome cached = idempotencyDAO.execute(1, key, "TRANSFER", () -> transfer(100.0));
+        cache.clear();
+        RequestOutcome stored = idempotencyDAO.execute(1, key, "TRANSFER", () -> transfer(100.0));
+
+        assertTrue(first.success());
+        assertEquals(400.0, first.balance(), 0.001);
+        for (RequestOutcome replay : List.of(cached, stored)) {
+            assertTrue(replay.success());
+            assertEquals(first.message(), replay.message());
+            assertTrue(Double.isNaN(replay.balance()));
+        }
+        assertEquals(400.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(200.0, accountDAO.getBalance(receiver, true), 0.001);
+    }
+
+    /**
+     * Failures are replayed too, and the same key from another user or without a key runs normally
+     */
+    @Test
+    public void testKeysAreScopedPerUser() {
+        String key = UUID.randomUUID().toString();
+
+        RequestOutcome rejected = idempotencyDAO.execute(1, key, "TRANSFER", () -> transfer(1000.0));
+        cache.clear();
+        RequestOutcome replay = idempotencyDAO.execute(1, key, "TRANSFER", () -> transfer(50.0));
+        RequestOutcome otherUser = idempotencyDAO.execute(2, key, "TRANSFER", () -> transfer(50.0));
+        RequestOutcome noKey = idempotencyDAO.execute(1, null, "TRANSFER", () -> transfer(50.0));
+
+        assertFalse(rejected.success());
+        assertFalse(replay.success());
+        assertEquals(rejected.message(), replay.message());
+        assertTrue(otherUser.success());
+        assertTrue(noKey.success());
+        assertEquals(400.0, accountDAO.getBalance(sender, true), 0.001);
+    }
+
+    /**
+     * A key reused for a different kind of request is refused
+     */
+    @Test
+    public void testKeyReusedForOtherOperation() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+
+        idempotencyDAO.execute(1, key, "TRANSFER", () -> transfer(10.0));
+        cache.clear();
+        RequestOutcome outcome = idempotencyDAO.execute(1, key, "DEPOSIT", () -> {
+            runs.incrementAndGet();
+            return RequestOutcome.success("deposited", Double.NaN);
+        });
+
+        assertFalse(outcome.success());
+        assertEquals(0, runs.get());
+
+        // Same while the first outcome is still cached
+        String cachedKey = UUID.randomUUID().toString();
+        idempotencyDAO.execute(1, cachedKey, "TRANSFER", () -> transfer(10.0));
+        outcome = idempotencyDAO.execute(1, cachedKey, "DEPOSIT", () -> {
+            runs.incrementAndGet();
+            return RequestOutcome.success("deposited", Double.NaN);
+        });
+
+        assertFalse(outcome.success());
+        assertEquals("This request key was already used for a different operation.", outcome.message());
+        assertEquals(0, runs.get());
+    }
+
+    /**
+     * Concurrent duplicates run the operation exactly once
+     */
+    @Test
+    public void testConcurrentDuplicatesRunOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<RequestOutcome>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return idempotencyDAO.execute(1, key, "TRANSFER", () -> transfer(100.0));
+                }));
+            }
+            start.countDown();
+            for (Future<RequestOutcome> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(400.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(200.0, accountDAO.getBalance(receiver, true), 0.001);
+    }
+
+    /**
+     * An expired key is claimed again; a pending outcome and an exception leave nothing to replay
+     */
+    @Test
+    public void testExpiryAndUnfinishedRequests() {
+        String expiring = UUID.randomUUID().toString();
+        idempotencyDAO.execute(1, expiring, "TRANSFER", () -> transfer(100.0));
+        clock.addAndGet(TTL_MS + 1);
+        RequestOutcome rerun = idempotencyDAO.execute(1, expiring, "TRANSFER", () -> transfer(100.0));
+        assertTrue(rerun.success());
+        assertEquals(300.0, rerun.balance(), 0.001);
+
+        String pending = UUID.randomUUID().toString();
+        idempotencyDAO.execute(1, pending, "TRANSFER", () -> RequestOutcome.pending("queued"));
+        RequestOutcome duplicate = idempotencyDAO.execute(1, pending, "TRANSFER", () -> transfer(100.0));
+        assertFalse(duplicate.completed());
+        assertEquals(300.0, accountDAO.getBalance(sender, true), 0.001);
+
+        String failing = UUID.randomUUID().toString();
+        assertThrows(IllegalStateException.class, () -> idempotencyDAO.execute(1, failing, "TRANSFER", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        RequestOutcome retried = idempotencyDAO.execute(1, failing, "TRANSFER", () -> transfer(100.0));
+        assertTrue(retried.success());
+        assertEquals(200.0, accountDAO.getBalance(sender, true), 0.001);
+    }
+
+    /**
+     * The cache is bounded and drops expired outcomes
+     */
+    @Test
+    public void testCacheBoundAndExpiry() {
+        IdempotencyCache small = new IdempotencyCache(16, TTL_MS, 4, clock::get);
+        for (int i = 0; i < 100; i++) {
+            small.put("1:" + i, RequestOutcome.failure("x"));
+        }
+        assertTrue(small.size() <= 16);
+        assertTrue(small.getEvictionCount() >= 84);
+
+        small.put("1:last", RequestOutcome.failure("x"));
+        assertNotNull(small.get("1:last"));
+        clock.addAndGet(TTL_MS);
+        assertNull(small.get("1:last"));
+    }
+
+    /**
+     * Only short URL-safe keys are accepted
+     */
+    @Test
+    public void testKeyFormat() {
+        assertTrue(IdempotencyDAO.isValidKey(UUID.randomUUID().toString()));
+        assertFalse(IdempotencyDAO.isValidKey(""));
+        assertFalse(IdempotencyDAO.isValidKey("a b"));
+        assertFalse(IdempotencyDAO.isValidKey("x".repeat(65)));
+    }
+}
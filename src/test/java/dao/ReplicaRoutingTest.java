@@ -0,0 +1,126 @@
+package dao;
+
+import org.junit.jupiter.api.*;
+import util.DBConnection;
+import util.ReadYourWrites;
+import java.sql.*;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for read replica routing
+ * A second in-memory H2 database stands in for a replica that lags the
+ * primary: it holds the same account with an older balance.
+ */
+public class ReplicaRoutingTest {
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:%s;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private AccountDAO accountDAO;
+    private int accountId;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        TestDatabase.start("replicaprimary");
+        accountDAO = new AccountDAO();
+        accountId = TestDatabase.createAccount(500.0);
+        BalanceCache.getInstance().clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWrites.end();
+        TestDatabase.stop();
+    }
+
+    /**
+     * Read-only DAO methods are served by the replica; strict reads are not
+     */
+    @Test
+    public void testReadsGoToReplica() throws SQLException {
+        DBConnection.configureReplicas(replica("replicaone", 100.0), null, null);
+
+        assertEquals(100.0, accountDAO.getBalance(accountId), 0.001);
+        assertNull(BalanceCache.getInstance().get(accountId), "Replica reads must not fill the shared cache");
+        assertEquals(500.0, accountDAO.getBalance(accountId, true), 0.001);
+        assertTrue(accountDAO.accountExists(accountId + 1000), "Account only on the replica should be found there");
+        assertTrue(new UserDAO().emailExists("replica@example.com"));
+        assertEquals(0, new TransactionDAO().getTransactionHistory(accountId).size());
+    }
+
+    /**
+     * A session that wrote recently reads from the primary until the window passes
+     */
+    @Test
+    public void testReadYourWrites() throws SQLException {
+        DBConnection.configureReplicas(replica("replicatwo", 100.0), null, null);
+
+        ReadYourWrites.begin(System.currentTimeMillis());
+        assertEquals(500.0, accountDAO.getBalance(accountId), 0.001);
+        assertFalse(accountDAO.accountExists(accountId + 1000));
+
+        ReadYourWrites.begin(System.currentTimeMillis() - ReadYourWrites.getWindowMillis() - 1);
+        assertEquals(100.0, accountDAO.getBalance(accountId), 0.001);
+
+        ReadYourWrites.end();
+        assertEquals(100.0, accountDAO.getBalance(accountId), 0.001);
+    }
+
+    /**
+     * Reads alternate between healthy replicas and skip broken ones
+     */
+    @Test
+    public void testRoundRobinAndFailover() throws SQLException {
+        // IFEXISTS makes the connection fail instead of creating an empty database
+        String broken = String.format(REPLICA_URL, "replicamissing") + ";IFEXISTS=TRUE";
+        DBConnection.configureReplicas(replica("replicathree", 100.0) + "," + broken + ","
+                + replica("replicafour", 200.0), null, null);
+
+        Set<Double> seen = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            seen.add(accountDAO.getBalance(accountId));
+        }
+        assertEquals(Set.of(100.0, 200.0), seen);
+        assertEquals(2, DBConnection.getReplicaRouter().getHealthyCount());
+
+        DBConnection.getReplicaRouter().checkHealth();
+        assertEquals(2, DBConnection.getReplicaRouter().getHealthyCount());
+    }
+
+    /**
+     * With no usable replica, reads fall back to the primary
+     */
+    @Test
+    public void testFallsBackToPrimary() {
+        DBConnection.configureReplicas(String.format(REPLICA_URL, "replicagone") + ";IFEXISTS=TRUE", null, null);
+
+        assertEquals(500.0, accountDAO.getBalance(accountId), 0.001);
+        assertEquals(0, DBConnection.getReplicaRouter().getHealthyCount());
+        assertEquals(1, DBConnection.getReplicaRouter().getReplicaCount());
+    }
+
+    /**
+     * Create a replica database holding the test account at an older balance,
+     * plus an account and a user that only exist there
+     * @return JDBC URL of the replica
+     */
+    private String replica(String name, double balance) throws SQLException {
+        String url = String.format(REPLICA_URL, name);
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("RUNSCRIPT FROM 'classpath:/schema.sql'");
+            stmt.execute("INSERT INTO users (user_id, name, email, password_hash) VALUES (1, 'Replica', 'replica@example.com', 'x')");
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO accounts (account_id, user_id, balance) VALUES (?, 1, ?)")) {
+                insert.setInt(1, accountId);
+                insert.setDouble(2, balance);
+                insert.executeUpdate();
+                insert.setInt(1, accountId + 1000);
+                insert.setDouble(2, 0);
+                insert.executeUpdate();
+            }
+        }
+        return url;
+    }
+}
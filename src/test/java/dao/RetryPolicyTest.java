@@ -0,0 +1,68 @@
+package dao;
+
+import org.junit.jupiter.api.*;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for RetryPolicy
+ */
+public class RetryPolicyTest {
+
+    /**
+     * Deadlock and lock wait timeout errors are retried until an attempt succeeds
+     */
+    @Test
+    public void testRetriesUntilSuccess() throws SQLException {
+        RetryPolicy policy = new RetryPolicy(4, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+        long retriesBefore = RetryPolicy.getRetryCount();
+
+        String result = policy.execute(() -> {
+            int attempt = attempts.incrementAndGet();
+            if (attempt == 1) {
+                throw new SQLException("Deadlock found when trying to get lock", "40001", 1213);
+            }
+            if (attempt == 2) {
+                throw new SQLException("Lock wait timeout exceeded", "HY000", 1205);
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        assertTrue(RetryPolicy.getRetryCount() - retriesBefore >= 2);
+    }
+
+    /**
+     * The last error is rethrown once the attempts run out
+     */
+    @Test
+    public void testGivesUpAfterMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(SQLTransactionRollbackException.class, () -> policy.execute(() -> {
+            attempts.incrementAndGet();
+            throw new SQLTransactionRollbackException("deadlock detected", "40P01");
+        }));
+        assertEquals(3, attempts.get());
+    }
+
+    /**
+     * Other errors are not retried
+     */
+    @Test
+    public void testOtherErrorsNotRetried() {
+        RetryPolicy policy = new RetryPolicy(3, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(SQLException.class, () -> policy.execute(() -> {
+            attempts.incrementAndGet();
+            throw new SQLException("Duplicate entry", "23000", 1062);
+        }));
+        assertEquals(1, attempts.get());
+    }
+}
@@ -0,0 +1,252 @@
+package dao;
+
+import dao.model.SessionProfile;
+import dao.model.TransferResult;
+import dao.model.TransferStatus;
+import org.junit.jupiter.api.*;
+import util.DBConnection;
+import java.sql.*;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for account sharding and cross-shard transfers
+ * Three in-memory H2 databases act as shards: the test database is shard 0
+ * and two more are added with configureShards. Each shard's account ids
+ * step by 3 from its shard number, as database/setup_shards.sql asks.
+ */
+public class ShardRoutingTest {
+
+    private static final String SHARD_URL = "jdbc:h2:mem:%s;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    private static final int SHARDS = 3;
+
+    private AccountDAO accountDAO;
+    private TransactionDAO transactionDAO;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        TestDatabase.start("shardzero");
+        TestDatabase.execute("RUNSCRIPT FROM 'classpath:/shard_schema.sql'");
+        TestDatabase.execute(sequence(0));
+        DBConnection.configureShards(shard("shardone", 1) + "," + shard("shardtwo", 2), null, null);
+        accountDAO = new AccountDAO();
+        transactionDAO = new TransactionDAO();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        CrossShardTransfers.shutdown();
+        TestDatabase.stop();
+    }
+
+    /**
+     * Accounts are created on their user's shard and found there by account and by user
+     */
+    @Test
+    public void testAccountsRouteToShards() throws SQLException {
+        assertEquals(SHARDS, DBConnection.getShardCount());
+
+        Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < SHARDS; i++) {
+            int accountId = TestDatabase.createAccount(100.0 + i);
+            int shard = DBConnection.shardOf(accountId);
+            shards.add(shard);
+            assertEquals(1.0, query(shard, "SELECT COUNT(*) FROM accounts WHERE account_id = " + accountId));
+            assertEquals(100.0 + i, accountDAO.getBalance(accountId, true), 0.001);
+            assertTrue(accountDAO.accountExists(accountId));
+        }
+        assertEquals(Set.of(0, 1, 2), shards, "Consecutive users should land on every shard");
+    }
+
+    /**
+     * Login finds accounts kept on another shard than the users table
+     */
+    @Test
+    public void testLoginReadsAccountsFromUserShard() {
+        UserDAO userDAO = new UserDAO();
+        String email;
+        int userId;
+        int n = 0;
+        do {
+            email = "sharded" + (n++) + "@example.com";
+            userId = userDAO.registerUser("Sharded", email, "secret123");
+        } while (DBConnection.shardOf(userId) == 0);
+
+        int accountId = accountDAO.createAccount(userId, 75.0);
+        assertEquals(DBConnection.shardOf(userId), DBConnection.shardOf(accountId));
+        assertEquals(accountId, accountDAO.getAccountByUserId(userId).accountId());
+
+        SessionProfile profile = userDAO.authenticate(email, "secret123");
+        assertNotNull(profile);
+        assertEquals(1, profile.accounts().size());
+        assertEquals(accountId, profile.primaryAccount().accountId());
+    }
+
+    /**
+     * Accounts on one shard keep the single-transaction path
+     */
+    @Test
+    public void testSameShardTransfer() throws SQLException {
+        int sender = TestDatabase.createAccount(500.0);
+        int receiver = accountDAO.createAccount(userOf(sender), 0.0);
+        int shard = DBConnection.shardOf(sender);
+        assertEquals(shard, DBConnection.shardOf(receiver));
+
+        assertTrue(transactionDAO.transferMoney(sender, receiver, 200.0));
+        assertEquals(250.0, transactionDAO.transferFunds(sender, receiver, 50.0).senderBalance(), 0.001);
+        assertEquals(250.0, accountDAO.getBalance(receiver, true), 0.001);
+        assertEquals(2, transactionDAO.getTransactionHistory(receiver).size());
+        assertEquals(0.0, query(shard, "SELECT COUNT(*) FROM shard_transfers"));
+    }
+
+    /**
+     * Accounts on different shards go through reserve, credit and settle
+     */
+    @Test
+    public void testCrossShardTransfer() throws SQLException {
+        int sender = accountOnShard(1, 500.0);
+        int receiver = accountOnShard(2, 100.0);
+
+        TransferResult result = transactionDAO.transferFunds(sender, receiver, 200.0);
+        assertEquals(TransferStatus.SUCCESS, result.status());
+        assertEquals(300.0, result.senderBalance(), 0.001);
+        assertEquals(300.0, accountDAO.getBalance(receiver, true), 0.001);
+        assertTrue(transactionDAO.transferMoney(sender, receiver, 50.0));
+        assertEquals(250.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(350.0, accountDAO.getBalance(receiver, true), 0.001);
+
+        assertEquals(2.0, query(1, "SELECT COUNT(*) FROM shard_transfers WHERE state = 'COMPLETED'"));
+        assertEquals(2.0, query(2, "SELECT COUNT(*) FROM shard_credits"));
+        assertEquals(2, transactionDAO.getTransactionHistory(sender).size(), "Sender's shard records the transfer");
+        assertEquals(2, transactionDAO.getTransactionHistory(receiver).size(), "Receiver's shard records the transfer");
+
+        // Rejections move no money and leave no reservation
+        assertEquals(TransferStatus.INSUFFICIENT_FUNDS, transactionDAO.transferFunds(sender, receiver, 1000.0).status());
+        int missing = receiver + SHARDS * 1000;
+        assertEquals(TransferStatus.RECEIVER_NOT_FOUND, transactionDAO.transferFunds(sender, missing, 10.0).status());
+        assertEquals(250.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(0.0, query(1, "SELECT COUNT(*) FROM shard_transfers WHERE state <> 'COMPLETED'"));
+    }
+
+    /**
+     * A transfer whose credit failed stays reserved until the sweeper completes it
+     */
+    @Test
+    public void testRecoveryCompletesReservedTransfer() throws SQLException {
+        int sender = accountOnShard(1, 500.0);
+        int receiver = accountOnShard(2, 0.0);
+
+        // Without shard_credits the receiver's shard cannot take the credit
+        execute(2, "ALTER TABLE shard_credits RENAME TO shard_credits_away");
+        assertTrue(transactionDAO.transferFunds(sender, receiver, 120.0).isSuccess());
+        assertEquals(380.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(0.0, accountDAO.getBalance(receiver, true), 0.001);
+        assertEquals(1.0, query(1, "SELECT COUNT(*) FROM shard_transfers WHERE state = 'RESERVED'"));
+
+        CrossShardTransfers recovery = new CrossShardTransfers(60000, 60000);
+        try {
+            assertEquals(0, recovery.recover(), "Recent reservations belong to their caller");
+            execute(2, "ALTER TABLE shard_credits_away RENAME TO shard_credits");
+            age(1);
+            assertEquals(1, recovery.recover());
+            assertEquals(120.0, accountDAO.getBalance(receiver, true), 0.001);
+            assertEquals(1.0, query(1, "SELECT COUNT(*) FROM shard_transfers WHERE state = 'COMPLETED'"));
+
+            // Credited but not settled, as after a crash between the two: settling must not credit twice
+            execute(1, "UPDATE shard_transfers SET state = 'RESERVED'");
+            age(1);
+            assertEquals(1, recovery.recover());
+            assertEquals(120.0, accountDAO.getBalance(receiver, true), 0.001);
+            assertEquals(380.0, accountDAO.getBalance(sender, true), 0.001);
+            assertEquals(0, recovery.recover());
+        } finally {
+            recovery.close();
+        }
+    }
+
+    /**
+     * A reservation whose receiver is gone is reversed and the sender refunded
+     */
+    @Test
+    public void testRecoveryReversesWhenReceiverGone() throws SQLException {
+        int sender = accountOnShard(1, 500.0);
+        int receiver = accountOnShard(2, 0.0);
+
+        execute(2, "ALTER TABLE shard_credits RENAME TO shard_credits_away");
+        assertTrue(transactionDAO.transferFunds(sender, receiver, 120.0).isSuccess());
+        execute(2, "ALTER TABLE shard_credits_away RENAME TO shard_credits");
+        execute(2, "DELETE FROM accounts WHERE account_id = " + receiver);
+
+        CrossShardTransfers recovery = new CrossShardTransfers(60000, 60000);
+        try {
+            age(1);
+            assertEquals(1, recovery.recover());
+        } finally {
+            recovery.close();
+        }
+        assertEquals(500.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(1.0, query(1, "SELECT COUNT(*) FROM shard_transfers WHERE state = 'REVERSED'"));
+        assertEquals(1.0, query(1, "SELECT COUNT(*) FROM transactions WHERE status LIKE 'FAILED%'"));
+    }
+
+    /**
+     * Create a shard database with its id sequence
+     * @return JDBC URL of the shard
+     */
+    private String shard(String name, int shard) throws SQLException {
+        String url = String.format(SHARD_URL, name);
+        try (Connection conn = DriverManager.getConnection(url, "sa", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("RUNSCRIPT FROM 'classpath:/shard_schema.sql'");
+            stmt.execute(sequence(shard));
+        }
+        return url;
+    }
+
+    /**
+     * H2's equivalent of auto_increment_offset / auto_increment_increment
+     */
+    private static String sequence(int shard) {
+        return "ALTER TABLE accounts ALTER COLUMN account_id RESTART WITH " + (shard == 0 ? SHARDS : shard)
+                + " SET INCREMENT BY " + SHARDS;
+    }
+
+    /**
+     * Create accounts until one lands on the given shard
+     */
+    private int accountOnShard(int shard, double balance) throws SQLException {
+        int accountId;
+        do {
+            accountId = TestDatabase.createAccount(balance);
+        } while (DBConnection.shardOf(accountId) != shard);
+        return accountId;
+    }
+
+    private int userOf(int accountId) throws SQLException {
+        return (int) query(DBConnection.shardOf(accountId), "SELECT user_id FROM accounts WHERE account_id = " + accountId);
+    }
+
+    /**
+     * Backdate a shard's reservations past the recovery age
+     */
+    private void age(int shard) throws SQLException {
+        execute(shard, "UPDATE shard_transfers SET created_at = DATEADD('MINUTE', -5, CURRENT_TIMESTAMP)");
+    }
+
+    private static double query(int shard, String sql) throws SQLException {
+        try (Connection conn = DBConnection.getShardConnection(shard);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getDouble(1);
+        }
+    }
+
+    private static void execute(int shard, String sql) throws SQLException {
+        try (Connection conn = DBConnection.getShardConnection(shard);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package dao;
+
+import util.DBConnection;
+import java.sql.*;
+
+/**
+ * Test Database
+ * Points DBConnection at an in-memory H2 database (MySQL mode) loaded with src/test/resources/schema.sql
+ */
+final class TestDatabase {
+    
+    private TestDatabase() {
+    }
+    
+    /**
+     * Create a fresh schema and route DBConnection to it
+     * @param name Database name, unique per test class
+     */
+    static void start(String name) throws SQLException {
+        DBConnection.configure("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        execute("RUNSCRIPT FROM 'classpath:/schema.sql'");
+        BalanceCache.getInstance().clear();
+    }
+    
+    /**
+     * Restore the default DBConnection settings
+     */
+    static void stop() {
+        DBConnection.reset();
+    }
+    
+    /**
+     * Create a user with one account
+     * @param balance Opening balance
+     * @return Account ID
+     */
+    static int createAccount(double balance) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement user = conn.prepareStatement(
+                     "INSERT INTO users (name, email, password_hash) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            user.setString(1, "Test User");
+            user.setString(2, "user" + System.nanoTime() + "@example.com");
+            user.setString(3, "x");
+            user.executeUpdate();
+            
+            int userId;
+            try (ResultSet keys = user.getGeneratedKeys()) {
+                keys.next();
+                userId = keys.getInt(1);
+            }
+            return new AccountDAO().createAccount(userId, balance);
+        }
+    }
+    
+    /**
+     * Run a single SQL statement
+     */
+    static void execute(String sql) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package dao;
+
+import dao.model.Direction;
+import dao.model.Transaction;
+import dao.model.TransactionType;
+import org.junit.jupiter.api.*;
+import util.DBConnection;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for keyset-paginated transaction history
+ * Runs against an in-memory H2 database
+ */
+public class TransactionHistoryPagingTest {
+
+    private static int accountId;
+    private static int otherAccountId;
+
+    private TransactionDAO transactionDAO;
+
+    @BeforeAll
+    public static void setUpDatabase() throws SQLException {
+        TestDatabase.start("history");
+        accountId = TestDatabase.createAccount(1000.0);
+        otherAccountId = TestDatabase.createAccount(1000.0);
+
+        // 7 rows for the account under test, with two sharing a timestamp, plus one unrelated row
+        insert(accountId, otherAccountId, "TRANSFER", "2024-01-01 10:00:00");
+        insert(otherAccountId, accountId, "TRANSFER", "2024-01-02 10:00:00");
+        insert(accountId, accountId, "WITHDRAWAL", "2024-01-03 10:00:00");
+        insert(accountId, otherAccountId, "TRANSFER", "2024-01-04 10:00:00");
+        insert(otherAccountId, accountId, "TRANSFER", "2024-01-04 10:00:00");
+        insert(otherAccountId, otherAccountId, "WITHDRAWAL", "2024-01-05 10:00:00");
+        insert(accountId, otherAccountId, "TRANSFER", "2024-01-06 10:00:00");
+        insert(otherAccountId, accountId, "TRANSFER", "2024-01-07 10:00:00");
+    }
+
+    @AfterAll
+    public static void tearDownDatabase() {
+        TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        transactionDAO = new TransactionDAO();
+    }
+
+    /**
+     * Walking older pages visits every row exactly once, newest first
+     */
+    @Test
+    public void testPagesCoverHistoryInOrder() {
+        List<Integer> seen = new ArrayList<>();
+        TransactionPage page = transactionDAO.getTransactionHistoryPage(accountId, null, false, 3);
+        assertFalse(page.hasNewer(), "First page has no newer page");
+
+        int pages = 1;
+        collect(page, seen);
+        while (page.hasOlder()) {
+            page = transactionDAO.getTransactionHistoryPage(accountId, page.getOlderCursor(), false, 3);
+            collect(page, seen);
+            pages++;
+        }
+
+        assertEquals(3, pages);
+        assertEquals(List.of(8, 7, 5, 4, 3, 2, 1), seen, "Rows should be ordered by (txn_date, txn_id) descending");
+    }
+
+    /**
+     * Walking back to newer pages returns the same rows as the forward walk
+     */
+    @Test
+    public void testNewerPageMatchesPreviousPage() {
+        TransactionPage first = transactionDAO.getTransactionHistoryPage(accountId, null, false, 3);
+        TransactionPage second = transactionDAO.getTransactionHistoryPage(accountId, first.getOlderCursor(), false, 3);
+        assertTrue(second.hasNewer());
+
+        TransactionPage back = transactionDAO.getTransactionHistoryPage(accountId, second.getNewerCursor(), true, 3);
+        assertEquals(ids(first), ids(back));
+        assertFalse(back.hasNewer(), "Walking back to the first page should end the newer chain");
+        assertTrue(back.hasOlder());
+    }
+
+    /**
+     * Rows are classified relative to the viewing account
+     */
+    @Test
+    public void testRowTypes() {
+        List<Transaction> rows = transactionDAO.getTransactionHistory(accountId);
+        assertEquals(7, rows.size());
+        assertEquals(Direction.RECEIVED, rows.get(0).direction());
+        assertEquals(Direction.SENT, rows.get(1).direction());
+        assertEquals(Direction.WITHDRAWAL, rows.get(4).direction());
+        assertEquals(TransactionType.WITHDRAWAL, rows.get(4).type());
+    }
+
+    /**
+     * Streaming export returns rows in the date range, oldest first
+     */
+    @Test
+    public void testStreamTransactionsInRange() throws Exception {
+        List<Integer> streamed = new ArrayList<>();
+        long rows = transactionDAO.streamTransactions(accountId,
+                Timestamp.valueOf("2024-01-02 00:00:00"), Timestamp.valueOf("2024-01-05 00:00:00"),
+                (txnId, sender, receiver, amount, date, status, type) -> streamed.add(txnId));
+
+        assertEquals(4, rows);
+        assertEquals(List.of(2, 3, 4, 5), streamed);
+    }
+
+    /**
+     * Cursors survive a round trip through their string form
+     */
+    @Test
+    public void testCursorEncoding() {
+        HistoryCursor cursor = new HistoryCursor(Timestamp.valueOf("2024-01-04 10:00:00").getTime(), 5);
+        HistoryCursor decoded = HistoryCursor.decode(cursor.encode());
+        assertEquals(cursor.getTxnDateMillis(), decoded.getTxnDateMillis());
+        assertEquals(cursor.getTxnId(), decoded.getTxnId());
+        assertNull(HistoryCursor.decode("not-a-cursor!"));
+        assertNull(HistoryCursor.decode(null));
+    }
+
+    private static void collect(TransactionPage page, List<Integer> seen) {
+        seen.addAll(ids(page));
+    }
+
+    private static List<Integer> ids(TransactionPage page) {
+        List<Integer> ids = new ArrayList<>();
+        for (Transaction row : page.getTransactions()) {
+            ids.add(row.txnId());
+        }
+        return ids;
+    }
+
+    private static void insert(int sender, int receiver, String type, String date) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "INSERT INTO transactions (sender_account, receiver_account, amount, status, transaction_type, txn_date) " +
+                     "VALUES (?, ?, 10.00, 'SUCCESS', ?, ?)")) {
+            pstmt.setInt(1, sender);
+            pstmt.setInt(2, receiver);
+            pstmt.setString(3, type);
+            pstmt.setTimestamp(4, Timestamp.valueOf(date));
+            pstmt.executeUpdate();
+        }
+    }
+}
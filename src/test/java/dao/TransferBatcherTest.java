@@ -0,0 +1,111 @@
+package dao;
+
+import dao.model.Transaction;
+import dao.model.TransferResult;
+import dao.model.TransferStatus;
+import org.junit.jupiter.api.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TransferBatcher
+ * Runs against an in-memory H2 database
+ */
+public class TransferBatcherTest {
+
+    private AccountDAO accountDAO;
+    private int sender;
+    private int receiver;
+
+    @BeforeAll
+    public static void setUpDatabase() throws SQLException {
+        TestDatabase.start("batcher");
+    }
+
+    @AfterAll
+    public static void tearDownDatabase() {
+        TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        accountDAO = new AccountDAO();
+        sender = TestDatabase.createAccount(100.0);
+        receiver = TestDatabase.createAccount(0.0);
+    }
+
+    /**
+     * A rejected request in the middle of a batch does not affect the others
+     */
+    @Test
+    public void testMixedBatchCommitsTogether() throws Exception {
+        // A long wait window makes all four requests land in one batch
+        try (TransferBatcher batcher = new TransferBatcher(4, 2_000_000, 100)) {
+            CompletableFuture<TransferResult> first = batcher.submit(sender, receiver, 60.0);
+            CompletableFuture<TransferResult> uncovered = batcher.submit(sender, receiver, 50.0);
+            CompletableFuture<TransferResult> unknown = batcher.submit(sender, 999999, 10.0);
+            CompletableFuture<TransferResult> last = batcher.submit(sender, receiver, 40.0);
+
+            assertEquals(TransferStatus.SUCCESS, first.get(10, TimeUnit.SECONDS).status());
+            assertEquals(40.0, first.get().senderBalance(), 0.001);
+
+            TransferResult rejected = uncovered.get(10, TimeUnit.SECONDS);
+            assertEquals(TransferStatus.INSUFFICIENT_FUNDS, rejected.status());
+            assertEquals(40.0, rejected.senderBalance(), 0.001);
+
+            assertEquals(TransferStatus.RECEIVER_NOT_FOUND, unknown.get(10, TimeUnit.SECONDS).status());
+
+            TransferResult drained = last.get(10, TimeUnit.SECONDS);
+            assertTrue(drained.isSuccess());
+            assertEquals(0.0, drained.senderBalance(), 0.001);
+
+            assertEquals(1, batcher.getBatchCount());
+            assertEquals(0, batcher.getFallbackCount());
+        }
+
+        assertEquals(0.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(100.0, accountDAO.getBalance(receiver, true), 0.001);
+
+        // Two transfers and the insufficient-funds attempt were recorded
+        List<Transaction> history = new TransactionDAO().getTransactionHistory(sender);
+        assertEquals(3, history.size());
+    }
+
+    /**
+     * Many concurrent submissions are grouped into fewer transactions
+     */
+    @Test
+    public void testConcurrentSubmissionsAreGrouped() throws Exception {
+        List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        try (TransferBatcher batcher = new TransferBatcher(32, 1000, 1000)) {
+            for (int i = 0; i < 100; i++) {
+                futures.add(batcher.submit(sender, receiver, 1.0));
+            }
+            for (CompletableFuture<TransferResult> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS).isSuccess());
+            }
+            assertTrue(batcher.getBatchCount() < 100, "Transfers should share batches");
+            assertEquals(100, batcher.getRequestCount());
+        }
+
+        assertEquals(0.0, accountDAO.getBalance(sender, true), 0.001);
+        assertEquals(100.0, accountDAO.getBalance(receiver, true), 0.001);
+    }
+
+    /**
+     * A stopped batcher completes new submissions with an error instead of hanging
+     */
+    @Test
+    public void testSubmitAfterClose() throws Exception {
+        TransferBatcher batcher = new TransferBatcher(4, 100, 10);
+        batcher.close();
+
+        TransferResult result = batcher.submit(sender, receiver, 1.0).get(1, TimeUnit.SECONDS);
+        assertEquals(TransferStatus.ERROR, result.status());
+        assertEquals(1, batcher.getRejectionCount());
+    }
+}
@@ -0,0 +1,125 @@
+package dao;
+
+import dao.model.TransferResult;
+import org.junit.jupiter.api.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test for concurrent transfers on a hot pair of accounts
+ * Half of the threads move money A->B and the other half B->A, the pattern
+ * that deadlocks when each transfer locks its own sender first.
+ * Runs against an in-memory H2 database; throughput on the same pattern is
+ * measured by HotPairBenchmark in the benchmarks module.
+ */
+public class TransferConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final double OPENING_BALANCE = 1_000_000.0;
+
+    private TransactionDAO transactionDAO;
+    private AccountDAO accountDAO;
+    private int accountA;
+    private int accountB;
+
+    @BeforeAll
+    public static void setUpDatabase() throws SQLException {
+        TestDatabase.start("concurrency");
+    }
+
+    @AfterAll
+    public static void tearDownDatabase() {
+        TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        transactionDAO = new TransactionDAO();
+        accountDAO = new AccountDAO();
+        accountA = TestDatabase.createAccount(OPENING_BALANCE);
+        accountB = TestDatabase.createAccount(OPENING_BALANCE);
+    }
+
+    /**
+     * Opposite transfers through transferMoney all succeed and conserve money
+     */
+    @Test
+    public void testTransferMoneyHotPair() throws Exception {
+        int succeeded = run((from, to) -> transactionDAO.transferMoney(from, to, 1.0));
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, succeeded);
+        assertBalancesConserved();
+    }
+
+    /**
+     * Opposite transfers through transferFunds all succeed and conserve money
+     */
+    @Test
+    public void testTransferFundsHotPair() throws Exception {
+        int succeeded = run((from, to) -> {
+            TransferResult result = transactionDAO.transferFunds(from, to, 1.0);
+            return result.isSuccess();
+        });
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, succeeded);
+        assertBalancesConserved();
+    }
+
+    private interface Transfer {
+        boolean apply(int from, int to);
+    }
+
+    /**
+     * Run the transfers on THREADS threads
+     * Locks are taken in account order, so no transaction may be aborted as a deadlock victim.
+     * @return Number of successful transfers
+     */
+    private int run(Transfer transfer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long retriesBefore = RetryPolicy.getRetryCount();
+        long abortsBefore = RetryPolicy.getAbortCount();
+
+        for (int t = 0; t < THREADS; t++) {
+            boolean forward = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    boolean ok = forward ? transfer.apply(accountA, accountB) : transfer.apply(accountB, accountA);
+                    if (ok) {
+                        succeeded.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, RetryPolicy.getAbortCount() - abortsBefore, "Ordered locking should not abort transactions");
+        assertEquals(0, RetryPolicy.getRetryCount() - retriesBefore, "Ordered locking should not need retries");
+        return succeeded.get();
+    }
+
+    private void assertBalancesConserved() {
+        double a = accountDAO.getBalance(accountA, true);
+        double b = accountDAO.getBalance(accountB, true);
+        // Equal numbers of 1.0 transfers in each direction leave both balances unchanged
+        assertEquals(OPENING_BALANCE, a, 0.001);
+        assertEquals(OPENING_BALANCE, b, 0.001);
+    }
+}
@@ -0,0 +1,150 @@
+package dao;
+
+import dao.model.SessionProfile;
+import dao.password.PasswordService;
+import org.junit.jupiter.api.*;
+import util.DBConnection;
+import java.sql.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for UserDAO registration and login
+ * Runs against an in-memory H2 database
+ */
+public class UserLoginTest {
+
+    // SHA-256 of "password123", as stored by the original scheme
+    private static final String LEGACY_HASH = "ef92b778bafe771e89245b89ecbc08a44a4e166c06659911881f383d4473e94f";
+
+    private UserDAO userDAO;
+
+    @BeforeAll
+    public static void setUpDatabase() throws SQLException {
+        TestDatabase.start("login");
+        // A cheap fixed cost instead of calibrating to production latency
+        System.setProperty("banking.password.iterations", "100");
+        PasswordService.shutdown();
+    }
+
+    @AfterAll
+    public static void tearDownDatabase() {
+        PasswordService.shutdown();
+        System.clearProperty("banking.password.iterations");
+        TestDatabase.stop();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        userDAO = new UserDAO();
+    }
+
+    /**
+     * New users get a salted PBKDF2 hash and can log in with it
+     */
+    @Test
+    public void testRegisterAndLogin() throws SQLException {
+        int userId = userDAO.registerUser("New User", "new@example.com", "secret99");
+        assertTrue(userId > 0);
+        assertTrue(storedHash(userId).startsWith("pbkdf2-sha256$100$"));
+
+        assertTrue(login("new@example.com", "secret99"));
+        assertFalse(login("new@example.com", "secret98"));
+        assertFalse(login("nobody@example.com", "secret99"));
+    }
+
+    /**
+     * A legacy SHA-256 hash is replaced on the first successful login
+     */
+    @Test
+    public void testLegacyHashIsUpgraded() throws SQLException {
+        int userId;
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "INSERT INTO users (name, email, password_hash) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, "Legacy User");
+            pstmt.setString(2, "legacy@example.com");
+            pstmt.setString(3, LEGACY_HASH);
+            pstmt.executeUpdate();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                keys.next();
+                userId = keys.getInt(1);
+            }
+        }
+        long upgrades = UserDAO.getHashUpgradeCount();
+
+        assertFalse(login("legacy@example.com", "password124"));
+        assertEquals(LEGACY_HASH, storedHash(userId), "A failed login must not touch the hash");
+
+        assertTrue(login("legacy@example.com", "password123"));
+        assertTrue(storedHash(userId).startsWith("pbkdf2-sha256$"));
+        assertEquals(upgrades + 1, UserDAO.getHashUpgradeCount());
+
+        assertTrue(login("legacy@example.com", "password123"), "Upgraded hash should still log in");
+        assertEquals(upgrades + 1, UserDAO.getHashUpgradeCount());
+    }
+
+    /**
+     * The profile carries every account of the user, in account order
+     */
+    @Test
+    public void testProfileHasAllAccounts() {
+        int userId = userDAO.registerUser("Two Accounts", "two@example.com", "secret99");
+        AccountDAO accountDAO = new AccountDAO();
+        int first = accountDAO.createAccount(userId, 100.0);
+        int second = accountDAO.createAccount(userId, 250.0);
+        userDAO.registerUser("No Account", "none@example.com", "secret99");
+
+        SessionProfile profile = userDAO.authenticate("two@example.com", "secret99");
+        assertEquals(userId, profile.userId());
+        assertEquals("Two Accounts", profile.name());
+        assertEquals(2, profile.accounts().size());
+        assertEquals(first, profile.primaryAccount().accountId());
+        assertEquals(100.0, profile.primaryAccount().balance(), 0.001);
+        assertEquals(second, profile.accounts().get(1).accountId());
+        assertThrows(UnsupportedOperationException.class, () -> profile.accounts().clear());
+
+        SessionProfile empty = userDAO.authenticate("none@example.com", "secret99");
+        assertTrue(empty.accounts().isEmpty());
+        assertNull(empty.primaryAccount());
+    }
+
+    /**
+     * Successful, failed and unknown-user logins all give their connection back
+     */
+    @Test
+    public void testLoginsDoNotLeakConnections() {
+        int userId = userDAO.registerUser("Leak Check", "leak@example.com", "secret99");
+        new AccountDAO().createAccount(userId, 10.0);
+
+        for (int i = 0; i < 10000; i++) {
+            switch (i % 10) {
+                case 8:
+                    assertNull(userDAO.authenticate("leak@example.com", "wrong-password"));
+                    break;
+                case 9:
+                    assertNull(userDAO.authenticate("nobody-" + i + "@example.com", "secret99"));
+                    break;
+                default:
+                    assertNotNull(userDAO.authenticate("leak@example.com", "secret99"));
+            }
+        }
+
+        assertEquals(0, DBConnection.getPool().getActiveCount(), "Connections still borrowed after 10000 logins");
+    }
+
+    private boolean login(String email, String password) {
+        SessionProfile profile = userDAO.authenticate(email, password);
+        return profile != null && profile.email().equals(email);
+    }
+
+    private static String storedHash(int userId) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT password_hash FROM users WHERE user_id = ?")) {
+            pstmt.setInt(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dao.audit;
+
+import dao.model.TransactionType;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AuditJournal and AuditReader
+ */
+public class AuditJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<AuditRecord> toList(Iterator<AuditRecord> it) {
+        List<AuditRecord> records = new ArrayList<>();
+        it.forEachRemaining(records::add);
+        return records;
+    }
+
+    /**
+     * Records are read back in order with every field intact
+     */
+    @Test
+    public void testWriteAndRead() throws IOException {
+        try (AuditJournal journal = new AuditJournal(dir, 4096)) {
+            journal.transfer(1, 2, 150.25, AuditOutcome.SUCCESS);
+            journal.withdrawal(3, 20.0, AuditOutcome.INSUFFICIENT_FUNDS);
+            journal.deposit(2, 0.01, AuditOutcome.SUCCESS);
+        }
+
+        List<AuditRecord> records = toList(new AuditReader(dir).iterator());
+        assertEquals(3, records.size());
+
+        AuditRecord transfer = records.get(0);
+        assertEquals(1, transfer.sequence());
+        assertEquals(TransactionType.TRANSFER, transfer.type());
+        assertEquals(AuditOutcome.SUCCESS, transfer.outcome());
+        assertEquals(1, transfer.senderAccount());
+        assertEquals(2, transfer.receiverAccount());
+        assertEquals(15025, transfer.amountCents());
+
+        assertEquals(AuditOutcome.INSUFFICIENT_FUNDS, records.get(1).outcome());
+        assertEquals(TransactionType.DEPOSIT, records.get(2).type());
+        assertEquals(1, records.get(2).amountCents());
+    }
+
+    /**
+     * Small segments roll over and a reopened journal continues the sequence and checksum chain
+     */
+    @Test
+    public void testRolloverAndResume() throws IOException {
+        // Header plus three records per segment
+        int segmentBytes = 4 * AuditSegment.SLOT_SIZE;
+        try (AuditJournal journal = new AuditJournal(dir, segmentBytes)) {
+            for (int i = 0; i < 7; i++) {
+                journal.transfer(1, 2, i + 1, AuditOutcome.SUCCESS);
+            }
+        }
+        try (AuditJournal journal = new AuditJournal(dir, segmentBytes)) {
+            assertEquals(8, journal.getNextSequence());
+            journal.deposit(5, 1.0, AuditOutcome.SUCCESS);
+        }
+
+        assertEquals(3, AuditSegment.list(dir).size());
+        AuditReader reader = new AuditReader(dir);
+        assertEquals(8, reader.verify());
+        assertEquals(1, toList(reader.find(5, 0, Long.MAX_VALUE)).size());
+        assertEquals(7, toList(reader.find(2, 0, Long.MAX_VALUE)).size());
+    }
+
+    /**
+     * Filtering by account and time range
+     */
+    @Test
+    public void testFind() throws IOException {
+        try (AuditJournal journal = new AuditJournal(dir, 4096)) {
+            journal.transfer(1, 2, 10.0, AuditOutcome.SUCCESS);
+            journal.transfer(3, 4, 10.0, AuditOutcome.SUCCESS);
+            journal.withdrawal(2, 5.0, AuditOutcome.SUCCESS);
+        }
+        AuditReader reader = new AuditReader(dir);
+
+        assertEquals(2, toList(reader.find(2, 0, Long.MAX_VALUE)).size());
+        assertEquals(3, toList(reader.find(0, 0, Long.MAX_VALUE)).size());
+
+        long now = System.currentTimeMillis();
+        assertTrue(toList(reader.find(0, now + 60_000, Long.MAX_VALUE)).isEmpty());
+        assertTrue(toList(reader.find(0, 0, 1)).isEmpty());
+    }
+
+    /**
+     * Editing a record is detected by the checksum chain
+     */
+    @Test
+    public void testTamperingDetected() throws IOException {
+        try (AuditJournal journal = new AuditJournal(dir, 4096)) {
+            journal.transfer(1, 2, 10.0, AuditOutcome.SUCCESS);
+            journal.transfer(1, 2, 20.0, AuditOutcome.SUCCESS);
+        }
+
+        // Change the amount of the first record from 1000 to 9000 cents
+        Path segment = AuditSegment.list(dir).get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer cents = ByteBuffer.allocate(8).putLong(0, 9000);
+            channel.write(cents, AuditSegment.SLOT_SIZE + AuditSegment.CENTS);
+        }
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new AuditReader(dir).verify());
+        assertTrue(e.getMessage().contains("sequence 1"));
+
+        // The writer leaves the damaged segment alone and carries on in a new one
+        try (AuditJournal journal = new AuditJournal(dir, 4096)) {
+            journal.deposit(1, 1.0, AuditOutcome.SUCCESS);
+        }
+        assertTrue(AuditSegment.list(dir).size() >= 1);
+    }
+}
@@ -0,0 +1,41 @@
+package dao.ledger;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BalanceTable
+ */
+public class BalanceTableTest {
+
+    /**
+     * Entries survive growth well past the initial capacity
+     */
+    @Test
+    public void testGrowth() {
+        BalanceTable table = new BalanceTable(4);
+        for (int id = 1; id <= 10_000; id++) {
+            table.put(id, id * 100L);
+        }
+        assertEquals(10_000, table.size());
+        for (int id = 1; id <= 10_000; id++) {
+            assertEquals(id * 100L, table.get(id));
+        }
+        assertEquals(BalanceTable.ABSENT, table.get(10_001));
+        assertFalse(table.contains(0));
+    }
+
+    /**
+     * Replacing and adding keep the size unchanged
+     */
+    @Test
+    public void testUpdate() {
+        BalanceTable table = new BalanceTable(16);
+        table.put(7, 500);
+        table.put(7, 800);
+        table.add(7, -300);
+        assertEquals(500, table.get(7));
+        assertEquals(1, table.size());
+        assertThrows(IllegalArgumentException.class, () -> table.put(0, 1));
+    }
+}
@@ -0,0 +1,158 @@
+package dao.ledger;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LedgerEngine
+ * Opening balances come from a map instead of the database
+ */
+public class LedgerEngineTest {
+
+    @TempDir
+    Path dir;
+
+    private final Map<Integer, Long> database = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        database.put(1, 50_000L);
+        database.put(2, 10_000L);
+        database.put(3, 0L);
+    }
+
+    private LedgerEngine open(int snapshotEvery) throws IOException {
+        return new LedgerEngine(dir, snapshotEvery, accountId -> {
+            loads.incrementAndGet();
+            return database.get(accountId);
+        });
+    }
+
+    /**
+     * Commands follow the same rules as the JDBC engine
+     */
+    @Test
+    public void testOperations() throws IOException {
+        try (LedgerEngine ledger = open(1000)) {
+            assertTrue(ledger.transferMoney(1, 2, 100.0));
+            assertEquals(400.0, ledger.getBalance(1), 0.001);
+            assertEquals(200.0, ledger.getBalance(2), 0.001);
+
+            assertFalse(ledger.transferMoney(2, 1, 200.01), "Insufficient funds");
+            assertFalse(ledger.transferMoney(1, 99, 1.0), "Unknown receiver");
+            assertFalse(ledger.withdrawMoney(3, 0.01));
+            assertFalse(ledger.deposit(1, -5.0));
+
+            assertTrue(ledger.withdrawMoney(2, 200.0));
+            assertTrue(ledger.deposit(3, 12.34));
+            assertEquals(0.0, ledger.getBalance(2), 0.001);
+            assertEquals(12.34, ledger.getBalance(3), 0.001);
+
+            assertTrue(ledger.accountExists(1));
+            assertFalse(ledger.accountExists(99));
+        }
+        // Each known account was loaded from the database once
+        assertTrue(loads.get() <= 5);
+    }
+
+    /**
+     * A restart without a final snapshot replays the journal
+     */
+    @Test
+    public void testRecoveryFromJournal() throws IOException {
+        LedgerEngine ledger = open(1_000_000);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(ledger.transferMoney(1, 2, 1.25));
+        }
+        ledger.halt();
+
+        // The database is no longer consulted for accounts the journal opened
+        database.clear();
+        try (LedgerEngine recovered = open(1_000_000)) {
+            assertEquals(437.50, recovered.getBalance(1), 0.001);
+            assertEquals(162.50, recovered.getBalance(2), 0.001);
+            assertEquals(ledger.getSequence(), recovered.getSequence());
+        }
+    }
+
+    /**
+     * Snapshots plus the journal written after them restore the state
+     */
+    @Test
+    public void testRecoveryFromSnapshotAndJournal() throws IOException {
+        LedgerEngine ledger = open(10);
+        for (int i = 0; i < 25; i++) {
+            assertTrue(ledger.deposit(3, 1.0));
+        }
+        ledger.halt();
+
+        database.clear();
+        try (LedgerEngine recovered = open(10)) {
+            assertEquals(25.0, recovered.getBalance(3), 0.001);
+        }
+        // A clean shutdown leaves everything in the snapshot
+        try (LedgerEngine reopened = open(10)) {
+            assertEquals(25.0, reopened.getBalance(3), 0.001);
+        }
+    }
+
+    /**
+     * A partially written record at the end of the journal is discarded
+     */
+    @Test
+    public void testTornTailIgnored() throws IOException {
+        LedgerEngine ledger = open(1_000_000);
+        assertTrue(ledger.withdrawMoney(1, 10.0));
+        ledger.halt();
+
+        try (FileChannel channel = FileChannel.open(dir.resolve("ledger.journal"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7}), channel.size());
+        }
+
+        try (LedgerEngine recovered = open(1_000_000)) {
+            assertEquals(490.0, recovered.getBalance(1), 0.001);
+            assertTrue(recovered.deposit(1, 10.0));
+        }
+        try (LedgerEngine reopened = open(1_000_000)) {
+            assertEquals(500.0, reopened.getBalance(1), 0.001);
+        }
+    }
+
+    /**
+     * Concurrent callers are serialised by the sequencer without losing money
+     */
+    @Test
+    public void testConcurrentTransfersConserveMoney() throws Exception {
+        try (LedgerEngine ledger = open(500)) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                CountDownLatch done = new CountDownLatch(8);
+                for (int t = 0; t < 8; t++) {
+                    int from = t % 2 == 0 ? 1 : 2;
+                    int to = from == 1 ? 2 : 1;
+                    executor.submit(() -> {
+                        for (int i = 0; i < 500; i++) {
+                            ledger.transferMoney(from, to, 0.5);
+                        }
+                        done.countDown();
+                    });
+                }
+                assertTrue(done.await(60, TimeUnit.SECONDS));
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(600.0, ledger.getBalance(1) + ledger.getBalance(2), 0.001);
+        }
+    }
+}
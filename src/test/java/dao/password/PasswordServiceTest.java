@@ -0,0 +1,170 @@
+package dao.password;
+
+import org.junit.jupiter.api.*;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PasswordService and its hashers
+ */
+public class PasswordServiceTest {
+
+    // SHA-256 of "password123", as stored by the original scheme
+    private static final String LEGACY_HASH = "ef92b778bafe771e89245b89ecbc08a44a4e166c06659911881f383d4473e94f";
+
+    private PasswordService service;
+
+    @AfterEach
+    public void tearDown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    private static PasswordService newService(PasswordHasher current, int threads, int queueSize, long timeoutMs) {
+        return new PasswordService(current, List.of(new Sha256PasswordHasher()), threads, queueSize, timeoutMs);
+    }
+
+    /**
+     * New hashes are salted PBKDF2 and verify only with the right password
+     */
+    @Test
+    public void testPbkdf2RoundTrip() {
+        service = newService(new Pbkdf2PasswordHasher(1000), 2, 10, 5000);
+
+        String first = service.hash("password123");
+        String second = service.hash("password123");
+
+        assertTrue(first.startsWith("pbkdf2-sha256$1000$"), first);
+        assertNotEquals(first, second, "Each hash should have its own salt");
+        assertEquals(Verification.MATCH, service.verify("password123", first));
+        assertEquals(Verification.MISMATCH, service.verify("password124", first));
+    }
+
+    /**
+     * Legacy SHA-256 hashes still verify and are flagged for upgrade
+     */
+    @Test
+    public void testLegacyHashNeedsRehash() {
+        service = newService(new Pbkdf2PasswordHasher(1000), 2, 10, 5000);
+
+        assertEquals(LEGACY_HASH, new Sha256PasswordHasher().hash("password123"));
+        assertEquals(Verification.MATCH_NEEDS_REHASH, service.verify("password123", LEGACY_HASH));
+        assertEquals(Verification.MISMATCH, service.verify("wrong", LEGACY_HASH));
+        assertEquals(Verification.MISMATCH, service.verify("password123", "not-a-hash"));
+        assertEquals(Verification.MISMATCH, service.verify("password123", "pbkdf2-sha256$x$y$z"));
+    }
+
+    /**
+     * Hashes far below the current cost are upgraded; nearby costs are left alone
+     */
+    @Test
+    public void testLowCostHashNeedsRehash() {
+        String cheap = new Pbkdf2PasswordHasher(1000).hash("password123");
+        String close = new Pbkdf2PasswordHasher(1500).hash("password123");
+        service = newService(new Pbkdf2PasswordHasher(2001), 2, 10, 5000);
+
+        assertEquals(Verification.MATCH_NEEDS_REHASH, service.verify("password123", cheap));
+        assertEquals(Verification.MATCH, service.verify("password123", close));
+    }
+
+    /**
+     * Calibration never goes below the minimum cost
+     */
+    @Test
+    public void testCalibrationHasFloor() {
+        assertEquals(Pbkdf2PasswordHasher.MIN_ITERATIONS, Pbkdf2PasswordHasher.calibrate(0));
+        assertTrue(Pbkdf2PasswordHasher.calibrate(20) >= Pbkdf2PasswordHasher.MIN_ITERATIONS);
+    }
+
+    /**
+     * With the only thread busy and the queue full, further requests are refused at once
+     */
+    @Test
+    public void testSaturatedPoolRejects() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service = newService(new BlockingHasher(started, release), 1, 1, 5000);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> running = callers.submit(() -> service.hash("a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> queued = callers.submit(() -> service.hash("b"));
+            while (service.getQueueDepth() < 1) {
+                Thread.onSpinWait();
+            }
+
+            assertThrows(PasswordServiceBusyException.class, () -> service.hash("c"));
+            assertEquals(1, service.getRejectedCount());
+            assertEquals(1, service.getPeakQueueDepth());
+
+            release.countDown();
+            assertEquals("hash:a", running.get());
+            assertEquals("hash:b", queued.get());
+            assertEquals(2, service.getCompletedCount());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    /**
+     * A caller that waits longer than the timeout gets a busy error
+     */
+    @Test
+    public void testSlowHashTimesOut() {
+        CountDownLatch release = new CountDownLatch(1);
+        service = newService(new BlockingHasher(new CountDownLatch(1), release), 1, 1, 100);
+        try {
+            assertThrows(PasswordServiceBusyException.class, () -> service.hash("a"));
+            assertEquals(1, service.getTimeoutCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Hashes "hash:" + password once released, to hold the pool's only thread
+     */
+    private static final class BlockingHasher implements PasswordHasher {
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+
+        BlockingHasher(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public String hash(String password) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hash:" + password;
+        }
+
+        @Override
+        public boolean verify(String password, String stored) {
+            return stored.equals(hash(password));
+        }
+
+        @Override
+        public boolean supports(String stored) {
+            return stored.startsWith("hash:");
+        }
+
+        @Override
+        public boolean needsRehash(String stored) {
+            return false;
+        }
+    }
+}
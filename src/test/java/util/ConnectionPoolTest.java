@@ -0,0 +1,141 @@
+package util;
+
+import org.junit.jupiter.api.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ConnectionPool
+ * Runs against an in-memory H2 database
+ */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new ConnectionPool("test",
+                () -> DriverManager.getConnection("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", "sa", ""),
+                0, 2, 200, 60000, 0, 0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Closing a borrowed connection returns the same physical connection to the pool
+     */
+    @Test
+    public void testConnectionIsReused() throws SQLException {
+        Connection first = pool.borrow();
+        Connection physical = first.unwrap(org.h2.jdbc.JdbcConnection.class);
+        first.close();
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+
+        Connection second = pool.borrow();
+        assertSame(physical, second.unwrap(org.h2.jdbc.JdbcConnection.class),
+                   "Second borrow should reuse the idle physical connection");
+        assertTrue(first.isClosed(), "Old handle should stay closed after the connection is reused");
+        second.close();
+
+        assertEquals(1, pool.getTotalCount());
+    }
+
+    /**
+     * Borrowing beyond maxSize times out instead of opening more connections
+     */
+    @Test
+    public void testBorrowTimeout() throws SQLException {
+        Connection a = pool.borrow();
+        Connection b = pool.borrow();
+
+        assertThrows(SQLTransientConnectionException.class, () -> pool.borrow());
+
+        a.close();
+        Connection c = pool.borrow();
+        assertNotNull(c);
+
+        b.close();
+        c.close();
+        assertEquals(2, pool.getTotalCount());
+    }
+
+    /**
+     * An open transaction is rolled back and autocommit restored on return
+     */
+    @Test
+    public void testTransactionStateIsReset() throws SQLException {
+        Connection conn = pool.borrow();
+        conn.setAutoCommit(false);
+        conn.close();
+
+        Connection next = pool.borrow();
+        assertTrue(next.getAutoCommit(), "Returned connection should be back in autocommit mode");
+        next.close();
+    }
+
+    /**
+     * Preparing the same SQL on a reused connection is served from the statement cache
+     */
+    @Test
+    public void testPreparedStatementsAreCached() throws SQLException {
+        String sql = "SELECT 1";
+
+        Connection conn = pool.borrow();
+        conn.prepareStatement(sql).close();
+        conn.close();
+
+        long hitsBefore = StatementCache.getHitCount();
+
+        conn = pool.borrow();
+        PreparedStatement first = conn.prepareStatement(sql);
+        assertEquals(hitsBefore + 1, StatementCache.getHitCount(), "Second prepare should hit the cache");
+
+        // The cached statement is still open, so a second prepare must not share it
+        PreparedStatement second = conn.prepareStatement(sql);
+        assertNotSame(first.unwrap(org.h2.jdbc.JdbcPreparedStatement.class),
+                      second.unwrap(org.h2.jdbc.JdbcPreparedStatement.class));
+        assertSame(conn, first.getConnection());
+        assertSame(conn, second.getConnection(), "The uncached statement must not expose the physical connection");
+
+        second.close();
+        first.close();
+        assertTrue(first.isClosed());
+        assertTrue(second.isClosed());
+
+        // Uncached statements left open are closed when the connection is returned
+        PreparedStatement held = conn.prepareStatement(sql);
+        PreparedStatement leaked = conn.prepareStatement(sql);
+        PreparedStatement physicalLeaked = leaked.unwrap(org.h2.jdbc.JdbcPreparedStatement.class);
+        held.close();
+        conn.close();
+        assertTrue(leaked.isClosed());
+        assertTrue(physicalLeaked.isClosed());
+    }
+
+    /**
+     * Dead idle connections are discarded on borrow
+     */
+    @Test
+    public void testInvalidConnectionIsReplaced() throws SQLException {
+        Connection conn = pool.borrow();
+        Connection physical = conn.unwrap(org.h2.jdbc.JdbcConnection.class);
+        conn.close();
+        physical.close();
+
+        Connection next = pool.borrow();
+        assertFalse(next.isClosed());
+        assertNotSame(physical, next.unwrap(org.h2.jdbc.JdbcConnection.class));
+        next.close();
+
+        assertEquals(1, pool.getTotalCount());
+    }
+}
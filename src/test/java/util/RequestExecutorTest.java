@@ -0,0 +1,84 @@
+package util;
+
+import org.junit.jupiter.api.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for RequestExecutor
+ */
+public class RequestExecutorTest {
+
+    private RequestExecutor executor;
+
+    @AfterEach
+    public void tearDown() {
+        executor.close();
+    }
+
+    /**
+     * No more than maxConcurrency tasks run at once, and every task runs
+     */
+    @Test
+    public void testConcurrencyIsLimited() throws InterruptedException {
+        executor = new RequestExecutor(true, 3, 10000);
+        int tasks = 50;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(tasks);
+
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            }, Assertions::fail);
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertTrue(peak.get() <= 3, "Peak concurrency was " + peak.get());
+        // A task is counted after it returns, just after its countDown
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getCompletedCount() < tasks && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(tasks, executor.getCompletedCount());
+        assertEquals(0, executor.getRejectedCount());
+    }
+
+    /**
+     * A task that cannot get a permit within the queue timeout is rejected instead of run
+     */
+    @Test
+    public void testRejectsAfterQueueTimeout() throws InterruptedException {
+        executor = new RequestExecutor(true, 1, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch rejected = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Assertions::fail);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        executor.execute(ran::incrementAndGet, rejected::countDown);
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertEquals(0, ran.get());
+        assertEquals(1, executor.getRejectedCount());
+    }
+}
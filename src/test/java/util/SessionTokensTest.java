@@ -0,0 +1,86 @@
+package util;
+
+import org.junit.jupiter.api.*;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SessionTokens
+ */
+public class SessionTokensTest {
+
+    private static final long NOW = 1_700_000_000L;
+
+    private final SessionTokens tokens = new SessionTokens(secret("first-secret"));
+
+    /**
+     * A freshly issued token verifies to the same claims
+     */
+    @Test
+    public void testRoundTrip() {
+        SessionTokens.Claims claims = new SessionTokens.Claims(42, 1007, "Ada Lovelace", NOW + 1800);
+        String token = tokens.issue(claims);
+
+        assertEquals(claims, tokens.verify(token, NOW));
+        assertTrue(token.length() < 80, "Token should stay compact: " + token.length());
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), "Token must be cookie-safe: " + token);
+    }
+
+    /**
+     * Names outside ASCII survive, and overlong names are cut on a character boundary
+     */
+    @Test
+    public void testUnicodeAndLongNames() {
+        SessionTokens.Claims claims = new SessionTokens.Claims(1, 0, "Zoë Ñúñez 山田", NOW + 60);
+        assertEquals(claims, tokens.verify(tokens.issue(claims), NOW));
+
+        String longName = "é".repeat(300);
+        SessionTokens.Claims verified = tokens.verify(tokens.issue(new SessionTokens.Claims(1, 2, longName, NOW + 60)), NOW);
+        assertNotNull(verified);
+        assertEquals(200, verified.name().length());
+        assertTrue(longName.startsWith(verified.name()));
+    }
+
+    /**
+     * Changing any character of a token invalidates it
+     */
+    @Test
+    public void testTamperedTokenIsRejected() {
+        String token = tokens.issue(new SessionTokens.Claims(42, 1007, "Ada", NOW + 1800));
+        for (int i = 0; i < token.length(); i++) {
+            char replacement = token.charAt(i) == 'A' ? 'B' : 'A';
+            String tampered = token.substring(0, i) + replacement + token.substring(i + 1);
+            assertNull(tokens.verify(tampered, NOW), "Accepted token tampered at " + i);
+        }
+    }
+
+    /**
+     * Tokens expire, and tokens signed with another key are not accepted
+     */
+    @Test
+    public void testExpiredAndForeignTokens() {
+        String token = tokens.issue(new SessionTokens.Claims(42, 1007, "Ada", NOW + 1800));
+        assertNull(tokens.verify(token, NOW + 1800));
+        assertNotNull(tokens.verify(token, NOW + 1799));
+
+        SessionTokens otherKey = new SessionTokens(secret("second-secret"));
+        assertNull(otherKey.verify(token, NOW));
+    }
+
+    /**
+     * Malformed cookie values are rejected without throwing
+     */
+    @Test
+    public void testGarbageIsRejected() {
+        assertNull(tokens.verify(null, NOW));
+        assertNull(tokens.verify("", NOW));
+        assertNull(tokens.verify("not a token!", NOW));
+        assertNull(tokens.verify("AAAAA", NOW));
+        assertNull(tokens.verify("A".repeat(2000), NOW));
+        assertNull(tokens.verify("QUJD", NOW));
+    }
+
+    private static byte[] secret(String seed) {
+        return (seed + "-0123456789abcdef0123456789abcdef").getBytes(StandardCharsets.UTF_8);
+    }
+}
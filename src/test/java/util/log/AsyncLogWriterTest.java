@@ -0,0 +1,123 @@
+package util.log;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for AsyncLogWriter and the level checks of Logger
+ */
+public class AsyncLogWriterTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Events come out as one line each with their fields, followed by any stack trace
+     */
+    @Test
+    public void testFormatsEvents() throws Exception {
+        Path file = dir.resolve("banking.log");
+        AsyncLogWriter writer = new AsyncLogWriter(file, 16, 1024 * 1024, 2, false, new LongAdder());
+        writer.publish(Level.INFO, "TransactionDAO", "Transfer rejected", null,
+                "sender", 12, "reason", "insufficient funds", null, null);
+        writer.publish(Level.ERROR, "AccountDAO", "Error depositing", new SQLException("connection reset"),
+                "account", 7, null, null, null, null);
+        writer.close();
+
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        String[] lines = text.split("\n");
+        assertTrue(lines[0].matches("\\S+Z INFO  TransactionDAO \\[.+\\] Transfer rejected sender=12 reason=\"insufficient funds\""),
+                lines[0]);
+        assertTrue(lines[1].endsWith(" ERROR AccountDAO [" + Thread.currentThread().getName() + "] Error depositing account=7"),
+                lines[1]);
+        assertEquals("java.sql.SQLException: connection reset", lines[2]);
+        assertTrue(lines[3].trim().startsWith("at util.log.AsyncLogWriterTest.testFormatsEvents"), lines[3]);
+    }
+
+    /**
+     * A full ring drops events and counts them instead of blocking the caller
+     */
+    @Test
+    public void testDropsWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        Object slowValue = new Object() {
+            @Override
+            public String toString() {
+                writing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            }
+        };
+
+        Path file = dir.resolve("banking.log");
+        LongAdder dropped = new LongAdder();
+        AsyncLogWriter writer = new AsyncLogWriter(file, 4, 1024 * 1024, 2, false, dropped);
+        try {
+            // Hold the writer on the first event so the ring cannot drain
+            assertTrue(writer.publish(Level.INFO, "Test", "first", null, "value", slowValue, null, null, null, null));
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                assertTrue(writer.publish(Level.INFO, "Test", "queued", null, "i", i, null, null, null, null));
+            }
+            assertFalse(writer.publish(Level.INFO, "Test", "overflow", null, null, null, null, null, null, null));
+            assertFalse(writer.publish(Level.INFO, "Test", "overflow", null, null, null, null, null, null, null));
+            assertEquals(2, dropped.sum());
+            assertEquals(4, writer.getBacklog());
+        } finally {
+            release.countDown();
+            writer.close();
+        }
+
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        assertTrue(text.contains("first value=slow"));
+        assertTrue(text.contains("queued i=2"));
+        assertFalse(text.contains("overflow"));
+        assertTrue(text.contains("Log buffer full, events dropped count=2"));
+    }
+
+    /**
+     * The file is rolled over at maxBytes and only maxFiles old files are kept
+     */
+    @Test
+    public void testRollsFiles() throws Exception {
+        Path file = dir.resolve("banking.log");
+        AsyncLogWriter writer = new AsyncLogWriter(file, 64, 300, 2, false, new LongAdder());
+        for (int i = 0; i < 40; i++) {
+            writer.publish(Level.INFO, "Test", "Rolling event", null, "i", i, null, null, null, null);
+        }
+        writer.close();
+
+        assertTrue(Files.size(file) <= 300);
+        assertTrue(Files.exists(dir.resolve("banking.log.1")));
+        assertTrue(Files.exists(dir.resolve("banking.log.2")));
+        assertFalse(Files.exists(dir.resolve("banking.log.3")));
+        assertTrue(Files.readString(file, StandardCharsets.UTF_8).contains("i=39"));
+    }
+
+    /**
+     * A logger writes its own level and above
+     */
+    @Test
+    public void testLevels() {
+        Logger logger = new Logger("Test", Level.parse("warn", Level.INFO));
+        assertFalse(logger.isDebugEnabled());
+        assertFalse(logger.isInfoEnabled());
+        assertTrue(logger.isWarnEnabled());
+        assertEquals(Level.INFO, Level.parse("verbose", Level.INFO));
+        assertEquals(Level.INFO, Level.parse(null, Level.INFO));
+        assertTrue(new Logger("Test", Level.DEBUG).isDebugEnabled());
+    }
+}
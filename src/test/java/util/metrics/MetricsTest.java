@@ -0,0 +1,108 @@
+package util.metrics;
+
+import org.junit.jupiter.api.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LatencyHistogram and the Prometheus output of Metrics
+ */
+public class MetricsTest {
+
+    /**
+     * Every value lands in a bucket whose range contains it, within 12.5%
+     */
+    @Test
+    public void testBucketsAreLogLinear() {
+        int previous = -1;
+        for (long micros = 0; micros < 5_000_000; micros += 1 + micros / 50) {
+            int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(bucket >= previous, "Buckets must not go backwards at " + micros);
+            previous = bucket;
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue(micros < upper, micros + "µs is past its bucket's bound " + upper);
+            assertTrue(bucket == 0 || micros >= LatencyHistogram.upperBound(bucket - 1));
+            assertTrue(upper - micros <= Math.max(1, micros / 8), "Bucket too wide at " + micros);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE / 1000));
+    }
+
+    /**
+     * Counts, sums, bounds and percentiles follow the recorded values
+     */
+    @Test
+    public void testRecording() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        histogram.record(-5);
+
+        assertEquals(101, histogram.getCount());
+        assertEquals(5050L * 1_000_000L, histogram.getSumNanos());
+        assertEquals(1, histogram.countBelow(1));
+        assertEquals(2, histogram.countBelow(1024));
+        assertEquals(33, histogram.countBelow(32768));
+        long p50 = histogram.getPercentileMicros(50);
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 9 / 8, "p50 was " + p50);
+        long p99 = histogram.getPercentileMicros(99);
+        assertTrue(p99 >= 99_000 && p99 <= 99_000 * 9 / 8, "p99 was " + p99);
+    }
+
+    /**
+     * Recording does not allocate once the histogram exists
+     */
+    @Test
+    public void testRecordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        LatencyHistogram histogram = new LatencyHistogram();
+        LongAdder counter = new LongAdder();
+        recordMany(histogram, counter);
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        recordMany(histogram, counter);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // 100000 recordings; anything allocated per call would show up as megabytes
+        assertTrue(allocated < 16 * 1024, "Recording allocated " + allocated + " bytes");
+    }
+
+    private static void recordMany(LatencyHistogram histogram, LongAdder counter) {
+        for (int i = 0; i < 100_000; i++) {
+            histogram.recordSince(System.nanoTime() - i);
+            counter.increment();
+        }
+    }
+
+    /**
+     * Counters, gauges and histograms are written in the Prometheus text format
+     */
+    @Test
+    public void testPrometheusFormat() throws Exception {
+        Metrics.counter("test_events_total", "Events seen", "kind", "a\"b").add(3);
+        Metrics.gauge("test_temperature", "Current temperature", () -> 21.5);
+        LatencyHistogram histogram = Metrics.histogram("test_call_seconds", "Call time", "op", "x");
+        assertSame(histogram, Metrics.histogram("test_call_seconds", "Call time", "op", "x"));
+        histogram.record(3_000);
+        histogram.record(2_000_000_000L);
+        assertThrows(IllegalArgumentException.class, () -> Metrics.gauge("test_events_total", "Wrong type", () -> 1));
+
+        StringBuilder out = new StringBuilder();
+        Metrics.writePrometheus(out);
+        String text = out.toString();
+
+        assertTrue(text.contains("# TYPE test_events_total counter\n"));
+        assertTrue(text.contains("test_events_total{kind=\"a\\\"b\"} 3\n"));
+        assertTrue(text.contains("# HELP test_temperature Current temperature\n"));
+        assertTrue(text.contains("test_temperature 21.5\n"));
+        assertTrue(text.contains("# TYPE test_call_seconds histogram\n"));
+        assertTrue(text.contains("test_call_seconds_bucket{op=\"x\",le=\"0.000002\"} 0\n"));
+        assertTrue(text.contains("test_call_seconds_bucket{op=\"x\",le=\"0.000004\"} 1\n"));
+        assertTrue(text.contains("test_call_seconds_bucket{op=\"x\",le=\"1.048576\"} 1\n"));
+        assertTrue(text.contains("test_call_seconds_bucket{op=\"x\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("test_call_seconds_count{op=\"x\"} 2\n"));
+        assertTrue(text.contains("test_call_seconds_sum{op=\"x\"} 2.000003\n"));
+    }
+}
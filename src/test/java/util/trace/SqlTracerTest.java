@@ -0,0 +1,113 @@
+package util.trace;
+
+import org.junit.jupiter.api.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for SqlTracer and SqlFingerprint
+ * Runs against an in-memory H2 database
+ */
+public class SqlTracerTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        SqlTracer.reset();
+        connection = SqlTracer.wrap(DriverManager.getConnection("jdbc:h2:mem:sqltrace;DB_CLOSE_DELAY=-1", "sa", ""));
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS items");
+            stmt.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(20))");
+        }
+        SqlTracer.reset();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        connection.close();
+        SqlTracer.setSlowThresholdMillis(200);
+    }
+
+    /**
+     * Literals, comments, whitespace and IN lists are normalized away
+     */
+    @Test
+    public void testFingerprint() {
+        assertEquals("SELECT * FROM t1 WHERE id = ? AND name = ?",
+                SqlFingerprint.of("SELECT *  FROM t1\n WHERE id = 42 AND name = 'O''Brien' -- lookup"));
+        assertEquals("SELECT a FROM t WHERE b IN (...) AND c IN (SELECT d FROM e)",
+                SqlFingerprint.of("SELECT a FROM t WHERE b IN (1, 2, 3) AND c IN (SELECT d FROM e)"));
+        assertEquals("UPDATE accounts SET balance = balance + ? WHERE account_id = ?",
+                SqlFingerprint.of("UPDATE accounts /* credit */ SET balance = balance + ? WHERE account_id = ?"));
+        assertEquals("SELECT \"col 1\" FROM t LIMIT ?", SqlFingerprint.of("SELECT \"col 1\" FROM t LIMIT 10"));
+    }
+
+    /**
+     * Executions, rows and errors are counted per fingerprint
+     */
+    @Test
+    public void testCountsExecutions() throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO items (id, name) VALUES (?, ?)")) {
+            assertSame(connection, insert.getConnection());
+            for (int i = 1; i <= 3; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "item" + i);
+                assertEquals(1, insert.executeUpdate());
+            }
+            insert.setInt(1, 1);
+            insert.setString(2, "duplicate");
+            assertThrows(SQLException.class, insert::executeUpdate);
+        }
+        try (Statement stmt = connection.createStatement()) {
+            for (int id = 1; id <= 2; id++) {
+                try (ResultSet rs = stmt.executeQuery("SELECT name FROM items WHERE id >= " + id)) {
+                    while (rs.next()) {
+                        assertNotNull(rs.getString(1));
+                    }
+                }
+            }
+        }
+
+        List<StatementStats> top = SqlTracer.getTopStatements(StatementStats.BY_COUNT, 10);
+        assertEquals(2, top.size());
+
+        StatementStats insert = top.get(0);
+        assertEquals("INSERT INTO items (id, name) VALUES (?, ?)", insert.getFingerprint());
+        assertEquals(4, insert.getCount());
+        assertEquals(1, insert.getErrorCount());
+        assertEquals(3, insert.getRows());
+        assertTrue(insert.getMaxNanos() > 0 && insert.getTotalNanos() >= insert.getMaxNanos());
+
+        StatementStats select = top.get(1);
+        assertEquals("SELECT name FROM items WHERE id >= ?", select.getFingerprint());
+        assertEquals(2, select.getCount());
+        assertEquals(5, select.getRows());
+    }
+
+    /**
+     * Batches count every row they change
+     */
+    @Test
+    public void testCountsBatches() throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO items (id, name) VALUES (?, ?)")) {
+            SqlTracer.setSlowThresholdMillis(0);
+            for (int i = 1; i <= 5; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "item" + i);
+                insert.addBatch();
+            }
+            assertEquals(5, insert.executeBatch().length);
+        }
+
+        StatementStats stats = SqlTracer.getTopStatements(StatementStats.BY_TOTAL_TIME, 1).get(0);
+        assertEquals(1, stats.getCount());
+        assertEquals(5, stats.getRows());
+    }
+}
@@ -0,0 +1,46 @@
+-- H2 (MySQL mode) version of database/setup_shards.sql used by sharding tests
+-- Run after schema.sql on shard 0, alone on the other shards
+
+DROP TABLE IF EXISTS shard_credits;
+DROP TABLE IF EXISTS shard_transfers;
+DROP TABLE IF EXISTS transactions;
+DROP TABLE IF EXISTS accounts;
+
+CREATE TABLE accounts (
+    account_id INT AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    balance DECIMAL(12,2) DEFAULT 0.00 CHECK (balance >= 0),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_user_id ON accounts (user_id);
+
+CREATE TABLE transactions (
+    txn_id INT AUTO_INCREMENT PRIMARY KEY,
+    sender_account INT NOT NULL,
+    receiver_account INT NOT NULL,
+    amount DECIMAL(12,2) NOT NULL CHECK (amount > 0),
+    txn_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    status VARCHAR(50) DEFAULT 'SUCCESS',
+    transaction_type VARCHAR(20) DEFAULT 'TRANSFER',
+    description VARCHAR(255)
+);
+CREATE INDEX idx_sender_date ON transactions (sender_account, txn_date, txn_id);
+CREATE INDEX idx_receiver_date ON transactions (receiver_account, txn_date, txn_id);
+CREATE INDEX idx_txn_date ON transactions (txn_date);
+
+CREATE TABLE shard_transfers (
+    transfer_id VARCHAR(36) PRIMARY KEY,
+    sender_account INT NOT NULL,
+    receiver_account INT NOT NULL,
+    amount DECIMAL(12,2) NOT NULL,
+    state VARCHAR(10) NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL
+);
+CREATE INDEX idx_shard_transfer_state ON shard_transfers (state, created_at);
+
+CREATE TABLE shard_credits (
+    transfer_id VARCHAR(36) PRIMARY KEY,
+    receiver_account INT NOT NULL,
+    amount DECIMAL(12,2) NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL
+);